@@ -0,0 +1,99 @@
+package benchmarks;
+
+import core.Broker;
+import core.BrokerConfig;
+import core.ServerMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ApiVersions round trips over loopback against a {@link Broker} running in the same JVM, one request in flight
+ * at a time. With {@code -prof gc} the allocation figures cover both the client and the broker side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerRoundTripBenchmark {
+
+    @Param({"SELECTOR", "THREAD_PER_CONNECTION"})
+    public ServerMode serverMode;
+
+    @Param({"0", "3"})
+    public short version;
+
+    private Broker broker;
+    private SocketChannel channel;
+    private ByteBuffer request;
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+    private ByteBuffer response = ByteBuffer.allocate(1024);
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        BrokerConfig config = BrokerConfig.builder()
+                .port(0)
+                .serverMode(serverMode)
+                .logDir(Files.createTempDirectory("broker-benchmark").toString())
+                .build();
+        broker = new Broker(config);
+        Thread.ofPlatform().name("broker").daemon().start(() -> {
+            try {
+                broker.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        channel = SocketChannel.open(new InetSocketAddress("localhost", broker.localPort()));
+        channel.socket().setTcpNoDelay(true);
+        request = RequestFrames.apiVersions(version, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+        broker.shutdown();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        ByteBuffer frame = request.duplicate();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        readFully(sizeBuffer.clear());
+        int size = sizeBuffer.flip().getInt();
+        if (response.capacity() < size) {
+            response = ByteBuffer.allocate(size);
+        }
+        readFully(response.clear().limit(size));
+        return response.getInt(0);
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Broker closed the connection");
+            }
+        }
+    }
+}
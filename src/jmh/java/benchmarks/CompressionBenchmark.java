@@ -0,0 +1,116 @@
+package benchmarks;
+
+import compression.CompressionCodec;
+import compression.CompressionCodecs;
+import compression.CompressionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the built-in codecs on payloads shaped like what producers send, to pick broker-side defaults.
+ * Throughput is reported per operation over {@code size} bytes of input; the compression ratio of each payload
+ * is printed once per trial.
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar target/benchmarks.jar CompressionBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    /**
+     * json: repetitive structured events, text: log lines drawn from a small vocabulary,
+     * random: incompressible bytes such as already-encrypted or compressed values.
+     */
+    @Param({"json", "text", "random"})
+    public String payload;
+
+    @Param({"GZIP", "LZ4"})
+    public CompressionType codecType;
+
+    @Param({"16384", "1048576"})
+    public int size;
+
+    private final BufferPool pool = new BufferPool(4);
+    private CompressionCodec codec;
+    private ByteBuffer input;
+    private ByteBuffer compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = CompressionCodecs.forType(codecType);
+        input = ByteBuffer.wrap(generate(payload, size));
+        compressed = codec.compress(input, pool);
+        System.out.printf("%n%s on %d bytes of %s: ratio %.2f%n", codecType, size, payload,
+                (double) size / compressed.remaining());
+    }
+
+    @Benchmark
+    public void compress(Blackhole blackhole) {
+        ByteBuffer output = codec.compress(input, pool);
+        blackhole.consume(output.remaining());
+        pool.release(output);
+    }
+
+    @Benchmark
+    public void decompress(Blackhole blackhole) {
+        ByteBuffer output = codec.decompress(compressed, pool);
+        blackhole.consume(output.remaining());
+        pool.release(output);
+    }
+
+    static byte[] generate(String payload, int size) {
+        Random random = new Random(42);
+        if (payload.equals("random")) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            return bytes;
+        }
+        String[] words = {"GET", "POST", "/api/orders", "/api/users", "200", "404", "500", "INFO", "WARN",
+                "ERROR", "request", "completed", "in", "ms", "user", "session", "timeout", "retrying"};
+        StringBuilder builder = new StringBuilder(size + 128);
+        long timestamp = 1_700_000_000_000L;
+        while (builder.length() < size) {
+            timestamp += random.nextInt(50);
+            if (payload.equals("json")) {
+                builder.append("{\"ts\":").append(timestamp)
+                        .append(",\"user\":\"u").append(random.nextInt(10_000))
+                        .append("\",\"event\":\"").append(words[random.nextInt(words.length)])
+                        .append("\",\"amount\":").append(random.nextInt(100_000) / 100.0)
+                        .append("}\n");
+            } else {
+                builder.append(timestamp).append(' ');
+                for (int i = 0, n = 4 + random.nextInt(8); i < n; i++) {
+                    builder.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                builder.append(random.nextInt(1000)).append('\n');
+            }
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] exact = new byte[size];
+        System.arraycopy(bytes, 0, exact, 0, size);
+        return exact;
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import core.RequestDispatcher;
+import core.handler.RequestHandlerFactory;
+import core.network.Send;
+import message.request.RequestInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Parser;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing through {@link RequestHandlerFactory} alone, and a full in-memory pass through
+ * {@link RequestDispatcher}: parsing, handling and encoding an ApiVersions response without any socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"0", "3"})
+    public short version;
+
+    private ByteBuffer frame;
+    private RequestInfo requestInfo;
+    private RequestDispatcher dispatcher;
+
+    @Setup
+    public void setUp() {
+        RequestHandlerFactory.freeze();
+        dispatcher = new RequestDispatcher();
+        frame = RequestFrames.apiVersions(version, 7);
+        requestInfo = Parser.parseCommons(frame);
+    }
+
+    @Benchmark
+    public Object lookupHandler() {
+        return RequestHandlerFactory.getRequestHandler(requestInfo);
+    }
+
+    @Benchmark
+    public Object handleRequest() {
+        return RequestHandlerFactory.getRequestHandler(requestInfo).handleRequest(requestInfo);
+    }
+
+    @Benchmark
+    public Send dispatch() {
+        Send response = dispatcher.dispatch(frame).join();
+        // Hands the encoded buffer back to the pool, as the network layer does once it has been written
+        response.release();
+        return response;
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import codec.CompiledSchemaSet;
+import core.handler.RequestHandlerFactory;
+import message.request.RequestInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import schema.SchemaRegistry;
+import util.Parser;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header and body parsing of ApiVersions requests across the non-flexible (v0-v2) and flexible (v3-v4) versions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"0", "1", "2", "3", "4"})
+    public short version;
+
+    private ByteBuffer frame;
+    private RequestInfo requestInfo;
+    private CompiledSchemaSet codecs;
+
+    @Setup
+    public void setUp() {
+        RequestHandlerFactory.freeze();
+        frame = RequestFrames.apiVersions(version, 1);
+        requestInfo = Parser.parseCommons(frame);
+        codecs = SchemaRegistry.codecsForVersion(RequestFrames.API_VERSIONS_KEY, version);
+    }
+
+    @Benchmark
+    public Object parseCommons() {
+        return Parser.parseCommons(frame);
+    }
+
+    @Benchmark
+    public Object parseMessage() {
+        return Parser.parseMessage(requestInfo, codecs);
+    }
+
+    @Benchmark
+    public Object parseCommonsAndMessage() {
+        RequestInfo info = Parser.parseCommons(frame);
+        return Parser.parseMessage(info, SchemaRegistry.codecsForVersion(info.requestApiKey(), info.requestApiVersion()));
+    }
+}
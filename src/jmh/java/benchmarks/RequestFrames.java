@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds request frames the way a client library would send them.
+ */
+final class RequestFrames {
+
+    static final short API_VERSIONS_KEY = 18;
+    private static final String CLIENT_ID = "benchmark-client";
+
+    private RequestFrames() {
+    }
+
+    /**
+     * @return An ApiVersions request frame, including its size prefix. Versions 3 and above are flexible and carry
+     * the client software name and version.
+     */
+    static ByteBuffer apiVersions(short version, int correlationId) {
+        byte[] clientId = CLIENT_ID.getBytes(StandardCharsets.UTF_8);
+        byte[] softwareName = "kafka-lld-jmh".getBytes(StandardCharsets.UTF_8);
+        byte[] softwareVersion = "1.0".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(128);
+        frame.putInt(0)
+                .putShort(API_VERSIONS_KEY)
+                .putShort(version)
+                .putInt(correlationId)
+                .putShort((short) clientId.length)
+                .put(clientId);
+        if (version >= 3) {
+            frame.put((byte) 0)
+                    .put((byte) (softwareName.length + 1)).put(softwareName)
+                    .put((byte) (softwareVersion.length + 1)).put(softwareVersion)
+                    .put((byte) 0);
+        }
+        frame.putInt(0, frame.position() - 4);
+        return frame.flip();
+    }
+}
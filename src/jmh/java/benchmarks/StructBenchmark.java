@@ -0,0 +1,83 @@
+package benchmarks;
+
+import codec.StructLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import schema.ApiVersionsApiSchema;
+import schema.DataType;
+import util.Struct;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting and reading the three fields of an ApiVersions api key entry, through the name-based compatibility
+ * accessors and through the slot indexes handlers resolve once at startup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StructBenchmark {
+
+    private StructLayout layout;
+    private int apiKeyIndex;
+    private int minVersionIndex;
+    private int maxVersionIndex;
+    private Struct populated;
+    private short apiKey = 18;
+
+    @Setup
+    public void setUp() {
+        layout = new ApiVersionsApiSchema().apiKeyLayout();
+        apiKeyIndex = layout.indexOf("api_key");
+        minVersionIndex = layout.indexOf("min_version");
+        maxVersionIndex = layout.indexOf("max_version");
+        populated = new Struct(layout);
+        populated.setShort(apiKeyIndex, apiKey);
+        populated.setShort(minVersionIndex, (short) 0);
+        populated.setShort(maxVersionIndex, (short) 4);
+    }
+
+    @Benchmark
+    public Struct setByName() {
+        Struct struct = new Struct(layout);
+        struct.set("api_key", DataType.INT16, apiKey);
+        struct.set("min_version", DataType.INT16, (short) 0);
+        struct.set("max_version", DataType.INT16, (short) 4);
+        return struct;
+    }
+
+    @Benchmark
+    public Struct setByIndex() {
+        Struct struct = new Struct(layout);
+        struct.setShort(apiKeyIndex, apiKey);
+        struct.setShort(minVersionIndex, (short) 0);
+        struct.setShort(maxVersionIndex, (short) 4);
+        return struct;
+    }
+
+    @Benchmark
+    public void getByName(Blackhole blackhole) {
+        blackhole.consume(populated.getShort("api_key"));
+        blackhole.consume(populated.getShort("min_version"));
+        blackhole.consume(populated.getShort("max_version"));
+    }
+
+    @Benchmark
+    public void getByIndex(Blackhole blackhole) {
+        blackhole.consume(populated.getShort(apiKeyIndex));
+        blackhole.consume(populated.getShort(minVersionIndex));
+        blackhole.consume(populated.getShort(maxVersionIndex));
+    }
+}
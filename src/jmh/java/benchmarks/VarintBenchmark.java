@@ -0,0 +1,103 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Parser;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a run of varints as found in record batches and compact arrays. Scores are per decoded value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VarintBenchmark {
+
+    private static final int VALUES = 1024;
+
+    /**
+     * The largest encoded size of the generated values: 1 byte covers record deltas and short arrays,
+     * 5 bytes the full int range.
+     */
+    @Param({"1", "2", "5"})
+    public int maxBytes;
+
+    private ByteBuffer signed;
+    private ByteBuffer unsigned;
+    private ByteBuffer signedLongs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long bound = maxBytes >= 5 ? 1L << 31 : 1L << (7 * maxBytes - 1);
+        signed = ByteBuffer.allocate(VALUES * 5);
+        unsigned = ByteBuffer.allocate(VALUES * 5);
+        signedLongs = ByteBuffer.allocate(VALUES * 10);
+        for (int i = 0; i < VALUES; i++) {
+            long value = random.nextLong(-bound, bound);
+            writeUnsigned(signed, (value << 1) ^ (value >> 63));
+            writeUnsigned(unsigned, Math.abs(value));
+            writeUnsigned(signedLongs, (value << 1) ^ (value >> 63));
+        }
+        signed.flip();
+        unsigned.flip();
+        signedLongs.flip();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int parseVariableInt() {
+        ByteBuffer buffer = signed.duplicate();
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += Parser.parseVariableInt(buffer);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long parseUnsignedVariableInt() {
+        ByteBuffer buffer = unsigned.duplicate();
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += Parser.parseUnsignedVariableInt(buffer);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long parseVariableLong() {
+        ByteBuffer buffer = signedLongs.duplicate();
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += Parser.parseVariableLong(buffer);
+        }
+        return sum;
+    }
+
+    private static void writeUnsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * JMH benchmarks, built only under the {@code benchmarks} Maven profile. Run a suite with the allocation
+ * profiler so every result reports bytes allocated per operation next to its throughput:
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar target/benchmarks.jar ParserBenchmark -prof gc
+ * </pre>
+ * Compare {@code gc.alloc.rate.norm} against a baseline run before adopting a change on the request path.
+ */
+package benchmarks;
@@ -1,14 +1,55 @@
+import config.ConfigException;
+import config.DynamicBrokerConfig;
 import core.Broker;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Usage: {@code Main [server.properties] [--override name=value]...}. System properties prefixed with
+ * {@code broker.}, e.g. {@code -Dbroker.num.io.threads=16}, also override the file; {@code --override} wins over both.
+ */
 public class Main {
+    private static final String SYSTEM_PROPERTY_PREFIX = "broker.";
+
     public static void main(String[] args) {
         System.err.println("Logs from your program will appear here!");
-        int port = 9092;
+        Path file = null;
+        Map<String, String> overrides = new HashMap<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(SYSTEM_PROPERTY_PREFIX))
+                .forEach(name -> overrides.put(name.substring(SYSTEM_PROPERTY_PREFIX.length()), System.getProperty(name)));
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--override") && i + 1 < args.length) {
+                String override = args[++i];
+                int eq = override.indexOf('=');
+                if (eq < 1) {
+                    System.err.println("Ignoring malformed override " + override);
+                    continue;
+                }
+                overrides.put(override.substring(0, eq), override.substring(eq + 1));
+            } else if (file == null) {
+                file = Path.of(args[i]);
+            }
+        }
         try {
-            Broker broker = new Broker(port);
+            DynamicBrokerConfig config = new DynamicBrokerConfig(file, overrides);
+            config.watch(Duration.ofSeconds(1));
+            Broker broker = new Broker(config);
+            Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("shutdown").unstarted(() -> {
+                try {
+                    broker.shutdown();
+                } catch (IOException e) {
+                    System.out.println("IOException during shutdown: " + e.getMessage());
+                }
+            }));
             broker.start();
+        } catch (ConfigException | UncheckedIOException e) {
+            System.out.println("Invalid configuration: " + e.getMessage());
         } catch (IOException e) {
             System.out.println("IOException: " + e.getMessage());
         }
@@ -0,0 +1,72 @@
+package codec;
+
+import exceptions.InvalidRequestException;
+import util.Parser;
+import util.Writer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec for ARRAY and COMPACT_ARRAY fields, delegating each element to the element codec resolved at compile time.
+ */
+public record ArrayCodec(TypeCodec elementCodec, boolean compact) implements TypeCodec {
+
+    @Override
+    public Object read(ByteBuffer buffer) {
+        int length;
+        if (compact) {
+            length = (int) Parser.parseUnsignedVariableInt(buffer) - 1;
+        } else {
+            Parser.ensureRemaining(buffer, 4, "array length");
+            length = buffer.getInt();
+        }
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0) {
+            throw new InvalidRequestException("Invalid array length: " + length);
+        }
+        // Every element takes at least a byte, so a length beyond the bytes left is malformed, whatever the request size
+        if (length > buffer.remaining()) {
+            throw new InvalidRequestException("Array length " + length + " exceeds the " + buffer.remaining() + " bytes left in the request");
+        }
+        Object[] array = new Object[length];
+        for (int i = 0; i < length; i++) {
+            try {
+                array[i] = elementCodec.read(buffer);
+            } catch (InvalidRequestException e) {
+                throw new InvalidRequestException("Error parsing element " + i + " of array: " + e.getMessage());
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public int sizeOf(Object value) {
+        Object[] array = (Object[]) value;
+        if (array == null) {
+            return compact ? 1 : 4;
+        }
+        int size = compact ? Writer.sizeOfUnsignedVariableInt(array.length + 1) : 4;
+        for (Object element : array) {
+            size += elementCodec.sizeOf(element);
+        }
+        return size;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Object value) {
+        Object[] array = (Object[]) value;
+        int length = array == null ? -1 : array.length;
+        if (compact) {
+            Writer.writeUnsignedVariableInt(buffer, length + 1);
+        } else {
+            buffer.putInt(length);
+        }
+        if (array != null) {
+            for (Object element : array) {
+                elementCodec.write(buffer, element);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package codec;
+
+import schema.DataType;
+
+/**
+ * A field resolved for one version: its codec, its index in the schema's {@link StructLayout} and its tag.
+ */
+public record CompiledField(String name, DataType type, TypeCodec codec, int index, int tag) {
+
+    public static final int UNTAGGED = -1;
+
+    public boolean isTagged() {
+        return tag != UNTAGGED;
+    }
+
+}
@@ -0,0 +1,140 @@
+package codec;
+
+import exceptions.InvalidRequestException;
+import util.Parser;
+import util.Struct;
+import util.Writer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link schema.Schema} specialised for one version: only the fields valid for that version are kept,
+ * each with its codec already resolved, and tagged fields are looked up through a table indexed by tag.
+ */
+public final class CompiledSchema {
+
+    private final StructLayout layout;
+    private final CompiledField[] fields;
+    private final CompiledField[] taggedFields;
+    private final CompiledField[] fieldsByTag;
+    private final boolean flexible;
+
+    CompiledSchema(StructLayout layout, CompiledField[] fields, CompiledField[] taggedFields, boolean flexible) {
+        this.layout = layout;
+        this.fields = fields;
+        this.taggedFields = taggedFields;
+        this.flexible = flexible;
+        int maxTag = -1;
+        for (CompiledField field : taggedFields) {
+            maxTag = Math.max(maxTag, field.tag());
+        }
+        this.fieldsByTag = new CompiledField[maxTag + 1];
+        for (CompiledField field : taggedFields) {
+            fieldsByTag[field.tag()] = field;
+        }
+    }
+
+    public boolean isFlexible() {
+        return flexible;
+    }
+
+    public CompiledField[] fields() {
+        return fields;
+    }
+
+    public StructLayout layout() {
+        return layout;
+    }
+
+    public Struct newStruct() {
+        return new Struct(layout);
+    }
+
+    public Struct read(ByteBuffer buffer) {
+        Struct struct = new Struct(layout);
+        for (CompiledField field : fields) {
+            field.codec().readInto(buffer, struct, field.index());
+        }
+        if (flexible) {
+            readTaggedFields(buffer, struct);
+        }
+        return struct;
+    }
+
+    /**
+     * Reads a tagged field section into the given struct, skipping tags this version does not know about.
+     *
+     * @throws InvalidRequestException if the section is malformed or a known field has trailing bytes.
+     */
+    public void readTaggedFields(ByteBuffer buffer, Struct struct) {
+        int numTaggedFields = (int) Parser.parseUnsignedVariableInt(buffer);
+        if (numTaggedFields < 0) {
+            throw new InvalidRequestException("Invalid number of tagged fields: " + numTaggedFields);
+        }
+
+        for (int i = 0; i < numTaggedFields; i++) {
+            int tag = (int) Parser.parseUnsignedVariableInt(buffer);
+            int size = (int) Parser.parseUnsignedVariableInt(buffer);
+
+            if (size < 0) {
+                throw new InvalidRequestException("Invalid size for tagged field " + tag + ": " + size);
+            }
+            Parser.ensureRemaining(buffer, size, "tagged field " + tag);
+
+            CompiledField field = tag >= 0 && tag < fieldsByTag.length ? fieldsByTag[tag] : null;
+            if (field != null) {
+                ByteBuffer fieldBuffer = buffer.slice(buffer.position(), size);
+                field.codec().readInto(fieldBuffer, struct, field.index());
+                if (fieldBuffer.hasRemaining()) {
+                    throw new InvalidRequestException(
+                            "Tagged field " + tag + " has " + fieldBuffer.remaining() + " trailing bytes that were not read."
+                    );
+                }
+            }
+            buffer.position(buffer.position() + size);
+        }
+    }
+
+    public int sizeOf(Struct struct) {
+        int size = 0;
+        for (CompiledField field : fields) {
+            size += field.codec().sizeOf(struct, field.index());
+        }
+        if (flexible) {
+            int numTaggedFields = 0;
+            for (CompiledField field : taggedFields) {
+                if (struct.has(field.index())) {
+                    int valueSize = field.codec().sizeOf(struct, field.index());
+                    size += Writer.sizeOfUnsignedVariableInt(field.tag())
+                            + Writer.sizeOfUnsignedVariableInt(valueSize)
+                            + valueSize;
+                    numTaggedFields++;
+                }
+            }
+            size += Writer.sizeOfUnsignedVariableInt(numTaggedFields);
+        }
+        return size;
+    }
+
+    public void write(ByteBuffer buffer, Struct struct) {
+        for (CompiledField field : fields) {
+            field.codec().write(buffer, struct, field.index());
+        }
+        if (flexible) {
+            int numTaggedFields = 0;
+            for (CompiledField field : taggedFields) {
+                if (struct.has(field.index())) {
+                    numTaggedFields++;
+                }
+            }
+            Writer.writeUnsignedVariableInt(buffer, numTaggedFields);
+            for (CompiledField field : taggedFields) {
+                if (struct.has(field.index())) {
+                    Writer.writeUnsignedVariableInt(buffer, field.tag());
+                    Writer.writeUnsignedVariableInt(buffer, field.codec().sizeOf(struct, field.index()));
+                    field.codec().write(buffer, struct, field.index());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package codec;
+
+public record CompiledSchemaSet(
+        short apiVersion,
+        CompiledSchema requestHeader,
+        CompiledSchema requestBody,
+        CompiledSchema responseHeader,
+        CompiledSchema responseBody
+) {}
@@ -0,0 +1,79 @@
+package codec;
+
+import log.FileRecords;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the {@link FileRecords} of a response while it is being encoded, so they can be transferred from
+ * their segment files straight to the socket instead of being copied into the response buffer.
+ * While a collector is active, {@link RecordsCodec} writes only the length prefix of file-backed records and
+ * notes where in the buffer their bytes belong.
+ */
+public final class FileRegions {
+
+    private static final ThreadLocal<FileRegions> ACTIVE = new ThreadLocal<>();
+
+    /**
+     * A file slice whose bytes follow the buffer contents written before {@code bufferPosition}.
+     */
+    public record Region(int bufferPosition, FileRecords records) {
+    }
+
+    private final List<Region> regions = new ArrayList<>();
+    private long sizedBytes;
+    private boolean writing;
+
+    private FileRegions() {
+    }
+
+    /**
+     * Activates a new collector on the calling thread. Must be paired with {@link #end()}.
+     */
+    public static FileRegions begin() {
+        FileRegions fileRegions = new FileRegions();
+        ACTIVE.set(fileRegions);
+        return fileRegions;
+    }
+
+    static FileRegions active() {
+        return ACTIVE.get();
+    }
+
+    public void end() {
+        ACTIVE.remove();
+    }
+
+    /**
+     * Switches from the sizing pass to the writing pass; sizes computed afterwards are no longer counted.
+     */
+    public void startWriting() {
+        writing = true;
+    }
+
+    void sized(FileRecords records) {
+        if (!writing) {
+            sizedBytes += records.sizeInBytes();
+        }
+    }
+
+    void written(int bufferPosition, FileRecords records) {
+        regions.add(new Region(bufferPosition, records));
+    }
+
+    /**
+     * @return The number of bytes counted during the sizing pass that will not be written into the buffer.
+     */
+    public long sizedBytes() {
+        return sizedBytes;
+    }
+
+    public List<Region> regions() {
+        return regions;
+    }
+
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+}
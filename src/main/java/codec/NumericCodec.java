@@ -0,0 +1,124 @@
+package codec;
+
+import util.Parser;
+import util.Struct;
+import util.Writer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codecs for the numeric and boolean wire types. Values travel as raw {@code long}s so they can be stored
+ * in a struct's primitive slots; the boxed {@link TypeCodec} methods are only used for array elements.
+ */
+public enum NumericCodec implements TypeCodec {
+    BOOLEAN {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 1, "BOOLEAN");
+            return buffer.get() != 0 ? 1 : 0;
+        }
+        public int sizeOfLong(long value) { return 1; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.put((byte) (value != 0 ? 1 : 0)); }
+        Object box(long value) { return value != 0; }
+        long unbox(Object value) { return (Boolean) value ? 1 : 0; }
+    },
+    INT8 {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 1, "INT8");
+            return buffer.get();
+        }
+        public int sizeOfLong(long value) { return 1; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.put((byte) value); }
+        Object box(long value) { return (byte) value; }
+    },
+    INT16 {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 2, "INT16");
+            return buffer.getShort();
+        }
+        public int sizeOfLong(long value) { return 2; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.putShort((short) value); }
+        Object box(long value) { return (short) value; }
+    },
+    INT32 {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 4, "INT32");
+            return buffer.getInt();
+        }
+        public int sizeOfLong(long value) { return 4; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.putInt((int) value); }
+        Object box(long value) { return (int) value; }
+    },
+    INT64 {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 8, "INT64");
+            return buffer.getLong();
+        }
+        public int sizeOfLong(long value) { return 8; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.putLong(value); }
+        Object box(long value) { return value; }
+    },
+    VARINT {
+        public long readLong(ByteBuffer buffer) { return Parser.parseVariableInt(buffer); }
+        public int sizeOfLong(long value) { return Writer.sizeOfVariableInt((int) value); }
+        public void writeLong(ByteBuffer buffer, long value) { Writer.writeVariableInt(buffer, (int) value); }
+        Object box(long value) { return (int) value; }
+    },
+    UNSIGNED_VARINT {
+        public long readLong(ByteBuffer buffer) { return Parser.parseUnsignedVariableInt(buffer); }
+        public int sizeOfLong(long value) { return Writer.sizeOfUnsignedVariableInt(value); }
+        public void writeLong(ByteBuffer buffer, long value) { Writer.writeUnsignedVariableInt(buffer, value); }
+        Object box(long value) { return value; }
+    },
+    FLOAT64 {
+        public long readLong(ByteBuffer buffer) {
+            Parser.ensureRemaining(buffer, 8, "FLOAT64");
+            return buffer.getLong();
+        }
+        public int sizeOfLong(long value) { return 8; }
+        public void writeLong(ByteBuffer buffer, long value) { buffer.putLong(value); }
+        Object box(long value) { return Double.longBitsToDouble(value); }
+        long unbox(Object value) { return Double.doubleToRawLongBits((Double) value); }
+    };
+
+    public abstract long readLong(ByteBuffer buffer);
+
+    public abstract int sizeOfLong(long value);
+
+    public abstract void writeLong(ByteBuffer buffer, long value);
+
+    abstract Object box(long value);
+
+    long unbox(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    @Override
+    public Object read(ByteBuffer buffer) {
+        return box(readLong(buffer));
+    }
+
+    @Override
+    public int sizeOf(Object value) {
+        return sizeOfLong(unbox(value));
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Object value) {
+        writeLong(buffer, unbox(value));
+    }
+
+    @Override
+    public void readInto(ByteBuffer buffer, Struct struct, int index) {
+        struct.setLong(index, readLong(buffer));
+    }
+
+    @Override
+    public int sizeOf(Struct struct, int index) {
+        return sizeOfLong(struct.getLong(index));
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Struct struct, int index) {
+        writeLong(buffer, struct.getLong(index));
+    }
+}
@@ -0,0 +1,112 @@
+package codec;
+
+import exceptions.InvalidRequestException;
+import log.FileRecords;
+import util.Parser;
+import util.Writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codecs for the RECORDS and COMPACT_RECORDS wire types: nullable bytes holding record batches. The BYTES and
+ * COMPACT_BYTES types, e.g. the opaque protocol metadata of group members, are read and written by the same codecs.
+ * Reads return a slice of the request buffer without copying. Writes accept either a {@link ByteBuffer} or,
+ * for data served from the log, a {@link FileRecords}, which is left out of the buffer when a
+ * {@link FileRegions} collector is active and copied into it otherwise.
+ */
+public enum RecordsCodec implements TypeCodec {
+    RECORDS(false),
+    COMPACT_RECORDS(true);
+
+    private final boolean compact;
+
+    RecordsCodec(boolean compact) {
+        this.compact = compact;
+    }
+
+    @Override
+    public Object read(ByteBuffer buffer) {
+        int length;
+        if (compact) {
+            length = (int) Parser.parseUnsignedVariableInt(buffer) - 1;
+        } else {
+            Parser.ensureRemaining(buffer, 4, "records length");
+            length = buffer.getInt();
+        }
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0) {
+            throw new InvalidRequestException("Invalid records length: " + length);
+        }
+        Parser.ensureRemaining(buffer, length, "records");
+        ByteBuffer records = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return records;
+    }
+
+    @Override
+    public int sizeOf(Object value) {
+        int length = lengthOf(value);
+        if (value instanceof FileRecords fileRecords) {
+            FileRegions fileRegions = FileRegions.active();
+            if (fileRegions != null) {
+                fileRegions.sized(fileRecords);
+            }
+        }
+        return sizeOfLengthPrefix(length) + Math.max(length, 0);
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Object value) {
+        int length = lengthOf(value);
+        if (compact) {
+            Writer.writeUnsignedVariableInt(buffer, length + 1);
+        } else {
+            buffer.putInt(length);
+        }
+        if (value instanceof ByteBuffer records) {
+            buffer.put(records.duplicate());
+        } else if (value instanceof FileRecords fileRecords && length > 0) {
+            FileRegions fileRegions = FileRegions.active();
+            if (fileRegions != null) {
+                fileRegions.written(buffer.position(), fileRecords);
+            } else {
+                copy(fileRecords, buffer);
+            }
+        }
+    }
+
+    private int sizeOfLengthPrefix(int length) {
+        return compact ? Writer.sizeOfUnsignedVariableInt(length + 1) : 4;
+    }
+
+    private static int lengthOf(Object value) {
+        if (value == null) {
+            return -1;
+        }
+        if (value instanceof ByteBuffer records) {
+            return records.remaining();
+        }
+        if (value instanceof FileRecords fileRecords) {
+            return fileRecords.sizeInBytes();
+        }
+        throw new IllegalArgumentException("Unsupported records value of type " + value.getClass().getSimpleName());
+    }
+
+    private static void copy(FileRecords fileRecords, ByteBuffer buffer) {
+        ByteBuffer destination = buffer.slice(buffer.position(), fileRecords.sizeInBytes());
+        try {
+            while (destination.hasRemaining()) {
+                if (fileRecords.channel().read(destination, fileRecords.position() + destination.position()) < 0) {
+                    throw new IOException("Unexpected end of file while copying records");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.position(buffer.position() + fileRecords.sizeInBytes());
+    }
+}
@@ -0,0 +1,93 @@
+package codec;
+
+import schema.ApiSchema;
+import schema.Field;
+import schema.HeaderSchema;
+import schema.Schema;
+import schema.SchemaSet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns schemas into {@link CompiledSchema}s for a fixed version, resolving version filtering,
+ * tag lookup and codec selection once instead of on every message.
+ */
+public class SchemaCompiler {
+
+    private static final Map<Schema, StructLayout> layouts = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles every schema of a SchemaSet for one api version.
+     *
+     * @param apiSchema  The api the SchemaSet belongs to, used to decide whether the version is flexible.
+     * @param schemaSet  The schemas returned by {@link ApiSchema#forVersion(short)}.
+     * @param apiVersion The api version to compile for.
+     * @return The compiled request and response codecs for that version.
+     */
+    public static CompiledSchemaSet compile(ApiSchema apiSchema, SchemaSet schemaSet, short apiVersion) {
+        boolean flexible = apiSchema.flexibleVersions().contains(apiVersion);
+        return new CompiledSchemaSet(
+                apiVersion,
+                compileHeader(schemaSet.requestHeaderSchema()),
+                compile(schemaSet.requestBodySchema(), apiVersion, flexible),
+                compileHeader(schemaSet.responseHeaderSchema()),
+                compile(schemaSet.responseBodySchema(), apiVersion, flexible)
+        );
+    }
+
+    public static CompiledSchema compileHeader(Schema headerSchema) {
+        return compile(headerSchema, HeaderSchema.versionOf(headerSchema), HeaderSchema.isFlexible(headerSchema));
+    }
+
+    public static CompiledSchema compile(Schema schema, short version, boolean flexible) {
+        StructLayout layout = layoutOf(schema);
+        List<CompiledField> fields = new ArrayList<>();
+        List<CompiledField> taggedFields = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            if (!field.validVersions().contains(version)) {
+                continue;
+            }
+            TypeCodec codec = codecFor(field, version, flexible);
+            int index = layout.indexOf(field.name());
+            if (field.tag().isPresent()) {
+                taggedFields.add(new CompiledField(field.name(), field.type(), codec, index, field.tag().get()));
+            } else {
+                fields.add(new CompiledField(field.name(), field.type(), codec, index, CompiledField.UNTAGGED));
+            }
+        }
+        taggedFields.sort(Comparator.comparingInt(CompiledField::tag));
+        return new CompiledSchema(
+                layout,
+                fields.toArray(CompiledField[]::new),
+                taggedFields.toArray(CompiledField[]::new),
+                flexible
+        );
+    }
+
+    private static TypeCodec codecFor(Field field, short version, boolean flexible) {
+        return switch (field.type()) {
+            case ARRAY -> new ArrayCodec(elementCodecFor(field.nestedSchema(), version, flexible), false);
+            case COMPACT_ARRAY -> new ArrayCodec(elementCodecFor(field.nestedSchema(), version, flexible), true);
+            case STRUCT -> new StructCodec(compile(field.nestedSchema(), version, flexible));
+            default -> TypeCodec.primitive(field.type());
+        };
+    }
+
+    /**
+     * Layouts are shared by every version compiled from the same schema, so field indexes stay stable.
+     */
+    public static StructLayout layoutOf(Schema schema) {
+        return layouts.computeIfAbsent(schema, StructLayout::new);
+    }
+
+    private static TypeCodec elementCodecFor(Schema elementSchema, short version, boolean flexible) {
+        if (elementSchema.fields().length == 1) {
+            return codecFor(elementSchema.fields()[0], version, flexible);
+        }
+        return new StructCodec(compile(elementSchema, version, flexible));
+    }
+}
@@ -0,0 +1,32 @@
+package codec;
+
+import util.Parser;
+import util.Writer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codecs for the string wire types.
+ */
+public enum StringCodec implements TypeCodec {
+    STRING {
+        public Object read(ByteBuffer buffer) { return Parser.parseString(buffer); }
+        public int sizeOf(Object value) { return Writer.sizeOfString((String) value); }
+        public void write(ByteBuffer buffer, Object value) { Writer.writeString(buffer, (String) value); }
+    },
+    COMPACT_STRING {
+        public Object read(ByteBuffer buffer) { return Parser.parseCompactString(buffer); }
+        public int sizeOf(Object value) { return Writer.sizeOfCompactString((String) value); }
+        public void write(ByteBuffer buffer, Object value) { Writer.writeCompactString(buffer, (String) value); }
+    },
+    NULLABLE_STRING {
+        public Object read(ByteBuffer buffer) { return Parser.readNullableString(buffer); }
+        public int sizeOf(Object value) { return Writer.sizeOfNullableString((String) value); }
+        public void write(ByteBuffer buffer, Object value) { Writer.writeNullableString(buffer, (String) value); }
+    },
+    COMPACT_NULLABLE_STRING {
+        public Object read(ByteBuffer buffer) { return Parser.readCompactNullableString(buffer); }
+        public int sizeOf(Object value) { return Writer.sizeOfCompactNullableString((String) value); }
+        public void write(ByteBuffer buffer, Object value) { Writer.writeCompactNullableString(buffer, (String) value); }
+    }
+}
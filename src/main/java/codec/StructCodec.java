@@ -0,0 +1,26 @@
+package codec;
+
+import util.Struct;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec for nested STRUCT fields and struct array elements.
+ */
+public record StructCodec(CompiledSchema schema) implements TypeCodec {
+
+    @Override
+    public Object read(ByteBuffer buffer) {
+        return schema.read(buffer);
+    }
+
+    @Override
+    public int sizeOf(Object value) {
+        return schema.sizeOf((Struct) value);
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Object value) {
+        schema.write(buffer, (Struct) value);
+    }
+}
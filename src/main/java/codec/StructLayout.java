@@ -0,0 +1,105 @@
+package codec;
+
+import schema.DataType;
+import schema.Field;
+import schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fixed slot layout of all structs built from one {@link Schema}. Every distinct field name gets an index
+ * that is stable across versions, so a field re-declared for a version range (e.g. ARRAY then COMPACT_ARRAY)
+ * shares one index. Numeric fields are stored unboxed in a {@code long[]} and everything else in an
+ * {@code Object[]}, each at a precomputed slot.
+ */
+public final class StructLayout {
+
+    public static final int MAX_FIELDS = Long.SIZE;
+
+    private final String[] names;
+    private final DataType[] types;
+    private final int[] slots;
+    private final boolean[] primitive;
+    private final int primitiveSlots;
+    private final int objectSlots;
+    private final Map<String, Integer> indexByName = new HashMap<>();
+
+    public StructLayout(Schema schema) {
+        List<Field> distinct = new ArrayList<>();
+        for (Field field : schema.fields()) {
+            Integer existing = indexByName.get(field.name());
+            if (existing == null) {
+                indexByName.put(field.name(), distinct.size());
+                distinct.add(field);
+            } else if (distinct.get(existing).type().isPrimitive() != field.type().isPrimitive()
+                    || (field.type().isPrimitive() && distinct.get(existing).type() != field.type())) {
+                throw new IllegalArgumentException("Field '" + field.name() + "' is re-declared with incompatible type " + field.type());
+            }
+        }
+        if (distinct.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("Schema has " + distinct.size() + " fields, at most " + MAX_FIELDS + " are supported");
+        }
+
+        this.names = new String[distinct.size()];
+        this.types = new DataType[distinct.size()];
+        this.slots = new int[distinct.size()];
+        this.primitive = new boolean[distinct.size()];
+        int nextPrimitive = 0;
+        int nextObject = 0;
+        for (int i = 0; i < distinct.size(); i++) {
+            names[i] = distinct.get(i).name();
+            types[i] = distinct.get(i).type();
+            primitive[i] = types[i].isPrimitive();
+            slots[i] = primitive[i] ? nextPrimitive++ : nextObject++;
+        }
+        this.primitiveSlots = nextPrimitive;
+        this.objectSlots = nextObject;
+    }
+
+    public int fieldCount() {
+        return names.length;
+    }
+
+    public int primitiveSlots() {
+        return primitiveSlots;
+    }
+
+    public int objectSlots() {
+        return objectSlots;
+    }
+
+    public int slot(int index) {
+        return slots[index];
+    }
+
+    public boolean isPrimitive(int index) {
+        return primitive[index];
+    }
+
+    public DataType type(int index) {
+        return types[index];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public boolean hasField(String fieldName) {
+        return indexByName.containsKey(fieldName);
+    }
+
+    /**
+     * @return The index of the named field.
+     * @throws IllegalArgumentException if the schema declares no such field.
+     */
+    public int indexOf(String fieldName) {
+        Integer index = indexByName.get(fieldName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown field '" + fieldName + "'");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,56 @@
+package codec;
+
+import schema.DataType;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads, sizes and writes values of a single wire type. Instances are resolved once per field when a
+ * schema is compiled, so the hot path never has to switch on the {@link DataType} again.
+ * The struct-slot variants let numeric codecs move values between the wire and a {@link Struct}
+ * without boxing them.
+ */
+public interface TypeCodec {
+
+    Object read(ByteBuffer buffer);
+
+    int sizeOf(Object value);
+
+    void write(ByteBuffer buffer, Object value);
+
+    default void readInto(ByteBuffer buffer, Struct struct, int index) {
+        struct.setObject(index, read(buffer));
+    }
+
+    default int sizeOf(Struct struct, int index) {
+        return sizeOf(struct.getObject(index));
+    }
+
+    default void write(ByteBuffer buffer, Struct struct, int index) {
+        write(buffer, struct.getObject(index));
+    }
+
+    static TypeCodec primitive(DataType type) {
+        return switch (type) {
+            case BOOLEAN -> NumericCodec.BOOLEAN;
+            case INT8 -> NumericCodec.INT8;
+            case INT16 -> NumericCodec.INT16;
+            case INT32 -> NumericCodec.INT32;
+            case INT64 -> NumericCodec.INT64;
+            case VARINT -> NumericCodec.VARINT;
+            case UNSIGNED_VARINT -> NumericCodec.UNSIGNED_VARINT;
+            case FLOAT64 -> NumericCodec.FLOAT64;
+            case STRING -> StringCodec.STRING;
+            case COMPACT_STRING -> StringCodec.COMPACT_STRING;
+            case NULLABLE_STRING -> StringCodec.NULLABLE_STRING;
+            case COMPACT_NULLABLE_STRING -> StringCodec.COMPACT_NULLABLE_STRING;
+            // Bytes share the length-prefixed wire format of records
+            case RECORDS, BYTES -> RecordsCodec.RECORDS;
+            case COMPACT_RECORDS, COMPACT_BYTES -> RecordsCodec.COMPACT_RECORDS;
+            case ARRAY, COMPACT_ARRAY, STRUCT ->
+                    throw new IllegalArgumentException(type + " is not a primitive type");
+        };
+    }
+
+}
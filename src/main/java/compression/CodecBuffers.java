@@ -0,0 +1,43 @@
+package compression;
+
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for writing codec output of unknown size into pooled buffers.
+ */
+final class CodecBuffers {
+
+    private static final int MIN_OUTPUT_SIZE = 256;
+
+    private CodecBuffers() {
+    }
+
+    static ByteBuffer allocate(BufferPool pool, int sizeHint) {
+        return pool.allocate(Math.max(MIN_OUTPUT_SIZE, sizeHint));
+    }
+
+    static ByteBuffer ensureRemaining(BufferPool pool, ByteBuffer buffer, int minRemaining) {
+        return ensureRemaining(pool, buffer, minRemaining, CompressionCodec.MAX_OUTPUT_SIZE);
+    }
+
+    /**
+     * Makes room for at least {@code minRemaining} more bytes, moving the written bytes into a larger pooled
+     * buffer of at most {@code maxSize} bytes and releasing the old one if needed.
+     */
+    static ByteBuffer ensureRemaining(BufferPool pool, ByteBuffer buffer, int minRemaining, int maxSize) {
+        if (buffer.remaining() >= minRemaining) {
+            return buffer;
+        }
+        long required = (long) buffer.position() + minRemaining;
+        if (required > maxSize) {
+            throw new IllegalStateException("Codec output exceeds " + maxSize + " bytes");
+        }
+        int newSize = (int) Math.max(required, Math.min(maxSize, 2L * buffer.capacity()));
+        ByteBuffer grown = pool.allocate(newSize);
+        grown.put(buffer.flip());
+        pool.release(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,42 @@
+package compression;
+
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses and decompresses the records section of a record batch for one {@link CompressionType}.
+ * Implementations must be thread-safe; the built-in ones keep their native and scratch state per thread so no
+ * deflater or hash table is allocated per batch. Further codecs are picked up by {@link CompressionCodecs}
+ * through {@link java.util.ServiceLoader}.
+ */
+public interface CompressionCodec {
+
+    /**
+     * The largest buffer a codec hands out, and so the most any input may decompress to.
+     */
+    int MAX_OUTPUT_SIZE = Integer.MAX_VALUE - 16;
+
+    CompressionType type();
+
+    /**
+     * Compresses the remaining bytes of {@code input} without moving its position.
+     *
+     * @return A buffer from {@code pool}, positioned at 0 with its limit at the end of the compressed bytes.
+     * The caller releases it back to the pool.
+     */
+    ByteBuffer compress(ByteBuffer input, BufferPool pool);
+
+    /**
+     * Decompresses the remaining bytes of {@code input} without moving its position. The output never grows much
+     * past {@code maxSize}, so a small input cannot make the broker allocate more than that.
+     *
+     * @param maxSize The most bytes the input may decompress to, at most {@link #MAX_OUTPUT_SIZE}.
+     * @return A buffer from {@code pool}, positioned at 0 with its limit at the end of the decompressed bytes.
+     * The caller releases it back to the pool.
+     * @throws exceptions.CorruptRecordException if the input is not valid for this codec or decompresses to more
+     * than {@code maxSize} bytes.
+     */
+    ByteBuffer decompress(ByteBuffer input, BufferPool pool, int maxSize);
+
+}
@@ -0,0 +1,52 @@
+package compression;
+
+import exceptions.UnsupportedCompressionTypeException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of compression codecs. Gzip and LZ4 are built in; codecs found through
+ * {@link ServiceLoader} are registered after them, so a provider can also replace a built-in codec.
+ */
+@Slf4j
+public final class CompressionCodecs {
+
+    private static final Map<CompressionType, CompressionCodec> CODECS = new EnumMap<>(CompressionType.class);
+
+    static {
+        register(new GzipCodec());
+        register(new Lz4Codec());
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+            log.info("Registering {} compression codec {}", codec.type().getName(), codec.getClass().getName());
+            register(codec);
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    private static void register(CompressionCodec codec) {
+        if (codec.type() == CompressionType.NONE) {
+            throw new IllegalArgumentException("Codec " + codec.getClass().getName() + " cannot register for uncompressed data");
+        }
+        CODECS.put(codec.type(), codec);
+    }
+
+    /**
+     * @throws UnsupportedCompressionTypeException if no codec is available for {@code type}.
+     */
+    public static CompressionCodec forType(CompressionType type) {
+        CompressionCodec codec = CODECS.get(type);
+        if (codec == null) {
+            throw new UnsupportedCompressionTypeException("No codec available for " + type.getName() + " compression");
+        }
+        return codec;
+    }
+
+    public static boolean isSupported(CompressionType type) {
+        return CODECS.containsKey(type);
+    }
+}
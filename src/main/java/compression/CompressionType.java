@@ -0,0 +1,48 @@
+package compression;
+
+import exceptions.UnsupportedCompressionTypeException;
+import lombok.Getter;
+
+/**
+ * The compression codecs a record batch can declare in the low three bits of its attributes.
+ */
+@Getter
+public enum CompressionType {
+    NONE(0, "none"),
+    GZIP(1, "gzip"),
+    SNAPPY(2, "snappy"),
+    LZ4(3, "lz4"),
+    ZSTD(4, "zstd");
+
+    private static final CompressionType[] BY_ID = values();
+
+    private final int id;
+    private final String name;
+
+    CompressionType(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * @throws UnsupportedCompressionTypeException if no codec has the given id.
+     */
+    public static CompressionType forId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new UnsupportedCompressionTypeException("Unknown compression codec id " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /**
+     * @throws UnsupportedCompressionTypeException if no codec has the given name.
+     */
+    public static CompressionType forName(String name) {
+        for (CompressionType type : BY_ID) {
+            if (type.name.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new UnsupportedCompressionTypeException("Unknown compression codec " + name);
+    }
+}
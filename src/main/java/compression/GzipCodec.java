@@ -0,0 +1,168 @@
+package compression;
+
+import exceptions.CorruptRecordException;
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip (RFC 1952) on top of the JDK's raw {@link Deflater} and {@link Inflater}, which are kept per thread and
+ * reset between batches instead of being created, and their native memory freed, for every batch.
+ */
+public class GzipCodec implements CompressionCodec {
+
+    private static final int MAGIC = 0x1f8b;
+    private static final byte METHOD_DEFLATE = 8;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final byte OS_UNKNOWN = (byte) 0xff;
+
+    private static final int FLAG_HEADER_CRC = 0x02;
+    private static final int FLAG_EXTRA = 0x04;
+    private static final int FLAG_NAME = 0x08;
+    private static final int FLAG_COMMENT = 0x10;
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+    private final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+
+    public GzipCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level The deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public GzipCodec(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public CompressionType type() {
+        return CompressionType.GZIP;
+    }
+
+    @Override
+    public ByteBuffer compress(ByteBuffer input, BufferPool pool) {
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(input.duplicate());
+
+        ByteBuffer output = CodecBuffers.allocate(pool, input.remaining() / 2 + HEADER_SIZE + TRAILER_SIZE);
+        output.putShort((short) MAGIC).put(METHOD_DEFLATE).put((byte) 0).putInt(0).put((byte) 0).put(OS_UNKNOWN);
+
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(input.duplicate());
+            deflater.finish();
+            while (!deflater.finished()) {
+                output = CodecBuffers.ensureRemaining(pool, output, 1);
+                deflater.deflate(output);
+            }
+        } finally {
+            deflater.reset();
+        }
+
+        output = CodecBuffers.ensureRemaining(pool, output, TRAILER_SIZE);
+        output.putInt(Integer.reverseBytes((int) crc.getValue()));
+        output.putInt(Integer.reverseBytes(input.remaining()));
+        return output.flip();
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer input, BufferPool pool, int maxSize) {
+        ByteBuffer compressed = input.duplicate();
+        skipHeader(compressed);
+
+        // One byte of headroom tells a stream of exactly maxSize bytes, whose end the inflater may only report on
+        // the call after it filled the output, from one that is too large
+        int outputLimit = Math.min(maxSize, CompressionCodec.MAX_OUTPUT_SIZE) + 1;
+        ByteBuffer output = CodecBuffers.allocate(pool, (int) Math.min(outputLimit, input.remaining() * 4L));
+        Inflater inflater = inflaters.get();
+        int trailerStart;
+        try {
+            inflater.setInput(compressed);
+            while (!inflater.finished()) {
+                if (output.position() > maxSize) {
+                    throw new CorruptRecordException("Gzip stream decompresses to more than " + maxSize + " bytes");
+                }
+                output = CodecBuffers.ensureRemaining(pool, output, 1, outputLimit);
+                if (inflater.inflate(output) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CorruptRecordException("Truncated gzip stream");
+                }
+            }
+            if (output.position() > maxSize) {
+                throw new CorruptRecordException("Gzip stream decompresses to more than " + maxSize + " bytes");
+            }
+            trailerStart = input.limit() - inflater.getRemaining();
+        } catch (DataFormatException e) {
+            pool.release(output);
+            throw new CorruptRecordException("Invalid gzip stream: " + e.getMessage());
+        } catch (RuntimeException e) {
+            pool.release(output);
+            throw e;
+        } finally {
+            inflater.reset();
+        }
+
+        output.flip();
+        if (input.limit() - trailerStart < TRAILER_SIZE) {
+            pool.release(output);
+            throw new CorruptRecordException("Truncated gzip trailer");
+        }
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(output.duplicate());
+        long storedCrc = Integer.toUnsignedLong(Integer.reverseBytes(input.getInt(trailerStart)));
+        int storedSize = Integer.reverseBytes(input.getInt(trailerStart + 4));
+        if (storedCrc != crc.getValue() || storedSize != output.limit()) {
+            pool.release(output);
+            throw new CorruptRecordException("Gzip trailer does not match the decompressed data");
+        }
+        return output;
+    }
+
+    private static void skipHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE + TRAILER_SIZE) {
+            throw new CorruptRecordException("Gzip stream of " + buffer.remaining() + " bytes is too short");
+        }
+        if ((buffer.getShort() & 0xffff) != MAGIC || buffer.get() != METHOD_DEFLATE) {
+            throw new CorruptRecordException("Not a gzip stream");
+        }
+        int flags = buffer.get();
+        buffer.position(buffer.position() + 6);
+        if ((flags & FLAG_EXTRA) != 0) {
+            int extraLength = Short.toUnsignedInt(Short.reverseBytes(buffer.getShort()));
+            skip(buffer, extraLength);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            skipZeroTerminated(buffer);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            skipZeroTerminated(buffer);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            skip(buffer, 2);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (buffer.remaining() < length) {
+            throw new CorruptRecordException("Truncated gzip header");
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static void skipZeroTerminated(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == 0) {
+                return;
+            }
+        }
+        throw new CorruptRecordException("Truncated gzip header");
+    }
+}
@@ -0,0 +1,352 @@
+package compression;
+
+import exceptions.CorruptRecordException;
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * LZ4 in the frame format Kafka clients use: a 7-byte frame header, independent blocks of up to 64 KiB and an
+ * end mark. The block compressor is a greedy single-probe matcher over a 4096-entry hash table, roughly the fast
+ * mode of the reference implementation. Decompression accepts any frame a client may send, including linked
+ * blocks and the optional content size and checksums, whose checksums are skipped rather than verified since the
+ * batch CRC already covers the compressed bytes.
+ * <pre>
+ * frame:  magic: int32 (LE), FLG: int8, BD: int8, [contentSize: int64], HC: int8, block*, endMark: int32 = 0
+ * block:  size: int32 (LE, high bit set if stored uncompressed), data, [checksum: int32]
+ * </pre>
+ * Both directions work on heap arrays; the pool must hand out heap buffers.
+ */
+public class Lz4Codec implements CompressionCodec {
+
+    private static final int MAGIC = 0x184D2204;
+    private static final int VERSION = 1;
+    private static final int FLAG_BLOCK_INDEPENDENCE = 0x20;
+    private static final int FLAG_BLOCK_CHECKSUM = 0x10;
+    private static final int FLAG_CONTENT_SIZE = 0x08;
+    private static final int FLAG_CONTENT_CHECKSUM = 0x04;
+    private static final int FLAG_DICTIONARY_ID = 0x01;
+    private static final int BLOCK_SIZE_64KB = 4;
+    private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MAX_COMPRESSED_BLOCK_SIZE = BLOCK_SIZE + BLOCK_SIZE / 255 + 16;
+    private static final int FRAME_OVERHEAD = 7 + 4;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final byte[] FRAME_HEADER = frameHeader();
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Per-thread compressor state, reused across batches.
+     */
+    private static final class Scratch {
+        final int[] hashTable = new int[1 << HASH_LOG];
+        final byte[] block = new byte[MAX_COMPRESSED_BLOCK_SIZE];
+        final byte[] input = new byte[BLOCK_SIZE];
+    }
+
+    @Override
+    public CompressionType type() {
+        return CompressionType.LZ4;
+    }
+
+    @Override
+    public ByteBuffer compress(ByteBuffer input, BufferPool pool) {
+        Scratch state = scratch.get();
+        int length = input.remaining();
+        ByteBuffer output = CodecBuffers.allocate(pool, length / 2 + FRAME_OVERHEAD).order(ByteOrder.LITTLE_ENDIAN);
+        output.put(FRAME_HEADER);
+        for (int offset = 0; offset < length; offset += BLOCK_SIZE) {
+            int blockLength = Math.min(BLOCK_SIZE, length - offset);
+            byte[] source;
+            int sourceOffset;
+            if (input.hasArray()) {
+                source = input.array();
+                sourceOffset = input.arrayOffset() + input.position() + offset;
+            } else {
+                input.get(input.position() + offset, state.input, 0, blockLength);
+                source = state.input;
+                sourceOffset = 0;
+            }
+            int compressedLength = compressBlock(source, sourceOffset, blockLength, state.block, state.hashTable);
+            output = CodecBuffers.ensureRemaining(pool, output, 4 + blockLength).order(ByteOrder.LITTLE_ENDIAN);
+            if (compressedLength >= blockLength) {
+                output.putInt(blockLength | UNCOMPRESSED_BLOCK).put(source, sourceOffset, blockLength);
+            } else {
+                output.putInt(compressedLength).put(state.block, 0, compressedLength);
+            }
+        }
+        output = CodecBuffers.ensureRemaining(pool, output, 4).order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(0);
+        return output.flip().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer input, BufferPool pool, int maxSize) {
+        ByteBuffer frame = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        FrameHeader header = readFrameHeader(frame);
+        int maxBlockSize = header.maxBlockSize();
+        int outputLimit = Math.min(maxSize, CompressionCodec.MAX_OUTPUT_SIZE);
+
+        ByteBuffer output = CodecBuffers.allocate(pool, (int) Math.min(Math.min(maxBlockSize, outputLimit), input.remaining() * 4L));
+        try {
+            while (true) {
+                requireRemaining(frame, 4);
+                int blockHeader = frame.getInt();
+                if (blockHeader == 0) {
+                    break;
+                }
+                int blockLength = blockHeader & ~UNCOMPRESSED_BLOCK;
+                if (blockLength > maxBlockSize) {
+                    throw new CorruptRecordException("LZ4 block of " + blockLength + " bytes exceeds the frame's maximum of " + maxBlockSize);
+                }
+                requireRemaining(frame, blockLength);
+                if ((blockHeader & UNCOMPRESSED_BLOCK) != 0) {
+                    if (blockLength > outputLimit - output.position()) {
+                        throw new CorruptRecordException("LZ4 frame decompresses to more than " + outputLimit + " bytes");
+                    }
+                    output = CodecBuffers.ensureRemaining(pool, output, blockLength, outputLimit);
+                    output.put(frame.slice(frame.position(), blockLength));
+                } else {
+                    // A block fills at most the room left under the limit, and fails to decode if it needs more
+                    output = CodecBuffers.ensureRemaining(pool, output, Math.min(maxBlockSize, outputLimit - output.position()), outputLimit);
+                    byte[] source;
+                    int sourceOffset;
+                    if (frame.hasArray()) {
+                        source = frame.array();
+                        sourceOffset = frame.arrayOffset() + frame.position();
+                    } else {
+                        source = new byte[blockLength];
+                        frame.get(frame.position(), source);
+                        sourceOffset = 0;
+                    }
+                    int written = decompressBlock(source, sourceOffset, blockLength, output.array(), output.arrayOffset(),
+                            output.arrayOffset() + output.position(), output.arrayOffset() + Math.min(output.limit(), outputLimit));
+                    output.position(output.position() + written);
+                }
+                frame.position(frame.position() + blockLength);
+                if ((header.flags() & FLAG_BLOCK_CHECKSUM) != 0) {
+                    requireRemaining(frame, 4);
+                    frame.position(frame.position() + 4);
+                }
+            }
+            if ((header.flags() & FLAG_CONTENT_CHECKSUM) != 0) {
+                requireRemaining(frame, 4);
+            }
+        } catch (RuntimeException e) {
+            pool.release(output);
+            throw e;
+        }
+        return output.flip();
+    }
+
+    private record FrameHeader(int flags, int maxBlockSize) {
+    }
+
+    /**
+     * Reads and checks the frame header, leaving the buffer at the first block.
+     */
+    private static FrameHeader readFrameHeader(ByteBuffer frame) {
+        requireRemaining(frame, 7);
+        if (frame.getInt() != MAGIC) {
+            throw new CorruptRecordException("Not an LZ4 frame");
+        }
+        int descriptorStart = frame.position();
+        int flags = frame.get() & 0xff;
+        int blockDescriptor = frame.get() & 0xff;
+        if (flags >>> 6 != VERSION) {
+            throw new CorruptRecordException("Unsupported LZ4 frame version " + (flags >>> 6));
+        }
+        if ((flags & FLAG_DICTIONARY_ID) != 0) {
+            throw new CorruptRecordException("LZ4 frames with a dictionary are not supported");
+        }
+        if ((flags & FLAG_CONTENT_SIZE) != 0) {
+            requireRemaining(frame, 8);
+            frame.position(frame.position() + 8);
+        }
+        byte[] descriptor = new byte[frame.position() - descriptorStart];
+        frame.get(descriptorStart, descriptor);
+        requireRemaining(frame, 1);
+        int expectedChecksum = (XxHash32.hash(descriptor, 0, descriptor.length, 0) >>> 8) & 0xff;
+        if ((frame.get() & 0xff) != expectedChecksum) {
+            throw new CorruptRecordException("LZ4 frame descriptor checksum mismatch");
+        }
+        int blockSizeId = (blockDescriptor >>> 4) & 0x07;
+        if (blockSizeId < BLOCK_SIZE_64KB) {
+            throw new CorruptRecordException("Invalid LZ4 block size id " + blockSizeId);
+        }
+        return new FrameHeader(flags, 1 << (2 * blockSizeId + 8));
+    }
+
+    private static void requireRemaining(ByteBuffer frame, int length) {
+        if (frame.remaining() < length) {
+            throw new CorruptRecordException("Truncated LZ4 frame");
+        }
+    }
+
+    /**
+     * @return The number of bytes written to {@code dest}, which is at most
+     * {@code length + length / 255 + 16}.
+     */
+    static int compressBlock(byte[] src, int offset, int length, byte[] dest, int[] hashTable) {
+        int end = offset + length;
+        int anchor = offset;
+        int out = 0;
+        if (length > MF_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            int matchLimit = end - LAST_LITERALS;
+            int lastMatchStart = end - MF_LIMIT;
+            int position = offset;
+            int misses = 0;
+            while (position < lastMatchStart) {
+                int sequence = intLE(src, position);
+                int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+                int reference = hashTable[hash];
+                hashTable[hash] = position;
+                if (reference < 0 || position - reference > MAX_DISTANCE || intLE(src, reference) != sequence) {
+                    // Step faster through data that keeps missing, as it is likely incompressible
+                    position += 1 + (misses++ >>> SKIP_TRIGGER);
+                    continue;
+                }
+                misses = 0;
+                while (position > anchor && reference > offset && src[position - 1] == src[reference - 1]) {
+                    position--;
+                    reference--;
+                }
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < matchLimit && src[position + matchLength] == src[reference + matchLength]) {
+                    matchLength++;
+                }
+
+                int literalLength = position - anchor;
+                int token = out++;
+                out = writeLength(dest, out, literalLength);
+                System.arraycopy(src, anchor, dest, out, literalLength);
+                out += literalLength;
+                int distance = position - reference;
+                dest[out++] = (byte) distance;
+                dest[out++] = (byte) (distance >>> 8);
+                out = writeLength(dest, out, matchLength - MIN_MATCH);
+                dest[token] = (byte) (Math.min(literalLength, 15) << 4 | Math.min(matchLength - MIN_MATCH, 15));
+
+                position += matchLength;
+                anchor = position;
+            }
+        }
+        int literalLength = end - anchor;
+        dest[out++] = (byte) (Math.min(literalLength, 15) << 4);
+        out = writeLength(dest, out, literalLength);
+        System.arraycopy(src, anchor, dest, out, literalLength);
+        return out + literalLength;
+    }
+
+    /**
+     * Decodes one block into {@code dest}, where matches may reach back to {@code windowStart} so that linked
+     * blocks decode against the output of the blocks before them.
+     *
+     * @return The number of bytes written.
+     */
+    static int decompressBlock(byte[] src, int offset, int length, byte[] dest, int windowStart, int destOffset, int destLimit) {
+        int in = offset;
+        int end = offset + length;
+        int out = destOffset;
+        while (true) {
+            if (in >= end) {
+                throw new CorruptRecordException("Truncated LZ4 block");
+            }
+            int token = src[in++] & 0xff;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int extra;
+                do {
+                    if (in >= end) {
+                        throw new CorruptRecordException("Truncated LZ4 block");
+                    }
+                    extra = src[in++] & 0xff;
+                    literalLength += extra;
+                } while (extra == 255 && literalLength < length);
+            }
+            if (literalLength > end - in) {
+                throw new CorruptRecordException("LZ4 literals run past the end of the block");
+            }
+            if (literalLength > destLimit - out) {
+                throw new CorruptRecordException("LZ4 literals run past the end of the output");
+            }
+            System.arraycopy(src, in, dest, out, literalLength);
+            in += literalLength;
+            out += literalLength;
+            if (in == end) {
+                return out - destOffset;
+            }
+
+            if (end - in < 2) {
+                throw new CorruptRecordException("Truncated LZ4 block");
+            }
+            int distance = (src[in] & 0xff) | (src[in + 1] & 0xff) << 8;
+            in += 2;
+            int matchLength = token & 0x0f;
+            if (matchLength == 15) {
+                int extra;
+                do {
+                    if (in >= end) {
+                        throw new CorruptRecordException("Truncated LZ4 block");
+                    }
+                    extra = src[in++] & 0xff;
+                    matchLength += extra;
+                } while (extra == 255 && matchLength <= destLimit - out);
+            }
+            matchLength += MIN_MATCH;
+            int reference = out - distance;
+            if (distance == 0 || reference < windowStart) {
+                throw new CorruptRecordException("Invalid LZ4 match distance " + distance);
+            }
+            if (matchLength > destLimit - out) {
+                throw new CorruptRecordException("LZ4 match runs past the end of the output");
+            }
+            if (distance >= matchLength) {
+                System.arraycopy(dest, reference, dest, out, matchLength);
+                out += matchLength;
+            } else {
+                for (int i = 0; i < matchLength; i++) {
+                    dest[out++] = dest[reference + i];
+                }
+            }
+        }
+    }
+
+    private static int writeLength(byte[] dest, int out, int length) {
+        if (length >= 15) {
+            int remaining = length - 15;
+            while (remaining >= 255) {
+                dest[out++] = (byte) 255;
+                remaining -= 255;
+            }
+            dest[out++] = (byte) remaining;
+        }
+        return out;
+    }
+
+    private static int intLE(byte[] bytes, int position) {
+        return (bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8
+                | (bytes[position + 2] & 0xff) << 16 | (bytes[position + 3] & 0xff) << 24;
+    }
+
+    private static byte[] frameHeader() {
+        byte flags = (byte) (VERSION << 6 | FLAG_BLOCK_INDEPENDENCE);
+        byte blockDescriptor = (byte) (BLOCK_SIZE_64KB << 4);
+        byte checksum = (byte) (XxHash32.hash(new byte[]{flags, blockDescriptor}, 0, 2, 0) >>> 8);
+        return ByteBuffer.allocate(7).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).put(flags).put(blockDescriptor).put(checksum)
+                .array();
+    }
+}
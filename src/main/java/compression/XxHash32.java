@@ -0,0 +1,61 @@
+package compression;
+
+/**
+ * The 32-bit xxHash, as used for the header checksum of LZ4 frames.
+ */
+final class XxHash32 {
+
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private XxHash32() {
+    }
+
+    static int hash(byte[] bytes, int offset, int length, int seed) {
+        int end = offset + length;
+        int position = offset;
+        int hash;
+        if (length >= 16) {
+            int v1 = seed + PRIME1 + PRIME2;
+            int v2 = seed + PRIME2;
+            int v3 = seed;
+            int v4 = seed - PRIME1;
+            do {
+                v1 = round(v1, intLE(bytes, position));
+                v2 = round(v2, intLE(bytes, position + 4));
+                v3 = round(v3, intLE(bytes, position + 8));
+                v4 = round(v4, intLE(bytes, position + 12));
+                position += 16;
+            } while (position <= end - 16);
+            hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+                    + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += length;
+        for (; position <= end - 4; position += 4) {
+            hash = Integer.rotateLeft(hash + intLE(bytes, position) * PRIME3, 17) * PRIME4;
+        }
+        for (; position < end; position++) {
+            hash = Integer.rotateLeft(hash + (bytes[position] & 0xff) * PRIME5, 11) * PRIME1;
+        }
+        hash ^= hash >>> 15;
+        hash *= PRIME2;
+        hash ^= hash >>> 13;
+        hash *= PRIME3;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int round(int accumulator, int input) {
+        return Integer.rotateLeft(accumulator + input * PRIME2, 13) * PRIME1;
+    }
+
+    private static int intLE(byte[] bytes, int position) {
+        return (bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8
+                | (bytes[position + 2] & 0xff) << 16 | (bytes[position + 3] & 0xff) << 24;
+    }
+}
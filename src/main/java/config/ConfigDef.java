@@ -0,0 +1,93 @@
+package config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The typed definition of a set of configurations: their names, types, defaults and whether they can be changed
+ * while the broker runs. Parses string properties, e.g. from a properties file, into typed values.
+ */
+@Slf4j
+public final class ConfigDef {
+
+    public enum Type {
+        INT, LONG, DOUBLE, BOOLEAN, STRING
+    }
+
+    /**
+     * @param defaultValue The value used when the configuration is not set, or {@code null} to leave the default to
+     *                     the config class, which then sees the configuration as unset.
+     * @param dynamic      Whether a changed value is applied while the broker runs rather than on the next restart.
+     */
+    public record Key(String name, Type type, String defaultValue, boolean dynamic, String documentation) {
+    }
+
+    private final Map<String, Key> keys = new LinkedHashMap<>();
+
+    public ConfigDef define(String name, Type type, String defaultValue, boolean dynamic, String documentation) {
+        if (keys.containsKey(name)) {
+            throw new IllegalArgumentException("Configuration " + name + " is defined twice");
+        }
+        keys.put(name, new Key(name, type, defaultValue, dynamic, documentation));
+        return this;
+    }
+
+    public Map<String, Key> keys() {
+        return Collections.unmodifiableMap(keys);
+    }
+
+    public Set<String> dynamicConfigs() {
+        return keys.values().stream().filter(Key::dynamic).map(Key::name).collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Parses every defined configuration from {@code props}, falling back to its default. Properties that are not
+     * defined are logged and ignored.
+     *
+     * @return The value of every defined configuration by name, {@code null} for unset ones without a default.
+     * @throws ConfigException if a value does not parse as its type.
+     */
+    public Map<String, Object> parse(Map<String, String> props) {
+        for (String name : props.keySet()) {
+            if (!keys.containsKey(name)) {
+                log.warn("Ignoring unknown configuration {}", name);
+            }
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (Key key : keys.values()) {
+            String value = props.getOrDefault(key.name(), key.defaultValue());
+            values.put(key.name(), value == null ? null : parseValue(key, value.trim()));
+        }
+        return values;
+    }
+
+    private static boolean parseBoolean(Key key, String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new ConfigException(key.name(), value, "expected true or false");
+    }
+
+    private static Object parseValue(Key key, String value) {
+        try {
+            return switch (key.type()) {
+                case INT -> Integer.parseInt(value);
+                case LONG -> Long.parseLong(value);
+                case DOUBLE -> Double.parseDouble(value);
+                case BOOLEAN -> parseBoolean(key, value);
+                case STRING -> value;
+            };
+        } catch (NumberFormatException e) {
+            throw new ConfigException(key.name(), value, "expected " + key.type().name().toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package config;
+
+/**
+ * Thrown when a configuration value is missing, malformed or out of range.
+ */
+public class ConfigException extends RuntimeException {
+
+    public ConfigException(String name, String value, String reason) {
+        super("Invalid value " + value + " for configuration " + name + ": " + reason);
+    }
+
+}
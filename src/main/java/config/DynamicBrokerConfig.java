@@ -0,0 +1,165 @@
+package config;
+
+import core.BrokerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The broker configuration read from a properties file plus overrides, e.g. from the command line, which take
+ * precedence over the file. Once {@link #watch(Duration) watched}, edits to the file are picked up while the broker
+ * runs: changes to dynamic configurations are handed to the {@link Reconfigurable}s registered for them, while
+ * changes to the others are only logged, since they need a restart.
+ */
+@Slf4j
+public class DynamicBrokerConfig implements Closeable {
+
+    private final Path file;
+    private final Map<String, String> overrides;
+    private final List<Reconfigurable> reconfigurables = new CopyOnWriteArrayList<>();
+    private volatile BrokerConfig current;
+    private Map<String, Object> currentValues;
+    private long lastModified;
+    private Thread watcher;
+
+    /**
+     * @param file      The properties file, or {@code null} to configure the broker from the overrides alone.
+     * @param overrides Properties that replace those of the file.
+     * @throws ConfigException if a property is malformed.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public DynamicBrokerConfig(Path file, Map<String, String> overrides) {
+        this.file = file;
+        this.overrides = Map.copyOf(overrides);
+        this.lastModified = lastModified();
+        this.currentValues = BrokerConfig.CONFIG_DEF.parse(load());
+        this.current = BrokerConfig.fromValues(currentValues);
+    }
+
+    public BrokerConfig current() {
+        return current;
+    }
+
+    public void addReconfigurable(Reconfigurable reconfigurable) {
+        reconfigurables.add(reconfigurable);
+    }
+
+    /**
+     * Checks the file for changes every {@code interval} from a daemon thread, reloading it when it was modified.
+     */
+    public synchronized void watch(Duration interval) {
+        if (file == null || watcher != null) {
+            return;
+        }
+        watcher = Thread.ofPlatform().name("config-watcher").daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long modified = lastModified();
+                if (modified != lastModified) {
+                    lastModified = modified;
+                    reload();
+                }
+            }
+        });
+    }
+
+    /**
+     * Re-reads the file and applies the dynamic configurations that changed. A file that fails to parse is logged
+     * and leaves the current configuration in place.
+     *
+     * @return The configurations whose new values were applied.
+     */
+    public synchronized Set<String> reload() {
+        Map<String, Object> values;
+        try {
+            values = BrokerConfig.CONFIG_DEF.parse(load());
+            BrokerConfig.fromValues(values);
+        } catch (ConfigException | UncheckedIOException e) {
+            log.error("Keeping the current configuration, the new one is invalid: {}", e.getMessage());
+            return Set.of();
+        }
+        Set<String> dynamic = BrokerConfig.CONFIG_DEF.dynamicConfigs();
+        Map<String, Object> applied = new HashMap<>(currentValues);
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (Objects.equals(entry.getValue(), currentValues.get(entry.getKey()))) {
+                continue;
+            }
+            if (dynamic.contains(entry.getKey())) {
+                applied.put(entry.getKey(), entry.getValue());
+                changed.add(entry.getKey());
+            } else {
+                log.warn("Configuration {} changed to {}, which only takes effect after a restart", entry.getKey(), entry.getValue());
+            }
+        }
+        if (changed.isEmpty()) {
+            return Set.of();
+        }
+        BrokerConfig newConfig = BrokerConfig.fromValues(applied);
+        for (Reconfigurable reconfigurable : reconfigurables) {
+            if (Collections.disjoint(reconfigurable.reconfigurableConfigs(), changed)) {
+                continue;
+            }
+            try {
+                reconfigurable.reconfigure(newConfig);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply {}", reconfigurable.reconfigurableConfigs(), e);
+            }
+        }
+        currentValues = applied;
+        current = newConfig;
+        log.info("Applied dynamic configurations {}", changed);
+        return changed;
+    }
+
+    private Map<String, String> load() {
+        Map<String, String> props = new LinkedHashMap<>();
+        if (file != null) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + file, e);
+            }
+            properties.stringPropertyNames().forEach(name -> props.put(name, properties.getProperty(name)));
+        }
+        props.putAll(overrides);
+        return props;
+    }
+
+    private long lastModified() {
+        try {
+            return file == null ? 0 : Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return lastModified;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+}
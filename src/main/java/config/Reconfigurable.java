@@ -0,0 +1,36 @@
+package config;
+
+import core.BrokerConfig;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A component that applies changes to some dynamic configurations while the broker runs.
+ */
+public interface Reconfigurable {
+
+    /**
+     * @return The configurations whose changes this component applies.
+     */
+    Set<String> reconfigurableConfigs();
+
+    /**
+     * Applies the new values of {@link #reconfigurableConfigs()}. Called only when at least one of them changed.
+     */
+    void reconfigure(BrokerConfig config);
+
+    static Reconfigurable of(Set<String> configs, Consumer<BrokerConfig> reconfigure) {
+        return new Reconfigurable() {
+            @Override
+            public Set<String> reconfigurableConfigs() {
+                return configs;
+            }
+
+            @Override
+            public void reconfigure(BrokerConfig config) {
+                reconfigure.accept(config);
+            }
+        };
+    }
+}
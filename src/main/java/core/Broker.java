@@ -1,40 +1,240 @@
 package core;
 
+import config.DynamicBrokerConfig;
+import config.Reconfigurable;
+import core.group.GroupCoordinator;
+import core.group.OffsetStore;
+import core.handler.RequestHandlerFactory;
+import core.handler.fetch.FetchHandler;
+import core.handler.group.FindCoordinatorHandler;
+import core.handler.group.HeartbeatHandler;
+import core.handler.group.JoinGroupHandler;
+import core.handler.group.LeaveGroupHandler;
+import core.handler.group.OffsetCommitHandler;
+import core.handler.group.OffsetFetchHandler;
+import core.handler.group.SyncGroupHandler;
+import core.handler.metadata.MetadataHandler;
+import core.metadata.AutoTopicCreator;
+import core.metadata.BrokerNode;
+import core.metadata.MetadataCache;
+import core.metadata.PartitionState;
+import core.handler.produce.ProduceHandler;
+import core.network.Acceptor;
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import core.network.Processor;
+import core.network.RequestChannel;
+import core.network.ThreadPerConnectionAcceptor;
+import log.LogManager;
 import lombok.extern.slf4j.Slf4j;
-import message.parser.RequestParser;
-import message.request.RequestMessage;
-import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import metrics.MetricName;
+import metrics.MetricsHttpServer;
+import quota.ClientQuotaManager;
+import util.DirectBufferPool;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Wires the broker together from its configuration. The components named by the dynamic configurations are
+ * resized or reconfigured in place when {@link DynamicBrokerConfig} reloads them.
+ */
 @Slf4j
 public class Broker {
-    private final ServerSocket serverSocket;
+    private final DynamicBrokerConfig dynamicConfig;
+    private final BrokerConfig config;
+    private final ServerSocketChannel serverChannel;
+    private final List<Processor> processors = new CopyOnWriteArrayList<>();
+    private int nextProcessorId;
+    private LogManager logManager;
+    private MetadataCache metadataCache;
+    private OffsetStore offsetStore;
+    private GroupCoordinator groupCoordinator;
+    private MetricsHttpServer metricsServer;
+    private ClientQuotaManager quotaManager;
+    private RequestDispatcher dispatcher;
+    private RequestChannel requestChannel;
+    private RequestHandlerPool requestHandlerPool;
+    private final DelayedOperationPurgatory<DelayedOperation> producePurgatory = new DelayedOperationPurgatory<>("produce");
+    private final DelayedOperationPurgatory<DelayedOperation> fetchPurgatory = new DelayedOperationPurgatory<>("fetch");
+    private final DirectBufferPool memoryPool;
 
     public Broker(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
-        serverSocket.setReuseAddress(true);
+        this(BrokerConfig.builder().port(port).build());
     }
 
+    /**
+     * A broker whose configuration never changes.
+     */
+    public Broker(BrokerConfig config) throws IOException {
+        this(config, null);
+    }
+
+    public Broker(DynamicBrokerConfig dynamicConfig) throws IOException {
+        this(dynamicConfig.current(), dynamicConfig);
+    }
+
+    private Broker(BrokerConfig config, DynamicBrokerConfig dynamicConfig) throws IOException {
+        this.config = config;
+        this.dynamicConfig = dynamicConfig;
+        this.memoryPool = new DirectBufferPool(config.queuedMaxRequestBytes(), 64);
+        BrokerMetrics.registry().gauge(MetricName.of("MemoryPool", "AvailableBytes"), memoryPool::availableBytes);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(new InetSocketAddress(config.port()));
+    }
+
+    /**
+     * @return The port the broker listens on, which differs from the configured one when that is 0.
+     */
+    public int localPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts serving connections in the configured {@link ServerMode}, accepting on the calling thread
+     * until the broker is shut down.
+     */
     public void start() throws IOException {
-        while (true) {
-            Socket clientSocket = serverSocket.accept();
-            try(clientSocket;
-                InputStream inputStream = clientSocket.getInputStream();
-                OutputStream outputStream = clientSocket.getOutputStream()) {
-
-                DataInputStream dataInputStream = new DataInputStream(inputStream);
-                int messageSize = dataInputStream.readInt();
-                byte[] payload = dataInputStream.readNBytes(messageSize);
-                RequestMessage requestMessage = RequestParser.parseRequest(messageSize, payload);
-                ResponseMessage responseMessage = new ResponseMessage(requestMessage);
-                outputStream.write(responseMessage.getMessage());
-
-            } catch (Exception ex) {
-                log.error("Error processing client request", ex);
+        logManager = new LogManager(new File(config.logDir()), config.logConfig(),
+                config.numRecoveryThreads(), config.checkpointIntervalMs(), config.retentionCheckIntervalMs(), config.cleanerConfig());
+        startMetadataCache();
+        AutoTopicCreator topicCreator = new AutoTopicCreator(logManager, config.numPartitions(), config.autoCreateTopicsEnable());
+        RequestHandlerFactory.registerHandler(new ProduceHandler(logManager, metadataCache, topicCreator,
+                producePurgatory, fetchPurgatory, config.socketRequestMaxBytes()));
+        RequestHandlerFactory.registerHandler(new FetchHandler(logManager, fetchPurgatory));
+        RequestHandlerFactory.registerHandler(new MetadataHandler(metadataCache, topicCreator));
+        startGroupCoordinator();
+        RequestHandlerFactory.freeze();
+        quotaManager = new ClientQuotaManager(config.quotaBytesPerSecond(), config.quotaRequestsPerSecond(), BrokerMetrics.registry());
+        dispatcher = new RequestDispatcher(quotaManager, memoryPool);
+        if (config.metricsPort() > 0) {
+            metricsServer = new MetricsHttpServer(BrokerMetrics.registry(), config.metricsPort());
+            metricsServer.start();
+        }
+        log.info("Starting broker on port {} in {} mode", config.port(), config.serverMode());
+        if (config.serverMode() == ServerMode.SELECTOR) {
+            requestChannel = new RequestChannel(config.queuedMaxRequests());
+            BrokerMetrics.registry().gauge(MetricName.of("RequestChannel", "RequestQueueSize"), requestChannel::size);
+            requestHandlerPool = new RequestHandlerPool(config.numIoThreads(), requestChannel, dispatcher);
+            resizeProcessors(config.numNetworkThreads());
+        }
+        registerReconfigurables();
+        switch (config.serverMode()) {
+            case SELECTOR -> new Acceptor(serverChannel, processors).run();
+            case THREAD_PER_CONNECTION -> new ThreadPerConnectionAcceptor(
+                    serverChannel, dispatcher, config.maxInFlightRequestsPerConnection(), memoryPool, config.socketRequestMaxBytes()).run();
+        }
+    }
+
+    /**
+     * Fills the metadata cache with this broker and its partitions, and keeps it up to date as partitions are created.
+     */
+    private void startMetadataCache() {
+        int brokerId = config.brokerId();
+        metadataCache = new MetadataCache(brokerId);
+        metadataCache.updateBroker(new BrokerNode(brokerId, config.advertisedHostName(), localPort(), null));
+        logManager.addLogCreationListener(topicPartition ->
+                metadataCache.updatePartitions(List.of(PartitionState.local(topicPartition, brokerId))));
+        metadataCache.updatePartitions(logManager.allLogs().stream()
+                .map(partitionLog -> PartitionState.local(partitionLog.getTopicPartition(), brokerId))
+                .toList());
+    }
+
+    /**
+     * Loads the committed offsets and registers the handlers of the consumer group apis.
+     */
+    private void startGroupCoordinator() throws IOException {
+        offsetStore = new OffsetStore(logManager, config.offsetsTopicNumPartitions(), config.offsetsTopicSegmentBytes(),
+                config.offsetsLoadBufferSize());
+        groupCoordinator = new GroupCoordinator(offsetStore, config.groupMinSessionTimeoutMs(), config.groupMaxSessionTimeoutMs());
+        BrokerMetrics.registry().gauge(MetricName.of("GroupCoordinator", "NumGroups"), groupCoordinator::numGroups);
+        RequestHandlerFactory.registerHandler(new FindCoordinatorHandler(metadataCache, config.brokerId()));
+        RequestHandlerFactory.registerHandler(new JoinGroupHandler(groupCoordinator));
+        RequestHandlerFactory.registerHandler(new SyncGroupHandler(groupCoordinator));
+        RequestHandlerFactory.registerHandler(new HeartbeatHandler(groupCoordinator));
+        RequestHandlerFactory.registerHandler(new LeaveGroupHandler(groupCoordinator));
+        RequestHandlerFactory.registerHandler(new OffsetCommitHandler(groupCoordinator));
+        RequestHandlerFactory.registerHandler(new OffsetFetchHandler(groupCoordinator));
+    }
+
+    private void registerReconfigurables() {
+        if (dynamicConfig == null) {
+            return;
+        }
+        if (config.serverMode() == ServerMode.SELECTOR) {
+            dynamicConfig.addReconfigurable(Reconfigurable.of(Set.of(BrokerConfig.NUM_NETWORK_THREADS_CONFIG),
+                    newConfig -> resizeProcessors(newConfig.numNetworkThreads())));
+            dynamicConfig.addReconfigurable(Reconfigurable.of(Set.of(BrokerConfig.NUM_IO_THREADS_CONFIG),
+                    newConfig -> requestHandlerPool.resize(newConfig.numIoThreads())));
+        }
+        dynamicConfig.addReconfigurable(Reconfigurable.of(
+                Set.of(BrokerConfig.QUOTA_BYTES_PER_SECOND_CONFIG, BrokerConfig.QUOTA_REQUESTS_PER_SECOND_CONFIG),
+                newConfig -> quotaManager.updateQuotas(newConfig.quotaBytesPerSecond(), newConfig.quotaRequestsPerSecond())));
+        dynamicConfig.addReconfigurable(Reconfigurable.of(Set.of(BrokerConfig.QUEUED_MAX_REQUEST_BYTES_CONFIG),
+                newConfig -> memoryPool.resize(newConfig.queuedMaxRequestBytes())));
+        dynamicConfig.addReconfigurable(Reconfigurable.of(Set.of(BrokerConfig.LOG_SEGMENT_BYTES_CONFIG,
+                        BrokerConfig.LOG_ROLL_MS_CONFIG, BrokerConfig.LOG_FLUSH_INTERVAL_MS_CONFIG, BrokerConfig.LOG_FLUSH_INTERVAL_BYTES_CONFIG,
+                        BrokerConfig.LOG_CLEANUP_POLICY_CONFIG, BrokerConfig.LOG_RETENTION_MS_CONFIG,
+                        BrokerConfig.LOG_RETENTION_BYTES_CONFIG, BrokerConfig.LOG_SEGMENT_DELETE_DELAY_MS_CONFIG,
+                        BrokerConfig.LOG_CLEANER_DELETE_RETENTION_MS_CONFIG, BrokerConfig.LOG_CLEANER_MIN_CLEANABLE_RATIO_CONFIG),
+                newConfig -> logManager.reconfigure(newConfig.logConfig())));
+        dynamicConfig.addReconfigurable(Reconfigurable.of(Set.of(BrokerConfig.LOG_CLEANER_IO_MAX_BYTES_PER_SECOND_CONFIG),
+                newConfig -> logManager.updateCleanerMaxIoBytesPerSecond(newConfig.cleanerIoMaxBytesPerSecond())));
+    }
+
+    /**
+     * Starts or stops network threads until {@code numThreads} are running. The connections of a stopped thread
+     * are closed, and their clients reconnect to the remaining ones.
+     */
+    private synchronized void resizeProcessors(int numThreads) {
+        while (processors.size() < numThreads) {
+            int id = nextProcessorId++;
+            Processor processor;
+            try {
+                processor = new Processor(id, dispatcher, requestChannel, memoryPool,
+                        config.maxInFlightRequestsPerConnection(), config.socketRequestMaxBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start network thread " + id, e);
             }
+            processors.add(processor);
+            Thread.ofPlatform().name("network-processor-" + id).daemon().start(processor);
+        }
+        while (processors.size() > numThreads) {
+            processors.removeLast().shutdown();
+        }
+    }
+
+    public void shutdown() throws IOException {
+        if (dynamicConfig != null) {
+            dynamicConfig.close();
+        }
+        serverChannel.close();
+        processors.forEach(Processor::shutdown);
+        if (requestHandlerPool != null) {
+            requestHandlerPool.shutdown();
+        }
+        producePurgatory.close();
+        fetchPurgatory.close();
+        if (groupCoordinator != null) {
+            groupCoordinator.close();
+        }
+        // Drains the queued commits into the offsets log before the log manager closes it
+        if (offsetStore != null) {
+            offsetStore.close();
+        }
+        if (logManager != null) {
+            logManager.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
         }
     }
-}
\ No newline at end of file
+}
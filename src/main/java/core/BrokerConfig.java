@@ -0,0 +1,342 @@
+package core;
+
+import config.ConfigDef;
+import config.ConfigException;
+import log.CleanerConfig;
+import log.LogConfig;
+import lombok.Builder;
+
+import java.util.Map;
+
+/**
+ * The broker's settings, built in code or parsed from properties with {@link #fromProperties(Map)}, where each
+ * setting has the Kafka-style name of its {@code *_CONFIG} constant. Settings left at 0 take their default.
+ *
+ * @param metricsPort            The port of the plain-text metrics endpoint, or 0 to serve metrics through JMX only.
+ * @param numIoThreads           The request handler threads serving requests read by the selector threads.
+ * @param queuedMaxRequests      The requests that may wait for a handler thread before the selector threads stop reading.
+ * @param quotaBytesPerSecond    The bytes each client id may send and receive per second, or 0 for no byte-rate quota.
+ * @param quotaRequestsPerSecond The requests each client id may send per second, or 0 for no request-rate quota.
+ * @param queuedMaxRequestBytes  The direct memory that request frames and unsent responses may take up before the
+ *                               selector threads stop reading.
+ * @param socketRequestMaxBytes  The largest request the broker reads, checked against the size prefix before any
+ *                               memory is allocated for it; connections sending larger ones are closed.
+ * @param segmentBytes           The size at which the active segment of a log is rolled.
+ * @param segmentMs              How old the first batch of the active segment of a log may get before it is rolled.
+ * @param flushIntervalMs        How long the group commit flusher waits for more appends before syncing them together.
+ * @param flushIntervalBytes     How many bytes awaiting a sync make the flusher sync without waiting out the interval.
+ * @param brokerId               The node id the broker advertises in Metadata responses.
+ * @param advertisedHostName     The host clients are told to connect to.
+ * @param numPartitions          The partitions of topics created automatically.
+ * @param autoCreateTopicsEnable Whether Metadata requests create the unknown topics they name, if the client allows it.
+ * @param numRecoveryThreads     The threads that load the partition logs at startup, recovering them after a crash.
+ * @param checkpointIntervalMs   How often the recovery points of the logs are checkpointed, bounding what a restart
+ *                               after a crash has to recover.
+ * @param cleanupPolicy          How old data is removed from logs, {@code delete}, {@code compact} or both.
+ * @param retentionMs            How long segments of logs with the delete policy are kept, or -1 for no limit.
+ * @param retentionBytes         The size each log with the delete policy may grow to, or -1 for no limit.
+ * @param retentionCheckIntervalMs How often logs are checked for segments past their retention limits.
+ * @param segmentDeleteDelayMs   How long segments removed from a log stay open for reads already under way.
+ * @param logCleanerEnable       Whether logs with the compact policy are compacted.
+ * @param cleanerThreads         The log cleaner threads.
+ * @param cleanerDedupeBufferSize The off-heap memory of the cleaner's key to offset maps, across all threads.
+ * @param cleanerIoBufferSize    The buffer each cleaner thread reads segments through.
+ * @param cleanerIoMaxBytesPerSecond The rate the cleaner reads and writes segments at, or 0 for no limit.
+ * @param cleanerBackoffMs       How long an idle cleaner thread waits before looking for logs to clean again.
+ * @param deleteRetentionMs      How long tombstones are kept once compacted.
+ * @param minCleanableRatio      The dirty share of a log that makes the cleaner compact it.
+ * @param offsetsTopicNumPartitions The partitions of the compacted log holding committed offsets, fixed once created.
+ * @param offsetsTopicSegmentBytes The segment size of the offsets log, kept small so compaction keeps up with commits.
+ * @param offsetsLoadBufferSize  The buffer the offsets log is read through when it is loaded at startup.
+ * @param groupMinSessionTimeoutMs The shortest session timeout a group member may ask for.
+ * @param groupMaxSessionTimeoutMs The longest session timeout a group member may ask for.
+ */
+@Builder
+public record BrokerConfig(int port, ServerMode serverMode, int numNetworkThreads, int maxInFlightRequestsPerConnection,
+                           String logDir, int metricsPort, int numIoThreads, int queuedMaxRequests,
+                           long quotaBytesPerSecond, long quotaRequestsPerSecond, long queuedMaxRequestBytes,
+                           int socketRequestMaxBytes, int segmentBytes, long segmentMs, long flushIntervalMs, int flushIntervalBytes,
+                           int brokerId, String advertisedHostName, int numPartitions, Boolean autoCreateTopicsEnable,
+                           int numRecoveryThreads, long checkpointIntervalMs, String cleanupPolicy, long retentionMs,
+                           long retentionBytes, long retentionCheckIntervalMs, long segmentDeleteDelayMs,
+                           Boolean logCleanerEnable, int cleanerThreads, long cleanerDedupeBufferSize,
+                           int cleanerIoBufferSize, long cleanerIoMaxBytesPerSecond, long cleanerBackoffMs,
+                           long deleteRetentionMs, double minCleanableRatio, int offsetsTopicNumPartitions,
+                           int offsetsTopicSegmentBytes, int offsetsLoadBufferSize, int groupMinSessionTimeoutMs,
+                           int groupMaxSessionTimeoutMs) {
+
+    public static final String PORT_CONFIG = "port";
+    public static final String SERVER_MODE_CONFIG = "server.mode";
+    public static final String NUM_NETWORK_THREADS_CONFIG = "num.network.threads";
+    public static final String MAX_IN_FLIGHT_REQUESTS_CONFIG = "max.in.flight.requests.per.connection";
+    public static final String LOG_DIR_CONFIG = "log.dir";
+    public static final String METRICS_PORT_CONFIG = "metrics.port";
+    public static final String NUM_IO_THREADS_CONFIG = "num.io.threads";
+    public static final String QUEUED_MAX_REQUESTS_CONFIG = "queued.max.requests";
+    public static final String QUOTA_BYTES_PER_SECOND_CONFIG = "quota.bytes.per.second";
+    public static final String QUOTA_REQUESTS_PER_SECOND_CONFIG = "quota.requests.per.second";
+    public static final String QUEUED_MAX_REQUEST_BYTES_CONFIG = "queued.max.request.bytes";
+    public static final String SOCKET_REQUEST_MAX_BYTES_CONFIG = "socket.request.max.bytes";
+    public static final String LOG_SEGMENT_BYTES_CONFIG = "log.segment.bytes";
+    public static final String LOG_ROLL_MS_CONFIG = "log.roll.ms";
+    public static final String LOG_FLUSH_INTERVAL_MS_CONFIG = "log.flush.interval.ms";
+    public static final String LOG_FLUSH_INTERVAL_BYTES_CONFIG = "log.flush.interval.bytes";
+    public static final String BROKER_ID_CONFIG = "broker.id";
+    public static final String ADVERTISED_HOST_NAME_CONFIG = "advertised.host.name";
+    public static final String NUM_PARTITIONS_CONFIG = "num.partitions";
+    public static final String AUTO_CREATE_TOPICS_ENABLE_CONFIG = "auto.create.topics.enable";
+    public static final String NUM_RECOVERY_THREADS_CONFIG = "num.recovery.threads.per.data.dir";
+    public static final String LOG_FLUSH_OFFSET_CHECKPOINT_INTERVAL_MS_CONFIG = "log.flush.offset.checkpoint.interval.ms";
+    public static final String LOG_CLEANUP_POLICY_CONFIG = "log.cleanup.policy";
+    public static final String LOG_RETENTION_MS_CONFIG = "log.retention.ms";
+    public static final String LOG_RETENTION_BYTES_CONFIG = "log.retention.bytes";
+    public static final String LOG_RETENTION_CHECK_INTERVAL_MS_CONFIG = "log.retention.check.interval.ms";
+    public static final String LOG_SEGMENT_DELETE_DELAY_MS_CONFIG = "log.segment.delete.delay.ms";
+    public static final String LOG_CLEANER_ENABLE_CONFIG = "log.cleaner.enable";
+    public static final String LOG_CLEANER_THREADS_CONFIG = "log.cleaner.threads";
+    public static final String LOG_CLEANER_DEDUPE_BUFFER_SIZE_CONFIG = "log.cleaner.dedupe.buffer.size";
+    public static final String LOG_CLEANER_IO_BUFFER_SIZE_CONFIG = "log.cleaner.io.buffer.size";
+    public static final String LOG_CLEANER_IO_MAX_BYTES_PER_SECOND_CONFIG = "log.cleaner.io.max.bytes.per.second";
+    public static final String LOG_CLEANER_BACKOFF_MS_CONFIG = "log.cleaner.backoff.ms";
+    public static final String LOG_CLEANER_DELETE_RETENTION_MS_CONFIG = "log.cleaner.delete.retention.ms";
+    public static final String LOG_CLEANER_MIN_CLEANABLE_RATIO_CONFIG = "log.cleaner.min.cleanable.ratio";
+    public static final String OFFSETS_TOPIC_NUM_PARTITIONS_CONFIG = "offsets.topic.num.partitions";
+    public static final String OFFSETS_TOPIC_SEGMENT_BYTES_CONFIG = "offsets.topic.segment.bytes";
+    public static final String OFFSETS_LOAD_BUFFER_SIZE_CONFIG = "offsets.load.buffer.size";
+    public static final String GROUP_MIN_SESSION_TIMEOUT_MS_CONFIG = "group.min.session.timeout.ms";
+    public static final String GROUP_MAX_SESSION_TIMEOUT_MS_CONFIG = "group.max.session.timeout.ms";
+
+    public static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(PORT_CONFIG, ConfigDef.Type.INT, "9092", false, "The port to listen on, 0 for an ephemeral one")
+            .define(SERVER_MODE_CONFIG, ConfigDef.Type.STRING, "selector", false, "selector or thread_per_connection")
+            .define(NUM_NETWORK_THREADS_CONFIG, ConfigDef.Type.INT, null, true, "The selector threads")
+            .define(MAX_IN_FLIGHT_REQUESTS_CONFIG, ConfigDef.Type.INT, null, false, "The requests read ahead per connection")
+            .define(LOG_DIR_CONFIG, ConfigDef.Type.STRING, null, false, "The directory holding the partition logs")
+            .define(METRICS_PORT_CONFIG, ConfigDef.Type.INT, null, false, "The port of the plain-text metrics endpoint")
+            .define(NUM_IO_THREADS_CONFIG, ConfigDef.Type.INT, null, true, "The request handler threads")
+            .define(QUEUED_MAX_REQUESTS_CONFIG, ConfigDef.Type.INT, null, false, "The capacity of the request queue")
+            .define(QUOTA_BYTES_PER_SECOND_CONFIG, ConfigDef.Type.LONG, null, true, "The byte-rate quota of each client id")
+            .define(QUOTA_REQUESTS_PER_SECOND_CONFIG, ConfigDef.Type.LONG, null, true, "The request-rate quota of each client id")
+            .define(QUEUED_MAX_REQUEST_BYTES_CONFIG, ConfigDef.Type.LONG, null, true, "The cap of the direct memory pool")
+            .define(SOCKET_REQUEST_MAX_BYTES_CONFIG, ConfigDef.Type.INT, null, false, "The largest request accepted")
+            .define(LOG_SEGMENT_BYTES_CONFIG, ConfigDef.Type.INT, null, true, "The size at which segments are rolled")
+            .define(LOG_ROLL_MS_CONFIG, ConfigDef.Type.LONG, null, true, "The age at which segments are rolled")
+            .define(LOG_FLUSH_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG, null, true, "The group commit interval")
+            .define(LOG_FLUSH_INTERVAL_BYTES_CONFIG, ConfigDef.Type.INT, null, true, "The bytes that trigger a group commit early")
+            .define(BROKER_ID_CONFIG, ConfigDef.Type.INT, "0", false, "The node id of the broker")
+            .define(ADVERTISED_HOST_NAME_CONFIG, ConfigDef.Type.STRING, null, false, "The host advertised to clients")
+            .define(NUM_PARTITIONS_CONFIG, ConfigDef.Type.INT, null, false, "The partitions of auto-created topics")
+            .define(AUTO_CREATE_TOPICS_ENABLE_CONFIG, ConfigDef.Type.BOOLEAN, null, false, "Whether Metadata requests create topics")
+            .define(NUM_RECOVERY_THREADS_CONFIG, ConfigDef.Type.INT, null, false, "The threads loading logs at startup")
+            .define(LOG_FLUSH_OFFSET_CHECKPOINT_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG, null, false, "How often recovery points are checkpointed")
+            .define(LOG_CLEANUP_POLICY_CONFIG, ConfigDef.Type.STRING, LogConfig.CLEANUP_POLICY_DELETE, true, "delete, compact or compact,delete")
+            .define(LOG_RETENTION_MS_CONFIG, ConfigDef.Type.LONG, null, true, "How long segments are kept, -1 for no limit")
+            .define(LOG_RETENTION_BYTES_CONFIG, ConfigDef.Type.LONG, null, true, "The size a log is kept at, -1 for no limit")
+            .define(LOG_RETENTION_CHECK_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG, null, false, "How often retention is checked")
+            .define(LOG_SEGMENT_DELETE_DELAY_MS_CONFIG, ConfigDef.Type.LONG, null, true, "How long deleted segments stay open")
+            .define(LOG_CLEANER_ENABLE_CONFIG, ConfigDef.Type.BOOLEAN, null, false, "Whether compacted logs are cleaned")
+            .define(LOG_CLEANER_THREADS_CONFIG, ConfigDef.Type.INT, null, false, "The log cleaner threads")
+            .define(LOG_CLEANER_DEDUPE_BUFFER_SIZE_CONFIG, ConfigDef.Type.LONG, null, false, "The memory of the cleaner's offset maps")
+            .define(LOG_CLEANER_IO_BUFFER_SIZE_CONFIG, ConfigDef.Type.INT, null, false, "The cleaner's read buffer size")
+            .define(LOG_CLEANER_IO_MAX_BYTES_PER_SECOND_CONFIG, ConfigDef.Type.LONG, null, true, "The cleaner's I/O rate limit")
+            .define(LOG_CLEANER_BACKOFF_MS_CONFIG, ConfigDef.Type.LONG, null, false, "How long idle cleaner threads sleep")
+            .define(LOG_CLEANER_DELETE_RETENTION_MS_CONFIG, ConfigDef.Type.LONG, null, true, "How long tombstones are kept")
+            .define(LOG_CLEANER_MIN_CLEANABLE_RATIO_CONFIG, ConfigDef.Type.DOUBLE, null, true, "The dirty share that triggers compaction")
+            .define(OFFSETS_TOPIC_NUM_PARTITIONS_CONFIG, ConfigDef.Type.INT, null, false, "The partitions of the offsets log")
+            .define(OFFSETS_TOPIC_SEGMENT_BYTES_CONFIG, ConfigDef.Type.INT, null, false, "The segment size of the offsets log")
+            .define(OFFSETS_LOAD_BUFFER_SIZE_CONFIG, ConfigDef.Type.INT, null, false, "The read buffer of offset loading")
+            .define(GROUP_MIN_SESSION_TIMEOUT_MS_CONFIG, ConfigDef.Type.INT, null, false, "The shortest member session timeout")
+            .define(GROUP_MAX_SESSION_TIMEOUT_MS_CONFIG, ConfigDef.Type.INT, null, false, "The longest member session timeout");
+
+    public BrokerConfig {
+        if (serverMode == null) {
+            serverMode = ServerMode.SELECTOR;
+        }
+        if (numNetworkThreads < 1) {
+            numNetworkThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (maxInFlightRequestsPerConnection < 1) {
+            maxInFlightRequestsPerConnection = 5;
+        }
+        if (numIoThreads < 1) {
+            numIoThreads = 8;
+        }
+        if (queuedMaxRequests < 1) {
+            queuedMaxRequests = 500;
+        }
+        if (queuedMaxRequestBytes < 1) {
+            queuedMaxRequestBytes = 100L * 1024 * 1024;
+        }
+        if (socketRequestMaxBytes < 1) {
+            socketRequestMaxBytes = 100 * 1024 * 1024;
+        }
+        if (segmentBytes < 1) {
+            segmentBytes = LogConfig.DEFAULT_SEGMENT_BYTES;
+        }
+        if (segmentMs < 1) {
+            segmentMs = LogConfig.DEFAULT_SEGMENT_MS;
+        }
+        if (flushIntervalMs < 1) {
+            flushIntervalMs = LogConfig.DEFAULT_FLUSH_INTERVAL_MS;
+        }
+        if (flushIntervalBytes < 1) {
+            flushIntervalBytes = LogConfig.DEFAULT_FLUSH_INTERVAL_BYTES;
+        }
+        if (logDir == null) {
+            logDir = "/tmp/kafka-logs";
+        }
+        if (advertisedHostName == null) {
+            advertisedHostName = "localhost";
+        }
+        if (numPartitions < 1) {
+            numPartitions = 1;
+        }
+        if (autoCreateTopicsEnable == null) {
+            autoCreateTopicsEnable = true;
+        }
+        if (numRecoveryThreads < 1) {
+            numRecoveryThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (checkpointIntervalMs < 1) {
+            checkpointIntervalMs = 60_000;
+        }
+        if (retentionCheckIntervalMs < 1) {
+            retentionCheckIntervalMs = 300_000;
+        }
+        if (logCleanerEnable == null) {
+            logCleanerEnable = true;
+        }
+        if (offsetsTopicNumPartitions < 1) {
+            offsetsTopicNumPartitions = 50;
+        }
+        if (offsetsTopicSegmentBytes < 1) {
+            offsetsTopicSegmentBytes = 100 * 1024 * 1024;
+        }
+        if (offsetsLoadBufferSize < 1) {
+            offsetsLoadBufferSize = 5 * 1024 * 1024;
+        }
+        if (groupMinSessionTimeoutMs < 1) {
+            groupMinSessionTimeoutMs = 6_000;
+        }
+        if (groupMaxSessionTimeoutMs < 1) {
+            groupMaxSessionTimeoutMs = 1_800_000;
+        }
+    }
+
+    /**
+     * @throws ConfigException if a property does not parse or names an unknown server mode or cleanup policy.
+     */
+    public static BrokerConfig fromProperties(Map<String, String> props) {
+        return fromValues(CONFIG_DEF.parse(props));
+    }
+
+    /**
+     * @param values Parsed values by configuration name, as returned by {@link ConfigDef#parse(Map)}.
+     */
+    public static BrokerConfig fromValues(Map<String, Object> values) {
+        ServerMode serverMode;
+        try {
+            serverMode = ServerMode.fromConfigName((String) values.get(SERVER_MODE_CONFIG));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(SERVER_MODE_CONFIG, (String) values.get(SERVER_MODE_CONFIG), e.getMessage());
+        }
+        BrokerConfig config = BrokerConfig.builder()
+                .port(intValue(values, PORT_CONFIG))
+                .serverMode(serverMode)
+                .numNetworkThreads(intValue(values, NUM_NETWORK_THREADS_CONFIG))
+                .maxInFlightRequestsPerConnection(intValue(values, MAX_IN_FLIGHT_REQUESTS_CONFIG))
+                .logDir((String) values.get(LOG_DIR_CONFIG))
+                .metricsPort(intValue(values, METRICS_PORT_CONFIG))
+                .numIoThreads(intValue(values, NUM_IO_THREADS_CONFIG))
+                .queuedMaxRequests(intValue(values, QUEUED_MAX_REQUESTS_CONFIG))
+                .quotaBytesPerSecond(longValue(values, QUOTA_BYTES_PER_SECOND_CONFIG))
+                .quotaRequestsPerSecond(longValue(values, QUOTA_REQUESTS_PER_SECOND_CONFIG))
+                .queuedMaxRequestBytes(longValue(values, QUEUED_MAX_REQUEST_BYTES_CONFIG))
+                .socketRequestMaxBytes(intValue(values, SOCKET_REQUEST_MAX_BYTES_CONFIG))
+                .segmentBytes(intValue(values, LOG_SEGMENT_BYTES_CONFIG))
+                .segmentMs(longValue(values, LOG_ROLL_MS_CONFIG))
+                .flushIntervalMs(longValue(values, LOG_FLUSH_INTERVAL_MS_CONFIG))
+                .flushIntervalBytes(intValue(values, LOG_FLUSH_INTERVAL_BYTES_CONFIG))
+                .brokerId(intValue(values, BROKER_ID_CONFIG))
+                .advertisedHostName((String) values.get(ADVERTISED_HOST_NAME_CONFIG))
+                .numPartitions(intValue(values, NUM_PARTITIONS_CONFIG))
+                .autoCreateTopicsEnable((Boolean) values.get(AUTO_CREATE_TOPICS_ENABLE_CONFIG))
+                .numRecoveryThreads(intValue(values, NUM_RECOVERY_THREADS_CONFIG))
+                .checkpointIntervalMs(longValue(values, LOG_FLUSH_OFFSET_CHECKPOINT_INTERVAL_MS_CONFIG))
+                .cleanupPolicy((String) values.get(LOG_CLEANUP_POLICY_CONFIG))
+                .retentionMs(longValue(values, LOG_RETENTION_MS_CONFIG))
+                .retentionBytes(longValue(values, LOG_RETENTION_BYTES_CONFIG))
+                .retentionCheckIntervalMs(longValue(values, LOG_RETENTION_CHECK_INTERVAL_MS_CONFIG))
+                .segmentDeleteDelayMs(longValue(values, LOG_SEGMENT_DELETE_DELAY_MS_CONFIG))
+                .logCleanerEnable((Boolean) values.get(LOG_CLEANER_ENABLE_CONFIG))
+                .cleanerThreads(intValue(values, LOG_CLEANER_THREADS_CONFIG))
+                .cleanerDedupeBufferSize(longValue(values, LOG_CLEANER_DEDUPE_BUFFER_SIZE_CONFIG))
+                .cleanerIoBufferSize(intValue(values, LOG_CLEANER_IO_BUFFER_SIZE_CONFIG))
+                .cleanerIoMaxBytesPerSecond(longValue(values, LOG_CLEANER_IO_MAX_BYTES_PER_SECOND_CONFIG))
+                .cleanerBackoffMs(longValue(values, LOG_CLEANER_BACKOFF_MS_CONFIG))
+                .deleteRetentionMs(longValue(values, LOG_CLEANER_DELETE_RETENTION_MS_CONFIG))
+                .minCleanableRatio(doubleValue(values, LOG_CLEANER_MIN_CLEANABLE_RATIO_CONFIG))
+                .offsetsTopicNumPartitions(intValue(values, OFFSETS_TOPIC_NUM_PARTITIONS_CONFIG))
+                .offsetsTopicSegmentBytes(intValue(values, OFFSETS_TOPIC_SEGMENT_BYTES_CONFIG))
+                .offsetsLoadBufferSize(intValue(values, OFFSETS_LOAD_BUFFER_SIZE_CONFIG))
+                .groupMinSessionTimeoutMs(intValue(values, GROUP_MIN_SESSION_TIMEOUT_MS_CONFIG))
+                .groupMaxSessionTimeoutMs(intValue(values, GROUP_MAX_SESSION_TIMEOUT_MS_CONFIG))
+                .build();
+        try {
+            config.logConfig();
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(LOG_CLEANUP_POLICY_CONFIG, config.cleanupPolicy(), e.getMessage());
+        }
+        return config;
+    }
+
+    /**
+     * @return The storage settings every partition log is opened with.
+     */
+    public LogConfig logConfig() {
+        return LogConfig.builder()
+                .segmentBytes(segmentBytes)
+                .segmentMs(segmentMs)
+                .indexIntervalBytes(LogConfig.DEFAULT_INDEX_INTERVAL_BYTES)
+                .maxIndexSize(LogConfig.DEFAULT_MAX_INDEX_SIZE)
+                .flushIntervalMs(flushIntervalMs)
+                .flushIntervalBytes(flushIntervalBytes)
+                .cleanupPolicy(cleanupPolicy)
+                .retentionMs(retentionMs)
+                .retentionBytes(retentionBytes)
+                .deleteRetentionMs(deleteRetentionMs)
+                .minCleanableRatio(minCleanableRatio)
+                .fileDeleteDelayMs(segmentDeleteDelayMs)
+                .build();
+    }
+
+    /**
+     * @return The settings of the log cleaner, which compacts the logs with the compact policy.
+     */
+    public CleanerConfig cleanerConfig() {
+        return CleanerConfig.builder()
+                .enableCleaner(logCleanerEnable)
+                .numThreads(cleanerThreads)
+                .dedupeBufferSize(cleanerDedupeBufferSize)
+                .ioBufferSize(cleanerIoBufferSize)
+                .maxIoBytesPerSecond(cleanerIoMaxBytesPerSecond)
+                .backoffMs(cleanerBackoffMs)
+                .build();
+    }
+
+    private static int intValue(Map<String, Object> values, String name) {
+        Object value = values.get(name);
+        return value == null ? 0 : (Integer) value;
+    }
+
+    private static long longValue(Map<String, Object> values, String name) {
+        Object value = values.get(name);
+        return value == null ? 0 : (Long) value;
+    }
+
+    private static double doubleValue(Map<String, Object> values, String name) {
+        Object value = values.get(name);
+        return value == null ? 0 : (Double) value;
+    }
+
+}
@@ -0,0 +1,171 @@
+package core;
+
+import codec.FileRegions;
+import core.handler.RequestHandler;
+import core.handler.RequestHandlerFactory;
+import core.network.ByteBufferSend;
+import core.network.FileRegionSend;
+import core.network.MeteredSend;
+import core.network.Send;
+import exceptions.ApiException;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import metrics.RequestMetrics;
+import quota.ClientQuotaManager;
+import quota.ThrottleCallback;
+import schema.VersionRange;
+import util.BufferPool;
+import util.Encoder;
+import util.Parser;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a raw, size-prefixed request frame into the response frame to send back, recording the request's
+ * latency breakdown in the {@link RequestMetrics} of its api version and its bytes against its client's quotas.
+ */
+public class RequestDispatcher {
+
+    private static final int SIZE_PREFIX_BYTES = 4;
+
+    private final BufferPool bufferPool;
+    // Indexed by api key and version, built once the handlers are frozen
+    private final RequestMetrics[][] requestMetrics;
+    private final ClientQuotaManager quotaManager;
+
+    public RequestDispatcher() {
+        this(new ClientQuotaManager(0, 0, BrokerMetrics.registry()), new BufferPool(64));
+    }
+
+    /**
+     * @param bufferPool The pool responses are encoded into, and returned to once sent.
+     */
+    public RequestDispatcher(ClientQuotaManager quotaManager, BufferPool bufferPool) {
+        this.quotaManager = quotaManager;
+        this.bufferPool = bufferPool;
+        int maxApiKey = RequestHandlerFactory.getRegisteredHandlers().stream().mapToInt(RequestHandler::apiKey).max().orElse(-1);
+        requestMetrics = new RequestMetrics[maxApiKey + 1][];
+        for (RequestHandler handler : RequestHandlerFactory.getRegisteredHandlers()) {
+            VersionRange versions = handler.supportedVersions();
+            RequestMetrics[] byVersion = new RequestMetrics[versions.max() + 1];
+            for (short version = versions.min(); version <= versions.max(); version++) {
+                byVersion[version] = new RequestMetrics(BrokerMetrics.registry(), handler.apiSchema().name(), version);
+            }
+            requestMetrics[handler.apiKey()] = byVersion;
+        }
+    }
+
+    public CompletableFuture<Send> dispatch(ByteBuffer frame) {
+        return dispatch(frame, System.nanoTime());
+    }
+
+    /**
+     * Parses the frame, routes it to the handler registered for its api key and encodes the response.
+     *
+     * @param frame         The request frame, including its 4-byte size prefix. Parsed in place without copying.
+     * @param receivedNanos When the frame was read off the socket, as given by {@link System#nanoTime()}.
+     * @return A future of the encoded response, with record data from the log sent zero-copy, or of {@code null}
+     * if the request expects none. Usually already complete; requests that wait on the log complete it later.
+     * @throws exceptions.InvalidRequestException if the frame is malformed or no handler exists for it.
+     */
+    public CompletableFuture<Send> dispatch(ByteBuffer frame, long receivedNanos) {
+        return dispatch(parse(frame), receivedNanos, ThrottleCallback.NONE);
+    }
+
+    /**
+     * @param throttleCallback Told how long to stop reading from the connection if the request takes its client
+     *                         over a quota, before the handler runs.
+     * @see #dispatch(ByteBuffer, long)
+     */
+    public CompletableFuture<Send> dispatch(ByteBuffer frame, long receivedNanos, ThrottleCallback throttleCallback) {
+        return dispatch(parse(frame), receivedNanos, throttleCallback);
+    }
+
+    /**
+     * Parses the common request header of a frame, counting malformed frames as errors.
+     *
+     * @throws exceptions.InvalidRequestException if the frame is malformed.
+     */
+    public RequestInfo parse(ByteBuffer frame) {
+        try {
+            return Parser.parseCommons(frame);
+        } catch (ApiException e) {
+            BrokerMetrics.recordError(e.getErrorCode());
+            throw e;
+        }
+    }
+
+    /**
+     * Routes a request whose header was already parsed, e.g. by a network thread, to its handler and encodes
+     * the response.
+     *
+     * @see #dispatch(ByteBuffer, long, ThrottleCallback)
+     */
+    public CompletableFuture<Send> dispatch(RequestInfo requestInfo, long receivedNanos, ThrottleCallback throttleCallback) {
+        long startNanos = System.nanoTime();
+        int sizeInBytes = SIZE_PREFIX_BYTES + requestInfo.messageSize();
+        BrokerMetrics.recordBytesIn(sizeInBytes);
+        String clientId = requestInfo.clientId().orElse("");
+        int throttleTimeMs = quotaManager.recordRequest(clientId, sizeInBytes, TimeUnit.NANOSECONDS.toMillis(startNanos), throttleCallback);
+        RequestHandler handler;
+        try {
+            handler = RequestHandlerFactory.getRequestHandler(requestInfo);
+        } catch (ApiException e) {
+            BrokerMetrics.recordError(e.getErrorCode());
+            throw e;
+        }
+        RequestMetrics metrics = metricsFor(requestInfo);
+        if (metrics != null) {
+            metrics.recordReceived(receivedNanos, startNanos);
+        }
+        CompletableFuture<ResponseMessage> response = handler.handleRequestAsync(requestInfo);
+        long handledNanos = System.nanoTime();
+        return response.thenApply(message -> {
+            long completedNanos = System.nanoTime();
+            if (message != null && throttleTimeMs > 0) {
+                message = message.withThrottleTimeMs(throttleTimeMs);
+            }
+            Send send = encode(message, metrics, receivedNanos, clientId);
+            long readyNanos = System.nanoTime();
+            if (metrics != null) {
+                metrics.recordHandled(handledNanos - startNanos + readyNanos - completedNanos, completedNanos - handledNanos);
+                if (send == null) {
+                    metrics.recordCompleted(receivedNanos, readyNanos, readyNanos);
+                }
+            }
+            return send;
+        });
+    }
+
+    private RequestMetrics metricsFor(RequestInfo requestInfo) {
+        short apiKey = requestInfo.requestApiKey();
+        short version = requestInfo.requestApiVersion();
+        if (apiKey < 0 || apiKey >= requestMetrics.length || requestMetrics[apiKey] == null) {
+            return null;
+        }
+        RequestMetrics[] byVersion = requestMetrics[apiKey];
+        return version >= 0 && version < byVersion.length ? byVersion[version] : null;
+    }
+
+    private Send encode(ResponseMessage response, RequestMetrics metrics, long receivedNanos, String clientId) {
+        if (response == null) {
+            return null;
+        }
+        FileRegions fileRegions = FileRegions.begin();
+        try {
+            ByteBuffer encoded = Encoder.encode(response, bufferPool, fileRegions);
+            long sizeInBytes = encoded.remaining() + fileRegions.sizedBytes();
+            quotaManager.recordResponse(clientId, sizeInBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+            Send send = fileRegions.isEmpty()
+                    ? new ByteBufferSend(bufferPool, encoded)
+                    : new FileRegionSend(bufferPool, encoded, fileRegions.regions());
+            return new MeteredSend(send, metrics, sizeInBytes, receivedNanos, System.nanoTime());
+        } finally {
+            fileRegions.end();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package core;
+
+import core.network.RequestChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of threads that take requests from the {@link RequestChannel} and run them through the
+ * {@link RequestDispatcher}, keeping handler work off the network threads. The pool can be {@link #resize(int) resized}
+ * while it runs.
+ */
+@Slf4j
+public final class RequestHandlerPool {
+
+    private static final long POLL_TIMEOUT_MS = 300;
+
+    private final RequestChannel requestChannel;
+    private final RequestDispatcher dispatcher;
+    private final List<Worker> workers = new ArrayList<>();
+    private int nextWorkerId;
+
+    private static final class Worker {
+        private volatile boolean running = true;
+        private Thread thread;
+    }
+
+    public RequestHandlerPool(int numThreads, RequestChannel requestChannel, RequestDispatcher dispatcher) {
+        this.requestChannel = requestChannel;
+        this.dispatcher = dispatcher;
+        resize(numThreads);
+    }
+
+    /**
+     * Starts or stops threads until {@code numThreads} are left. Stopped threads finish the request they are
+     * running rather than being interrupted, which would close the log files they may be writing to.
+     */
+    public synchronized void resize(int numThreads) {
+        while (workers.size() < numThreads) {
+            Worker worker = new Worker();
+            worker.thread = Thread.ofPlatform().name("request-handler-" + nextWorkerId++).daemon().start(() -> run(worker));
+            workers.add(worker);
+        }
+        while (workers.size() > numThreads) {
+            workers.removeLast().running = false;
+        }
+    }
+
+    public synchronized int size() {
+        return workers.size();
+    }
+
+    private void run(Worker worker) {
+        while (worker.running) {
+            RequestChannel.Request request;
+            try {
+                request = requestChannel.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == null) {
+                continue;
+            }
+            try {
+                dispatcher.dispatch(request.requestInfo(), request.receivedNanos(), request.connection()::throttle).whenComplete((send, error) -> {
+                    if (error != null) {
+                        request.response().completeExceptionally(error);
+                    } else {
+                        request.response().complete(send);
+                    }
+                });
+            } catch (Exception e) {
+                request.response().completeExceptionally(e);
+            } finally {
+                // The response may still be waiting on the log, but the connection's next request can be handled now
+                request.processor().requestHandled(request.connection());
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        for (Worker worker : workers) {
+            worker.running = false;
+            worker.thread.interrupt();
+        }
+        workers.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Selects how the broker serves client connections.
+ */
+public enum ServerMode {
+    /** An acceptor plus a fixed number of selector threads, each multiplexing many connections. */
+    SELECTOR("selector"),
+    /** One virtual thread per connection reading frames with blocking I/O. */
+    THREAD_PER_CONNECTION("thread_per_connection");
+
+    private final String configName;
+
+    ServerMode(String configName) {
+        this.configName = configName;
+    }
+
+    public static ServerMode fromConfigName(String name) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.configName.equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown server mode: " + name));
+    }
+}
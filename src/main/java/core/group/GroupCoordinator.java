@@ -0,0 +1,558 @@
+package core.group;
+
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import exceptions.ErrorCode;
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coordinates consumer groups: runs the JoinGroup and SyncGroup rounds of a rebalance, expires members whose
+ * session lapses, and checks offset commits against the group's generation before handing them to the
+ * {@link OffsetStore}.
+ * <p>
+ * Each group is guarded by its own monitor, so groups never contend. Session and rebalance timeouts are delayed
+ * operations in purgatories, whose timing wheels make a heartbeat cost one timer task rather than a thread or an
+ * executor entry. Operations are only ever checked while holding the monitor of their group, so the group monitor is
+ * always taken before an operation's lock. Group membership is kept in memory only: after a restart, members find
+ * their ids unknown and join again, while their committed offsets are loaded back by the offset store. A group
+ * that is left without members, member ids handed out or committed offsets is removed, so the groups consumers
+ * pass through do not pile up.
+ */
+@Slf4j
+public class GroupCoordinator implements Closeable {
+
+    /**
+     * A partition assignment protocol a member supports, e.g. {@code range}, with the member's metadata for it.
+     */
+    public record Protocol(String name, ByteBuffer metadata) {
+    }
+
+    /**
+     * A member of a new generation, as its leader is told about it.
+     */
+    public record Member(String memberId, ByteBuffer metadata) {
+    }
+
+    /**
+     * @param members Every member with its metadata for the selected protocol, for the leader only.
+     */
+    public record JoinResult(ErrorCode error, int generationId, String protocolType, String protocolName,
+                             String leaderId, String memberId, List<Member> members) {
+
+        static JoinResult error(ErrorCode error, String memberId) {
+            return new JoinResult(error, NO_GENERATION, null, null, "", memberId, List.of());
+        }
+    }
+
+    public record SyncResult(ErrorCode error, String protocolType, String protocolName, ByteBuffer assignment) {
+
+        static SyncResult error(ErrorCode error) {
+            return new SyncResult(error, null, null, MemberMetadata.NO_ASSIGNMENT);
+        }
+    }
+
+    private record MemberKey(String groupId, String memberId) {
+    }
+
+    public static final int NO_GENERATION = -1;
+    private static final long PENDING_MEMBER = -1L;
+
+    private final Map<String, GroupMetadata> groups = new ConcurrentHashMap<>();
+    private final OffsetStore offsetStore;
+    private final int minSessionTimeoutMs;
+    private final int maxSessionTimeoutMs;
+    private final DelayedOperationPurgatory<DelayedOperation> heartbeatPurgatory = new DelayedOperationPurgatory<>("heartbeat");
+    private final DelayedOperationPurgatory<DelayedOperation> rebalancePurgatory = new DelayedOperationPurgatory<>("rebalance");
+
+    /**
+     * @param minSessionTimeoutMs The shortest session timeout a member may ask for.
+     * @param maxSessionTimeoutMs The longest session timeout a member may ask for.
+     */
+    public GroupCoordinator(OffsetStore offsetStore, int minSessionTimeoutMs, int maxSessionTimeoutMs) {
+        this.offsetStore = offsetStore;
+        this.minSessionTimeoutMs = minSessionTimeoutMs;
+        this.maxSessionTimeoutMs = maxSessionTimeoutMs;
+    }
+
+    public int numGroups() {
+        return groups.size();
+    }
+
+    /**
+     * Adds a member to a group, or takes a known member's rejoin, and completes once the group's next generation is
+     * formed. A member joining without an id is given one; if {@code requireKnownMemberId} is set, it gets it in a
+     * MEMBER_ID_REQUIRED response and has to join again with it.
+     *
+     * @param memberId An empty string for a new member.
+     */
+    public CompletableFuture<JoinResult> joinGroup(String groupId, String memberId, String clientId, int sessionTimeoutMs,
+                                                   int rebalanceTimeoutMs, String protocolType, List<Protocol> protocols,
+                                                   boolean requireKnownMemberId) {
+        if (!isValidGroupId(groupId)) {
+            return CompletableFuture.completedFuture(JoinResult.error(ErrorCode.INVALID_GROUP_ID, memberId));
+        }
+        if (sessionTimeoutMs < minSessionTimeoutMs || sessionTimeoutMs > maxSessionTimeoutMs) {
+            return CompletableFuture.completedFuture(JoinResult.error(ErrorCode.INVALID_SESSION_TIMEOUT, memberId));
+        }
+        boolean newMember = memberId.isEmpty();
+        GroupMetadata group = newMember ? groups.computeIfAbsent(groupId, GroupMetadata::new) : groups.get(groupId);
+        if (group == null) {
+            return CompletableFuture.completedFuture(JoinResult.error(ErrorCode.UNKNOWN_MEMBER_ID, memberId));
+        }
+        CompletableFuture<JoinResult> result = new CompletableFuture<>();
+        synchronized (group) {
+            if (group.state == GroupState.DEAD) {
+                // Removed since it was looked up; the client retries and finds or creates the group anew
+                result.complete(JoinResult.error(ErrorCode.COORDINATOR_NOT_AVAILABLE, memberId));
+                return result;
+            }
+            MemberMetadata member = group.members.get(memberId);
+            // A group's only member may switch to protocols nobody else has to share
+            boolean onlyMember = member != null && group.members.size() == 1;
+            if (!onlyMember && !group.supportsProtocols(protocolType, protocols)) {
+                result.complete(JoinResult.error(ErrorCode.INCONSISTENT_GROUP_PROTOCOL, memberId));
+            } else if (newMember) {
+                String newMemberId = (clientId == null ? "" : clientId) + "-" + UUID.randomUUID();
+                if (requireKnownMemberId) {
+                    group.pendingMembers.add(newMemberId);
+                    MemberKey key = new MemberKey(groupId, newMemberId);
+                    heartbeatPurgatory.tryCompleteElseWatch(
+                            new DelayedHeartbeat(group, newMemberId, PENDING_MEMBER, sessionTimeoutMs), List.of(key));
+                    result.complete(JoinResult.error(ErrorCode.MEMBER_ID_REQUIRED, newMemberId));
+                } else {
+                    addMemberAndRebalance(group, newMemberId, clientId, sessionTimeoutMs, rebalanceTimeoutMs, protocolType, protocols, result);
+                }
+            } else if (group.pendingMembers.remove(memberId)) {
+                addMemberAndRebalance(group, memberId, clientId, sessionTimeoutMs, rebalanceTimeoutMs, protocolType, protocols, result);
+            } else if (member == null) {
+                result.complete(JoinResult.error(ErrorCode.UNKNOWN_MEMBER_ID, memberId));
+            } else {
+                switch (group.state) {
+                    case PREPARING_REBALANCE ->
+                            updateMemberAndRebalance(group, member, sessionTimeoutMs, rebalanceTimeoutMs, protocols, result);
+                    case COMPLETING_REBALANCE -> {
+                        // A rejoin that changes nothing, e.g. after a lost response, gets the generation it already is in
+                        if (member.matches(protocols)) {
+                            result.complete(joinResult(group, member.memberId, group.isLeader(memberId) ? members(group) : List.of()));
+                        } else {
+                            updateMemberAndRebalance(group, member, sessionTimeoutMs, rebalanceTimeoutMs, protocols, result);
+                        }
+                    }
+                    case STABLE -> {
+                        // The leader rejoining a stable group asks for a new assignment, e.g. because topics changed
+                        if (!group.isLeader(memberId) && member.matches(protocols)) {
+                            result.complete(joinResult(group, member.memberId, List.of()));
+                        } else {
+                            updateMemberAndRebalance(group, member, sessionTimeoutMs, rebalanceTimeoutMs, protocols, result);
+                        }
+                    }
+                    case EMPTY, DEAD -> result.complete(JoinResult.error(ErrorCode.UNKNOWN_MEMBER_ID, memberId));
+                }
+            }
+            // A join that was turned away may leave behind the group it created
+            removeGroupIfEmpty(group);
+        }
+        return result;
+    }
+
+    /**
+     * Hands out the assignments of the current generation. The leader's SyncGroup carries them for every member and
+     * completes the rebalance; the other members wait for it.
+     */
+    public CompletableFuture<SyncResult> syncGroup(String groupId, int generationId, String memberId,
+                                                   Map<String, ByteBuffer> assignments) {
+        GroupMetadata group = isValidGroupId(groupId) ? groups.get(groupId) : null;
+        if (group == null) {
+            return CompletableFuture.completedFuture(SyncResult.error(
+                    isValidGroupId(groupId) ? ErrorCode.UNKNOWN_MEMBER_ID : ErrorCode.INVALID_GROUP_ID));
+        }
+        CompletableFuture<SyncResult> result = new CompletableFuture<>();
+        synchronized (group) {
+            MemberMetadata member = group.members.get(memberId);
+            if (member == null) {
+                result.complete(SyncResult.error(ErrorCode.UNKNOWN_MEMBER_ID));
+            } else if (generationId != group.generationId) {
+                result.complete(SyncResult.error(ErrorCode.ILLEGAL_GENERATION));
+            } else {
+                switch (group.state) {
+                    case EMPTY, DEAD -> result.complete(SyncResult.error(ErrorCode.UNKNOWN_MEMBER_ID));
+                    case PREPARING_REBALANCE -> result.complete(SyncResult.error(ErrorCode.REBALANCE_IN_PROGRESS));
+                    case COMPLETING_REBALANCE -> {
+                        // The member's session resumes once its response is sent
+                        member.awaitingSync = result;
+                        if (group.isLeader(memberId)) {
+                            completeSync(group, assignments);
+                        }
+                    }
+                    case STABLE -> {
+                        scheduleNextHeartbeat(group, member);
+                        result.complete(new SyncResult(ErrorCode.NONE, group.protocolType, group.protocolName, member.assignment));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps a member's session alive. REBALANCE_IN_PROGRESS tells the member to join again.
+     */
+    public ErrorCode heartbeat(String groupId, String memberId, int generationId) {
+        if (!isValidGroupId(groupId)) {
+            return ErrorCode.INVALID_GROUP_ID;
+        }
+        GroupMetadata group = groups.get(groupId);
+        if (group == null) {
+            return ErrorCode.UNKNOWN_MEMBER_ID;
+        }
+        synchronized (group) {
+            MemberMetadata member = group.members.get(memberId);
+            if (member == null || group.state == GroupState.EMPTY || group.state == GroupState.DEAD) {
+                return ErrorCode.UNKNOWN_MEMBER_ID;
+            }
+            if (generationId != group.generationId) {
+                return ErrorCode.ILLEGAL_GENERATION;
+            }
+            scheduleNextHeartbeat(group, member);
+            return group.state == GroupState.PREPARING_REBALANCE ? ErrorCode.REBALANCE_IN_PROGRESS : ErrorCode.NONE;
+        }
+    }
+
+    /**
+     * Removes a member that is shutting down, so the group rebalances right away instead of after its session timeout.
+     */
+    public ErrorCode leaveGroup(String groupId, String memberId) {
+        if (!isValidGroupId(groupId)) {
+            return ErrorCode.INVALID_GROUP_ID;
+        }
+        GroupMetadata group = groups.get(groupId);
+        if (group == null) {
+            return ErrorCode.UNKNOWN_MEMBER_ID;
+        }
+        synchronized (group) {
+            if (group.pendingMembers.remove(memberId)) {
+                heartbeatPurgatory.checkAndComplete(new MemberKey(groupId, memberId));
+                removeGroupIfEmpty(group);
+                return ErrorCode.NONE;
+            }
+            MemberMetadata member = group.members.get(memberId);
+            if (member == null) {
+                return ErrorCode.UNKNOWN_MEMBER_ID;
+            }
+            log.info("Member {} is leaving group {}", memberId, groupId);
+            if (member.awaitingJoin != null) {
+                member.awaitingJoin.complete(JoinResult.error(ErrorCode.UNKNOWN_MEMBER_ID, memberId));
+                member.awaitingJoin = null;
+            }
+            if (member.awaitingSync != null) {
+                member.awaitingSync.complete(SyncResult.error(ErrorCode.UNKNOWN_MEMBER_ID));
+                member.awaitingSync = null;
+            }
+            removeMemberAndRebalance(group, member);
+            return ErrorCode.NONE;
+        }
+    }
+
+    /**
+     * Commits offsets for a member of the group's current generation or, with a negative generation, for a client
+     * that manages its partitions itself while the group has no members. A commit also keeps the member's session
+     * alive. The offsets are queued for the offset store and never wait on the log on the calling thread.
+     *
+     * @return A future of the error of the commit as a whole, completed once the offsets are stored.
+     */
+    public CompletableFuture<ErrorCode> commitOffsets(String groupId, String memberId, int generationId,
+                                                      Map<TopicPartition, OffsetAndMetadata> offsets) {
+        if (!isValidGroupId(groupId)) {
+            return CompletableFuture.completedFuture(ErrorCode.INVALID_GROUP_ID);
+        }
+        GroupMetadata group = groups.get(groupId);
+        ErrorCode error;
+        if (group == null) {
+            error = generationId < 0 ? ErrorCode.NONE : ErrorCode.ILLEGAL_GENERATION;
+        } else {
+            synchronized (group) {
+                error = validateCommit(group, memberId, generationId);
+            }
+        }
+        if (error != ErrorCode.NONE) {
+            return CompletableFuture.completedFuture(error);
+        }
+        return offsetStore.commit(groupId, offsets)
+                .handle((ignored, e) -> e == null ? ErrorCode.NONE : ErrorCode.COORDINATOR_NOT_AVAILABLE);
+    }
+
+    private ErrorCode validateCommit(GroupMetadata group, String memberId, int generationId) {
+        if (generationId < 0 && (group.state == GroupState.EMPTY || group.state == GroupState.DEAD)) {
+            return ErrorCode.NONE;
+        }
+        MemberMetadata member = group.members.get(memberId);
+        if (member == null) {
+            return ErrorCode.UNKNOWN_MEMBER_ID;
+        }
+        if (generationId != group.generationId) {
+            return ErrorCode.ILLEGAL_GENERATION;
+        }
+        if (group.state == GroupState.COMPLETING_REBALANCE) {
+            return ErrorCode.REBALANCE_IN_PROGRESS;
+        }
+        scheduleNextHeartbeat(group, member);
+        return ErrorCode.NONE;
+    }
+
+    /**
+     * @return The offset the group last committed for the partition, or {@code null} if it has none.
+     */
+    public OffsetAndMetadata fetchOffset(String groupId, TopicPartition topicPartition) {
+        return offsetStore.fetch(groupId, topicPartition);
+    }
+
+    public Map<TopicPartition, OffsetAndMetadata> fetchAllOffsets(String groupId) {
+        return offsetStore.fetchAll(groupId);
+    }
+
+    public static boolean isValidGroupId(String groupId) {
+        return groupId != null && !groupId.isEmpty();
+    }
+
+    private void addMemberAndRebalance(GroupMetadata group, String memberId, String clientId, int sessionTimeoutMs,
+                                       int rebalanceTimeoutMs, String protocolType, List<Protocol> protocols,
+                                       CompletableFuture<JoinResult> result) {
+        MemberMetadata member = new MemberMetadata(memberId, clientId, sessionTimeoutMs, rebalanceTimeoutMs, copyOf(protocols));
+        member.awaitingJoin = result;
+        group.add(member, protocolType);
+        log.info("Member {} joined group {}", memberId, group.groupId);
+        rebalance(group);
+    }
+
+    private void updateMemberAndRebalance(GroupMetadata group, MemberMetadata member, int sessionTimeoutMs,
+                                          int rebalanceTimeoutMs, List<Protocol> protocols,
+                                          CompletableFuture<JoinResult> result) {
+        member.sessionTimeoutMs = sessionTimeoutMs;
+        member.rebalanceTimeoutMs = rebalanceTimeoutMs;
+        member.protocols = copyOf(protocols);
+        member.awaitingJoin = result;
+        rebalance(group);
+    }
+
+    private void removeMemberAndRebalance(GroupMetadata group, MemberMetadata member) {
+        group.remove(member.memberId);
+        heartbeatPurgatory.checkAndComplete(new MemberKey(group.groupId, member.memberId));
+        if (group.state != GroupState.EMPTY) {
+            rebalance(group);
+        }
+    }
+
+    /**
+     * Starts a rebalance, or lets the one under way check whether every member has rejoined.
+     */
+    private void rebalance(GroupMetadata group) {
+        if (group.state == GroupState.PREPARING_REBALANCE) {
+            rebalancePurgatory.checkAndComplete(group.groupId);
+            return;
+        }
+        if (group.state == GroupState.COMPLETING_REBALANCE) {
+            // The assignments the leader is computing are for a membership that no longer holds
+            for (MemberMetadata member : group.members.values()) {
+                if (member.awaitingSync != null) {
+                    member.awaitingSync.complete(SyncResult.error(ErrorCode.REBALANCE_IN_PROGRESS));
+                    member.awaitingSync = null;
+                }
+            }
+        }
+        group.state = GroupState.PREPARING_REBALANCE;
+        log.info("Preparing to rebalance group {} with {} members in generation {}", group.groupId, group.members.size(), group.generationId);
+        rebalancePurgatory.tryCompleteElseWatch(new DelayedJoin(group, group.rebalanceTimeoutMs()), List.of(group.groupId));
+    }
+
+    /**
+     * Forms the next generation out of the members that rejoined and answers their JoinGroup requests; the leader's
+     * response lists every member. Members that did not rejoin in time are dropped.
+     */
+    private void completeJoin(GroupMetadata group) {
+        if (group.state != GroupState.PREPARING_REBALANCE) {
+            return;
+        }
+        for (MemberMetadata member : List.copyOf(group.members.values())) {
+            if (member.awaitingJoin == null) {
+                log.info("Removing member {} from group {}, it did not rejoin in time", member.memberId, group.groupId);
+                group.remove(member.memberId);
+                heartbeatPurgatory.checkAndComplete(new MemberKey(group.groupId, member.memberId));
+            }
+        }
+        group.generationId++;
+        if (group.members.isEmpty()) {
+            group.state = GroupState.EMPTY;
+            group.protocolType = null;
+            group.protocolName = null;
+            log.info("Group {} with generation {} is now empty", group.groupId, group.generationId);
+            removeGroupIfEmpty(group);
+            return;
+        }
+        group.protocolName = group.selectProtocol();
+        group.state = GroupState.COMPLETING_REBALANCE;
+        log.info("Stabilized group {} generation {} with {} members", group.groupId, group.generationId, group.members.size());
+        List<Member> members = members(group);
+        for (MemberMetadata member : group.members.values()) {
+            CompletableFuture<JoinResult> awaitingJoin = member.awaitingJoin;
+            member.awaitingJoin = null;
+            scheduleNextHeartbeat(group, member);
+            awaitingJoin.complete(joinResult(group, member.memberId, group.isLeader(member.memberId) ? members : List.of()));
+        }
+    }
+
+    /**
+     * Removes a group that has no members, no member ids handed out and no committed offsets. It is marked
+     * {@link GroupState#DEAD}, so a request that looked it up just before sees that it has to look again.
+     */
+    private void removeGroupIfEmpty(GroupMetadata group) {
+        if (group.state == GroupState.EMPTY && group.pendingMembers.isEmpty() && !offsetStore.hasOffsets(group.groupId)) {
+            group.state = GroupState.DEAD;
+            groups.remove(group.groupId, group);
+            log.info("Removed group {}, it has no members and no committed offsets", group.groupId);
+        }
+    }
+
+    private void completeSync(GroupMetadata group, Map<String, ByteBuffer> assignments) {
+        for (MemberMetadata member : group.members.values()) {
+            ByteBuffer assignment = assignments.get(member.memberId);
+            member.assignment = assignment == null ? MemberMetadata.NO_ASSIGNMENT : copyOf(assignment);
+        }
+        group.state = GroupState.STABLE;
+        for (MemberMetadata member : group.members.values()) {
+            if (member.awaitingSync != null) {
+                CompletableFuture<SyncResult> awaitingSync = member.awaitingSync;
+                member.awaitingSync = null;
+                scheduleNextHeartbeat(group, member);
+                awaitingSync.complete(new SyncResult(ErrorCode.NONE, group.protocolType, group.protocolName, member.assignment));
+            }
+        }
+    }
+
+    // Request buffers are reused once the request is handled, so whatever a group keeps is copied out of them
+    private static List<Protocol> copyOf(List<Protocol> protocols) {
+        return protocols.stream()
+                .map(protocol -> new Protocol(protocol.name(), protocol.metadata() == null ? null : copyOf(protocol.metadata())))
+                .toList();
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        return ByteBuffer.allocate(buffer.remaining()).put(buffer.duplicate()).flip();
+    }
+
+    private static JoinResult joinResult(GroupMetadata group, String memberId, List<Member> members) {
+        return new JoinResult(ErrorCode.NONE, group.generationId, group.protocolType, group.protocolName,
+                group.leaderId, memberId, members);
+    }
+
+    private static List<Member> members(GroupMetadata group) {
+        List<Member> members = new ArrayList<>(group.members.size());
+        for (MemberMetadata member : group.members.values()) {
+            members.add(new Member(member.memberId, member.metadataFor(group.protocolName)));
+        }
+        return members;
+    }
+
+    /**
+     * Completes the member's current session timeout and starts the next one.
+     */
+    private void scheduleNextHeartbeat(GroupMetadata group, MemberMetadata member) {
+        member.heartbeatSequence++;
+        MemberKey key = new MemberKey(group.groupId, member.memberId);
+        heartbeatPurgatory.checkAndComplete(key);
+        heartbeatPurgatory.tryCompleteElseWatch(
+                new DelayedHeartbeat(group, member.memberId, member.heartbeatSequence, member.sessionTimeoutMs), List.of(key));
+    }
+
+    /**
+     * The session timeout of a member, or of a member id handed out in a MEMBER_ID_REQUIRED response. It completes
+     * quietly once the member shows a sign of life or leaves, and removes the member if it expires first.
+     */
+    private final class DelayedHeartbeat extends DelayedOperation {
+        private final GroupMetadata group;
+        private final String memberId;
+        private final long heartbeatSequence;
+
+        private DelayedHeartbeat(GroupMetadata group, String memberId, long heartbeatSequence, long sessionTimeoutMs) {
+            super(sessionTimeoutMs);
+            this.group = group;
+            this.memberId = memberId;
+            this.heartbeatSequence = heartbeatSequence;
+        }
+
+        @Override
+        public boolean tryComplete() {
+            synchronized (group) {
+                return !isExpired() && forceComplete();
+            }
+        }
+
+        @Override
+        protected void onComplete() {
+        }
+
+        @Override
+        protected void onExpiration() {
+            synchronized (group) {
+                if (!isExpired()) {
+                    return;
+                }
+                if (group.pendingMembers.remove(memberId)) {
+                    removeGroupIfEmpty(group);
+                    return;
+                }
+                log.info("Member {} of group {} has failed, its session expired", memberId, group.groupId);
+                removeMemberAndRebalance(group, group.members.get(memberId));
+            }
+        }
+
+        private boolean isExpired() {
+            MemberMetadata member = group.members.get(memberId);
+            if (member == null) {
+                return heartbeatSequence == PENDING_MEMBER && group.pendingMembers.contains(memberId);
+            }
+            return member.heartbeatSequence == heartbeatSequence && !member.isAwaitingResponse();
+        }
+    }
+
+    /**
+     * A rebalance waiting for every member to rejoin, for at most the longest rebalance timeout of the members.
+     */
+    private final class DelayedJoin extends DelayedOperation {
+        private final GroupMetadata group;
+
+        private DelayedJoin(GroupMetadata group, long rebalanceTimeoutMs) {
+            super(rebalanceTimeoutMs);
+            this.group = group;
+        }
+
+        @Override
+        public boolean tryComplete() {
+            synchronized (group) {
+                return group.allMembersRejoined() && forceComplete();
+            }
+        }
+
+        @Override
+        protected void onComplete() {
+            synchronized (group) {
+                completeJoin(group);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeatPurgatory.close();
+        rebalancePurgatory.close();
+    }
+}
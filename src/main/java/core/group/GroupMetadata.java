@@ -0,0 +1,111 @@
+package core.group;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The membership of a group and the state of its rebalance. Every field is guarded by the group's own monitor, so
+ * groups never contend with each other.
+ */
+final class GroupMetadata {
+
+    final String groupId;
+    GroupState state = GroupState.EMPTY;
+    int generationId;
+    String protocolType;
+    String protocolName;
+    String leaderId;
+    // In join order, so the first member to join leads
+    final Map<String, MemberMetadata> members = new LinkedHashMap<>();
+    // Member ids handed out to joining members that have not rejoined with them yet
+    final Set<String> pendingMembers = new HashSet<>();
+
+    GroupMetadata(String groupId) {
+        this.groupId = groupId;
+    }
+
+    boolean isLeader(String memberId) {
+        return memberId.equals(leaderId);
+    }
+
+    /**
+     * Adds a member; the first one also sets the protocol type every later one must share.
+     */
+    void add(MemberMetadata member, String memberProtocolType) {
+        if (members.isEmpty()) {
+            protocolType = memberProtocolType;
+        }
+        members.put(member.memberId, member);
+        if (leaderId == null) {
+            leaderId = member.memberId;
+        }
+    }
+
+    void remove(String memberId) {
+        members.remove(memberId);
+        if (isLeader(memberId)) {
+            leaderId = members.isEmpty() ? null : members.keySet().iterator().next();
+        }
+    }
+
+    /**
+     * @return Whether a member with these protocols may join: the first one only needs to name a protocol type and a
+     * protocol, later ones must share the type and support a protocol every current member supports.
+     */
+    boolean supportsProtocols(String memberProtocolType, List<GroupCoordinator.Protocol> memberProtocols) {
+        if (memberProtocolType == null || memberProtocolType.isEmpty() || memberProtocols.isEmpty()) {
+            return false;
+        }
+        if (members.isEmpty()) {
+            return true;
+        }
+        if (!memberProtocolType.equals(protocolType)) {
+            return false;
+        }
+        Set<String> candidates = candidateProtocols();
+        return memberProtocols.stream().anyMatch(protocol -> candidates.contains(protocol.name()));
+    }
+
+    boolean allMembersRejoined() {
+        return members.values().stream().allMatch(member -> member.awaitingJoin != null);
+    }
+
+    int rebalanceTimeoutMs() {
+        return members.values().stream().mapToInt(member -> member.rebalanceTimeoutMs).max().orElse(0);
+    }
+
+    /**
+     * Picks the protocol of the new generation: every member votes for the first of its protocols that all members
+     * support, and the one with the most votes wins.
+     */
+    String selectProtocol() {
+        Set<String> candidates = candidateProtocols();
+        Map<String, Integer> votes = new HashMap<>();
+        for (MemberMetadata member : members.values()) {
+            member.protocols.stream()
+                    .map(GroupCoordinator.Protocol::name)
+                    .filter(candidates::contains)
+                    .findFirst()
+                    .ifPresent(name -> votes.merge(name, 1, Integer::sum));
+        }
+        return votes.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElseThrow();
+    }
+
+    private Set<String> candidateProtocols() {
+        Set<String> candidates = null;
+        for (MemberMetadata member : members.values()) {
+            Set<String> names = new HashSet<>();
+            member.protocols.forEach(protocol -> names.add(protocol.name()));
+            if (candidates == null) {
+                candidates = names;
+            } else {
+                candidates.retainAll(names);
+            }
+        }
+        return candidates == null ? Set.of() : candidates;
+    }
+}
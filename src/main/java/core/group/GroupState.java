@@ -0,0 +1,28 @@
+package core.group;
+
+/**
+ * The states of a group in the rebalance protocol.
+ */
+enum GroupState {
+    /**
+     * No members, but possibly committed offsets.
+     */
+    EMPTY,
+    /**
+     * Waiting for every member to rejoin, or for the rebalance timeout to drop those that do not.
+     */
+    PREPARING_REBALANCE,
+    /**
+     * The new generation is formed; waiting for the leader to send the assignments in its SyncGroup.
+     */
+    COMPLETING_REBALANCE,
+    /**
+     * Every member has its assignment and keeps its session alive with heartbeats.
+     */
+    STABLE,
+    /**
+     * Removed from the coordinator, having neither members nor committed offsets. A request that still got hold of
+     * the group has to look it up again.
+     */
+    DEAD
+}
@@ -0,0 +1,57 @@
+package core.group;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A member of a group. Guarded by the monitor of its {@link GroupMetadata}.
+ */
+final class MemberMetadata {
+
+    static final ByteBuffer NO_ASSIGNMENT = ByteBuffer.allocate(0);
+
+    final String memberId;
+    final String clientId;
+    int sessionTimeoutMs;
+    int rebalanceTimeoutMs;
+    List<GroupCoordinator.Protocol> protocols;
+    ByteBuffer assignment = NO_ASSIGNMENT;
+    // The pending JoinGroup and SyncGroup responses of the member, if any
+    CompletableFuture<GroupCoordinator.JoinResult> awaitingJoin;
+    CompletableFuture<GroupCoordinator.SyncResult> awaitingSync;
+    // Bumped by every sign of life, so the session timeout scheduled before it knows it is stale
+    long heartbeatSequence;
+
+    MemberMetadata(String memberId, String clientId, int sessionTimeoutMs, int rebalanceTimeoutMs,
+                   List<GroupCoordinator.Protocol> protocols) {
+        this.memberId = memberId;
+        this.clientId = clientId;
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        this.rebalanceTimeoutMs = rebalanceTimeoutMs;
+        this.protocols = protocols;
+    }
+
+    /**
+     * @return The metadata the member sent for {@code protocolName}, or {@code null} if it does not support it.
+     */
+    ByteBuffer metadataFor(String protocolName) {
+        for (GroupCoordinator.Protocol protocol : protocols) {
+            if (protocol.name().equals(protocolName)) {
+                return protocol.metadata();
+            }
+        }
+        return null;
+    }
+
+    boolean matches(List<GroupCoordinator.Protocol> other) {
+        return protocols.equals(other);
+    }
+
+    /**
+     * A member waiting for its JoinGroup or SyncGroup response does not heartbeat, so its session must not expire.
+     */
+    boolean isAwaitingResponse() {
+        return awaitingJoin != null || awaitingSync != null;
+    }
+}
@@ -0,0 +1,14 @@
+package core.group;
+
+/**
+ * An offset committed by a group for one partition.
+ *
+ * @param leaderEpoch     The leader epoch of the last consumed record, or -1 if the client did not send one.
+ * @param metadata        The opaque string the client committed along with the offset, never {@code null}.
+ * @param commitTimestamp When the coordinator accepted the commit.
+ */
+public record OffsetAndMetadata(long offset, int leaderEpoch, String metadata, long commitTimestamp) {
+
+    public static final int NO_LEADER_EPOCH = -1;
+    public static final String NO_METADATA = "";
+}
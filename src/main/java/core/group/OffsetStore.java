@@ -0,0 +1,345 @@
+package core.group;
+
+import exceptions.ApiException;
+import log.FileRecords;
+import log.Log;
+import log.LogConfig;
+import log.LogManager;
+import log.RecordBatch;
+import log.RecordBatchBuilder;
+import log.RecordBatchValidator;
+import log.RecordView;
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+import util.Parser;
+import util.Writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The offsets committed by every group, served from memory and persisted to the compacted {@value #OFFSETS_TOPIC}
+ * topic so they survive restarts. Groups are spread over the partitions of that topic by the hash of their id, and
+ * each partition is a shard with a map of its own, so reading an offset is two hash lookups that never contend with
+ * commits to other shards.
+ * <p>
+ * Commits are queued for a single writer thread, which appends everything queued for a shard as one batch and only
+ * then applies it to the shard's map. Thousands of consumers committing every few seconds thus cost a few appends,
+ * and no request handler thread ever waits on the log. Records use Kafka's key and value formats for offset commits.
+ */
+@Slf4j
+public class OffsetStore implements Closeable {
+
+    public static final String OFFSETS_TOPIC = "__consumer_offsets";
+
+    private static final short OFFSET_COMMIT_KEY_V0 = 0;
+    private static final short OFFSET_COMMIT_KEY_V1 = 1;
+    private static final short OFFSET_COMMIT_VALUE_V1 = 1;
+    private static final short OFFSET_COMMIT_VALUE_V3 = 3;
+    // Batches are cut at this size, so one append never holds the log for long
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+    private record PendingCommit(int shard, String groupId, Map<TopicPartition, OffsetAndMetadata> offsets,
+                                 CompletableFuture<Void> future) {
+    }
+
+    private final LogManager logManager;
+    private final List<Map<String, Map<TopicPartition, OffsetAndMetadata>>> shards;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition commitsQueued = lock.newCondition();
+    private final Thread writer;
+    private List<PendingCommit> pending = new ArrayList<>();
+    private boolean running = true;
+
+    /**
+     * Compacts the offsets topic and loads the offsets committed before the last shutdown.
+     *
+     * @param numPartitions  The partitions of the offsets topic, which must not change once offsets were committed.
+     * @param segmentBytes   The segment size of the offsets topic, kept small so compaction can reclaim space early.
+     * @param loadBufferSize How many bytes are read from the offsets topic at a time while loading.
+     */
+    public OffsetStore(LogManager logManager, int numPartitions, int segmentBytes, int loadBufferSize) throws IOException {
+        this.logManager = logManager;
+        logManager.overrideTopicConfig(OFFSETS_TOPIC, config -> config.toBuilder()
+                .cleanupPolicy(LogConfig.CLEANUP_POLICY_COMPACT)
+                .segmentBytes(segmentBytes)
+                .build());
+        List<Map<String, Map<TopicPartition, OffsetAndMetadata>>> maps = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            maps.add(new ConcurrentHashMap<>());
+        }
+        this.shards = List.copyOf(maps);
+        load(loadBufferSize);
+        this.writer = Thread.ofPlatform().name("offset-commit-writer").daemon().start(this::run);
+    }
+
+    /**
+     * @return The partition of the offsets topic, and so the shard, that holds the offsets of {@code groupId}.
+     */
+    public int partitionFor(String groupId) {
+        return (groupId.hashCode() & 0x7fffffff) % shards.size();
+    }
+
+    /**
+     * @return The offset {@code groupId} last committed for {@code topicPartition}, or {@code null} if it has none.
+     */
+    public OffsetAndMetadata fetch(String groupId, TopicPartition topicPartition) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = shards.get(partitionFor(groupId)).get(groupId);
+        return offsets == null ? null : offsets.get(topicPartition);
+    }
+
+    /**
+     * @return Every offset {@code groupId} committed, by partition.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> fetchAll(String groupId) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = shards.get(partitionFor(groupId)).get(groupId);
+        return offsets == null ? Map.of() : Map.copyOf(offsets);
+    }
+
+    /**
+     * @return Whether {@code groupId} has any committed offset.
+     */
+    public boolean hasOffsets(String groupId) {
+        return shards.get(partitionFor(groupId)).containsKey(groupId);
+    }
+
+    /**
+     * Queues offsets to be written to the offsets topic. They are visible to {@link #fetch} once the future completes.
+     *
+     * @return A future completed once the offsets are appended, or failed with the error that kept them from it.
+     */
+    public CompletableFuture<Void> commit(String groupId, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (offsets.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+        lock.lock();
+        try {
+            if (!running) {
+                future.completeExceptionally(new IOException("The offset store has been shut down"));
+                return future;
+            }
+            if (pending.isEmpty()) {
+                commitsQueued.signal();
+            }
+            pending.add(new PendingCommit(partitionFor(groupId), groupId, offsets, future));
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    private void run() {
+        while (true) {
+            List<PendingCommit> batch;
+            lock.lock();
+            try {
+                while (running && pending.isEmpty()) {
+                    commitsQueued.await();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // Whatever queued up while the last batch was written goes out together
+                batch = pending;
+                pending = new ArrayList<>();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingCommit> batch) {
+        Map<Integer, List<PendingCommit>> byShard = new HashMap<>();
+        for (PendingCommit commit : batch) {
+            byShard.computeIfAbsent(commit.shard(), shard -> new ArrayList<>()).add(commit);
+        }
+        byShard.forEach((shard, commits) -> {
+            RecordBatchBuilder builder = null;
+            List<PendingCommit> inBatch = new ArrayList<>();
+            for (PendingCommit commit : commits) {
+                if (builder == null) {
+                    builder = new RecordBatchBuilder(MAX_BATCH_BYTES / 16);
+                }
+                for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : commit.offsets().entrySet()) {
+                    builder.append(entry.getValue().commitTimestamp(), offsetKey(commit.groupId(), entry.getKey()), offsetValue(entry.getValue()));
+                }
+                inBatch.add(commit);
+                if (builder.sizeInBytes() >= MAX_BATCH_BYTES) {
+                    append(shard, builder.build(), inBatch);
+                    builder = null;
+                    inBatch = new ArrayList<>();
+                }
+            }
+            if (builder != null) {
+                append(shard, builder.build(), inBatch);
+            }
+        });
+    }
+
+    /**
+     * Appends one batch of commits to the shard's partition and applies them to the shard's map.
+     */
+    private void append(int shard, ByteBuffer records, List<PendingCommit> commits) {
+        TopicPartition topicPartition = new TopicPartition(OFFSETS_TOPIC, shard);
+        try {
+            logManager.getOrCreateLog(topicPartition).append(records);
+        } catch (IOException | UncheckedIOException | ApiException e) {
+            log.error("Failed to append {} offset commits to {}", commits.size(), topicPartition, e);
+            commits.forEach(commit -> commit.future().completeExceptionally(e));
+            return;
+        }
+        Map<String, Map<TopicPartition, OffsetAndMetadata>> groups = shards.get(shard);
+        for (PendingCommit commit : commits) {
+            groups.computeIfAbsent(commit.groupId(), groupId -> new ConcurrentHashMap<>()).putAll(commit.offsets());
+            commit.future().complete(null);
+        }
+    }
+
+    private void load(int loadBufferSize) throws IOException {
+        long startNanos = System.nanoTime();
+        int loaded = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Log partitionLog = logManager.getLog(new TopicPartition(OFFSETS_TOPIC, shard)).orElse(null);
+            if (partitionLog != null) {
+                loaded += load(partitionLog, shards.get(shard), loadBufferSize);
+            }
+        }
+        log.info("Loaded {} committed offsets from {} in {} ms", loaded, OFFSETS_TOPIC,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Replays a partition of the offsets topic into its shard; a later record of a key replaces an earlier one and a
+     * tombstone removes it, just as compaction would.
+     *
+     * @return The number of offsets the shard ends up with.
+     */
+    private int load(Log partitionLog, Map<String, Map<TopicPartition, OffsetAndMetadata>> groups, int loadBufferSize)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(loadBufferSize);
+        long offset = partitionLog.logStartOffset();
+        while (offset < partitionLog.logEndOffset()) {
+            FileRecords records = partitionLog.read(offset, buffer.capacity(), true);
+            if (records.sizeInBytes() == 0) {
+                break;
+            }
+            if (records.sizeInBytes() > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(records.sizeInBytes());
+            }
+            buffer.clear().limit(records.sizeInBytes());
+            while (buffer.hasRemaining()) {
+                if (records.channel().read(buffer, records.position() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + partitionLog.getTopicPartition() + " at offset " + offset);
+                }
+            }
+            buffer.flip();
+            int batchStart = 0;
+            while (buffer.limit() - batchStart >= RecordBatch.HEADER_SIZE) {
+                int batchSize = RecordBatch.sizeInBytes(buffer, batchStart);
+                if (buffer.limit() - batchStart < batchSize) {
+                    break;
+                }
+                RecordBatchValidator.forEachRecord(buffer, batchStart, batchSize, record -> replay(record, groups));
+                offset = RecordBatch.lastOffset(buffer, batchStart) + 1;
+                batchStart += batchSize;
+            }
+        }
+        return groups.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private static void replay(RecordView record, Map<String, Map<TopicPartition, OffsetAndMetadata>> groups) {
+        ByteBuffer key = record.key();
+        if (key == null) {
+            return;
+        }
+        short keyVersion = key.getShort();
+        // Other key versions hold group metadata, which is not persisted here
+        if (keyVersion != OFFSET_COMMIT_KEY_V0 && keyVersion != OFFSET_COMMIT_KEY_V1) {
+            return;
+        }
+        String groupId = Parser.parseString(key);
+        TopicPartition topicPartition = new TopicPartition(Parser.parseString(key), key.getInt());
+        ByteBuffer value = record.value();
+        if (value == null) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = groups.get(groupId);
+            if (offsets != null) {
+                offsets.remove(topicPartition);
+                if (offsets.isEmpty()) {
+                    groups.remove(groupId);
+                }
+            }
+            return;
+        }
+        groups.computeIfAbsent(groupId, id -> new ConcurrentHashMap<>()).put(topicPartition, parseOffsetValue(value));
+    }
+
+    private static ByteBuffer offsetKey(String groupId, TopicPartition topicPartition) {
+        ByteBuffer key = ByteBuffer.allocate(2 + Writer.sizeOfString(groupId) + Writer.sizeOfString(topicPartition.topic()) + 4);
+        key.putShort(OFFSET_COMMIT_KEY_V1);
+        Writer.writeString(key, groupId);
+        Writer.writeString(key, topicPartition.topic());
+        key.putInt(topicPartition.partition());
+        return key.flip();
+    }
+
+    private static ByteBuffer offsetValue(OffsetAndMetadata offset) {
+        ByteBuffer value = ByteBuffer.allocate(2 + 8 + 4 + Writer.sizeOfString(offset.metadata()) + 8);
+        value.putShort(OFFSET_COMMIT_VALUE_V3);
+        value.putLong(offset.offset());
+        value.putInt(offset.leaderEpoch());
+        Writer.writeString(value, offset.metadata());
+        value.putLong(offset.commitTimestamp());
+        return value.flip();
+    }
+
+    /**
+     * Parses every offset commit value version: 0 and 2 hold the offset, metadata and commit timestamp, 1 adds an
+     * expiry timestamp and 3 a leader epoch before the metadata.
+     */
+    private static OffsetAndMetadata parseOffsetValue(ByteBuffer value) {
+        short version = value.getShort();
+        long offset = value.getLong();
+        int leaderEpoch = version >= OFFSET_COMMIT_VALUE_V3 ? value.getInt() : OffsetAndMetadata.NO_LEADER_EPOCH;
+        String metadata = Parser.parseString(value);
+        long commitTimestamp = value.getLong();
+        if (version == OFFSET_COMMIT_VALUE_V1) {
+            value.getLong();
+        }
+        return new OffsetAndMetadata(offset, leaderEpoch, metadata, commitTimestamp);
+    }
+
+    /**
+     * Writes what is still queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            commitsQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,12 +2,32 @@ package core.handler;
 
 import message.request.RequestInfo;
 import message.response.ResponseMessage;
+import schema.ApiSchema;
 import schema.VersionRange;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface RequestHandler {
 
     short apiKey();
+    ApiSchema apiSchema();
     VersionRange supportedVersions();
     ResponseMessage handleRequest(RequestInfo requestInfo);
 
+    /**
+     * Handles a request whose response may only be ready later, e.g. once the data it appended is on disk.
+     * Handlers that always answer right away only implement {@link #handleRequest(RequestInfo)}.
+     *
+     * @return A future of the response, completed with {@code null} if the request expects none.
+     */
+    default CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        return CompletableFuture.completedFuture(handleRequest(requestInfo));
+    }
+
+    /**
+     * Called once every handler has been registered, for handlers that precompute state from the full handler set.
+     */
+    default void onHandlersRegistered() {
+    }
+
 }
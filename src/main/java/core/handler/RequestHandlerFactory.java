@@ -4,34 +4,75 @@ import core.handler.api_versions.ApiVersionInfo;
 import core.handler.api_versions.ApiVersionsHandler;
 import exceptions.InvalidRequestException;
 import message.request.RequestInfo;
+import schema.SchemaRegistry;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Routes requests to the handler registered for their api key. Handlers, including ones for new apis,
+ * are registered with {@link #registerHandler(RequestHandler)} at startup; {@link #freeze()} then builds a
+ * dense table indexed by api key so dispatch is a single array load.
+ */
 public class RequestHandlerFactory {
-    private static final Map<Short, RequestHandler> handlers = new HashMap<>();
+    private static final Map<Short, RequestHandler> registrations = new TreeMap<>();
+    private static volatile RequestHandler[] handlers;
 
     static {
         registerHandler(new ApiVersionsHandler());
     }
 
-    private static void registerHandler(RequestHandler requestHandler) {
-        if(!handlers.containsKey(requestHandler.apiKey())) {
-            handlers.put(requestHandler.apiKey(), requestHandler);
+    /**
+     * Registers a handler and its schemas. The first handler registered for an api key wins.
+     *
+     * @throws IllegalStateException if the factory has already been frozen.
+     */
+    public static synchronized void registerHandler(RequestHandler requestHandler) {
+        if (handlers != null) {
+            throw new IllegalStateException("Cannot register a handler for api key " + requestHandler.apiKey() + " after startup");
         }
+        if (!registrations.containsKey(requestHandler.apiKey())) {
+            registrations.put(requestHandler.apiKey(), requestHandler);
+            SchemaRegistry.register(requestHandler.apiSchema());
+        }
+    }
+
+    /**
+     * Freezes the schema registry and the dispatch table, then lets every handler precompute its state.
+     * Idempotent.
+     */
+    public static synchronized void freeze() {
+        if (handlers != null) {
+            return;
+        }
+        SchemaRegistry.freeze();
+        int maxApiKey = registrations.keySet().stream().mapToInt(Short::intValue).max().orElse(-1);
+        RequestHandler[] table = new RequestHandler[maxApiKey + 1];
+        registrations.forEach((apiKey, handler) -> table[apiKey] = handler);
+        handlers = table;
+        registrations.values().forEach(RequestHandler::onHandlersRegistered);
     }
 
     public static RequestHandler getRequestHandler(RequestInfo requestInfo) {
-        if (handlers.containsKey(requestInfo.requestApiKey())) {
-            return handlers.get(requestInfo.requestApiKey());
+        RequestHandler[] table = handlers;
+        if (table == null) {
+            throw new IllegalStateException("Request handlers have not been frozen yet");
+        }
+        short apiKey = requestInfo.requestApiKey();
+        if (apiKey >= 0 && apiKey < table.length && table[apiKey] != null) {
+            return table[apiKey];
         } else {
             throw new InvalidRequestException();
         }
     }
 
+    public static synchronized List<RequestHandler> getRegisteredHandlers() {
+        return List.copyOf(registrations.values());
+    }
+
     public static List<ApiVersionInfo> getSupportedApiVersions() {
-        return handlers.values().stream()
+        return registrations.values().stream()
                 .map(handler -> new ApiVersionInfo(
                         handler.apiKey(),
                         handler.supportedVersions().min(),
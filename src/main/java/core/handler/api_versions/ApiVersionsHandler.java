@@ -1,44 +1,104 @@
 package core.handler.api_versions;
 
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
 import core.handler.RequestHandler;
+import core.handler.RequestHandlerFactory;
 import exceptions.ApiException;
+import exceptions.ErrorCode;
+import exceptions.UnsupportedVersionException;
 import lombok.extern.slf4j.Slf4j;
+import metrics.BrokerMetrics;
 import message.request.RequestInfo;
-import message.request.RequestMessage;
 import message.response.ResponseMessage;
+import schema.ApiSchema;
 import schema.ApiVersionsApiSchema;
-import schema.SchemaSet;
+import schema.SchemaRegistry;
 import schema.VersionRange;
+import util.Encoder;
 import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
 
 @Slf4j
 public class ApiVersionsHandler implements RequestHandler {
     private static final ApiVersionsApiSchema apiVersionsSchema = new ApiVersionsApiSchema();
-    private SchemaSet schemaSet;
+
+    // The supported versions never change while the broker runs, so the bodies are encoded once and only the header varies
+    private ByteBuffer[] cachedBodies;
+    private ByteBuffer unsupportedVersionBody;
 
     @Override
     public short apiKey() {
         return apiVersionsSchema.apiKey();
     }
 
+    @Override
+    public ApiSchema apiSchema() {
+        return apiVersionsSchema;
+    }
+
     @Override
     public VersionRange supportedVersions() {
         return  apiVersionsSchema.versionRange();
     }
 
+    @Override
+    public void onHandlersRegistered() {
+        VersionRange versions = apiVersionsSchema.versionRange();
+        ByteBuffer[] bodies = new ByteBuffer[versions.max() + 1];
+        for (short version = versions.min(); version <= versions.max(); version++) {
+            CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+            bodies[version] = Encoder.encodeBody(codecs.responseBody(), buildBody(codecs, ErrorCode.NONE));
+        }
+        CompiledSchemaSet v0 = SchemaRegistry.codecsForVersion(apiKey(), (short) 0);
+        unsupportedVersionBody = Encoder.encodeBody(v0.responseBody(), buildBody(v0, ErrorCode.UNSUPPORTED_VERSION));
+        cachedBodies = bodies;
+    }
+
     @Override
     public ResponseMessage handleRequest(RequestInfo requestInfo) {
         try {
-            RequestMessage request = validateAndParseRequest(requestInfo);
-            return null;
+            CompiledSchemaSet codecs = validateAndParseRequest(requestInfo);
+            return ResponseMessage.ofEncoded(codecs, requestInfo.correlationId(), cachedBodies[requestInfo.requestApiVersion()]);
+        } catch (UnsupportedVersionException e) {
+            BrokerMetrics.recordError(ErrorCode.UNSUPPORTED_VERSION);
+            // Clients that are newer than the broker retry with the versions listed in a v0 response
+            return ResponseMessage.ofEncoded(SchemaRegistry.codecsForVersion(apiKey(), (short) 0), requestInfo.correlationId(), unsupportedVersionBody);
         } catch (ApiException e) {
             log.error("Failed to handle ApiVersions request: {}", e.getMessage());
-            return null;
+            BrokerMetrics.recordError(e.getErrorCode());
+            CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+            return ResponseMessage.of(codecs, requestInfo.correlationId(), buildBody(codecs, e.getErrorCode()));
         }
     }
 
-    private RequestMessage validateAndParseRequest(RequestInfo requestInfo) throws ApiException {
-        this.schemaSet = apiVersionsSchema.forVersion(requestInfo.requestApiVersion());
-        return Parser.parseMessage(requestInfo, schemaSet.requestHeaderSchema(), schemaSet.requestBodySchema());
+    private CompiledSchemaSet validateAndParseRequest(RequestInfo requestInfo) throws ApiException {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Parser.parseMessage(requestInfo, codecs);
+        return codecs;
+    }
+
+    private Struct buildBody(CompiledSchemaSet codecs, ErrorCode errorCode) {
+        Struct body = codecs.responseBody().newStruct();
+        StructLayout layout = body.layout();
+        body.setShort(layout.indexOf("error_code"), errorCode.getCode());
+        body.setObject(layout.indexOf("api_keys"), apiKeys());
+        body.setInt(layout.indexOf("throttle_time_ms"), 0);
+        return body;
+    }
+
+    private Object[] apiKeys() {
+        StructLayout apiKeyLayout = apiVersionsSchema.apiKeyLayout();
+        return RequestHandlerFactory.getSupportedApiVersions().stream()
+                .map(info -> {
+                    Struct apiKey = new Struct(apiKeyLayout);
+                    apiKey.setShort(apiKeyLayout.indexOf("api_key"), info.apiKey());
+                    apiKey.setShort(apiKeyLayout.indexOf("min_version"), info.minVersion());
+                    apiKey.setShort(apiKeyLayout.indexOf("max_version"), info.maxVersion());
+                    return apiKey;
+                })
+                .toArray();
     }
 }
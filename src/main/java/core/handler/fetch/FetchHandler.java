@@ -0,0 +1,256 @@
+package core.handler.fetch;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.handler.RequestHandler;
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import exceptions.ApiException;
+import exceptions.ErrorCode;
+import log.FileRecords;
+import log.Log;
+import log.LogManager;
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+import metrics.BrokerMetrics;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import schema.ApiSchema;
+import schema.FetchApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Serves Fetch requests from the local partition logs. Records are returned as {@link FileRecords} slices of the
+ * segment files, which the network layer transfers to the socket without copying them onto the heap.
+ * Requests that cannot be satisfied yet wait in the fetch purgatory, which appends to their partitions trigger.
+ */
+@Slf4j
+public class FetchHandler implements RequestHandler {
+    private static final FetchApiSchema fetchSchema = new FetchApiSchema();
+
+    private static final StructLayout TOPIC = fetchSchema.fetchTopicLayout();
+    private static final StructLayout PARTITION = fetchSchema.fetchPartitionLayout();
+    private static final StructLayout TOPIC_RESPONSE = fetchSchema.topicResponseLayout();
+    private static final StructLayout PARTITION_DATA = fetchSchema.partitionDataLayout();
+
+    private static final int TOPIC_NAME = TOPIC.indexOf("topic");
+    private static final int TOPIC_PARTITIONS = TOPIC.indexOf("partitions");
+    private static final int PARTITION_INDEX = PARTITION.indexOf("partition");
+    private static final int FETCH_OFFSET = PARTITION.indexOf("fetch_offset");
+    private static final int PARTITION_MAX_BYTES = PARTITION.indexOf("partition_max_bytes");
+
+    private static final int RESPONSE_TOPIC_NAME = TOPIC_RESPONSE.indexOf("topic");
+    private static final int RESPONSE_PARTITIONS = TOPIC_RESPONSE.indexOf("partitions");
+    private static final int DATA_PARTITION_INDEX = PARTITION_DATA.indexOf("partition_index");
+    private static final int DATA_ERROR_CODE = PARTITION_DATA.indexOf("error_code");
+    private static final int DATA_HIGH_WATERMARK = PARTITION_DATA.indexOf("high_watermark");
+    private static final int DATA_LAST_STABLE_OFFSET = PARTITION_DATA.indexOf("last_stable_offset");
+    private static final int DATA_LOG_START_OFFSET = PARTITION_DATA.indexOf("log_start_offset");
+    private static final int DATA_PREFERRED_READ_REPLICA = PARTITION_DATA.indexOf("preferred_read_replica");
+    private static final int DATA_RECORDS = PARTITION_DATA.indexOf("records");
+
+    private final LogManager logManager;
+    private final DelayedOperationPurgatory<DelayedOperation> fetchPurgatory;
+
+    public FetchHandler(LogManager logManager, DelayedOperationPurgatory<DelayedOperation> fetchPurgatory) {
+        this.logManager = logManager;
+        this.fetchPurgatory = fetchPurgatory;
+    }
+
+    @Override
+    public short apiKey() {
+        return fetchSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return fetchSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return fetchSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        return handleRequestAsync(requestInfo).join();
+    }
+
+    /**
+     * Answers right away if {@code min_bytes} are available, a partition failed or the client does not want to
+     * wait; otherwise parks the request in the fetch purgatory until an append to one of its partitions makes
+     * enough data available or {@code max_wait_ms} elapses.
+     */
+    @Override
+    public CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Struct request;
+        try {
+            request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        } catch (ApiException e) {
+            // Versions without a top-level error code have no way to report a malformed request
+            if (requestInfo.requestApiVersion() < 7) {
+                throw e;
+            }
+            log.error("Failed to parse Fetch request: {}", e.getMessage());
+            FetchResult empty = new FetchResult(new Object[0], 0, true, List.of());
+            return CompletableFuture.completedFuture(buildResponse(codecs, requestInfo.correlationId(), empty, e.getErrorCode()));
+        }
+
+        StructLayout requestLayout = request.layout();
+        int maxWaitMs = request.getInt(requestLayout.indexOf("max_wait_ms"));
+        int minBytes = request.getInt(requestLayout.indexOf("min_bytes"));
+        FetchResult result = readPartitions(request);
+        if (maxWaitMs <= 0 || result.bytes() >= minBytes || result.hasError() || result.partitions().isEmpty()) {
+            return CompletableFuture.completedFuture(buildResponse(codecs, requestInfo.correlationId(), result, ErrorCode.NONE));
+        }
+        DelayedFetch delayedFetch = new DelayedFetch(maxWaitMs, minBytes, request, codecs, requestInfo.correlationId());
+        fetchPurgatory.tryCompleteElseWatch(delayedFetch, result.partitions());
+        return delayedFetch.response;
+    }
+
+    private record FetchResult(Object[] topicResponses, int bytes, boolean hasError, List<TopicPartition> partitions) {
+    }
+
+    private FetchResult readPartitions(Struct request) {
+        StructLayout requestLayout = request.layout();
+        int remainingBytes = request.getInt(requestLayout.indexOf("max_bytes"));
+        boolean minOneBatch = true;
+        int bytes = 0;
+        boolean hasError = false;
+        List<TopicPartition> partitionsRead = new ArrayList<>();
+        Object[] topics = request.getArray(requestLayout.indexOf("topics"));
+        Object[] topicResponses = new Object[topics == null ? 0 : topics.length];
+        for (int i = 0; i < topicResponses.length; i++) {
+            Struct topic = (Struct) topics[i];
+            Object[] partitions = topic.getArray(TOPIC_PARTITIONS);
+            Object[] partitionResponses = new Object[partitions == null ? 0 : partitions.length];
+            for (int j = 0; j < partitionResponses.length; j++) {
+                Struct partition = (Struct) partitions[j];
+                partitionsRead.add(new TopicPartition(topic.getString(TOPIC_NAME), partition.getInt(PARTITION_INDEX)));
+                Struct partitionData = fetchPartition(topic.getString(TOPIC_NAME), partition, remainingBytes, minOneBatch);
+                int recordBytes = ((FileRecords) partitionData.getObject(DATA_RECORDS)).sizeInBytes();
+                remainingBytes -= recordBytes;
+                bytes += recordBytes;
+                minOneBatch &= recordBytes == 0;
+                hasError |= partitionData.getShort(DATA_ERROR_CODE) != ErrorCode.NONE.getCode();
+                partitionResponses[j] = partitionData;
+            }
+            Struct topicResponse = new Struct(TOPIC_RESPONSE);
+            topicResponse.setObject(RESPONSE_TOPIC_NAME, topic.getString(TOPIC_NAME));
+            topicResponse.setObject(RESPONSE_PARTITIONS, partitionResponses);
+            topicResponses[i] = topicResponse;
+        }
+        return new FetchResult(topicResponses, bytes, hasError, partitionsRead);
+    }
+
+    private static ResponseMessage buildResponse(CompiledSchemaSet codecs, int correlationId, FetchResult result, ErrorCode errorCode) {
+        BrokerMetrics.recordError(errorCode);
+        if (result.hasError()) {
+            for (Object topicResponse : result.topicResponses()) {
+                for (Object partitionData : ((Struct) topicResponse).getArray(RESPONSE_PARTITIONS)) {
+                    BrokerMetrics.recordError(ErrorCode.forCode(((Struct) partitionData).getShort(DATA_ERROR_CODE)));
+                }
+            }
+        }
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout layout = response.layout();
+        response.setInt(layout.indexOf("throttle_time_ms"), 0);
+        response.setShort(layout.indexOf("error_code"), errorCode.getCode());
+        response.setInt(layout.indexOf("session_id"), 0);
+        response.setObject(layout.indexOf("responses"), result.topicResponses());
+        return ResponseMessage.of(codecs, correlationId, response);
+    }
+
+    /**
+     * A Fetch waiting for {@code min_bytes}. Every append to one of its partitions re-reads the request; the
+     * response is built from the last read that satisfied it, or from a fresh read once it expires.
+     */
+    private final class DelayedFetch extends DelayedOperation {
+        private final CompletableFuture<ResponseMessage> response = new CompletableFuture<>();
+        private final int minBytes;
+        private final Struct request;
+        private final CompiledSchemaSet codecs;
+        private final int correlationId;
+        private volatile FetchResult satisfyingResult;
+
+        private DelayedFetch(long maxWaitMs, int minBytes, Struct request, CompiledSchemaSet codecs, int correlationId) {
+            super(maxWaitMs);
+            this.minBytes = minBytes;
+            this.request = request;
+            this.codecs = codecs;
+            this.correlationId = correlationId;
+        }
+
+        @Override
+        public boolean tryComplete() {
+            FetchResult result = readPartitions(request);
+            if (result.bytes() >= minBytes || result.hasError()) {
+                satisfyingResult = result;
+                return forceComplete();
+            }
+            return false;
+        }
+
+        @Override
+        protected void onComplete() {
+            FetchResult result = satisfyingResult;
+            try {
+                response.complete(buildResponse(codecs, correlationId, result != null ? result : readPartitions(request), ErrorCode.NONE));
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Reads one partition within what is left of the response's {@code max_bytes}. Like Kafka, the first batch
+     * of the response is returned even if it alone exceeds the limit, so consumers can always make progress.
+     */
+    private Struct fetchPartition(String topic, Struct partition, int remainingBytes, boolean minOneBatch) {
+        int partitionIndex = partition.getInt(PARTITION_INDEX);
+        Struct data = new Struct(PARTITION_DATA);
+        data.setInt(DATA_PARTITION_INDEX, partitionIndex);
+        data.setInt(DATA_PREFERRED_READ_REPLICA, -1);
+        data.setObject(DATA_RECORDS, FileRecords.EMPTY);
+
+        Optional<Log> maybeLog = logManager.getLog(new TopicPartition(topic, partitionIndex));
+        if (maybeLog.isEmpty()) {
+            setOffsets(data, -1L, -1L);
+            data.setShort(DATA_ERROR_CODE, ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode());
+            return data;
+        }
+
+        Log partitionLog = maybeLog.get();
+        ErrorCode errorCode = ErrorCode.NONE;
+        try {
+            int maxBytes = Math.max(0, Math.min(partition.getInt(PARTITION_MAX_BYTES), remainingBytes));
+            data.setObject(DATA_RECORDS, partitionLog.read(partition.getLong(FETCH_OFFSET), maxBytes, minOneBatch));
+        } catch (ApiException e) {
+            errorCode = e.getErrorCode();
+        } catch (IOException e) {
+            log.error("Failed to read {}-{}", topic, partitionIndex, e);
+            errorCode = ErrorCode.UNKNOWN_SERVER_ERROR;
+        }
+        // Read the end offset after the records, so the high watermark always covers what is returned
+        setOffsets(data, partitionLog.logStartOffset(), partitionLog.logEndOffset());
+        data.setShort(DATA_ERROR_CODE, errorCode.getCode());
+        return data;
+    }
+
+    private static void setOffsets(Struct data, long logStartOffset, long highWatermark) {
+        data.setLong(DATA_HIGH_WATERMARK, highWatermark);
+        data.setLong(DATA_LAST_STABLE_OFFSET, highWatermark);
+        data.setLong(DATA_LOG_START_OFFSET, logStartOffset);
+    }
+}
@@ -0,0 +1,80 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.handler.RequestHandler;
+import core.metadata.BrokerNode;
+import core.metadata.MetadataCache;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.FindCoordinatorApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+/**
+ * Answers FindCoordinator requests for groups with this broker, which coordinates every group. Transactional
+ * coordinators are not supported.
+ */
+public class FindCoordinatorHandler implements RequestHandler {
+    private static final FindCoordinatorApiSchema findCoordinatorSchema = new FindCoordinatorApiSchema();
+
+    private static final byte KEY_TYPE_GROUP = 0;
+
+    private final MetadataCache metadataCache;
+    private final int brokerId;
+
+    public FindCoordinatorHandler(MetadataCache metadataCache, int brokerId) {
+        this.metadataCache = metadataCache;
+        this.brokerId = brokerId;
+    }
+
+    @Override
+    public short apiKey() {
+        return findCoordinatorSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return findCoordinatorSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return findCoordinatorSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        short version = requestInfo.requestApiVersion();
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        byte keyType = version >= 1 ? request.getByte(request.layout().indexOf("key_type")) : KEY_TYPE_GROUP;
+        BrokerNode coordinator = metadataCache.snapshot().brokers().stream()
+                .filter(broker -> broker.nodeId() == brokerId)
+                .findFirst()
+                .orElse(null);
+
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout layout = response.layout();
+        response.setInt(layout.indexOf("throttle_time_ms"), 0);
+        response.setObject(layout.indexOf("error_message"), null);
+        if (keyType != KEY_TYPE_GROUP || coordinator == null) {
+            BrokerMetrics.recordError(ErrorCode.COORDINATOR_NOT_AVAILABLE);
+            response.setShort(layout.indexOf("error_code"), ErrorCode.COORDINATOR_NOT_AVAILABLE.getCode());
+            response.setInt(layout.indexOf("node_id"), -1);
+            response.setObject(layout.indexOf("host"), "");
+            response.setInt(layout.indexOf("port"), -1);
+        } else {
+            response.setShort(layout.indexOf("error_code"), ErrorCode.NONE.getCode());
+            response.setInt(layout.indexOf("node_id"), coordinator.nodeId());
+            response.setObject(layout.indexOf("host"), coordinator.host());
+            response.setInt(layout.indexOf("port"), coordinator.port());
+        }
+        return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+    }
+}
@@ -0,0 +1,65 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.HeartbeatApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+/**
+ * Keeps the sessions of group members alive. A heartbeat only reschedules the member's session timeout, so it never
+ * waits on anything.
+ */
+public class HeartbeatHandler implements RequestHandler {
+    private static final HeartbeatApiSchema heartbeatSchema = new HeartbeatApiSchema();
+
+    private final GroupCoordinator groupCoordinator;
+
+    public HeartbeatHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return heartbeatSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return heartbeatSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return heartbeatSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout requestLayout = request.layout();
+        ErrorCode errorCode = groupCoordinator.heartbeat(
+                request.getString(requestLayout.indexOf("group_id")),
+                request.getString(requestLayout.indexOf("member_id")),
+                request.getInt(requestLayout.indexOf("generation_id")));
+        if (errorCode != ErrorCode.NONE) {
+            BrokerMetrics.recordError(errorCode);
+        }
+
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout layout = response.layout();
+        response.setInt(layout.indexOf("throttle_time_ms"), 0);
+        response.setShort(layout.indexOf("error_code"), errorCode.getCode());
+        return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+    }
+}
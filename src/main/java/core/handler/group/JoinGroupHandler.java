@@ -0,0 +1,124 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.JoinGroupApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adds members to groups. The response waits until every member has rejoined or the rebalance timeout expires, so
+ * it is completed by the {@link GroupCoordinator} rather than on the request thread. Clients on version 4 and up
+ * get their member id in a first MEMBER_ID_REQUIRED response and join again with it.
+ */
+public class JoinGroupHandler implements RequestHandler {
+    private static final JoinGroupApiSchema joinGroupSchema = new JoinGroupApiSchema();
+
+    private static final StructLayout PROTOCOL = joinGroupSchema.protocolLayout();
+    private static final StructLayout MEMBER = joinGroupSchema.memberLayout();
+
+    private static final int PROTOCOL_NAME = PROTOCOL.indexOf("name");
+    private static final int PROTOCOL_METADATA = PROTOCOL.indexOf("metadata");
+
+    private static final int MEMBER_ID = MEMBER.indexOf("member_id");
+    private static final int MEMBER_GROUP_INSTANCE_ID = MEMBER.indexOf("group_instance_id");
+    private static final int MEMBER_METADATA = MEMBER.indexOf("metadata");
+
+    private final GroupCoordinator groupCoordinator;
+
+    public JoinGroupHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return joinGroupSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return joinGroupSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return joinGroupSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        return handleRequestAsync(requestInfo).join();
+    }
+
+    @Override
+    public CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        short version = requestInfo.requestApiVersion();
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout layout = request.layout();
+        int sessionTimeoutMs = request.getInt(layout.indexOf("session_timeout_ms"));
+        // Version 0 has a single timeout for both
+        int rebalanceTimeoutMs = version >= 1 ? request.getInt(layout.indexOf("rebalance_timeout_ms")) : sessionTimeoutMs;
+        Object[] protocolStructs = request.getArray(layout.indexOf("protocols"));
+        List<GroupCoordinator.Protocol> protocols = new ArrayList<>(protocolStructs == null ? 0 : protocolStructs.length);
+        if (protocolStructs != null) {
+            for (Object protocol : protocolStructs) {
+                Struct struct = (Struct) protocol;
+                protocols.add(new GroupCoordinator.Protocol(struct.getString(PROTOCOL_NAME), (ByteBuffer) struct.getObject(PROTOCOL_METADATA)));
+            }
+        }
+
+        return groupCoordinator.joinGroup(
+                        request.getString(layout.indexOf("group_id")),
+                        request.getString(layout.indexOf("member_id")),
+                        requestInfo.clientId().orElse(""),
+                        sessionTimeoutMs,
+                        rebalanceTimeoutMs,
+                        request.getString(layout.indexOf("protocol_type")),
+                        protocols,
+                        version >= 4)
+                .thenApply(result -> ResponseMessage.of(codecs, requestInfo.correlationId(), buildBody(codecs, version, result)));
+    }
+
+    private static Struct buildBody(CompiledSchemaSet codecs, short version, GroupCoordinator.JoinResult result) {
+        if (result.error() != ErrorCode.NONE) {
+            BrokerMetrics.recordError(result.error());
+        }
+        Struct body = codecs.responseBody().newStruct();
+        StructLayout layout = body.layout();
+        body.setInt(layout.indexOf("throttle_time_ms"), 0);
+        body.setShort(layout.indexOf("error_code"), result.error().getCode());
+        body.setInt(layout.indexOf("generation_id"), result.generationId());
+        body.setObject(layout.indexOf("protocol_type"), result.protocolType());
+        // The protocol name is only nullable from version 7
+        String protocolName = result.protocolName();
+        body.setObject(layout.indexOf("protocol_name"), protocolName == null && version < 7 ? "" : protocolName);
+        body.setObject(layout.indexOf("leader"), result.leaderId() == null ? "" : result.leaderId());
+        body.setObject(layout.indexOf("member_id"), result.memberId());
+        Object[] members = new Object[result.members().size()];
+        for (int i = 0; i < members.length; i++) {
+            GroupCoordinator.Member member = result.members().get(i);
+            Struct struct = new Struct(MEMBER);
+            struct.setObject(MEMBER_ID, member.memberId());
+            struct.setObject(MEMBER_GROUP_INSTANCE_ID, null);
+            struct.setObject(MEMBER_METADATA, member.metadata());
+            members[i] = struct;
+        }
+        body.setObject(layout.indexOf("members"), members);
+        return body;
+    }
+}
@@ -0,0 +1,98 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.LeaveGroupApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+/**
+ * Removes members that are shutting down, so their groups rebalance without waiting for their sessions to expire.
+ * Versions 3 and up remove a batch of members and report an error for each.
+ */
+public class LeaveGroupHandler implements RequestHandler {
+    private static final LeaveGroupApiSchema leaveGroupSchema = new LeaveGroupApiSchema();
+
+    private static final StructLayout REQUEST_MEMBER = leaveGroupSchema.requestMemberLayout();
+    private static final StructLayout RESPONSE_MEMBER = leaveGroupSchema.responseMemberLayout();
+
+    private static final int REQUEST_MEMBER_ID = REQUEST_MEMBER.indexOf("member_id");
+    private static final int REQUEST_GROUP_INSTANCE_ID = REQUEST_MEMBER.indexOf("group_instance_id");
+
+    private static final int RESPONSE_MEMBER_ID = RESPONSE_MEMBER.indexOf("member_id");
+    private static final int RESPONSE_GROUP_INSTANCE_ID = RESPONSE_MEMBER.indexOf("group_instance_id");
+    private static final int RESPONSE_ERROR_CODE = RESPONSE_MEMBER.indexOf("error_code");
+
+    private final GroupCoordinator groupCoordinator;
+
+    public LeaveGroupHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return leaveGroupSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return leaveGroupSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return leaveGroupSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        short version = requestInfo.requestApiVersion();
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout requestLayout = request.layout();
+        String groupId = request.getString(requestLayout.indexOf("group_id"));
+
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout layout = response.layout();
+        response.setInt(layout.indexOf("throttle_time_ms"), 0);
+        if (version < 3) {
+            ErrorCode errorCode = groupCoordinator.leaveGroup(groupId, request.getString(requestLayout.indexOf("member_id")));
+            recordError(errorCode);
+            response.setShort(layout.indexOf("error_code"), errorCode.getCode());
+            return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+        }
+
+        Object[] members = request.getArray(requestLayout.indexOf("members"));
+        Object[] memberResponses = new Object[members == null ? 0 : members.length];
+        for (int i = 0; i < memberResponses.length; i++) {
+            Struct member = (Struct) members[i];
+            ErrorCode errorCode = groupCoordinator.leaveGroup(groupId, member.getString(REQUEST_MEMBER_ID));
+            recordError(errorCode);
+            Struct memberResponse = new Struct(RESPONSE_MEMBER);
+            memberResponse.setObject(RESPONSE_MEMBER_ID, member.getString(REQUEST_MEMBER_ID));
+            memberResponse.setObject(RESPONSE_GROUP_INSTANCE_ID, member.getString(REQUEST_GROUP_INSTANCE_ID));
+            memberResponse.setShort(RESPONSE_ERROR_CODE, errorCode.getCode());
+            memberResponses[i] = memberResponse;
+        }
+        // Only a request for an invalid group fails as a whole
+        ErrorCode errorCode = GroupCoordinator.isValidGroupId(groupId) ? ErrorCode.NONE : ErrorCode.INVALID_GROUP_ID;
+        response.setShort(layout.indexOf("error_code"), errorCode.getCode());
+        response.setObject(layout.indexOf("members"), memberResponses);
+        return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+    }
+
+    private static void recordError(ErrorCode errorCode) {
+        if (errorCode != ErrorCode.NONE) {
+            BrokerMetrics.recordError(errorCode);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.group.OffsetAndMetadata;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.OffsetCommitApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Commits consumer offsets. The offsets are handed to the offset store's writer thread, which batches the commits
+ * of many groups into one append to the offsets log, and the response is completed once they are appended, so the
+ * request thread never waits on the log.
+ */
+public class OffsetCommitHandler implements RequestHandler {
+    private static final OffsetCommitApiSchema offsetCommitSchema = new OffsetCommitApiSchema();
+
+    private static final StructLayout REQUEST_TOPIC = offsetCommitSchema.requestTopicLayout();
+    private static final StructLayout REQUEST_PARTITION = offsetCommitSchema.requestPartitionLayout();
+    private static final StructLayout RESPONSE_TOPIC = offsetCommitSchema.responseTopicLayout();
+    private static final StructLayout RESPONSE_PARTITION = offsetCommitSchema.responsePartitionLayout();
+
+    private static final int TOPIC_NAME = REQUEST_TOPIC.indexOf("name");
+    private static final int TOPIC_PARTITIONS = REQUEST_TOPIC.indexOf("partitions");
+    private static final int PARTITION_INDEX = REQUEST_PARTITION.indexOf("partition_index");
+    private static final int PARTITION_COMMITTED_OFFSET = REQUEST_PARTITION.indexOf("committed_offset");
+    private static final int PARTITION_COMMITTED_LEADER_EPOCH = REQUEST_PARTITION.indexOf("committed_leader_epoch");
+    private static final int PARTITION_COMMITTED_METADATA = REQUEST_PARTITION.indexOf("committed_metadata");
+
+    private static final int RESPONSE_TOPIC_NAME = RESPONSE_TOPIC.indexOf("name");
+    private static final int RESPONSE_TOPIC_PARTITIONS = RESPONSE_TOPIC.indexOf("partitions");
+    private static final int RESPONSE_PARTITION_INDEX = RESPONSE_PARTITION.indexOf("partition_index");
+    private static final int RESPONSE_ERROR_CODE = RESPONSE_PARTITION.indexOf("error_code");
+
+    // Kafka's default offset.metadata.max.bytes
+    private static final int MAX_METADATA_LENGTH = 4096;
+
+    private final GroupCoordinator groupCoordinator;
+
+    public OffsetCommitHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return offsetCommitSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return offsetCommitSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return offsetCommitSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        return handleRequestAsync(requestInfo).join();
+    }
+
+    @Override
+    public CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        short version = requestInfo.requestApiVersion();
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout layout = request.layout();
+        long commitTimestamp = System.currentTimeMillis();
+
+        Object[] topics = request.getArray(layout.indexOf("topics"));
+        Object[] topicResponses = new Object[topics == null ? 0 : topics.length];
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        // The responses of the partitions whose offsets are committed, which take the error of the commit as a whole
+        List<Struct> committed = new ArrayList<>();
+        for (int i = 0; i < topicResponses.length; i++) {
+            Struct topic = (Struct) topics[i];
+            String topicName = topic.getString(TOPIC_NAME);
+            Object[] partitions = topic.getArray(TOPIC_PARTITIONS);
+            Object[] partitionResponses = new Object[partitions == null ? 0 : partitions.length];
+            for (int j = 0; j < partitionResponses.length; j++) {
+                Struct partition = (Struct) partitions[j];
+                Struct partitionResponse = new Struct(RESPONSE_PARTITION);
+                partitionResponse.setInt(RESPONSE_PARTITION_INDEX, partition.getInt(PARTITION_INDEX));
+                partitionResponse.setShort(RESPONSE_ERROR_CODE, ErrorCode.NONE.getCode());
+                String metadata = partition.getString(PARTITION_COMMITTED_METADATA);
+                if (metadata != null && metadata.length() > MAX_METADATA_LENGTH) {
+                    setError(partitionResponse, ErrorCode.OFFSET_METADATA_TOO_LARGE);
+                } else {
+                    offsets.put(new TopicPartition(topicName, partition.getInt(PARTITION_INDEX)), new OffsetAndMetadata(
+                            partition.getLong(PARTITION_COMMITTED_OFFSET),
+                            version >= 6 ? partition.getInt(PARTITION_COMMITTED_LEADER_EPOCH) : OffsetAndMetadata.NO_LEADER_EPOCH,
+                            metadata == null ? OffsetAndMetadata.NO_METADATA : metadata,
+                            commitTimestamp));
+                    committed.add(partitionResponse);
+                }
+                partitionResponses[j] = partitionResponse;
+            }
+            Struct topicResponse = new Struct(RESPONSE_TOPIC);
+            topicResponse.setObject(RESPONSE_TOPIC_NAME, topicName);
+            topicResponse.setObject(RESPONSE_TOPIC_PARTITIONS, partitionResponses);
+            topicResponses[i] = topicResponse;
+        }
+
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout responseLayout = response.layout();
+        response.setInt(responseLayout.indexOf("throttle_time_ms"), 0);
+        response.setObject(responseLayout.indexOf("topics"), topicResponses);
+        if (offsets.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseMessage.of(codecs, requestInfo.correlationId(), response));
+        }
+        return groupCoordinator.commitOffsets(
+                        request.getString(layout.indexOf("group_id")),
+                        request.getString(layout.indexOf("member_id")),
+                        request.getInt(layout.indexOf("generation_id")),
+                        offsets)
+                .thenApply(errorCode -> {
+                    if (errorCode != ErrorCode.NONE) {
+                        committed.forEach(partitionResponse -> setError(partitionResponse, errorCode));
+                    }
+                    return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+                });
+    }
+
+    private static void setError(Struct partitionResponse, ErrorCode errorCode) {
+        partitionResponse.setShort(RESPONSE_ERROR_CODE, errorCode.getCode());
+        BrokerMetrics.recordError(errorCode);
+    }
+}
@@ -0,0 +1,137 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.group.OffsetAndMetadata;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.OffsetFetchApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves committed offsets straight from the offset store's in-memory map. Partitions without a committed offset
+ * report offset -1, and a request without topics gets every offset the group has committed.
+ */
+public class OffsetFetchHandler implements RequestHandler {
+    private static final OffsetFetchApiSchema offsetFetchSchema = new OffsetFetchApiSchema();
+
+    private static final StructLayout REQUEST_TOPIC = offsetFetchSchema.requestTopicLayout();
+    private static final StructLayout RESPONSE_TOPIC = offsetFetchSchema.responseTopicLayout();
+    private static final StructLayout RESPONSE_PARTITION = offsetFetchSchema.responsePartitionLayout();
+
+    private static final int TOPIC_NAME = REQUEST_TOPIC.indexOf("name");
+    private static final int TOPIC_PARTITION_INDEXES = REQUEST_TOPIC.indexOf("partition_indexes");
+
+    private static final int RESPONSE_TOPIC_NAME = RESPONSE_TOPIC.indexOf("name");
+    private static final int RESPONSE_TOPIC_PARTITIONS = RESPONSE_TOPIC.indexOf("partitions");
+    private static final int PARTITION_INDEX = RESPONSE_PARTITION.indexOf("partition_index");
+    private static final int PARTITION_COMMITTED_OFFSET = RESPONSE_PARTITION.indexOf("committed_offset");
+    private static final int PARTITION_COMMITTED_LEADER_EPOCH = RESPONSE_PARTITION.indexOf("committed_leader_epoch");
+    private static final int PARTITION_METADATA = RESPONSE_PARTITION.indexOf("metadata");
+    private static final int PARTITION_ERROR_CODE = RESPONSE_PARTITION.indexOf("error_code");
+
+    private static final long NO_OFFSET = -1L;
+
+    private final GroupCoordinator groupCoordinator;
+
+    public OffsetFetchHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return offsetFetchSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return offsetFetchSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return offsetFetchSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout layout = request.layout();
+        String groupId = request.getString(layout.indexOf("group_id"));
+        Object[] topics = request.getArray(layout.indexOf("topics"));
+
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout responseLayout = response.layout();
+        response.setInt(responseLayout.indexOf("throttle_time_ms"), 0);
+        if (!GroupCoordinator.isValidGroupId(groupId)) {
+            BrokerMetrics.recordError(ErrorCode.INVALID_GROUP_ID);
+            response.setShort(responseLayout.indexOf("error_code"), ErrorCode.INVALID_GROUP_ID.getCode());
+            response.setObject(responseLayout.indexOf("topics"), new Object[0]);
+            return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+        }
+        response.setShort(responseLayout.indexOf("error_code"), ErrorCode.NONE.getCode());
+        response.setObject(responseLayout.indexOf("topics"), topics == null ? allTopics(groupId) : requestedTopics(groupId, topics));
+        return ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+    }
+
+    private Object[] requestedTopics(String groupId, Object[] topics) {
+        Object[] topicResponses = new Object[topics.length];
+        for (int i = 0; i < topics.length; i++) {
+            Struct topic = (Struct) topics[i];
+            String topicName = topic.getString(TOPIC_NAME);
+            Object[] partitionIndexes = topic.getArray(TOPIC_PARTITION_INDEXES);
+            Object[] partitionResponses = new Object[partitionIndexes == null ? 0 : partitionIndexes.length];
+            for (int j = 0; j < partitionResponses.length; j++) {
+                int partition = (Integer) partitionIndexes[j];
+                partitionResponses[j] = partitionStruct(partition, groupCoordinator.fetchOffset(groupId, new TopicPartition(topicName, partition)));
+            }
+            topicResponses[i] = topicStruct(topicName, partitionResponses);
+        }
+        return topicResponses;
+    }
+
+    private Object[] allTopics(String groupId) {
+        Map<String, List<Struct>> partitionsByTopic = new LinkedHashMap<>();
+        groupCoordinator.fetchAllOffsets(groupId).forEach((topicPartition, offset) ->
+                partitionsByTopic.computeIfAbsent(topicPartition.topic(), topic -> new ArrayList<>())
+                        .add(partitionStruct(topicPartition.partition(), offset)));
+        return partitionsByTopic.entrySet().stream()
+                .map(entry -> topicStruct(entry.getKey(), entry.getValue().toArray()))
+                .toArray();
+    }
+
+    private static Struct topicStruct(String topicName, Object[] partitions) {
+        Struct struct = new Struct(RESPONSE_TOPIC);
+        struct.setObject(RESPONSE_TOPIC_NAME, topicName);
+        struct.setObject(RESPONSE_TOPIC_PARTITIONS, partitions);
+        return struct;
+    }
+
+    /**
+     * @param offset The committed offset, or {@code null} if the group has none for the partition.
+     */
+    private static Struct partitionStruct(int partition, OffsetAndMetadata offset) {
+        Struct struct = new Struct(RESPONSE_PARTITION);
+        struct.setInt(PARTITION_INDEX, partition);
+        struct.setLong(PARTITION_COMMITTED_OFFSET, offset == null ? NO_OFFSET : offset.offset());
+        struct.setInt(PARTITION_COMMITTED_LEADER_EPOCH, offset == null ? OffsetAndMetadata.NO_LEADER_EPOCH : offset.leaderEpoch());
+        struct.setObject(PARTITION_METADATA, offset == null ? OffsetAndMetadata.NO_METADATA : offset.metadata());
+        struct.setShort(PARTITION_ERROR_CODE, ErrorCode.NONE.getCode());
+        return struct;
+    }
+}
@@ -0,0 +1,96 @@
+package core.handler.group;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.GroupCoordinator;
+import core.handler.RequestHandler;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.SchemaRegistry;
+import schema.SyncGroupApiSchema;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands out partition assignments. The leader's request carries the assignments of every member; the responses of
+ * the other members wait for it, and are completed by the {@link GroupCoordinator} once it arrives.
+ */
+public class SyncGroupHandler implements RequestHandler {
+    private static final SyncGroupApiSchema syncGroupSchema = new SyncGroupApiSchema();
+
+    private static final StructLayout ASSIGNMENT = syncGroupSchema.assignmentLayout();
+
+    private static final int ASSIGNMENT_MEMBER_ID = ASSIGNMENT.indexOf("member_id");
+    private static final int ASSIGNMENT_BYTES = ASSIGNMENT.indexOf("assignment");
+
+    private final GroupCoordinator groupCoordinator;
+
+    public SyncGroupHandler(GroupCoordinator groupCoordinator) {
+        this.groupCoordinator = groupCoordinator;
+    }
+
+    @Override
+    public short apiKey() {
+        return syncGroupSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return syncGroupSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return syncGroupSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        return handleRequestAsync(requestInfo).join();
+    }
+
+    @Override
+    public CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout layout = request.layout();
+        Object[] assignmentStructs = request.getArray(layout.indexOf("assignments"));
+        Map<String, ByteBuffer> assignments = new HashMap<>();
+        if (assignmentStructs != null) {
+            for (Object assignment : assignmentStructs) {
+                Struct struct = (Struct) assignment;
+                assignments.put(struct.getString(ASSIGNMENT_MEMBER_ID), (ByteBuffer) struct.getObject(ASSIGNMENT_BYTES));
+            }
+        }
+
+        return groupCoordinator.syncGroup(
+                        request.getString(layout.indexOf("group_id")),
+                        request.getInt(layout.indexOf("generation_id")),
+                        request.getString(layout.indexOf("member_id")),
+                        assignments)
+                .thenApply(result -> ResponseMessage.of(codecs, requestInfo.correlationId(), buildBody(codecs, result)));
+    }
+
+    private static Struct buildBody(CompiledSchemaSet codecs, GroupCoordinator.SyncResult result) {
+        if (result.error() != ErrorCode.NONE) {
+            BrokerMetrics.recordError(result.error());
+        }
+        Struct body = codecs.responseBody().newStruct();
+        StructLayout layout = body.layout();
+        body.setInt(layout.indexOf("throttle_time_ms"), 0);
+        body.setShort(layout.indexOf("error_code"), result.error().getCode());
+        body.setObject(layout.indexOf("protocol_type"), result.protocolType());
+        body.setObject(layout.indexOf("protocol_name"), result.protocolName());
+        body.setObject(layout.indexOf("assignment"), result.assignment());
+        return body;
+    }
+}
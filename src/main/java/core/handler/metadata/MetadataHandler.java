@@ -0,0 +1,213 @@
+package core.handler.metadata;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.OffsetStore;
+import core.handler.RequestHandler;
+import core.metadata.AutoTopicCreator;
+import core.metadata.BrokerNode;
+import core.metadata.MetadataCache;
+import core.metadata.MetadataSnapshot;
+import core.metadata.PartitionState;
+import exceptions.ErrorCode;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import metrics.BrokerMetrics;
+import schema.ApiSchema;
+import schema.MetadataApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Encoder;
+import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Serves Metadata requests from the {@link MetadataCache}. Responses are encoded once per snapshot, api version and
+ * set of requested topics and then reused, so the constant metadata refreshes of clients cost a lookup and a copy.
+ * Unknown topics are created through the {@link AutoTopicCreator} if both the broker and the client allow it.
+ */
+public class MetadataHandler implements RequestHandler {
+    private static final MetadataApiSchema metadataSchema = new MetadataApiSchema();
+
+    private static final StructLayout REQUEST_TOPIC = metadataSchema.requestTopicLayout();
+    private static final StructLayout BROKER = metadataSchema.brokerLayout();
+    private static final StructLayout TOPIC = metadataSchema.topicLayout();
+    private static final StructLayout PARTITION = metadataSchema.partitionLayout();
+
+    private static final int REQUEST_TOPIC_NAME = REQUEST_TOPIC.indexOf("name");
+
+    private static final int BROKER_NODE_ID = BROKER.indexOf("node_id");
+    private static final int BROKER_HOST = BROKER.indexOf("host");
+    private static final int BROKER_PORT = BROKER.indexOf("port");
+    private static final int BROKER_RACK = BROKER.indexOf("rack");
+
+    private static final int TOPIC_ERROR_CODE = TOPIC.indexOf("error_code");
+    private static final int TOPIC_NAME = TOPIC.indexOf("name");
+    private static final int TOPIC_IS_INTERNAL = TOPIC.indexOf("is_internal");
+    private static final int TOPIC_PARTITIONS = TOPIC.indexOf("partitions");
+    private static final int TOPIC_AUTHORIZED_OPERATIONS = TOPIC.indexOf("topic_authorized_operations");
+
+    private static final int PARTITION_ERROR_CODE = PARTITION.indexOf("error_code");
+    private static final int PARTITION_INDEX = PARTITION.indexOf("partition_index");
+    private static final int PARTITION_LEADER_ID = PARTITION.indexOf("leader_id");
+    private static final int PARTITION_LEADER_EPOCH = PARTITION.indexOf("leader_epoch");
+    private static final int PARTITION_REPLICA_NODES = PARTITION.indexOf("replica_nodes");
+    private static final int PARTITION_ISR_NODES = PARTITION.indexOf("isr_nodes");
+    private static final int PARTITION_OFFLINE_REPLICAS = PARTITION.indexOf("offline_replicas");
+
+    // Kafka's marker for authorized operations the client did not ask for
+    private static final int AUTHORIZED_OPERATIONS_OMITTED = Integer.MIN_VALUE;
+    // Without an authorizer every operation is allowed: READ, WRITE, CREATE, DELETE, ALTER, DESCRIBE, DESCRIBE_CONFIGS and ALTER_CONFIGS
+    private static final int TOPIC_OPERATIONS = bits(3, 4, 5, 6, 7, 8, 10, 11);
+    // CREATE, ALTER, DESCRIBE, CLUSTER_ACTION, DESCRIBE_CONFIGS, ALTER_CONFIGS and IDEMPOTENT_WRITE
+    private static final int CLUSTER_OPERATIONS = bits(5, 7, 8, 9, 10, 11, 12);
+
+    private final MetadataCache metadataCache;
+    private final AutoTopicCreator topicCreator;
+
+    /**
+     * @param topicCreator Creates unknown topics when the client allows it.
+     */
+    public MetadataHandler(MetadataCache metadataCache, AutoTopicCreator topicCreator) {
+        this.metadataCache = metadataCache;
+        this.topicCreator = topicCreator;
+    }
+
+    @Override
+    public short apiKey() {
+        return metadataSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return metadataSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return metadataSchema.versionRange();
+    }
+
+    /**
+     * Everything besides the snapshot that a response depends on.
+     *
+     * @param topics The requested topics, or {@code null} for all of them.
+     */
+    private record ResponseKey(short version, List<String> topics, boolean includeClusterOperations, boolean includeTopicOperations) {
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        short version = requestInfo.requestApiVersion();
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), version);
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout layout = request.layout();
+        Object[] topics = request.getArray(layout.indexOf("topics"));
+        // Version 0 has no null array, so an empty one asks for every topic
+        List<String> requested = topics == null || (version == 0 && topics.length == 0)
+                ? null
+                : Arrays.stream(topics).map(topic -> ((Struct) topic).getString(REQUEST_TOPIC_NAME)).toList();
+        boolean allowAutoCreate = version < 4 || request.getBoolean(layout.indexOf("allow_auto_topic_creation"));
+        ResponseKey key = new ResponseKey(version, requested,
+                version >= 8 && request.getBoolean(layout.indexOf("include_cluster_authorized_operations")),
+                version >= 8 && request.getBoolean(layout.indexOf("include_topic_authorized_operations")));
+
+        MetadataSnapshot snapshot = metadataCache.snapshot();
+        if (requested != null) {
+            if (topicCreator.enabled() && allowAutoCreate) {
+                snapshot = createMissingTopics(snapshot, requested);
+            }
+            for (String topic : requested) {
+                if (!snapshot.hasTopic(topic)) {
+                    BrokerMetrics.recordError(missingTopicError(topic));
+                }
+            }
+        }
+        MetadataSnapshot source = snapshot;
+        ByteBuffer body = source.encodedResponse(key, () -> Encoder.encodeBody(codecs.responseBody(), buildBody(codecs, source, key)));
+        return ResponseMessage.ofEncoded(codecs, requestInfo.correlationId(), body);
+    }
+
+    /**
+     * @return The snapshot to answer from, which includes the topics created, if any.
+     */
+    private MetadataSnapshot createMissingTopics(MetadataSnapshot snapshot, List<String> topics) {
+        boolean created = false;
+        for (String topic : topics) {
+            if (!snapshot.hasTopic(topic) && topicCreator.createTopic(topic)) {
+                created = true;
+            }
+        }
+        return created ? metadataCache.snapshot() : snapshot;
+    }
+
+    private Struct buildBody(CompiledSchemaSet codecs, MetadataSnapshot snapshot, ResponseKey key) {
+        Struct body = codecs.responseBody().newStruct();
+        StructLayout layout = body.layout();
+        body.setInt(layout.indexOf("throttle_time_ms"), 0);
+        body.setObject(layout.indexOf("brokers"), snapshot.brokers().stream().map(MetadataHandler::brokerStruct).toArray());
+        body.setObject(layout.indexOf("cluster_id"), null);
+        body.setInt(layout.indexOf("controller_id"), snapshot.controllerId());
+        Collection<String> topics = key.topics() != null ? key.topics() : snapshot.topics();
+        int topicOperations = key.includeTopicOperations() ? TOPIC_OPERATIONS : AUTHORIZED_OPERATIONS_OMITTED;
+        body.setObject(layout.indexOf("topics"), topics.stream().map(topic -> topicStruct(snapshot, topic, topicOperations)).toArray());
+        body.setInt(layout.indexOf("cluster_authorized_operations"),
+                key.includeClusterOperations() ? CLUSTER_OPERATIONS : AUTHORIZED_OPERATIONS_OMITTED);
+        return body;
+    }
+
+    private static Struct brokerStruct(BrokerNode broker) {
+        Struct struct = new Struct(BROKER);
+        struct.setInt(BROKER_NODE_ID, broker.nodeId());
+        struct.setObject(BROKER_HOST, broker.host());
+        struct.setInt(BROKER_PORT, broker.port());
+        struct.setObject(BROKER_RACK, broker.rack());
+        return struct;
+    }
+
+    private static Struct topicStruct(MetadataSnapshot snapshot, String topic, int authorizedOperations) {
+        Struct struct = new Struct(TOPIC);
+        struct.setObject(TOPIC_NAME, topic);
+        struct.setBoolean(TOPIC_IS_INTERNAL, topic.equals(OffsetStore.OFFSETS_TOPIC));
+        struct.setInt(TOPIC_AUTHORIZED_OPERATIONS, authorizedOperations);
+        Collection<PartitionState> partitions = snapshot.partitions(topic);
+        if (partitions == null) {
+            struct.setShort(TOPIC_ERROR_CODE, missingTopicError(topic).getCode());
+            struct.setObject(TOPIC_PARTITIONS, new Object[0]);
+            return struct;
+        }
+        struct.setShort(TOPIC_ERROR_CODE, ErrorCode.NONE.getCode());
+        struct.setObject(TOPIC_PARTITIONS, partitions.stream().map(MetadataHandler::partitionStruct).toArray());
+        return struct;
+    }
+
+    private static Struct partitionStruct(PartitionState state) {
+        Struct struct = new Struct(PARTITION);
+        struct.setShort(PARTITION_ERROR_CODE, ErrorCode.NONE.getCode());
+        struct.setInt(PARTITION_INDEX, state.topicPartition().partition());
+        struct.setInt(PARTITION_LEADER_ID, state.leaderId());
+        struct.setInt(PARTITION_LEADER_EPOCH, state.leaderEpoch());
+        struct.setObject(PARTITION_REPLICA_NODES, state.replicas().toArray());
+        struct.setObject(PARTITION_ISR_NODES, state.isr().toArray());
+        struct.setObject(PARTITION_OFFLINE_REPLICAS, new Object[0]);
+        return struct;
+    }
+
+    private static ErrorCode missingTopicError(String topic) {
+        return TopicPartition.isValidTopicName(topic) ? ErrorCode.UNKNOWN_TOPIC_OR_PARTITION : ErrorCode.INVALID_TOPIC_EXCEPTION;
+    }
+
+    private static int bits(int... operations) {
+        int bits = 0;
+        for (int operation : operations) {
+            bits |= 1 << operation;
+        }
+        return bits;
+    }
+}
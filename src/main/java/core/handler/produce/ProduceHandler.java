@@ -0,0 +1,286 @@
+package core.handler.produce;
+
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.group.OffsetStore;
+import core.handler.RequestHandler;
+import core.metadata.AutoTopicCreator;
+import core.metadata.MetadataCache;
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import exceptions.ApiException;
+import exceptions.CorruptRecordException;
+import exceptions.ErrorCode;
+import exceptions.InvalidRecordException;
+import exceptions.InvalidTopicException;
+import exceptions.UnknownTopicOrPartitionException;
+import log.Log;
+import log.LogAppendInfo;
+import log.LogManager;
+import log.RecordBatchValidator;
+import log.RecordVisitor;
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+import metrics.BrokerMetrics;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import schema.ApiSchema;
+import schema.ProduceApiSchema;
+import schema.SchemaRegistry;
+import schema.VersionRange;
+import util.Parser;
+import util.Struct;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Appends produced record batches to the partition logs. Unknown topics are created through the
+ * {@link AutoTopicCreator} if the broker allows it, and partitions that do not exist otherwise get
+ * UNKNOWN_TOPIC_OR_PARTITION. Records without a key are rejected for compacted topics, and records for the internal
+ * offsets topic altogether.
+ * {@code acks=0} requests get no response, {@code acks=1} requests are answered once the batches are appended,
+ * and {@code acks=-1} requests once a group commit has synced them to disk, or when {@code timeout_ms} expires.
+ */
+@Slf4j
+public class ProduceHandler implements RequestHandler {
+    private static final ProduceApiSchema produceSchema = new ProduceApiSchema();
+
+    private static final StructLayout TOPIC_DATA = produceSchema.topicDataLayout();
+    private static final StructLayout PARTITION_DATA = produceSchema.partitionDataLayout();
+    private static final StructLayout TOPIC_RESPONSE = produceSchema.topicResponseLayout();
+    private static final StructLayout PARTITION_RESPONSE = produceSchema.partitionResponseLayout();
+
+    private static final int TOPIC_NAME = TOPIC_DATA.indexOf("name");
+    private static final int TOPIC_PARTITION_DATA = TOPIC_DATA.indexOf("partition_data");
+    private static final int PARTITION_INDEX = PARTITION_DATA.indexOf("index");
+    private static final int PARTITION_RECORDS = PARTITION_DATA.indexOf("records");
+
+    private static final int RESPONSE_TOPIC_NAME = TOPIC_RESPONSE.indexOf("name");
+    private static final int RESPONSE_PARTITIONS = TOPIC_RESPONSE.indexOf("partition_responses");
+    private static final int RESPONSE_INDEX = PARTITION_RESPONSE.indexOf("index");
+    private static final int RESPONSE_ERROR_CODE = PARTITION_RESPONSE.indexOf("error_code");
+    private static final int RESPONSE_BASE_OFFSET = PARTITION_RESPONSE.indexOf("base_offset");
+    private static final int RESPONSE_LOG_APPEND_TIME = PARTITION_RESPONSE.indexOf("log_append_time_ms");
+    private static final int RESPONSE_LOG_START_OFFSET = PARTITION_RESPONSE.indexOf("log_start_offset");
+    private static final int RESPONSE_RECORD_ERRORS = PARTITION_RESPONSE.indexOf("record_errors");
+
+    // Compaction keeps the latest record of each key, so a record without one could never be compacted away
+    private static final RecordVisitor REQUIRE_KEY = record -> {
+        if (!record.hasKey()) {
+            throw new InvalidRecordException("Compacted topics only accept records with a key");
+        }
+    };
+
+    private static final short ACKS_NONE = 0;
+    private static final short ACKS_LEADER = 1;
+    private static final short ACKS_ALL = -1;
+
+    private final LogManager logManager;
+    private final MetadataCache metadataCache;
+    private final AutoTopicCreator topicCreator;
+    private final DelayedOperationPurgatory<DelayedOperation> producePurgatory;
+    private final DelayedOperationPurgatory<DelayedOperation> fetchPurgatory;
+    private final int maxDecompressedBatchBytes;
+
+    /**
+     * @param topicCreator   Creates the topics produced to before they exist, as Metadata requests would.
+     * @param fetchPurgatory The purgatory of parked Fetch requests, woken up by every append to their partitions.
+     * @param maxDecompressedBatchBytes The most the records of a compressed batch may decompress to, so that a
+     *                                  small request cannot make the broker allocate far more than it read.
+     */
+    public ProduceHandler(LogManager logManager, MetadataCache metadataCache, AutoTopicCreator topicCreator,
+                          DelayedOperationPurgatory<DelayedOperation> producePurgatory,
+                          DelayedOperationPurgatory<DelayedOperation> fetchPurgatory, int maxDecompressedBatchBytes) {
+        this.logManager = logManager;
+        this.metadataCache = metadataCache;
+        this.topicCreator = topicCreator;
+        this.producePurgatory = producePurgatory;
+        this.fetchPurgatory = fetchPurgatory;
+        this.maxDecompressedBatchBytes = maxDecompressedBatchBytes;
+    }
+
+    @Override
+    public short apiKey() {
+        return produceSchema.apiKey();
+    }
+
+    @Override
+    public ApiSchema apiSchema() {
+        return produceSchema;
+    }
+
+    @Override
+    public VersionRange supportedVersions() {
+        return produceSchema.versionRange();
+    }
+
+    @Override
+    public ResponseMessage handleRequest(RequestInfo requestInfo) {
+        return handleRequestAsync(requestInfo).join();
+    }
+
+    @Override
+    public CompletableFuture<ResponseMessage> handleRequestAsync(RequestInfo requestInfo) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey(), requestInfo.requestApiVersion());
+        Struct request = Parser.parseMessage(requestInfo, codecs).requestBody();
+        StructLayout requestLayout = request.layout();
+        short acks = request.getShort(requestLayout.indexOf("acks"));
+        boolean validAcks = acks == ACKS_NONE || acks == ACKS_LEADER || acks == ACKS_ALL;
+
+        Object[] topics = request.getArray(requestLayout.indexOf("topic_data"));
+        Object[] topicResponses = new Object[topics == null ? 0 : topics.length];
+        List<PendingFlush> pendingFlushes = new ArrayList<>();
+        for (int i = 0; i < topicResponses.length; i++) {
+            Struct topic = (Struct) topics[i];
+            Object[] partitions = topic.getArray(TOPIC_PARTITION_DATA);
+            Object[] partitionResponses = new Object[partitions == null ? 0 : partitions.length];
+            for (int j = 0; j < partitionResponses.length; j++) {
+                Struct partitionResponse = newPartitionResponse(((Struct) partitions[j]).getInt(PARTITION_INDEX));
+                if (validAcks) {
+                    CompletableFuture<Void> flush = append(topic.getString(TOPIC_NAME), (Struct) partitions[j], acks, partitionResponse);
+                    if (flush != null) {
+                        pendingFlushes.add(new PendingFlush(partitionResponse, flush));
+                    }
+                } else {
+                    setError(partitionResponse, ErrorCode.INVALID_REQUIRED_ACKS);
+                }
+                partitionResponses[j] = partitionResponse;
+            }
+            Struct topicResponse = new Struct(TOPIC_RESPONSE);
+            topicResponse.setObject(RESPONSE_TOPIC_NAME, topic.getString(TOPIC_NAME));
+            topicResponse.setObject(RESPONSE_PARTITIONS, partitionResponses);
+            topicResponses[i] = topicResponse;
+        }
+
+        if (acks == ACKS_NONE) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Struct response = codecs.responseBody().newStruct();
+        StructLayout layout = response.layout();
+        response.setObject(layout.indexOf("responses"), topicResponses);
+        response.setInt(layout.indexOf("throttle_time_ms"), 0);
+        ResponseMessage responseMessage = ResponseMessage.of(codecs, requestInfo.correlationId(), response);
+        if (pendingFlushes.isEmpty()) {
+            return CompletableFuture.completedFuture(responseMessage);
+        }
+        DelayedProduce delayedProduce = new DelayedProduce(request.getInt(requestLayout.indexOf("timeout_ms")), pendingFlushes, responseMessage);
+        producePurgatory.tryCompleteElseWatch(delayedProduce, List.of());
+        delayedProduce.allFlushed.whenComplete((ignored, error) -> delayedProduce.forceComplete());
+        return delayedProduce.response;
+    }
+
+    private record PendingFlush(Struct partitionResponse, CompletableFuture<Void> flush) {
+    }
+
+    /**
+     * An {@code acks=-1} Produce waiting for the group commits covering its partitions, for at most {@code timeout_ms}.
+     * Partitions whose flush failed report KAFKA_STORAGE_ERROR and those still unflushed at expiry REQUEST_TIMED_OUT.
+     */
+    private static final class DelayedProduce extends DelayedOperation {
+        private final CompletableFuture<ResponseMessage> response = new CompletableFuture<>();
+        private final List<PendingFlush> pendingFlushes;
+        private final CompletableFuture<Void> allFlushed;
+        private final ResponseMessage responseMessage;
+
+        private DelayedProduce(long timeoutMs, List<PendingFlush> pendingFlushes, ResponseMessage responseMessage) {
+            super(timeoutMs);
+            this.pendingFlushes = pendingFlushes;
+            this.allFlushed = CompletableFuture.allOf(pendingFlushes.stream().map(PendingFlush::flush).toArray(CompletableFuture[]::new));
+            this.responseMessage = responseMessage;
+        }
+
+        @Override
+        public boolean tryComplete() {
+            return allFlushed.isDone() && forceComplete();
+        }
+
+        @Override
+        protected void onComplete() {
+            for (PendingFlush pending : pendingFlushes) {
+                ErrorCode errorCode;
+                if (!pending.flush().isDone()) {
+                    errorCode = ErrorCode.REQUEST_TIMED_OUT;
+                } else if (pending.flush().isCompletedExceptionally()) {
+                    errorCode = ErrorCode.KAFKA_STORAGE_ERROR;
+                } else {
+                    continue;
+                }
+                setError(pending.partitionResponse(), errorCode);
+                pending.partitionResponse().setLong(RESPONSE_BASE_OFFSET, -1L);
+            }
+            response.complete(responseMessage);
+        }
+    }
+
+    /**
+     * Appends one partition's records and fills in its response.
+     *
+     * @return The flush to wait for before responding, or {@code null} if the response is already final.
+     */
+    private CompletableFuture<Void> append(String topic, Struct partitionData, short acks, Struct partitionResponse) {
+        TopicPartition topicPartition = new TopicPartition(topic, partitionData.getInt(PARTITION_INDEX));
+        try {
+            if (!TopicPartition.isValidTopicName(topic)) {
+                throw new InvalidTopicException("Invalid topic name " + topic);
+            }
+            // Only the offset store writes the offsets log, which it loads back at startup
+            if (topic.equals(OffsetStore.OFFSETS_TOPIC)) {
+                throw new InvalidTopicException("Clients may not produce to the internal topic " + topic);
+            }
+            ByteBuffer records = (ByteBuffer) partitionData.getObject(PARTITION_RECORDS);
+            if (records == null) {
+                throw new CorruptRecordException("Produce request for " + topicPartition + " has no records");
+            }
+            RecordBatchValidator.validate(records, maxDecompressedBatchBytes,
+                    logManager.configFor(topic).compact() ? REQUIRE_KEY : RecordVisitor.NONE);
+            Log partitionLog = partitionLog(topicPartition);
+            LogAppendInfo appendInfo = partitionLog.append(records);
+            partitionResponse.setLong(RESPONSE_BASE_OFFSET, appendInfo.firstOffset());
+            partitionResponse.setLong(RESPONSE_LOG_START_OFFSET, partitionLog.logStartOffset());
+            fetchPurgatory.checkAndComplete(topicPartition);
+            if (acks == ACKS_ALL) {
+                return logManager.awaitFlush(partitionLog, appendInfo.lastOffset(), appendInfo.sizeInBytes());
+            }
+        } catch (ApiException e) {
+            setError(partitionResponse, e.getErrorCode());
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to append to {}", topicPartition, e);
+            setError(partitionResponse, ErrorCode.KAFKA_STORAGE_ERROR);
+        }
+        return null;
+    }
+
+    /**
+     * @throws UnknownTopicOrPartitionException if the partition does not exist and was not created along with its topic.
+     */
+    private Log partitionLog(TopicPartition topicPartition) {
+        Optional<Log> partitionLog = logManager.getLog(topicPartition);
+        if (partitionLog.isEmpty() && !metadataCache.snapshot().hasTopic(topicPartition.topic())
+                && topicCreator.createTopic(topicPartition.topic())) {
+            partitionLog = logManager.getLog(topicPartition);
+        }
+        return partitionLog.orElseThrow(() -> new UnknownTopicOrPartitionException("This server does not host " + topicPartition));
+    }
+
+    private static void setError(Struct partitionResponse, ErrorCode errorCode) {
+        partitionResponse.setShort(RESPONSE_ERROR_CODE, errorCode.getCode());
+        BrokerMetrics.recordError(errorCode);
+    }
+
+    private static Struct newPartitionResponse(int partitionIndex) {
+        Struct partitionResponse = new Struct(PARTITION_RESPONSE);
+        partitionResponse.setInt(RESPONSE_INDEX, partitionIndex);
+        partitionResponse.setShort(RESPONSE_ERROR_CODE, ErrorCode.NONE.getCode());
+        partitionResponse.setLong(RESPONSE_BASE_OFFSET, -1L);
+        partitionResponse.setLong(RESPONSE_LOG_APPEND_TIME, -1L);
+        partitionResponse.setLong(RESPONSE_LOG_START_OFFSET, -1L);
+        partitionResponse.setObject(RESPONSE_RECORD_ERRORS, new Object[0]);
+        return partitionResponse;
+    }
+}
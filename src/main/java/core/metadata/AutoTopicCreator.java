@@ -0,0 +1,57 @@
+package core.metadata;
+
+import log.LogManager;
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Creates the topics clients name before they exist, with {@code num.partitions} partitions, if
+ * {@code auto.create.topics.enable} allows it. Metadata and Produce requests go through the same creator, so a topic
+ * is always created whole, whichever of them names it first.
+ */
+@Slf4j
+public class AutoTopicCreator {
+
+    private final LogManager logManager;
+    private final int numPartitions;
+    private final boolean enabled;
+
+    /**
+     * @param numPartitions The partitions of topics created automatically.
+     * @param enabled       Whether unknown topics are created at all.
+     */
+    public AutoTopicCreator(LogManager logManager, int numPartitions, boolean enabled) {
+        this.logManager = logManager;
+        this.numPartitions = numPartitions;
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Creates partitions {@code 0} to {@code num.partitions - 1} of a topic. Every new log is added to the metadata
+     * cache by the log manager's creation listener.
+     *
+     * @return Whether the topic was created, which it is not if auto-creation is disabled, the name is invalid or
+     * a log could not be created.
+     */
+    public boolean createTopic(String topic) {
+        if (!enabled || !TopicPartition.isValidTopicName(topic)) {
+            return false;
+        }
+        try {
+            for (int partition = 0; partition < numPartitions; partition++) {
+                logManager.getOrCreateLog(new TopicPartition(topic, partition));
+            }
+        } catch (UncheckedIOException e) {
+            log.error("Failed to create topic {}", topic, e);
+            return false;
+        }
+        log.info("Created topic {} with {} partitions", topic, numPartitions);
+        return true;
+    }
+}
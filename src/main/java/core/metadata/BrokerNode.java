@@ -0,0 +1,9 @@
+package core.metadata;
+
+/**
+ * A broker as advertised to clients in Metadata responses.
+ *
+ * @param rack The broker's rack, or {@code null} if it has none.
+ */
+public record BrokerNode(int nodeId, String host, int port, String rack) {
+}
@@ -0,0 +1,69 @@
+package core.metadata;
+
+import log.TopicPartition;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The broker's view of the cluster's brokers, topics and partition states, served to clients through Metadata
+ * requests. Reads go through a single volatile reference to an immutable {@link MetadataSnapshot} and never lock;
+ * updates, e.g. a topic being created or a partition changing leader, copy the snapshot, apply the change and
+ * publish the copy. Updates are serialized among themselves, which is cheap since they are rare next to the
+ * metadata refreshes of every client.
+ */
+@Slf4j
+public class MetadataCache {
+
+    private volatile MetadataSnapshot snapshot;
+
+    public MetadataCache(int controllerId) {
+        this.snapshot = new MetadataSnapshot(Map.of(), controllerId, Collections.emptyNavigableMap());
+    }
+
+    /**
+     * @return The latest snapshot. Hold on to it for the duration of a request, so the whole response is consistent.
+     */
+    public MetadataSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds a broker, or replaces the one with the same node id.
+     */
+    public synchronized void updateBroker(BrokerNode broker) {
+        MetadataSnapshot current = snapshot;
+        Map<Integer, BrokerNode> brokers = new LinkedHashMap<>(current.brokerMap());
+        brokers.put(broker.nodeId(), broker);
+        snapshot = new MetadataSnapshot(Collections.unmodifiableMap(brokers), current.controllerId(), current.topicMap());
+    }
+
+    /**
+     * Adds partitions, creating their topics if needed, or replaces the state of existing ones, e.g. after a leader
+     * change. All of them become visible at once.
+     */
+    public synchronized void updatePartitions(Collection<PartitionState> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        MetadataSnapshot current = snapshot;
+        NavigableMap<String, NavigableMap<Integer, PartitionState>> topics = new TreeMap<>(current.topicMap());
+        // Copy each changed topic once, however many of its partitions change
+        Map<String, NavigableMap<Integer, PartitionState>> copied = new LinkedHashMap<>();
+        for (PartitionState partition : partitions) {
+            TopicPartition topicPartition = partition.topicPartition();
+            copied.computeIfAbsent(topicPartition.topic(), topic -> {
+                NavigableMap<Integer, PartitionState> existing = topics.get(topic);
+                return existing == null ? new TreeMap<>() : new TreeMap<>(existing);
+            }).put(topicPartition.partition(), partition);
+        }
+        copied.forEach((topic, topicPartitions) -> topics.put(topic, Collections.unmodifiableNavigableMap(topicPartitions)));
+        snapshot = new MetadataSnapshot(current.brokerMap(), current.controllerId(), Collections.unmodifiableNavigableMap(topics));
+        log.debug("Updated the metadata of {} partitions", partitions.size());
+    }
+}
@@ -0,0 +1,88 @@
+package core.metadata;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * An immutable view of the cluster published by the {@link MetadataCache}. Besides brokers and partition states,
+ * a snapshot caches the responses encoded from it, which are dropped together with the snapshot once a newer one
+ * is published, so a cached response never outlives the metadata it was built from.
+ */
+public final class MetadataSnapshot {
+
+    // Requests may name any set of topics, so only the first responses are cached rather than growing without bound
+    private static final int MAX_CACHED_RESPONSES = 1024;
+
+    private final Map<Integer, BrokerNode> brokers;
+    private final int controllerId;
+    private final NavigableMap<String, NavigableMap<Integer, PartitionState>> topics;
+    private final Map<Object, ByteBuffer> encodedResponses = new ConcurrentHashMap<>();
+
+    MetadataSnapshot(Map<Integer, BrokerNode> brokers, int controllerId, NavigableMap<String, NavigableMap<Integer, PartitionState>> topics) {
+        this.brokers = brokers;
+        this.controllerId = controllerId;
+        this.topics = topics;
+    }
+
+    public Collection<BrokerNode> brokers() {
+        return brokers.values();
+    }
+
+    public int controllerId() {
+        return controllerId;
+    }
+
+    /**
+     * @return The names of every topic, in order.
+     */
+    public Set<String> topics() {
+        return topics.keySet();
+    }
+
+    public boolean hasTopic(String topic) {
+        return topics.containsKey(topic);
+    }
+
+    /**
+     * @return The states of the topic's partitions ordered by partition index, or {@code null} for an unknown topic.
+     */
+    public Collection<PartitionState> partitions(String topic) {
+        Map<Integer, PartitionState> partitions = topics.get(topic);
+        return partitions == null ? null : partitions.values();
+    }
+
+    NavigableMap<String, NavigableMap<Integer, PartitionState>> topicMap() {
+        return topics;
+    }
+
+    Map<Integer, BrokerNode> brokerMap() {
+        return brokers;
+    }
+
+    /**
+     * Returns the response cached under {@code key}, encoding and caching it first if needed.
+     *
+     * @param key    Identifies everything besides this snapshot that the response depends on, e.g. the api version
+     *               and the topics requested.
+     * @param encode Encodes the response from this snapshot, e.g. with {@link util.Encoder#encodeBody}.
+     * @return The encoded response, shared by every caller, so only read it through a duplicate.
+     */
+    public ByteBuffer encodedResponse(Object key, Supplier<ByteBuffer> encode) {
+        ByteBuffer encoded = encodedResponses.get(key);
+        if (encoded == null) {
+            encoded = encode.get();
+            if (encodedResponses.size() < MAX_CACHED_RESPONSES) {
+                ByteBuffer raced = encodedResponses.putIfAbsent(key, encoded);
+                if (raced != null) {
+                    encoded = raced;
+                }
+            }
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,27 @@
+package core.metadata;
+
+import log.TopicPartition;
+
+import java.util.List;
+
+/**
+ * The leadership and replica assignment of a partition.
+ *
+ * @param leaderEpoch Bumped on every leader change, so clients can tell stale metadata from fresh.
+ * @param replicas    The brokers assigned a replica, preferred leader first.
+ * @param isr         The replicas in sync with the leader.
+ */
+public record PartitionState(TopicPartition topicPartition, int leaderId, int leaderEpoch, List<Integer> replicas, List<Integer> isr) {
+
+    public PartitionState {
+        replicas = List.copyOf(replicas);
+        isr = List.copyOf(isr);
+    }
+
+    /**
+     * The state of a partition hosted by a single broker, which leads it and is its only replica.
+     */
+    public static PartitionState local(TopicPartition topicPartition, int brokerId) {
+        return new PartitionState(topicPartition, brokerId, 0, List.of(brokerId), List.of(brokerId));
+    }
+}
@@ -0,0 +1,43 @@
+package core.network;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Accepts new client connections and hands them to the processors in round-robin order. The list of processors
+ * may change while the acceptor runs, as long as it is safe to read concurrently, e.g. a copy-on-write list.
+ */
+@Slf4j
+public class Acceptor implements Runnable {
+
+    private final ServerSocketChannel serverChannel;
+    private final List<Processor> processors;
+    private int nextProcessor;
+
+    public Acceptor(ServerSocketChannel serverChannel, List<Processor> processors) {
+        this.serverChannel = serverChannel;
+        this.processors = processors;
+    }
+
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                Processor[] current = processors.toArray(Processor[]::new);
+                nextProcessor = nextProcessor % current.length;
+                current[nextProcessor].accept(channel);
+                nextProcessor = (nextProcessor + 1) % current.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.error("Error accepting client connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package core.network;
+
+import core.RequestDispatcher;
+import lombok.extern.slf4j.Slf4j;
+import metrics.BrokerMetrics;
+import util.DirectBufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Serves a single connection with blocking I/O, meant to run on its own virtual thread.
+ * The reader loop hands every frame to the shared executor so pipelined requests are handled concurrently,
+ * while a dedicated writer thread sends the responses strictly in the order the requests arrived.
+ * Frames are read straight into buffers of the memory pool and released once handled.
+ * The reader stops reading for the throttle time of a request that took the client over a quota.
+ */
+@Slf4j
+public class BlockingConnection implements Runnable {
+
+    private static final int SIZE_PREFIX_BYTES = 4;
+    private static final CompletableFuture<Send> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
+    private final String id;
+    private final SocketChannel channel;
+    private final RequestDispatcher dispatcher;
+    private final ExecutorService executor;
+    private final BlockingQueue<CompletableFuture<Send>> inFlight;
+    private final DirectBufferPool memoryPool;
+    private final int maxRequestBytes;
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(SIZE_PREFIX_BYTES);
+    // Set by the executor thread of a request that took the client over a quota
+    private volatile long throttledUntilNanos = System.nanoTime();
+
+    public BlockingConnection(String id, SocketChannel channel, RequestDispatcher dispatcher,
+                              ExecutorService executor, int maxInFlightRequests, DirectBufferPool memoryPool, int maxRequestBytes) {
+        this.id = id;
+        this.channel = channel;
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.inFlight = new ArrayBlockingQueue<>(maxInFlightRequests);
+        this.memoryPool = memoryPool;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    public void run() {
+        BrokerMetrics.connectionOpened();
+        Thread writer = Thread.ofVirtual().name("connection-writer-" + id).start(this::writeResponses);
+        try {
+            channel.socket().setTcpNoDelay(true);
+            while (true) {
+                awaitThrottle();
+                ByteBuffer frame = readFrame();
+                if (frame == null) {
+                    break;
+                }
+                long receivedNanos = System.nanoTime();
+                CompletableFuture<Send> response = CompletableFuture.supplyAsync(() -> dispatch(frame, receivedNanos), executor)
+                        .thenCompose(Function.identity());
+                if (!enqueue(response)) {
+                    release(response);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                log.error("Error reading from connection {}", id, e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            endOfStream();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close();
+        // Responses queued after a failed writer drained the queue
+        releaseInFlight();
+        BrokerMetrics.connectionClosed();
+    }
+
+    private void throttle(int throttleTimeMs) {
+        throttledUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(throttleTimeMs);
+    }
+
+    /**
+     * Stops reading while the client is throttled for exceeding a quota.
+     */
+    private void awaitThrottle() throws InterruptedException {
+        long remainingNanos = throttledUntilNanos - System.nanoTime();
+        if (remainingNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(remainingNanos);
+        }
+    }
+
+    private CompletableFuture<Send> dispatch(ByteBuffer frame, long receivedNanos) {
+        try {
+            return dispatcher.dispatch(frame, receivedNanos, this::throttle);
+        } finally {
+            memoryPool.release(frame);
+        }
+    }
+
+    /**
+     * Reads the next frame straight from the channel into a buffer of the memory pool, waiting for memory while the
+     * pool is exhausted.
+     *
+     * @return The frame, including its size prefix, or {@code null} if the peer closed the connection between frames.
+     */
+    private ByteBuffer readFrame() throws IOException, InterruptedException {
+        sizeBuffer.clear();
+        if (!readFully(sizeBuffer)) {
+            return null;
+        }
+        int messageSize = sizeBuffer.getInt(0);
+        if (messageSize < 0) {
+            throw new InvalidReceiveException("Invalid message size " + messageSize);
+        }
+        // Checked before anything is allocated, so a bogus size prefix cannot take up memory
+        if (messageSize > maxRequestBytes) {
+            throw new InvalidReceiveException("Message size " + messageSize + " is larger than socket.request.max.bytes " + maxRequestBytes);
+        }
+        ByteBuffer frame = memoryPool.allocateBlocking(SIZE_PREFIX_BYTES + messageSize);
+        frame.putInt(messageSize);
+        try {
+            if (!readFully(frame)) {
+                throw new EOFException("Connection " + id + " was closed in the middle of a request");
+            }
+        } catch (IOException e) {
+            memoryPool.release(frame);
+            throw e;
+        }
+        return frame.flip();
+    }
+
+    /**
+     * @return {@code false} if the peer closed the connection before the first byte.
+     */
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == start) {
+                    return false;
+                }
+                throw new EOFException("Connection " + id + " was closed in the middle of a request");
+            }
+        }
+        return true;
+    }
+
+    private void writeResponses() {
+        try {
+            while (true) {
+                CompletableFuture<Send> next = inFlight.take();
+                if (next == END_OF_STREAM) {
+                    return;
+                }
+                Send response = next.join();
+                if (response != null) {
+                    try {
+                        while (!response.writeTo(channel)) {
+                            Thread.onSpinWait();
+                        }
+                    } finally {
+                        response.release();
+                    }
+                }
+            }
+        } catch (CompletionException e) {
+            log.error("Closing connection {} after error", id, e.getCause());
+        } catch (IOException e) {
+            log.error("Error writing to connection {}", id, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close();
+        releaseInFlight();
+    }
+
+    /**
+     * Returns the responses nobody will write to the memory pool, once they are encoded.
+     */
+    private void releaseInFlight() {
+        CompletableFuture<Send> response;
+        while ((response = inFlight.poll()) != null) {
+            release(response);
+        }
+    }
+
+    private static void release(CompletableFuture<Send> response) {
+        response.thenAccept(send -> {
+            if (send != null) {
+                send.release();
+            }
+        });
+    }
+
+    /**
+     * Queues a response for the writer, waiting while the queue is full.
+     *
+     * @return {@code false} if the writer gave up on the connection, so the response will never be taken.
+     */
+    private boolean enqueue(CompletableFuture<Send> response) throws InterruptedException {
+        // The writer closes the channel when it gives up, after which nobody drains the queue any more.
+        while (!inFlight.offer(response, 100, TimeUnit.MILLISECONDS)) {
+            if (!channel.isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void endOfStream() {
+        try {
+            enqueue(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
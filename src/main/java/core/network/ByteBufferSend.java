@@ -0,0 +1,40 @@
+package core.network;
+
+import util.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Sends one or more buffers with gathering writes and returns them to their pool once released.
+ */
+public class ByteBufferSend implements Send {
+
+    private final ByteBuffer[] buffers;
+    private final BufferPool pool;
+    private long remaining;
+
+    public ByteBufferSend(BufferPool pool, ByteBuffer... buffers) {
+        this.pool = pool;
+        this.buffers = buffers;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+    }
+
+    @Override
+    public boolean writeTo(GatheringByteChannel channel) throws IOException {
+        remaining -= channel.write(buffers);
+        return remaining == 0;
+    }
+
+    @Override
+    public void release() {
+        if (pool != null) {
+            for (ByteBuffer buffer : buffers) {
+                pool.release(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package core.network;
+
+import lombok.Getter;
+import lombok.Setter;
+import metrics.BrokerMetrics;
+import util.DirectBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent client connection owned by a single {@link Processor}.
+ * Keeps the per-connection read state needed to assemble size-prefixed frames from partial reads,
+ * the responses still being produced by their handlers, and the queue of responses waiting to be written to the socket.
+ * Frames are read into buffers of the processor's memory pool.
+ * Requests are handed to the request handlers one at a time, and reading is muted while too many are in flight,
+ * the request channel or the memory pool is full or the client is throttled for exceeding a quota.
+ */
+public class Connection {
+
+    private static final int SIZE_PREFIX_BYTES = 4;
+
+    @Getter
+    private final String id;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final DirectBufferPool memoryPool;
+    private final int maxRequestBytes;
+
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(SIZE_PREFIX_BYTES);
+    private ByteBuffer frameBuffer;
+    private final Deque<CompletableFuture<Send>> pendingResponses = new ArrayDeque<>();
+    private final Deque<Send> sendQueue = new ArrayDeque<>();
+    // Requests waiting for the request in the handlers to finish or for room in the request channel
+    private final Deque<RequestChannel.Request> queuedRequests = new ArrayDeque<>();
+    @Getter
+    @Setter
+    private RequestChannel.Request requestInHandler;
+    @Getter
+    private boolean waitingForMemory;
+    @Getter
+    @Setter
+    private boolean waitingForSpace;
+    private boolean muted;
+    // Set by the request handler thread of a throttled request before it reports the request handled
+    private volatile long throttledUntilNanos = System.nanoTime();
+
+    private boolean closed;
+
+    /**
+     * @param maxRequestBytes The largest request, excluding its size prefix, read before the connection is closed.
+     */
+    public Connection(String id, SocketChannel channel, SelectionKey key, DirectBufferPool memoryPool, int maxRequestBytes) {
+        this.id = id;
+        this.channel = channel;
+        this.key = key;
+        this.memoryPool = memoryPool;
+        this.maxRequestBytes = maxRequestBytes;
+        BrokerMetrics.connectionOpened();
+    }
+
+    /**
+     * Reads whatever is currently available on the socket and returns every frame completed by it.
+     * Each returned frame still carries its 4-byte size prefix, as expected by {@code Parser.parseCommons}, and
+     * must be released to the memory pool once handled. Stops early, {@link #isWaitingForMemory() waiting for
+     * memory}, if the pool has none left for the next frame.
+     *
+     * @return The completed frames, ready to be read, possibly empty if only part of a frame has arrived.
+     * @throws InvalidReceiveException if the size prefix is negative or larger than the request size limit.
+     * @throws IOException if the socket fails or the peer closed the connection.
+     */
+    public List<ByteBuffer> read() throws IOException {
+        List<ByteBuffer> frames = new ArrayList<>();
+        while (true) {
+            if (frameBuffer == null) {
+                if (sizeBuffer.hasRemaining()) {
+                    if (channel.read(sizeBuffer) < 0) {
+                        throw new ConnectionClosedException(id);
+                    }
+                    if (sizeBuffer.hasRemaining()) {
+                        return frames;
+                    }
+                }
+                int messageSize = sizeBuffer.getInt(0);
+                if (messageSize < 0) {
+                    throw new InvalidReceiveException("Invalid message size " + messageSize + " received on connection " + id);
+                }
+                // Checked before anything is allocated, so a bogus size prefix cannot take up memory
+                if (messageSize > maxRequestBytes) {
+                    throw new InvalidReceiveException("Message size " + messageSize + " received on connection " + id
+                            + " is larger than socket.request.max.bytes " + maxRequestBytes);
+                }
+                frameBuffer = memoryPool.tryAllocate(SIZE_PREFIX_BYTES + messageSize);
+                waitingForMemory = frameBuffer == null;
+                if (waitingForMemory) {
+                    return frames;
+                }
+                sizeBuffer.clear();
+                frameBuffer.putInt(messageSize);
+            }
+
+            if (channel.read(frameBuffer) < 0) {
+                throw new ConnectionClosedException(id);
+            }
+            if (frameBuffer.hasRemaining()) {
+                return frames;
+            }
+            frames.add(frameBuffer.flip());
+            frameBuffer = null;
+        }
+    }
+
+    /**
+     * Records the response to a request read from this connection. Responses are sent in request order, so a
+     * completed response waits behind earlier ones that are still pending.
+     * Must only be called from the owning processor thread.
+     */
+    public void addPendingResponse(CompletableFuture<Send> response) {
+        pendingResponses.addLast(response);
+    }
+
+    /**
+     * Moves every completed response at the head of the pending queue to the send queue.
+     *
+     * @throws java.util.concurrent.CompletionException if the handler of a request failed.
+     */
+    public void sendCompletedResponses() {
+        while (!pendingResponses.isEmpty() && pendingResponses.peekFirst().isDone()) {
+            Send response = pendingResponses.pollFirst().join();
+            if (response != null) {
+                send(response);
+            }
+        }
+    }
+
+    /**
+     * Queues a response for this connection and registers interest in write readiness.
+     * Must only be called from the owning processor thread.
+     */
+    public void send(Send response) {
+        sendQueue.addLast(response);
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Writes as much of the pending responses as the socket accepts without blocking.
+     *
+     * @throws IOException if the socket fails.
+     */
+    public void write() throws IOException {
+        while (!sendQueue.isEmpty()) {
+            Send head = sendQueue.peekFirst();
+            if (!head.writeTo(channel)) {
+                return;
+            }
+            sendQueue.pollFirst().release();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Queues a request read from this connection. Requests of a connection reach the handlers one at a time and
+     * in order, so the next one is only handed over once the handler is done with the previous one.
+     */
+    public void queueRequest(RequestChannel.Request request) {
+        queuedRequests.addLast(request);
+    }
+
+    public RequestChannel.Request peekQueuedRequest() {
+        return queuedRequests.peekFirst();
+    }
+
+    public RequestChannel.Request pollQueuedRequest() {
+        return queuedRequests.pollFirst();
+    }
+
+    /**
+     * @return The requests read from this connection whose responses have not been queued for sending yet.
+     */
+    public int inFlightRequests() {
+        return pendingResponses.size();
+    }
+
+    /**
+     * Stops reading from the socket, leaving further requests in the kernel's socket buffers.
+     */
+    public void mute() {
+        if (!muted && key.isValid()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            muted = true;
+        }
+    }
+
+    public void unmute() {
+        if (muted && key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            muted = false;
+        }
+    }
+
+    /**
+     * Keeps the connection muted for {@code throttleTimeMs} from now, because its client exceeded a quota.
+     * Safe to call from any thread.
+     */
+    public void throttle(int throttleTimeMs) {
+        throttledUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(throttleTimeMs);
+    }
+
+    public long throttledUntilNanos() {
+        return throttledUntilNanos;
+    }
+
+    public boolean isThrottled(long nowNanos) {
+        return throttledUntilNanos - nowNanos > 0;
+    }
+
+    public boolean isOpen() {
+        return key.isValid();
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        BrokerMetrics.connectionClosed();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        sendQueue.forEach(Send::release);
+        sendQueue.clear();
+        queuedRequests.forEach(request -> memoryPool.release(request.frame()));
+        queuedRequests.clear();
+        if (frameBuffer != null) {
+            memoryPool.release(frameBuffer);
+            frameBuffer = null;
+        }
+        pendingResponses.forEach(response -> response.thenAccept(send -> {
+            if (send != null) {
+                send.release();
+            }
+        }));
+        pendingResponses.clear();
+    }
+}
@@ -0,0 +1,11 @@
+package core.network;
+
+import java.io.IOException;
+
+public class ConnectionClosedException extends IOException {
+
+    public ConnectionClosedException(String connectionId) {
+        super("Connection " + connectionId + " was closed by the peer.");
+    }
+
+}
@@ -0,0 +1,74 @@
+package core.network;
+
+import codec.FileRegions;
+import log.FileRecords;
+import util.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.List;
+
+/**
+ * Sends an encoded response whose record data lives in segment files. The encoded buffer is written in chunks,
+ * and the file regions between them are handed to {@link java.nio.channels.FileChannel#transferTo}, so record
+ * bytes go from the page cache to the socket without being copied onto the heap.
+ */
+public class FileRegionSend implements Send {
+
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] chunks;
+    private final FileRecords[] files;
+
+    // Even steps write chunks[step / 2], odd steps transfer files[step / 2]
+    private int step;
+    private long fileBytesSent;
+
+    public FileRegionSend(BufferPool pool, ByteBuffer buffer, List<FileRegions.Region> regions) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.chunks = new ByteBuffer[regions.size() + 1];
+        this.files = new FileRecords[regions.size()];
+        int start = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            FileRegions.Region region = regions.get(i);
+            chunks[i] = buffer.slice(start, region.bufferPosition() - start);
+            files[i] = region.records();
+            start = region.bufferPosition();
+        }
+        chunks[regions.size()] = buffer.slice(start, buffer.limit() - start);
+    }
+
+    @Override
+    public boolean writeTo(GatheringByteChannel channel) throws IOException {
+        while (step < chunks.length + files.length) {
+            if ((step & 1) == 0) {
+                ByteBuffer chunk = chunks[step >> 1];
+                channel.write(chunk);
+                if (chunk.hasRemaining()) {
+                    return false;
+                }
+            } else {
+                FileRecords file = files[step >> 1];
+                long sent = file.writeTo(channel, fileBytesSent, file.sizeInBytes() - fileBytesSent);
+                fileBytesSent += sent;
+                if (fileBytesSent < file.sizeInBytes()) {
+                    if (sent == 0 && file.position() + fileBytesSent >= file.channel().size()) {
+                        throw new EOFException("Segment file was truncated while sending records");
+                    }
+                    return false;
+                }
+                fileBytesSent = 0;
+            }
+            step++;
+        }
+        return true;
+    }
+
+    @Override
+    public void release() {
+        pool.release(buffer);
+    }
+}
@@ -0,0 +1,14 @@
+package core.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a connection announces a frame the broker will not read, after which the connection is closed.
+ */
+public class InvalidReceiveException extends IOException {
+
+    public InvalidReceiveException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,45 @@
+package core.network;
+
+import metrics.BrokerMetrics;
+import metrics.RequestMetrics;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Wraps a response to record its send time, the total time of its request and the bytes sent once its last
+ * byte has been written.
+ */
+public class MeteredSend implements Send {
+
+    private final Send delegate;
+    private final RequestMetrics metrics;
+    private final long sizeInBytes;
+    private final long receivedNanos;
+    private final long responseReadyNanos;
+
+    public MeteredSend(Send delegate, RequestMetrics metrics, long sizeInBytes, long receivedNanos, long responseReadyNanos) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.sizeInBytes = sizeInBytes;
+        this.receivedNanos = receivedNanos;
+        this.responseReadyNanos = responseReadyNanos;
+    }
+
+    @Override
+    public boolean writeTo(GatheringByteChannel channel) throws IOException {
+        if (!delegate.writeTo(channel)) {
+            return false;
+        }
+        BrokerMetrics.recordBytesOut(sizeInBytes);
+        if (metrics != null) {
+            metrics.recordCompleted(receivedNanos, responseReadyNanos, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+}
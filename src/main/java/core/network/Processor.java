@@ -0,0 +1,373 @@
+package core.network;
+
+import core.RequestDispatcher;
+import lombok.extern.slf4j.Slf4j;
+import message.request.RequestInfo;
+import util.DirectBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A selector thread that owns a set of persistent connections handed over by the {@link Acceptor}.
+ * Reads frames from every ready connection, parses their headers and queues them on the {@link RequestChannel}
+ * for the request handler threads, then writes the responses back, all without ever blocking on a single socket.
+ * Completed responses are handed back through a queue and the selector is woken up to send them.
+ * <p>
+ * Each connection has at most one request with the handlers at a time, so requests of a connection are handled in
+ * the order they were sent. A connection stops being read while it has too many requests in flight, or while its
+ * next request does not fit into the full request channel, until the handlers catch up. It also stops being read
+ * for the throttle time of a request that took its client over a quota, and while the memory pool has no room
+ * for its next frame.
+ */
+@Slf4j
+public class Processor implements Runnable {
+
+    private final int id;
+    private final Selector selector;
+    private final RequestDispatcher dispatcher;
+    private final RequestChannel requestChannel;
+    private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> completedResponses = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> handledRequests = new ConcurrentLinkedQueue<>();
+    private final Deque<Connection> waitingForSpace = new ArrayDeque<>();
+    private final Deque<Connection> waitingForMemory = new ArrayDeque<>();
+    private final DirectBufferPool memoryPool;
+    private final int maxRequestBytes;
+    private final PriorityQueue<ThrottledConnection> throttledConnections =
+            new PriorityQueue<>(Comparator.comparingLong(ThrottledConnection::untilNanos));
+    private final int maxInFlightRequests;
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+    private long nextConnectionIndex;
+
+    /**
+     * @param memoryPool      The pool request frames are read into, shared by all processors.
+     * @param maxRequestBytes The {@code socket.request.max.bytes} beyond which a connection is closed.
+     */
+    public Processor(int id, RequestDispatcher dispatcher, RequestChannel requestChannel, DirectBufferPool memoryPool,
+                     int maxInFlightRequests, int maxRequestBytes) throws IOException {
+        this.id = id;
+        this.memoryPool = memoryPool;
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.dispatcher = dispatcher;
+        this.requestChannel = requestChannel;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Hands a freshly accepted channel to this processor. Safe to call from any thread.
+     */
+    public void accept(SocketChannel channel) {
+        newConnections.add(channel);
+        if (stopped) {
+            closeNewConnections();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                try {
+                    configureNewConnections();
+                    processHandledRequests();
+                    processCompletedResponses();
+                    processConnectionsWaitingForSpace();
+                    processConnectionsWaitingForMemory();
+                    long timeoutMs = processThrottledConnections();
+                    if (timeoutMs > 0) {
+                        selector.select(timeoutMs);
+                    } else {
+                        selector.select();
+                    }
+                    processSelectedKeys();
+                } catch (ClosedSelectorException e) {
+                    return;
+                } catch (IOException e) {
+                    log.error("Processor {} failed while polling connections", id, e);
+                }
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stops the processor, which then closes its connections, e.g. when the broker shuts down or the number of
+     * network threads is reduced. Safe to call from any thread.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection) {
+                connection.close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.error("Processor {} failed to close its selector", id, e);
+        }
+        stopped = true;
+        closeNewConnections();
+        releaseHandledRequests();
+    }
+
+    private void configureNewConnections() {
+        SocketChannel channel;
+        while ((channel = newConnections.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(id + "-" + nextConnectionIndex++, channel, key, memoryPool, maxRequestBytes));
+            } catch (IOException e) {
+                log.error("Processor {} failed to register new connection", id, e);
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void processCompletedResponses() {
+        Connection connection;
+        while ((connection = completedResponses.poll()) != null) {
+            if (!connection.isOpen()) {
+                continue;
+            }
+            try {
+                connection.sendCompletedResponses();
+                updateReadInterest(connection);
+            } catch (Exception e) {
+                log.error("Closing connection {} after error", connection.getId(), e);
+                connection.close();
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    readFrames(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.write();
+                }
+            } catch (ConnectionClosedException e) {
+                connection.close();
+            } catch (Exception e) {
+                log.error("Closing connection {} after error", connection.getId(), e);
+                connection.close();
+            }
+        }
+    }
+
+    private void readFrames(Connection connection) throws IOException {
+        List<ByteBuffer> frames = connection.read();
+        long receivedNanos = System.nanoTime();
+        for (int i = 0; i < frames.size(); i++) {
+            RequestInfo requestInfo;
+            try {
+                requestInfo = dispatcher.parse(frames.get(i));
+            } catch (RuntimeException e) {
+                frames.subList(i, frames.size()).forEach(memoryPool::release);
+                throw e;
+            }
+            enqueue(connection, frames.get(i), requestInfo, receivedNanos);
+        }
+        if (connection.isWaitingForMemory()) {
+            waitingForMemory.addLast(connection);
+        }
+        updateReadInterest(connection);
+    }
+
+    /**
+     * Called by a request handler thread once it is done with a request of {@code connection}, so the
+     * connection's next request can be handed over. Safe to call from any thread.
+     */
+    public void requestHandled(Connection connection) {
+        handledRequests.add(connection);
+        if (stopped) {
+            releaseHandledRequests();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    // Once the processor has stopped, whoever hands it a connection or a handled request cleans up after it
+    private void closeNewConnections() {
+        SocketChannel channel;
+        while ((channel = newConnections.poll()) != null) {
+            closeQuietly(channel);
+        }
+    }
+
+    private void releaseHandledRequests() {
+        Connection connection;
+        while ((connection = handledRequests.poll()) != null) {
+            memoryPool.release(connection.getRequestInHandler().frame());
+        }
+    }
+
+    private void enqueue(Connection connection, ByteBuffer frame, RequestInfo requestInfo, long receivedNanos) {
+        CompletableFuture<Send> response = new CompletableFuture<>();
+        connection.addPendingResponse(response);
+        response.whenComplete((send, error) -> {
+            completedResponses.add(connection);
+            selector.wakeup();
+        });
+        connection.queueRequest(new RequestChannel.Request(this, connection, frame, requestInfo, receivedNanos, response));
+        submitNext(connection);
+    }
+
+    private void processHandledRequests() {
+        Connection connection;
+        while ((connection = handledRequests.poll()) != null) {
+            memoryPool.release(connection.getRequestInHandler().frame());
+            connection.setRequestInHandler(null);
+            if (!connection.isOpen()) {
+                continue;
+            }
+            if (connection.isThrottled(System.nanoTime())) {
+                throttledConnections.add(new ThrottledConnection(connection, connection.throttledUntilNanos()));
+            }
+            submitNext(connection);
+        }
+    }
+
+    private record ThrottledConnection(Connection connection, long untilNanos) {
+    }
+
+    /**
+     * Unmutes the connections whose throttle time has passed.
+     *
+     * @return How long to wait for the next throttle time to pass, in milliseconds, or 0 if none is throttled.
+     */
+    private long processThrottledConnections() {
+        long nowNanos = System.nanoTime();
+        while (!throttledConnections.isEmpty()) {
+            ThrottledConnection head = throttledConnections.peek();
+            if (head.untilNanos() - nowNanos > 0) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(head.untilNanos() - nowNanos));
+            }
+            throttledConnections.poll();
+            if (head.connection().isOpen()) {
+                updateReadInterest(head.connection());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Hands the next request of every connection that found the request channel full to the handlers, in the
+     * order they found it full, until the channel is full again.
+     */
+    private void processConnectionsWaitingForSpace() {
+        if (waitingForSpace.isEmpty()) {
+            return;
+        }
+        requestChannel.notifyWhenSpace(selector::wakeup);
+        while (!waitingForSpace.isEmpty()) {
+            Connection connection = waitingForSpace.peekFirst();
+            if (connection.isOpen() && !trySubmit(connection)) {
+                return;
+            }
+            waitingForSpace.pollFirst();
+            connection.setWaitingForSpace(false);
+            updateReadInterest(connection);
+        }
+    }
+
+    /**
+     * Resumes reading the connections that found the memory pool exhausted, in the order they found it exhausted,
+     * until it is exhausted again.
+     */
+    private void processConnectionsWaitingForMemory() {
+        if (waitingForMemory.isEmpty()) {
+            return;
+        }
+        memoryPool.notifyWhenAvailable(selector::wakeup);
+        while (!waitingForMemory.isEmpty() && memoryPool.availableBytes() > 0) {
+            Connection connection = waitingForMemory.pollFirst();
+            if (!connection.isOpen()) {
+                continue;
+            }
+            try {
+                readFrames(connection);
+            } catch (ConnectionClosedException e) {
+                connection.close();
+            } catch (Exception e) {
+                log.error("Closing connection {} after error", connection.getId(), e);
+                connection.close();
+            }
+        }
+    }
+
+    private void submitNext(Connection connection) {
+        if (!trySubmit(connection) && !connection.isWaitingForSpace()) {
+            connection.setWaitingForSpace(true);
+            waitingForSpace.addLast(connection);
+        }
+        updateReadInterest(connection);
+    }
+
+    /**
+     * @return {@code false} if the connection has a request for the handlers but the request channel is full.
+     */
+    private boolean trySubmit(Connection connection) {
+        if (connection.getRequestInHandler() != null) {
+            return true;
+        }
+        RequestChannel.Request next = connection.peekQueuedRequest();
+        if (next == null) {
+            return true;
+        }
+        if (!requestChannel.offer(next)) {
+            return false;
+        }
+        connection.setRequestInHandler(connection.pollQueuedRequest());
+        return true;
+    }
+
+    private void updateReadInterest(Connection connection) {
+        if (connection.isWaitingForSpace() || connection.isWaitingForMemory()
+                || connection.inFlightRequests() >= maxInFlightRequests || connection.isThrottled(System.nanoTime())) {
+            connection.mute();
+        } else {
+            connection.unmute();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
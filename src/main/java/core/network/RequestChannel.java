@@ -0,0 +1,69 @@
+package core.network;
+
+import message.request.RequestInfo;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bounded queue between the network threads, which read and parse request headers, and the request handler
+ * threads. Network threads never block on it: when it is full they stop reading from the connection instead,
+ * and ask to be woken up once a handler has taken a request off the queue.
+ */
+public class RequestChannel {
+
+    /**
+     * A request waiting for a handler thread. The handler completes {@code response}, which the owning processor
+     * then sends on the connection, and tells the processor through {@link Processor#requestHandled(Connection)}
+     * once the connection's next request may be handled. The processor then releases {@code frame}, which
+     * {@code requestInfo} points into, so handlers must be done with the request's bytes by the time they return.
+     */
+    public record Request(Processor processor, Connection connection, ByteBuffer frame, RequestInfo requestInfo,
+                          long receivedNanos, CompletableFuture<Send> response) {
+    }
+
+    private final BlockingQueue<Request> requests;
+    private final Queue<Runnable> spaceWaiters = new ConcurrentLinkedQueue<>();
+
+    public RequestChannel(int capacity) {
+        this.requests = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @return {@code false} if the queue is full.
+     */
+    public boolean offer(Request request) {
+        return requests.offer(request);
+    }
+
+    /**
+     * Runs {@code wakeup} once, the next time a request is taken off the queue. Register before retrying a
+     * failed {@link #offer(Request)}, so space freed in between is not missed.
+     */
+    public void notifyWhenSpace(Runnable wakeup) {
+        spaceWaiters.add(wakeup);
+    }
+
+    /**
+     * @return The next request, or {@code null} if none arrived within the timeout.
+     */
+    public Request poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Request request = requests.poll(timeout, unit);
+        if (request != null && !spaceWaiters.isEmpty()) {
+            Runnable wakeup;
+            while ((wakeup = spaceWaiters.poll()) != null) {
+                wakeup.run();
+            }
+        }
+        return request;
+    }
+
+    public int size() {
+        return requests.size();
+    }
+}
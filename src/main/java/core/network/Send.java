@@ -0,0 +1,24 @@
+package core.network;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * A response frame on its way to a socket, possibly written across several calls on a non-blocking channel.
+ */
+public interface Send {
+
+    /**
+     * Writes as much of the remaining frame as the channel accepts.
+     *
+     * @return {@code true} once the whole frame has been written.
+     */
+    boolean writeTo(GatheringByteChannel channel) throws IOException;
+
+    /**
+     * Frees the resources held by this send. Called exactly once, after completion or when the connection closes.
+     */
+    default void release() {
+    }
+
+}
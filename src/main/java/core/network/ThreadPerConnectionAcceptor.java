@@ -0,0 +1,52 @@
+package core.network;
+
+import core.RequestDispatcher;
+import lombok.extern.slf4j.Slf4j;
+import util.DirectBufferPool;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts client connections and serves each of them from its own virtual thread.
+ */
+@Slf4j
+public class ThreadPerConnectionAcceptor implements Runnable {
+
+    private final ServerSocketChannel serverChannel;
+    private final RequestDispatcher dispatcher;
+    private final int maxInFlightRequests;
+    private final DirectBufferPool memoryPool;
+    private final int maxRequestBytes;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private long nextConnectionIndex;
+
+    public ThreadPerConnectionAcceptor(ServerSocketChannel serverChannel, RequestDispatcher dispatcher, int maxInFlightRequests,
+                                       DirectBufferPool memoryPool, int maxRequestBytes) {
+        this.serverChannel = serverChannel;
+        this.dispatcher = dispatcher;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.memoryPool = memoryPool;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                String id = "vt-" + nextConnectionIndex++;
+                executor.execute(new BlockingConnection(id, channel, dispatcher, executor, maxInFlightRequests, memoryPool, maxRequestBytes));
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                log.error("Error accepting client connection", e);
+            }
+        }
+        executor.shutdownNow();
+    }
+}
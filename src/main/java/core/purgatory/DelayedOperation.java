@@ -0,0 +1,76 @@
+package core.purgatory;
+
+import util.timer.TimerTask;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A request that cannot be answered yet, parked in a {@link DelayedOperationPurgatory} until {@link #tryComplete()}
+ * succeeds or its delay runs out. Either way {@link #onComplete()} runs exactly once; on timeout it is followed
+ * by {@link #onExpiration()}.
+ */
+public abstract class DelayedOperation extends TimerTask {
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    protected DelayedOperation(long delayMs) {
+        super(delayMs);
+    }
+
+    /**
+     * Checks whether the operation can complete now and, if so, completes it with {@link #forceComplete()}.
+     *
+     * @return Whether this call completed the operation.
+     */
+    public abstract boolean tryComplete();
+
+    /**
+     * Sends the response. Called once, by whichever thread completes the operation.
+     */
+    protected abstract void onComplete();
+
+    /**
+     * Called after {@link #onComplete()} when the operation completed because it expired.
+     */
+    protected void onExpiration() {
+    }
+
+    /**
+     * Completes the operation unless another thread already did.
+     *
+     * @return Whether this call completed the operation.
+     */
+    public boolean forceComplete() {
+        if (completed.compareAndSet(false, true)) {
+            cancel();
+            onComplete();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Runs {@link #tryComplete()} under the operation's lock, so the checks of concurrent triggers do not interleave.
+     */
+    boolean safeTryComplete() {
+        lock.lock();
+        try {
+            return !isCompleted() && tryComplete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public final void run() {
+        if (forceComplete()) {
+            onExpiration();
+        }
+    }
+}
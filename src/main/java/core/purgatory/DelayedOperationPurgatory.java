@@ -0,0 +1,149 @@
+package core.purgatory;
+
+import lombok.extern.slf4j.Slf4j;
+import util.timer.SystemTimer;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds delayed operations until they can complete or time out. Operations are watched under keys, e.g. the
+ * partitions a Fetch reads; whoever changes the state behind a key calls {@link #checkAndComplete(Object)} to
+ * retry the operations watching it. Timeouts are tracked by a hierarchical timing wheel advanced by a single
+ * reaper thread, so a parked request costs neither a thread nor a scheduled executor task.
+ */
+@Slf4j
+public class DelayedOperationPurgatory<T extends DelayedOperation> implements Closeable {
+
+    private static final long TICK_MS = 1L;
+    private static final int WHEEL_SIZE = 20;
+    private static final long REAPER_POLL_MS = 200L;
+    private static final int DEFAULT_PURGE_INTERVAL = 1000;
+
+    private final String name;
+    private final SystemTimer timer = new SystemTimer(TICK_MS, WHEEL_SIZE);
+    private final Map<Object, Queue<T>> watchersByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger estimatedWatched = new AtomicInteger();
+    private final int purgeInterval;
+    private final Thread reaper;
+    private volatile boolean running = true;
+
+    public DelayedOperationPurgatory(String name) {
+        this(name, DEFAULT_PURGE_INTERVAL);
+    }
+
+    /**
+     * @param purgeInterval How many completed operations may linger in the watch lists before they are purged.
+     */
+    public DelayedOperationPurgatory(String name, int purgeInterval) {
+        this.name = name;
+        this.purgeInterval = purgeInterval;
+        this.reaper = Thread.ofPlatform().name("expiration-reaper-" + name).daemon().start(this::reap);
+    }
+
+    /**
+     * Completes the operation right away if possible, otherwise watches it under every key and starts its timeout.
+     *
+     * @return Whether the operation was completed by this call.
+     */
+    public boolean tryCompleteElseWatch(T operation, List<?> watchKeys) {
+        if (operation.safeTryComplete()) {
+            return true;
+        }
+        for (Object key : watchKeys) {
+            if (operation.isCompleted()) {
+                return false;
+            }
+            watchersByKey.compute(key, (k, watchers) -> {
+                Queue<T> queue = watchers == null ? new ConcurrentLinkedQueue<>() : watchers;
+                queue.add(operation);
+                return queue;
+            });
+        }
+        if (!watchKeys.isEmpty()) {
+            estimatedWatched.incrementAndGet();
+        }
+        // A trigger may have fired between the first check and the watch being registered
+        if (operation.safeTryComplete()) {
+            return true;
+        }
+        if (!operation.isCompleted()) {
+            timer.add(operation);
+            if (operation.isCompleted()) {
+                operation.cancel();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retries the operations watching {@code key} and drops the ones that are done.
+     *
+     * @return The number of operations completed by this call.
+     */
+    public int checkAndComplete(Object key) {
+        Queue<T> watchers = watchersByKey.get(key);
+        if (watchers == null) {
+            return 0;
+        }
+        int completed = 0;
+        Iterator<T> iterator = watchers.iterator();
+        while (iterator.hasNext()) {
+            T operation = iterator.next();
+            if (operation.isCompleted()) {
+                iterator.remove();
+            } else if (operation.safeTryComplete()) {
+                iterator.remove();
+                completed++;
+            }
+        }
+        removeIfEmpty(key);
+        return completed;
+    }
+
+    /**
+     * @return The number of operations waiting for their timeout.
+     */
+    public int delayed() {
+        return timer.size();
+    }
+
+    private void removeIfEmpty(Object key) {
+        watchersByKey.computeIfPresent(key, (k, watchers) -> watchers.isEmpty() ? null : watchers);
+    }
+
+    private void reap() {
+        while (running) {
+            try {
+                timer.advanceClock(REAPER_POLL_MS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to expire delayed operations in the {} purgatory", name, e);
+            }
+            // Operations completed by their timeout stay in the watch lists until purged
+            if (estimatedWatched.get() - timer.size() > purgeInterval) {
+                estimatedWatched.set(timer.size());
+                for (Object key : watchersByKey.keySet()) {
+                    Queue<T> watchers = watchersByKey.get(key);
+                    if (watchers != null) {
+                        watchers.removeIf(DelayedOperation::isCompleted);
+                        removeIfEmpty(key);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        reaper.interrupt();
+    }
+}
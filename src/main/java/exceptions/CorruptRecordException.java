@@ -0,0 +1,9 @@
+package exceptions;
+
+public class CorruptRecordException extends ApiException {
+
+    public CorruptRecordException(String message) {
+        super(ErrorCode.CORRUPT_MESSAGE, message);
+    }
+
+}
@@ -6,9 +6,27 @@ import lombok.Getter;
 public enum ErrorCode {
     NONE(0, "No error."),
     UNKNOWN_SERVER_ERROR(-1, "The server experienced an unexpected error."),
+    OFFSET_OUT_OF_RANGE(1, "The requested offset is not within the range of offsets maintained by the server."),
+    CORRUPT_MESSAGE(2, "This message has failed its CRC checksum, exceeds the valid size, has a null key for a compacted topic, or is otherwise corrupt."),
+    UNKNOWN_TOPIC_OR_PARTITION(3, "This server does not host this topic-partition."),
     REQUEST_TIMED_OUT(7, "The request timed out."),
+    OFFSET_METADATA_TOO_LARGE(12, "The metadata field of the offset request was too large."),
+    COORDINATOR_NOT_AVAILABLE(15, "The coordinator is not available."),
+    NOT_COORDINATOR(16, "This is not the correct coordinator."),
+    INVALID_TOPIC_EXCEPTION(17, "The request attempted to perform an operation on an invalid topic."),
+    INVALID_REQUIRED_ACKS(21, "Produce request specified an invalid value for required acks."),
+    ILLEGAL_GENERATION(22, "Specified group generation id is not valid."),
+    INCONSISTENT_GROUP_PROTOCOL(23, "The group member's supported protocols are incompatible with those of existing members or first group member tried to join with empty protocol type or empty protocol list."),
+    INVALID_GROUP_ID(24, "The configured groupId is invalid."),
+    UNKNOWN_MEMBER_ID(25, "The coordinator is not aware of this member."),
+    INVALID_SESSION_TIMEOUT(26, "The session timeout is not within the range allowed by the broker (as configured by group.min.session.timeout.ms and group.max.session.timeout.ms)."),
+    REBALANCE_IN_PROGRESS(27, "The group is rebalancing, so a rejoin is needed."),
     UNSUPPORTED_VERSION(35, "The version of API is not supported."),
-    INVALID_REQUEST(42, "The request is invalid.");
+    INVALID_REQUEST(42, "The request is invalid."),
+    KAFKA_STORAGE_ERROR(56, "Disk error when trying to access log file on the disk."),
+    UNSUPPORTED_COMPRESSION_TYPE(76, "The requesting client does not support the compression type of given partition."),
+    MEMBER_ID_REQUIRED(79, "The group member needs to have a valid member id before actually entering a consumer group."),
+    INVALID_RECORD(87, "This record has failed the validation on broker and hence will be rejected.");
 
     private final short code;
     private final String message;
@@ -17,4 +35,16 @@ public enum ErrorCode {
         this.code = (short) code;
         this.message = message;
     }
+
+    /**
+     * @return The error with the given code, or {@link #UNKNOWN_SERVER_ERROR} for codes this broker does not know.
+     */
+    public static ErrorCode forCode(short code) {
+        for (ErrorCode errorCode : values()) {
+            if (errorCode.code == code) {
+                return errorCode;
+            }
+        }
+        return UNKNOWN_SERVER_ERROR;
+    }
 }
@@ -0,0 +1,9 @@
+package exceptions;
+
+public class InvalidRecordException extends ApiException {
+
+    public InvalidRecordException(String message) {
+        super(ErrorCode.INVALID_RECORD, message);
+    }
+
+}
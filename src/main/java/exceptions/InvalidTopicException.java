@@ -0,0 +1,9 @@
+package exceptions;
+
+public class InvalidTopicException extends ApiException {
+
+    public InvalidTopicException(String message) {
+        super(ErrorCode.INVALID_TOPIC_EXCEPTION, message);
+    }
+
+}
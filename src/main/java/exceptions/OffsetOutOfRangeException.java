@@ -0,0 +1,9 @@
+package exceptions;
+
+public class OffsetOutOfRangeException extends ApiException {
+
+    public OffsetOutOfRangeException(String message) {
+        super(ErrorCode.OFFSET_OUT_OF_RANGE, message);
+    }
+
+}
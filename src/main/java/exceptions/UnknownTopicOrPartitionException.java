@@ -0,0 +1,9 @@
+package exceptions;
+
+public class UnknownTopicOrPartitionException extends ApiException {
+
+    public UnknownTopicOrPartitionException(String message) {
+        super(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION, message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package exceptions;
+
+public class UnsupportedCompressionTypeException extends ApiException {
+
+    public UnsupportedCompressionTypeException(String message) {
+        super(ErrorCode.UNSUPPORTED_COMPRESSION_TYPE, message);
+    }
+
+}
@@ -0,0 +1,165 @@
+package log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A sparse, append-only index file preallocated to its maximum size and memory-mapped, so lookups
+ * binary-search the mapped entries without any read system calls.
+ * Appends are serialized by the owning log; lookups may run concurrently and only see published entries.
+ */
+public abstract class AbstractIndex implements Closeable {
+
+    protected volatile File file;
+    protected final long baseOffset;
+    protected MappedByteBuffer mmap;
+    private int maxEntries;
+    protected volatile int entries;
+
+    protected AbstractIndex(File file, long baseOffset, int maxIndexSize) throws IOException {
+        this.file = file;
+        this.baseOffset = baseOffset;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int existingSlots = (int) (raf.length() / entrySize());
+            raf.setLength(Math.max(roundDownToEntry(maxIndexSize), (long) existingSlots * entrySize()));
+            this.mmap = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            this.maxEntries = mmap.capacity() / entrySize();
+            // The length of an index left untrimmed by a crash is its preallocated size, not its entries
+            this.entries = writtenEntries(existingSlots);
+        }
+    }
+
+    /**
+     * Counts the entries in the first {@code slots} slots. Entries are written front to back into a zero-filled
+     * file and none of them is all zeros, so they end at the first all-zero slot, which is found by binary search.
+     * The one exception, a time index entry for timestamp 0 at the base offset, is dropped, which only makes lookups
+     * start further back.
+     */
+    private int writtenEntries(int slots) {
+        int low = 0;
+        int high = slots;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isZeroSlot(mid)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean isZeroSlot(int slot) {
+        int start = slot * entrySize();
+        for (int position = start; position < start + entrySize(); position += Integer.BYTES) {
+            if (mmap.getInt(position) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected abstract int entrySize();
+
+    public File file() {
+        return file;
+    }
+
+    public long baseOffset() {
+        return baseOffset;
+    }
+
+    public int entries() {
+        return entries;
+    }
+
+    public boolean isFull() {
+        return entries >= maxEntries;
+    }
+
+    /**
+     * Finds the last slot whose key is less than or equal to the target.
+     *
+     * @return The slot, or -1 if every entry is greater than the target or the index is empty.
+     */
+    protected int largestLowerBoundSlot(long target) {
+        int low = 0;
+        int high = entries - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) <= target) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    protected abstract long keyAt(int slot);
+
+    /**
+     * Checks that the entries look like ones this index wrote, rather than e.g. the zeroed tail of a preallocated
+     * file that was never trimmed because the broker crashed.
+     *
+     * @param segmentSize The size of the segment file the index points into.
+     */
+    public abstract boolean isConsistent(int segmentSize);
+
+    /**
+     * Renames the index file, which stays mapped, e.g. when its segment is swapped out of the log.
+     */
+    public void renameTo(File target) throws IOException {
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        file = target;
+    }
+
+    public void flush() {
+        mmap.force();
+    }
+
+    /**
+     * Drops every entry, e.g. before the index is rebuilt from its segment. The whole file is zeroed, not only the
+     * slots counted as entries: an index is rebuilt because it cannot be trusted, and the entries of an untrimmed file
+     * are counted up to the first zero slot, so any slot left behind could be counted again after a crash.
+     */
+    public void reset() {
+        entries = 0;
+        byte[] zeros = new byte[4096];
+        for (int position = 0; position < mmap.capacity(); position += zeros.length) {
+            mmap.put(position, zeros, 0, Math.min(zeros.length, mmap.capacity() - position));
+        }
+    }
+
+    /**
+     * Flushes the index and trims the file to its valid entries.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength((long) entries * entrySize());
+        }
+        mmap = null;
+    }
+
+    /**
+     * Releases the mapping without trimming the file, which is about to be deleted. A segment pending deletion may
+     * share its file names with a later one, so trimming by name could truncate a file that is still mapped.
+     */
+    public void closeHandler() {
+        mmap = null;
+    }
+
+    private long roundDownToEntry(int size) {
+        return (long) (size / entrySize()) * entrySize();
+    }
+}
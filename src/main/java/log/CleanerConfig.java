@@ -0,0 +1,43 @@
+package log;
+
+import lombok.Builder;
+
+/**
+ * Settings of the {@link LogCleaner}, shared by all compacted logs. Settings left at 0 take their default.
+ *
+ * @param enableCleaner       Whether logs with the {@value LogConfig#CLEANUP_POLICY_COMPACT} policy are compacted.
+ * @param numThreads          The cleaner threads, each cleaning one log at a time.
+ * @param dedupeBufferSize    The off-heap memory of the key to offset maps, split between the threads. It bounds how
+ *                            many distinct keys one pass over a log can compact.
+ * @param ioBufferSize        The size of the buffer each thread reads segments through.
+ * @param maxIoBytesPerSecond The rate the threads together read and write segments at, or 0 for no limit.
+ * @param backoffMs           How long a thread sleeps when no log needs cleaning.
+ */
+@Builder
+public record CleanerConfig(boolean enableCleaner, int numThreads, long dedupeBufferSize, int ioBufferSize,
+                            long maxIoBytesPerSecond, long backoffMs) {
+
+    public static final int DEFAULT_NUM_THREADS = 1;
+    public static final long DEFAULT_DEDUPE_BUFFER_SIZE = 128L * 1024 * 1024;
+    public static final int DEFAULT_IO_BUFFER_SIZE = 512 * 1024;
+    public static final long DEFAULT_BACKOFF_MS = 15_000;
+
+    public CleanerConfig {
+        if (numThreads < 1) {
+            numThreads = DEFAULT_NUM_THREADS;
+        }
+        if (dedupeBufferSize < 1) {
+            dedupeBufferSize = DEFAULT_DEDUPE_BUFFER_SIZE;
+        }
+        if (ioBufferSize < 1) {
+            ioBufferSize = DEFAULT_IO_BUFFER_SIZE;
+        }
+        if (backoffMs < 1) {
+            backoffMs = DEFAULT_BACKOFF_MS;
+        }
+    }
+
+    public static CleanerConfig defaults() {
+        return CleanerConfig.builder().enableCleaner(true).build();
+    }
+}
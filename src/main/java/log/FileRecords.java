@@ -0,0 +1,23 @@
+package log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A slice of a segment file holding whole record batches, sent without copying the bytes onto the heap.
+ */
+public record FileRecords(FileChannel channel, long position, int sizeInBytes) {
+
+    public static final FileRecords EMPTY = new FileRecords(null, 0, 0);
+
+    /**
+     * Transfers up to {@code length} bytes starting {@code offset} bytes into this slice.
+     *
+     * @return The number of bytes transferred, possibly fewer than requested on a non-blocking channel.
+     */
+    public long writeTo(WritableByteChannel destination, long offset, long length) throws IOException {
+        long count = Math.min(length, sizeInBytes - offset);
+        return channel.transferTo(position + offset, count, destination);
+    }
+}
@@ -0,0 +1,164 @@
+package log;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Syncs appended data to disk on behalf of every connection, so that many small writers share one fsync.
+ * Callers register the offset they need to be durable; a dedicated thread collects registrations for up to
+ * {@code flushIntervalMs}, or until {@code flushIntervalBytes} are waiting, then flushes every dirty log once
+ * and completes all the registrations it covered.
+ */
+@Slf4j
+public class GroupCommitFlusher implements Closeable {
+
+    private record Waiter(Log log, long offset, CompletableFuture<Void> future) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition waitersAdded = lock.newCondition();
+    private final Thread thread;
+
+    private long flushIntervalNanos;
+    private long flushIntervalBytes;
+    private List<Waiter> waiters = new ArrayList<>();
+    private long pendingBytes;
+    private long firstWaiterNanos;
+    private boolean running = true;
+
+    public GroupCommitFlusher(long flushIntervalMs, int flushIntervalBytes) {
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.flushIntervalBytes = flushIntervalBytes;
+        this.thread = Thread.ofPlatform().name("log-flusher").daemon().start(this::run);
+    }
+
+    /**
+     * Changes the thresholds, which also apply to the registrations already waiting.
+     */
+    public void reconfigure(long flushIntervalMs, int flushIntervalBytes) {
+        lock.lock();
+        try {
+            this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+            this.flushIntervalBytes = flushIntervalBytes;
+            waitersAdded.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers interest in {@code offset} of {@code log} being on disk.
+     *
+     * @param bytes The number of bytes appended for this registration, counted towards the byte threshold.
+     * @return A future completed once a flush covering the offset is done, or failed with the flush's IOException.
+     */
+    public CompletableFuture<Void> awaitFlush(Log log, long offset, int bytes) {
+        if (log.recoveryPoint() > offset) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!running) {
+                future.completeExceptionally(new IOException("The log flusher has been shut down"));
+                return future;
+            }
+            if (waiters.isEmpty()) {
+                firstWaiterNanos = System.nanoTime();
+                waitersAdded.signal();
+            }
+            waiters.add(new Waiter(log, offset, future));
+            pendingBytes += bytes;
+            if (pendingBytes >= flushIntervalBytes) {
+                waitersAdded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    private void run() {
+        while (true) {
+            List<Waiter> batch;
+            lock.lock();
+            try {
+                while (running && !readyToFlush()) {
+                    if (waiters.isEmpty()) {
+                        waitersAdded.await();
+                    } else {
+                        waitersAdded.awaitNanos(firstWaiterNanos + flushIntervalNanos - System.nanoTime());
+                    }
+                }
+                if (waiters.isEmpty()) {
+                    return;
+                }
+                batch = waiters;
+                waiters = new ArrayList<>();
+                pendingBytes = 0;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            flush(batch);
+        }
+    }
+
+    private boolean readyToFlush() {
+        return !waiters.isEmpty()
+                && (pendingBytes >= flushIntervalBytes || System.nanoTime() - firstWaiterNanos >= flushIntervalNanos);
+    }
+
+    private void flush(List<Waiter> batch) {
+        Map<Log, IOException> flushed = new IdentityHashMap<>();
+        for (Waiter waiter : batch) {
+            if (!flushed.containsKey(waiter.log())) {
+                try {
+                    waiter.log().flush();
+                    flushed.put(waiter.log(), null);
+                } catch (IOException e) {
+                    log.error("Failed to flush {}", waiter.log().getTopicPartition(), e);
+                    flushed.put(waiter.log(), e);
+                }
+            }
+        }
+        for (Waiter waiter : batch) {
+            IOException failure = flushed.get(waiter.log());
+            if (failure == null) {
+                waiter.future().complete(null);
+            } else {
+                waiter.future().completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Flushes what is still pending and stops the flusher thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            waitersAdded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
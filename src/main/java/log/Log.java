@@ -0,0 +1,416 @@
+package log;
+
+import exceptions.CorruptRecordException;
+import exceptions.OffsetOutOfRangeException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The append-only log of one partition: a directory of segments keyed by base offset, of which only the
+ * last one is written to. Appends are serialized on the log; reads go straight to the segments without locking.
+ */
+@Slf4j
+public class Log implements Closeable {
+
+    @Getter
+    private final TopicPartition topicPartition;
+    @Getter
+    private final File dir;
+    private volatile LogConfig config;
+    private final ConcurrentNavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private final Object flushLock = new Object();
+
+    private volatile long nextOffset;
+    private volatile long recoveryPoint;
+
+    private Log(TopicPartition topicPartition, File dir, LogConfig config) {
+        this.topicPartition = topicPartition;
+        this.dir = dir;
+        this.config = config;
+    }
+
+    /**
+     * Opens the log in {@code dir}, loading its existing segments or creating the first one. The log is trusted to
+     * have been closed cleanly.
+     */
+    public static Log open(File dir, TopicPartition topicPartition, LogConfig config) throws IOException {
+        return open(dir, topicPartition, config, 0L, true);
+    }
+
+    /**
+     * Opens the log in {@code dir}. Unless it was closed cleanly, the segments that may hold writes from past the
+     * recovery point are recovered, so only the data that was not yet known to be on disk is scanned.
+     *
+     * @param recoveryPoint    The offset up to which the log had been flushed, as last checkpointed.
+     * @param hadCleanShutdown Whether the broker closed the log before it stopped, in which case nothing is recovered.
+     */
+    public static Log open(File dir, TopicPartition topicPartition, LogConfig config, long recoveryPoint,
+                           boolean hadCleanShutdown) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create log directory " + dir);
+        }
+        Log log = new Log(topicPartition, dir, config);
+        log.loadSegments(recoveryPoint, hadCleanShutdown);
+        return log;
+    }
+
+    private void loadSegments(long checkpointedRecoveryPoint, boolean hadCleanShutdown) throws IOException {
+        completeCleanerOperations();
+        File[] logFiles = dir.listFiles((d, name) -> name.endsWith(LogSegment.LOG_FILE_SUFFIX));
+        if (logFiles != null) {
+            for (File file : logFiles) {
+                String name = file.getName();
+                long baseOffset = Long.parseLong(name.substring(0, name.length() - LogSegment.LOG_FILE_SUFFIX.length()));
+                segments.put(baseOffset, LogSegment.open(dir, baseOffset, config));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.open(dir, 0L, config));
+        }
+        Long floorKey = segments.floorKey(checkpointedRecoveryPoint);
+        long unflushedFrom = hadCleanShutdown ? Long.MAX_VALUE : floorKey == null ? segments.firstKey() : floorKey;
+        // Recovery rebuilds the indexes of the unflushed segments anyway; the others only need theirs if they are gone
+        for (LogSegment segment : segments.headMap(unflushedFrom).values()) {
+            if (!segment.hasIndexFiles()) {
+                log.info("Rebuilding the missing indexes of {}", segment.logFile());
+                segment.rebuildIndexes();
+            }
+        }
+        if (!hadCleanShutdown) {
+            recover(unflushedFrom);
+        }
+        nextOffset = activeSegment().readNextOffset();
+        recoveryPoint = nextOffset;
+    }
+
+    /**
+     * Cleans up after deletions and log cleaner swaps that a crash interrupted. Segments pending deletion and
+     * half-written cleaned segments are deleted; a complete cleaned segment that was being swapped in replaces the
+     * segments in its offset range, whether or not they had been renamed for deletion yet.
+     */
+    private void completeCleanerOperations() throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(LogSegment.DELETED_FILE_SUFFIX) || name.endsWith(LogSegment.CLEANED_FILE_SUFFIX)) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        String swapLogSuffix = LogSegment.LOG_FILE_SUFFIX + LogSegment.SWAP_FILE_SUFFIX;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(swapLogSuffix)) {
+                continue;
+            }
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - swapLogSuffix.length()));
+            LogSegment swapSegment = LogSegment.open(dir, baseOffset, config, LogSegment.SWAP_FILE_SUFFIX);
+            swapSegment.recover();
+            long nextOffset = swapSegment.readNextOffset();
+            for (File logFile : dir.listFiles((d, n) -> n.endsWith(LogSegment.LOG_FILE_SUFFIX))) {
+                long replacedBaseOffset = Long.parseLong(logFile.getName().substring(0, logFile.getName().length() - LogSegment.LOG_FILE_SUFFIX.length()));
+                if (replacedBaseOffset >= baseOffset && replacedBaseOffset < nextOffset) {
+                    LogSegment.open(dir, replacedBaseOffset, config).delete();
+                }
+            }
+            swapSegment.changeFileSuffixes(LogSegment.SWAP_FILE_SUFFIX, "");
+            swapSegment.close();
+            log.info("Completed the interrupted swap of cleaned segment {} into {}", baseOffset, topicPartition);
+        }
+    }
+
+    /**
+     * Recovers every segment from {@code fromBaseOffset} on. Past the first invalid batch nothing can be trusted,
+     * so the segment holding it is truncated and the later ones are deleted.
+     */
+    private void recover(long fromBaseOffset) throws IOException {
+        int recovered = 0;
+        Map.Entry<Long, LogSegment> entry = segments.ceilingEntry(fromBaseOffset);
+        while (entry != null) {
+            LogSegment segment = entry.getValue();
+            int truncated = segment.recover();
+            segment.flush();
+            recovered++;
+            if (truncated > 0) {
+                log.warn("Truncated {} bytes of invalid data from {}", truncated, segment.logFile());
+                for (LogSegment later : List.copyOf(segments.tailMap(entry.getKey(), false).values())) {
+                    log.warn("Deleting {}, which follows invalid data", later.logFile());
+                    segments.remove(later.baseOffset());
+                    later.delete();
+                }
+                break;
+            }
+            entry = segments.higherEntry(entry.getKey());
+        }
+        log.info("Recovered {} segments of {} from offset {}", recovered, topicPartition, fromBaseOffset);
+    }
+
+    public long logStartOffset() {
+        return segments.firstKey();
+    }
+
+    public long logEndOffset() {
+        return nextOffset;
+    }
+
+    public long recoveryPoint() {
+        return recoveryPoint;
+    }
+
+    public LogConfig config() {
+        return config;
+    }
+
+    /**
+     * @return The size of all segments.
+     */
+    public long size() {
+        long size = 0;
+        for (LogSegment segment : segments.values()) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public LogSegment activeSegment() {
+        return segments.lastEntry().getValue();
+    }
+
+    public Collection<LogSegment> segments() {
+        return segments.values();
+    }
+
+    /**
+     * @return The segments holding offsets from {@code fromOffset} up to, but excluding, {@code toOffset}.
+     */
+    public List<LogSegment> segments(long fromOffset, long toOffset) {
+        Long fromKey = segments.floorKey(fromOffset);
+        return List.copyOf(segments.subMap(fromKey == null ? segments.firstKey() : fromKey, toOffset).values());
+    }
+
+    /**
+     * Assigns offsets to the record batches in {@code records} and appends them to the active segment,
+     * rolling a new segment first if they would not fit or the active segment would span more than {@code segmentMs}.
+     *
+     * @param records v2 record batches between position and limit; their base offsets are overwritten in place.
+     * @throws CorruptRecordException if the batches are truncated or use an unsupported format.
+     */
+    public LogAppendInfo append(ByteBuffer records) throws IOException {
+        synchronized (appendLock) {
+            long firstOffset = nextOffset;
+            long offset = firstOffset;
+            long maxTimestamp = -1L;
+            long offsetOfMaxTimestamp = firstOffset;
+
+            int position = records.position();
+            while (position < records.limit()) {
+                if (records.limit() - position < RecordBatch.HEADER_SIZE) {
+                    throw new CorruptRecordException("Truncated record batch header at position " + position);
+                }
+                int batchSize = RecordBatch.sizeInBytes(records, position);
+                if (batchSize < RecordBatch.HEADER_SIZE || position + (long) batchSize > records.limit()) {
+                    throw new CorruptRecordException("Invalid record batch size " + batchSize + " at position " + position);
+                }
+                if (RecordBatch.magic(records, position) != RecordBatch.CURRENT_MAGIC) {
+                    throw new CorruptRecordException("Unsupported record batch magic " + RecordBatch.magic(records, position));
+                }
+                RecordBatch.setBaseOffset(records, position, offset);
+                long batchMaxTimestamp = RecordBatch.maxTimestamp(records, position);
+                if (batchMaxTimestamp > maxTimestamp) {
+                    maxTimestamp = batchMaxTimestamp;
+                    offsetOfMaxTimestamp = offset;
+                }
+                offset += RecordBatch.lastOffsetDelta(records, position) + 1L;
+                position += batchSize;
+            }
+
+            if (offset == firstOffset) {
+                throw new CorruptRecordException("No record batches to append");
+            }
+            int sizeInBytes = records.remaining();
+            if (activeSegment().shouldRoll(sizeInBytes, offset - 1, maxTimestamp, System.currentTimeMillis(), config)) {
+                roll(firstOffset);
+            }
+            activeSegment().append(firstOffset, maxTimestamp, offsetOfMaxTimestamp, records);
+            nextOffset = offset;
+            return new LogAppendInfo(firstOffset, offset - 1, maxTimestamp, offsetOfMaxTimestamp, sizeInBytes);
+        }
+    }
+
+    /**
+     * Replaces the settings of the log, which segments rolled from now on are opened with.
+     */
+    public void updateConfig(LogConfig config) {
+        this.config = config;
+    }
+
+    private void roll(long baseOffset) throws IOException {
+        activeSegment().onBecomeInactive();
+        LogSegment newSegment = LogSegment.open(dir, baseOffset, config);
+        segments.put(baseOffset, newSegment);
+        log.debug("Rolled new segment {} for {}", baseOffset, topicPartition);
+    }
+
+    /**
+     * Removes the oldest segments past the retention limits of the log: those whose newest record is older than
+     * {@code retentionMs}, and as many as it takes to bring the log down to {@code retentionBytes}. Once every other
+     * segment is gone, an active segment past {@code retentionMs} is rolled and removed as well, so a log that stopped
+     * receiving appends still expires; the new, empty active segment keeps the log's end offset.
+     *
+     * @return The removed segments, renamed for deletion; the caller deletes them once reads from them are done.
+     */
+    public List<LogSegment> deleteOldSegments(long nowMs) throws IOException {
+        LogConfig config = this.config;
+        synchronized (appendLock) {
+            List<LogSegment> deletable = new ArrayList<>();
+            long bytesOverRetention = config.retentionBytes() < 0 ? 0 : size() - config.retentionBytes();
+            LogSegment active = activeSegment();
+            for (LogSegment segment : segments.values()) {
+                if (segment == active && segment.size() == 0) {
+                    break;
+                }
+                long maxTimestamp = segment.maxTimestamp();
+                // Segments of records without timestamps age from their last write
+                long age = nowMs - (maxTimestamp >= 0 ? maxTimestamp : segment.lastModified());
+                boolean expired = config.retentionMs() >= 0 && age > config.retentionMs();
+                boolean oversized = segment != active && bytesOverRetention >= segment.size() && segment.size() > 0;
+                if (!expired && !oversized) {
+                    break;
+                }
+                deletable.add(segment);
+                bytesOverRetention -= segment.size();
+            }
+            if (deletable.contains(active)) {
+                roll(nextOffset);
+            }
+            for (LogSegment segment : deletable) {
+                segments.remove(segment.baseOffset());
+                segment.changeFileSuffixes("", LogSegment.DELETED_FILE_SUFFIX);
+            }
+            if (!deletable.isEmpty()) {
+                log.info("Deleted {} segments of {} past retention, the log now starts at offset {}",
+                        deletable.size(), topicPartition, logStartOffset());
+            }
+            return deletable;
+        }
+    }
+
+    /**
+     * Swaps a segment written by the log cleaner in for the segments it was cleaned from. The cleaned segment is
+     * renamed with {@link LogSegment#SWAP_FILE_SUFFIX} before any old segment is renamed for deletion, so a restart
+     * halfway through can complete the swap.
+     *
+     * @param cleaned     The cleaned segment, complete and flushed, with {@link LogSegment#CLEANED_FILE_SUFFIX}.
+     * @param oldSegments The segments it replaces, the first of which has the same base offset.
+     * @return Whether the segments were swapped; {@code false} if one of the old segments was removed meanwhile,
+     * e.g. by retention, in which case the caller deletes the cleaned segment.
+     */
+    public boolean replaceSegments(LogSegment cleaned, List<LogSegment> oldSegments) throws IOException {
+        cleaned.changeFileSuffixes(LogSegment.CLEANED_FILE_SUFFIX, LogSegment.SWAP_FILE_SUFFIX);
+        synchronized (appendLock) {
+            for (LogSegment old : oldSegments) {
+                if (segments.get(old.baseOffset()) != old) {
+                    return false;
+                }
+            }
+            for (LogSegment old : oldSegments) {
+                old.changeFileSuffixes("", LogSegment.DELETED_FILE_SUFFIX);
+            }
+            cleaned.changeFileSuffixes(LogSegment.SWAP_FILE_SUFFIX, "");
+            // Replace the first segment in place before removing the others, so concurrent reads never find a gap
+            segments.put(cleaned.baseOffset(), cleaned);
+            for (LogSegment old : oldSegments) {
+                segments.remove(old.baseOffset(), old);
+            }
+            return true;
+        }
+    }
+
+    public FileRecords read(long startOffset, int maxBytes) throws IOException {
+        return read(startOffset, maxBytes, true);
+    }
+
+    /**
+     * Reads batches starting with the one containing {@code startOffset}.
+     *
+     * @param minOneBatch Whether to return the first batch even if it is larger than {@code maxBytes}.
+     * @return The file slice to send, empty if {@code startOffset} is the log end offset.
+     * @throws OffsetOutOfRangeException if the offset is outside {@code [logStartOffset, logEndOffset]}.
+     */
+    public FileRecords read(long startOffset, int maxBytes, boolean minOneBatch) throws IOException {
+        long endOffset = nextOffset;
+        if (startOffset == endOffset) {
+            return FileRecords.EMPTY;
+        }
+        if (startOffset < logStartOffset() || startOffset > endOffset) {
+            throw new OffsetOutOfRangeException("Offset " + startOffset + " is out of range for " + topicPartition
+                    + " [" + logStartOffset() + ", " + endOffset + "]");
+        }
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(startOffset);
+        while (entry != null) {
+            FileRecords records = entry.getValue().read(startOffset, maxBytes, minOneBatch);
+            if (records != null) {
+                return records;
+            }
+            entry = segments.higherEntry(entry.getKey());
+        }
+        return FileRecords.EMPTY;
+    }
+
+    /**
+     * @return The base offset of the first batch with a timestamp at or after {@code timestamp}, or -1 if none.
+     */
+    public long offsetForTimestamp(long timestamp) throws IOException {
+        for (LogSegment segment : segments.values()) {
+            if (segment.maxTimestamp() >= timestamp) {
+                long offset = segment.findOffsetByTimestamp(timestamp);
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Forces every segment written since the last flush to disk and advances the recovery point.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            long flushOffset = nextOffset;
+            if (flushOffset <= recoveryPoint) {
+                return;
+            }
+            Long fromKey = segments.floorKey(recoveryPoint);
+            for (LogSegment segment : segments.tailMap(fromKey == null ? segments.firstKey() : fromKey).values()) {
+                segment.flush();
+            }
+            recoveryPoint = flushOffset;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            flush();
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package log;
+
+/**
+ * The outcome of appending record batches to a log.
+ *
+ * @param firstOffset          The offset assigned to the first record.
+ * @param lastOffset           The offset assigned to the last record.
+ * @param maxTimestamp         The largest timestamp among the appended batches.
+ * @param offsetOfMaxTimestamp The base offset of the batch holding that timestamp.
+ * @param sizeInBytes          The number of bytes appended.
+ */
+public record LogAppendInfo(long firstOffset, long lastOffset, long maxTimestamp, long offsetOfMaxTimestamp, int sizeInBytes) {
+}
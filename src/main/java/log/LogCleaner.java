@@ -0,0 +1,522 @@
+package log;
+
+import compression.CompressionCodec;
+import compression.CompressionCodecs;
+import compression.CompressionType;
+import exceptions.CorruptRecordException;
+import lombok.extern.slf4j.Slf4j;
+import util.BufferPool;
+import util.Throttler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts the logs whose cleanup policy includes {@value LogConfig#CLEANUP_POLICY_COMPACT}, keeping only the latest
+ * record of each key. Each log has a clean head, already compacted, and a dirty tail up to the active segment;
+ * the cleaner threads repeatedly pick the log with the highest dirty share above its {@code minCleanableRatio}, then
+ * <ol>
+ *     <li>scan the dirty tail into an off-heap {@link SkinnyOffsetMap} of each key's latest offset,</li>
+ *     <li>copy the records of the log up to the end of the scan that are still the latest of their key into new
+ *     segments, merging small segments along the way, and</li>
+ *     <li>swap each new segment in for the segments it was copied from, then checkpoint where the dirty tail now
+ *     starts.</li>
+ * </ol>
+ * Tombstones are kept for {@code deleteRetentionMs} after they reached the clean head, and records without a key are
+ * dropped. All segment reads and writes go through one {@link Throttler}, so compaction does not starve reads from the
+ * disk or push the segments consumers read out of the page cache. The threads are never interrupted, since that
+ * would close the segment channels they read from; they stop between batches instead.
+ */
+@Slf4j
+public class LogCleaner implements Closeable {
+
+    private static final String CLEANER_CHECKPOINT_FILE = "cleaner-offset-checkpoint";
+    private static final double DEDUPE_BUFFER_LOAD_FACTOR = 0.9;
+    // Attribute bit set when the broker, rather than the producer, stamped the batch, whose max timestamp then stays
+    private static final int LOG_APPEND_TIME_FLAG = 0x08;
+
+    private final CleanerConfig config;
+    private final LogManager logManager;
+    private final Throttler throttler;
+    private final OffsetCheckpointFile checkpointFile;
+    // Where the dirty tail of each compacted log starts, guarded by this
+    private final Map<TopicPartition, Long> firstDirtyOffsets = new HashMap<>();
+    private final Set<TopicPartition> inProgress = new HashSet<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    public LogCleaner(CleanerConfig config, LogManager logManager, File logDir) {
+        this.config = config;
+        this.logManager = logManager;
+        this.throttler = new Throttler(config.maxIoBytesPerSecond());
+        this.checkpointFile = new OffsetCheckpointFile(new File(logDir, CLEANER_CHECKPOINT_FILE));
+        try {
+            firstDirtyOffsets.putAll(checkpointFile.read());
+        } catch (IOException e) {
+            log.warn("Compacting every log from the start, the cleaner checkpoint is unreadable: {}", e.getMessage());
+        }
+    }
+
+    public void startup() {
+        for (int i = 0; i < config.numThreads(); i++) {
+            Cleaner cleaner = new Cleaner(mapMemoryPerThread());
+            threads.add(Thread.ofPlatform().name("log-cleaner-thread-" + i).daemon().start(cleaner::run));
+        }
+    }
+
+    /**
+     * Cleans the filthiest log once on the calling thread, with the offset map memory of one cleaner thread.
+     *
+     * @return Whether there was a log to clean.
+     */
+    boolean cleanFilthiestLog() throws InterruptedException {
+        return new Cleaner(mapMemoryPerThread()).cleanFilthiestLog();
+    }
+
+    private int mapMemoryPerThread() {
+        return (int) Math.min(Integer.MAX_VALUE, config.dedupeBufferSize() / config.numThreads());
+    }
+
+    public void updateMaxIoBytesPerSecond(long maxIoBytesPerSecond) {
+        throttler.updateDesiredRate(maxIoBytesPerSecond);
+    }
+
+    /**
+     * Stops the cleaner threads, waiting for them to abandon the logs they are cleaning.
+     */
+    @Override
+    public void close() {
+        running = false;
+        shutdownLatch.countDown();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record LogToClean(Log log, long firstDirtyOffset, long cleanBytes, long dirtyBytes) {
+
+        static LogToClean of(Log log, long checkpointedDirtyOffset) {
+            long firstDirtyOffset = Math.max(checkpointedDirtyOffset, log.logStartOffset());
+            LogSegment active = log.activeSegment();
+            if (firstDirtyOffset > active.baseOffset()) {
+                // The checkpoint is ahead of the log, e.g. because its segments were deleted and recreated
+                firstDirtyOffset = log.logStartOffset();
+            }
+            long cleanBytes = 0;
+            long dirtyBytes = 0;
+            List<LogSegment> segments = log.segments(log.logStartOffset(), active.baseOffset());
+            for (int i = 0; i < segments.size(); i++) {
+                long nextBaseOffset = i + 1 < segments.size() ? segments.get(i + 1).baseOffset() : active.baseOffset();
+                if (nextBaseOffset <= firstDirtyOffset) {
+                    cleanBytes += segments.get(i).size();
+                } else {
+                    dirtyBytes += segments.get(i).size();
+                }
+            }
+            return new LogToClean(log, firstDirtyOffset, cleanBytes, dirtyBytes);
+        }
+
+        double cleanableRatio() {
+            return dirtyBytes == 0 ? 0 : (double) dirtyBytes / (cleanBytes + dirtyBytes);
+        }
+    }
+
+    /**
+     * @return The compacted log with the highest dirty share at or above its minimum, marked in progress, or
+     * {@code null} if none needs cleaning.
+     */
+    private synchronized LogToClean grabFilthiestLog() {
+        LogToClean filthiest = null;
+        for (Log partitionLog : logManager.allLogs()) {
+            TopicPartition topicPartition = partitionLog.getTopicPartition();
+            if (!partitionLog.config().compact() || inProgress.contains(topicPartition)) {
+                continue;
+            }
+            LogToClean candidate = LogToClean.of(partitionLog, firstDirtyOffsets.getOrDefault(topicPartition, 0L));
+            if (candidate.dirtyBytes() > 0 && candidate.cleanableRatio() >= partitionLog.config().minCleanableRatio()
+                    && (filthiest == null || candidate.cleanableRatio() > filthiest.cleanableRatio())) {
+                filthiest = candidate;
+            }
+        }
+        if (filthiest != null) {
+            inProgress.add(filthiest.log().getTopicPartition());
+        }
+        return filthiest;
+    }
+
+    private synchronized void doneCleaning(TopicPartition topicPartition, long firstDirtyOffset) {
+        inProgress.remove(topicPartition);
+        if (firstDirtyOffset < 0) {
+            return;
+        }
+        firstDirtyOffsets.put(topicPartition, firstDirtyOffset);
+        try {
+            checkpointFile.write(firstDirtyOffsets);
+        } catch (IOException e) {
+            log.error("Failed to checkpoint the cleaned offsets", e);
+        }
+    }
+
+    /**
+     * Thrown from a cleaner thread when the cleaner shuts down in the middle of a log.
+     */
+    private static final class CleaningAbortedException extends RuntimeException {
+        private CleaningAbortedException() {
+            super("The log cleaner is shutting down", null, false, false);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchAction {
+        /**
+         * @return Whether to go on with the next batch.
+         */
+        boolean accept(ByteBuffer buffer, int batchStart, int batchSize) throws IOException, InterruptedException;
+    }
+
+    /**
+     * The state of one cleaner thread: its offset map, created on first use so a broker without compacted logs
+     * never allocates it, and its buffers.
+     */
+    private final class Cleaner {
+        private final int mapMemory;
+        private final BufferPool compressionBuffers = new BufferPool(4);
+        private SkinnyOffsetMap offsetMap;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(config.ioBufferSize());
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(config.ioBufferSize());
+        private ByteBuffer retainedRecords = ByteBuffer.allocate(config.ioBufferSize());
+        // State of the record visitors
+        private long firstDirtyOffset;
+        private boolean retainDeletes;
+        private int retainedCount;
+        private long retainedMaxTimestamp;
+
+        private Cleaner(int mapMemory) {
+            this.mapMemory = mapMemory;
+        }
+
+        private void run() {
+            while (running) {
+                try {
+                    if (!cleanFilthiestLog()) {
+                        shutdownLatch.await(config.backoffMs(), TimeUnit.MILLISECONDS);
+                    }
+                } catch (CleaningAbortedException e) {
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return Whether there was a log to clean.
+         * @throws CleaningAbortedException if the cleaner shuts down.
+         */
+        private boolean cleanFilthiestLog() throws InterruptedException {
+            LogToClean toClean = grabFilthiestLog();
+            if (toClean == null) {
+                return false;
+            }
+            TopicPartition topicPartition = toClean.log().getTopicPartition();
+            long endOffset = -1L;
+            try {
+                endOffset = clean(toClean);
+            } catch (CleaningAbortedException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to clean {}", topicPartition, e);
+            } finally {
+                doneCleaning(topicPartition, endOffset);
+            }
+            return true;
+        }
+
+        /**
+         * @return The offset the dirty tail of the log starts at once it is cleaned.
+         */
+        private long clean(LogToClean toClean) throws IOException, InterruptedException {
+            long startNanos = System.nanoTime();
+            Log partitionLog = toClean.log();
+            LogConfig logConfig = partitionLog.config();
+            long firstUncleanableOffset = partitionLog.activeSegment().baseOffset();
+            if (offsetMap == null) {
+                offsetMap = new SkinnyOffsetMap(mapMemory, DEDUPE_BUFFER_LOAD_FACTOR);
+            }
+            offsetMap.clear();
+            long endOffset = buildOffsetMap(partitionLog, toClean.firstDirtyOffset(), firstUncleanableOffset);
+
+            // Tombstones in the clean head have been seen by consumers that keep up; keep them around for the others
+            List<LogSegment> segments = partitionLog.segments(partitionLog.logStartOffset(), firstUncleanableOffset);
+            long deleteHorizonMs = 0;
+            for (int i = 0; i + 1 < segments.size() && segments.get(i + 1).baseOffset() <= toClean.firstDirtyOffset(); i++) {
+                deleteHorizonMs = segments.get(i).lastModified() - logConfig.deleteRetentionMs();
+            }
+
+            long bytesBefore = 0;
+            long bytesAfter = 0;
+            List<LogSegment> toCleanSegments = partitionLog.segments(partitionLog.logStartOffset(), endOffset);
+            for (List<LogSegment> group : groupSegmentsBySize(toCleanSegments, segments, logConfig, firstUncleanableOffset)) {
+                for (LogSegment segment : group) {
+                    bytesBefore += segment.size();
+                }
+                bytesAfter += cleanSegments(partitionLog, group, deleteHorizonMs);
+            }
+            log.info("Cleaned {} up to offset {}: {} segments from {} to {} bytes, {} keys, in {} ms",
+                    partitionLog.getTopicPartition(), endOffset, toCleanSegments.size(), bytesBefore, bytesAfter,
+                    offsetMap.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            return endOffset;
+        }
+
+        /**
+         * Maps every key in the dirty tail to its latest offset, stopping early if the map fills up.
+         *
+         * @return The offset the scan stopped at, which the next cleaning of the log starts from.
+         */
+        private long buildOffsetMap(Log partitionLog, long firstDirtyOffset, long firstUncleanableOffset)
+                throws IOException, InterruptedException {
+            this.firstDirtyOffset = firstDirtyOffset;
+            long[] endOffset = {firstUncleanableOffset};
+            for (LogSegment segment : partitionLog.segments(firstDirtyOffset, firstUncleanableOffset)) {
+                boolean complete = forEachBatch(segment, (buffer, batchStart, batchSize) -> {
+                    if (RecordBatch.lastOffset(buffer, batchStart) < firstDirtyOffset) {
+                        return true;
+                    }
+                    // Stop at a batch boundary, so the batch is cleaned as a whole next time
+                    if (offsetMap.size() + RecordBatch.recordsCount(buffer, batchStart) > offsetMap.capacity()) {
+                        endOffset[0] = RecordBatch.baseOffset(buffer, batchStart);
+                        return false;
+                    }
+                    RecordBatchValidator.forEachRecord(buffer, batchStart, batchSize, this::mapRecord);
+                    return true;
+                });
+                if (!complete) {
+                    break;
+                }
+            }
+            if (endOffset[0] <= firstDirtyOffset) {
+                throw new IllegalStateException("The offset map of " + offsetMap.capacity()
+                        + " keys cannot hold a single batch of " + partitionLog.getTopicPartition()
+                        + "; increase the dedupe buffer size");
+            }
+            return endOffset[0];
+        }
+
+        private void mapRecord(RecordView record) {
+            if (record.offset() >= firstDirtyOffset && record.hasKey()) {
+                offsetMap.put(record.key(), record.offset());
+            }
+        }
+
+        /**
+         * Groups consecutive segments whose cleaned copies together fit into one segment, so compaction also merges
+         * the segments it shrinks. Offsets within a group must stay within the 4 bytes of relative index offsets.
+         *
+         * @param allSegments Every segment up to the first uncleanable offset, to tell where each segment ends.
+         */
+        private List<List<LogSegment>> groupSegmentsBySize(List<LogSegment> toClean, List<LogSegment> allSegments,
+                                                           LogConfig logConfig, long firstUncleanableOffset) {
+            List<List<LogSegment>> groups = new ArrayList<>();
+            List<LogSegment> group = new ArrayList<>();
+            long groupSize = 0;
+            for (LogSegment segment : toClean) {
+                int index = allSegments.indexOf(segment);
+                long nextBaseOffset = index + 1 < allSegments.size() ? allSegments.get(index + 1).baseOffset() : firstUncleanableOffset;
+                boolean fits = !group.isEmpty()
+                        && groupSize + segment.size() <= logConfig.segmentBytes()
+                        && nextBaseOffset - 1 - group.getFirst().baseOffset() <= Integer.MAX_VALUE;
+                if (!group.isEmpty() && !fits) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                    groupSize = 0;
+                }
+                group.add(segment);
+                groupSize += segment.size();
+            }
+            if (!group.isEmpty()) {
+                groups.add(group);
+            }
+            return groups;
+        }
+
+        /**
+         * Copies the records of {@code group} that survive compaction into a new segment and swaps it in.
+         *
+         * @return The size of the new segment.
+         */
+        private int cleanSegments(Log partitionLog, List<LogSegment> group, long deleteHorizonMs)
+                throws IOException, InterruptedException {
+            LogSegment cleaned = LogSegment.open(partitionLog.getDir(), group.getFirst().baseOffset(),
+                    partitionLog.config(), LogSegment.CLEANED_FILE_SUFFIX);
+            try {
+                for (LogSegment segment : group) {
+                    retainDeletes = segment.lastModified() > deleteHorizonMs;
+                    forEachBatch(segment, (buffer, batchStart, batchSize) -> {
+                        cleanBatch(buffer, batchStart, batchSize, cleaned);
+                        return true;
+                    });
+                }
+                cleaned.onBecomeInactive();
+                cleaned.flush();
+                // Tombstones age from the last write to the segments they came from, not from when they were cleaned
+                if (!cleaned.logFile().setLastModified(group.getLast().lastModified())) {
+                    log.warn("Failed to set the last modified time of {}", cleaned.logFile());
+                }
+                if (!partitionLog.replaceSegments(cleaned, group)) {
+                    log.info("Discarding the cleaned copy of {}, whose segments were deleted while it was cleaned", partitionLog.getTopicPartition());
+                    cleaned.delete();
+                    return 0;
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                cleaned.delete();
+                throw e;
+            }
+            logManager.deleteSegmentsLater(group, partitionLog.config());
+            return cleaned.size();
+        }
+
+        private void cleanBatch(ByteBuffer buffer, int batchStart, int batchSize, LogSegment cleaned)
+                throws IOException, InterruptedException {
+            retainedRecords.clear();
+            retainedCount = 0;
+            retainedMaxTimestamp = -1L;
+            RecordBatchValidator.forEachRecord(buffer, batchStart, batchSize, this::filterRecord);
+            if (retainedCount == 0) {
+                return;
+            }
+            ByteBuffer batch;
+            if (retainedCount == RecordBatch.recordsCount(buffer, batchStart)) {
+                batch = buffer.slice(batchStart, batchSize);
+            } else {
+                batch = rebuildBatch(buffer, batchStart);
+            }
+            int bytes = batch.remaining();
+            long baseOffset = RecordBatch.baseOffset(batch, 0);
+            cleaned.append(baseOffset, RecordBatch.maxTimestamp(batch, 0), baseOffset, batch);
+            throttler.maybeThrottle(bytes);
+        }
+
+        private void filterRecord(RecordView record) {
+            if (!shouldRetain(record)) {
+                return;
+            }
+            ByteBuffer bytes = record.bytes();
+            if (retainedRecords.remaining() < bytes.remaining()) {
+                retainedRecords = grow(retainedRecords, bytes.remaining());
+            }
+            retainedRecords.put(bytes);
+            retainedCount++;
+            retainedMaxTimestamp = Math.max(retainedMaxTimestamp, record.timestamp());
+        }
+
+        private boolean shouldRetain(RecordView record) {
+            if (!record.hasKey()) {
+                return false;
+            }
+            if (offsetMap.get(record.key()) > record.offset()) {
+                return false;
+            }
+            return record.valueLength() >= 0 || retainDeletes;
+        }
+
+        /**
+         * Builds a batch of the retained records under the header of the original one. The base offset and the last
+         * offset delta are kept, so offsets around the batch do not move; the records are compressed again with the
+         * original codec.
+         */
+        private ByteBuffer rebuildBatch(ByteBuffer buffer, int batchStart) {
+            short attributes = RecordBatch.attributes(buffer, batchStart);
+            CompressionType compression = CompressionType.forId(attributes & RecordBatch.COMPRESSION_CODEC_MASK);
+            retainedRecords.flip();
+            CompressionCodec codec = compression == CompressionType.NONE ? null : CompressionCodecs.forType(compression);
+            ByteBuffer records = codec == null ? retainedRecords : codec.compress(retainedRecords, compressionBuffers);
+            try {
+                int sizeInBytes = RecordBatch.HEADER_SIZE + records.remaining();
+                if (writeBuffer.capacity() < sizeInBytes) {
+                    writeBuffer = ByteBuffer.allocate(sizeInBytes);
+                }
+                writeBuffer.clear();
+                writeBuffer.put(buffer.slice(batchStart, RecordBatch.HEADER_SIZE));
+                writeBuffer.put(records.duplicate());
+                writeBuffer.flip();
+                RecordBatch.setSizeInBytes(writeBuffer, 0, sizeInBytes);
+                RecordBatch.setRecordsCount(writeBuffer, 0, retainedCount);
+                if ((attributes & LOG_APPEND_TIME_FLAG) == 0) {
+                    RecordBatch.setMaxTimestamp(writeBuffer, 0, retainedMaxTimestamp);
+                }
+                RecordBatch.updateCrc(writeBuffer, 0);
+                return writeBuffer;
+            } finally {
+                if (codec != null) {
+                    compressionBuffers.release(records);
+                }
+            }
+        }
+
+        /**
+         * Reads the segment through the read buffer and hands each whole batch to {@code action}, growing the buffer
+         * for batches larger than it. Every read is throttled.
+         *
+         * @return Whether every batch was handed over, i.e. {@code action} never asked to stop.
+         * @throws CleaningAbortedException if the cleaner shuts down.
+         */
+        private boolean forEachBatch(LogSegment segment, BatchAction action) throws IOException, InterruptedException {
+            int position = 0;
+            int size = segment.size();
+            while (position < size) {
+                if (!running) {
+                    throw new CleaningAbortedException();
+                }
+                readBuffer.clear();
+                int read = segment.readInto(readBuffer, position);
+                throttler.maybeThrottle(read);
+                readBuffer.flip();
+                int batchStart = 0;
+                while (readBuffer.limit() - batchStart >= RecordBatch.HEADER_SIZE) {
+                    int batchSize = RecordBatch.sizeInBytes(readBuffer, batchStart);
+                    if (batchSize < RecordBatch.HEADER_SIZE || position + batchStart + (long) batchSize > size) {
+                        throw new CorruptRecordException("Invalid batch size " + batchSize + " at position "
+                                + (position + batchStart) + " of " + segment.logFile());
+                    }
+                    if (readBuffer.limit() - batchStart < batchSize) {
+                        break;
+                    }
+                    if (!action.accept(readBuffer, batchStart, batchSize)) {
+                        return false;
+                    }
+                    batchStart += batchSize;
+                }
+                if (batchStart == 0) {
+                    if (read < RecordBatch.HEADER_SIZE) {
+                        throw new CorruptRecordException("Truncated batch at position " + position + " of " + segment.logFile());
+                    }
+                    readBuffer = ByteBuffer.allocate(RecordBatch.sizeInBytes(readBuffer, 0));
+                }
+                position += batchStart;
+            }
+            return true;
+        }
+
+        private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            return grown.put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package log;
+
+import lombok.Builder;
+
+import java.util.Arrays;
+
+/**
+ * Per-log storage settings.
+ *
+ * @param segmentBytes       The size at which the active segment is rolled.
+ * @param segmentMs          How old the first batch of the active segment may get before the segment is rolled, so
+ *                           that retention and compaction, which never touch the active segment, reach logs that
+ *                           stopped growing.
+ * @param indexIntervalBytes How many bytes are appended between two entries of the sparse indexes.
+ * @param maxIndexSize       The size the index files are preallocated and memory-mapped with.
+ * @param flushIntervalMs    How long the group commit flusher waits for more appends before syncing them together.
+ * @param flushIntervalBytes How many bytes awaiting a sync make the flusher sync without waiting out the interval.
+ * @param cleanupPolicy      How old data is removed: {@value #CLEANUP_POLICY_DELETE} drops whole segments past the
+ *                           retention limits, {@value #CLEANUP_POLICY_COMPACT} keeps only the latest record of each
+ *                           key, and both can be combined as a comma-separated list.
+ * @param retentionMs        How long a segment is kept after its newest record was written, or -1 for no limit.
+ * @param retentionBytes     The size a log may grow to before its oldest segments are deleted, or -1 for no limit.
+ * @param deleteRetentionMs  How long tombstones are kept in a compacted log once they have been cleaned once, so
+ *                           consumers that are behind still see the deletion.
+ * @param minCleanableRatio  The share of a compacted log that must be dirty, i.e. not yet compacted, before it is
+ *                           cleaned again.
+ * @param fileDeleteDelayMs  How long deleted segments stay open, so reads already served from them can finish.
+ */
+@Builder(toBuilder = true)
+public record LogConfig(int segmentBytes, long segmentMs, int indexIntervalBytes, int maxIndexSize, long flushIntervalMs, int flushIntervalBytes,
+                        String cleanupPolicy, long retentionMs, long retentionBytes, long deleteRetentionMs,
+                        double minCleanableRatio, long fileDeleteDelayMs) {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 1024 * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_MS = 7 * 24 * 60 * 60 * 1000L;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    public static final int DEFAULT_MAX_INDEX_SIZE = 10 * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 2;
+    public static final int DEFAULT_FLUSH_INTERVAL_BYTES = 1024 * 1024;
+    public static final String CLEANUP_POLICY_DELETE = "delete";
+    public static final String CLEANUP_POLICY_COMPACT = "compact";
+    public static final long DEFAULT_RETENTION_MS = 7 * 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_DELETE_RETENTION_MS = 24 * 60 * 60 * 1000L;
+    public static final double DEFAULT_MIN_CLEANABLE_RATIO = 0.5;
+    public static final long DEFAULT_FILE_DELETE_DELAY_MS = 60_000;
+
+    public LogConfig {
+        if (segmentMs <= 0) {
+            segmentMs = DEFAULT_SEGMENT_MS;
+        }
+        if (cleanupPolicy == null) {
+            cleanupPolicy = CLEANUP_POLICY_DELETE;
+        }
+        for (String policy : cleanupPolicy.split(",")) {
+            if (!policy.trim().equals(CLEANUP_POLICY_DELETE) && !policy.trim().equals(CLEANUP_POLICY_COMPACT)) {
+                throw new IllegalArgumentException("Unknown cleanup policy " + policy.trim());
+            }
+        }
+        if (retentionMs == 0) {
+            retentionMs = DEFAULT_RETENTION_MS;
+        }
+        if (retentionBytes == 0) {
+            retentionBytes = -1;
+        }
+        if (deleteRetentionMs <= 0) {
+            deleteRetentionMs = DEFAULT_DELETE_RETENTION_MS;
+        }
+        if (minCleanableRatio <= 0) {
+            minCleanableRatio = DEFAULT_MIN_CLEANABLE_RATIO;
+        }
+        if (fileDeleteDelayMs <= 0) {
+            fileDeleteDelayMs = DEFAULT_FILE_DELETE_DELAY_MS;
+        }
+    }
+
+    public static LogConfig defaults() {
+        return LogConfig.builder()
+                .segmentBytes(DEFAULT_SEGMENT_BYTES)
+                .indexIntervalBytes(DEFAULT_INDEX_INTERVAL_BYTES)
+                .maxIndexSize(DEFAULT_MAX_INDEX_SIZE)
+                .flushIntervalMs(DEFAULT_FLUSH_INTERVAL_MS)
+                .flushIntervalBytes(DEFAULT_FLUSH_INTERVAL_BYTES)
+                .build();
+    }
+
+    /**
+     * @return Whether old segments are deleted once they pass {@link #retentionMs} or {@link #retentionBytes}.
+     */
+    public boolean delete() {
+        return hasPolicy(CLEANUP_POLICY_DELETE);
+    }
+
+    /**
+     * @return Whether the log cleaner compacts the log down to the latest record of each key.
+     */
+    public boolean compact() {
+        return hasPolicy(CLEANUP_POLICY_COMPACT);
+    }
+
+    private boolean hasPolicy(String policy) {
+        return Arrays.stream(cleanupPolicy.split(",")).anyMatch(p -> p.trim().equals(policy));
+    }
+
+}
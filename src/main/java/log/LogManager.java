@@ -0,0 +1,280 @@
+package log;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Owns the partition logs stored under the broker's log directory, one sub-directory per partition, and removes
+ * their old data: a periodic retention check deletes the oldest segments of logs with the delete policy, and the
+ * {@link LogCleaner} compacts those with the compact policy. The recovery point of every log is checkpointed periodically, and a marker file records a clean shutdown, so a
+ * restart only scans what may not have reached the disk: nothing after a clean shutdown, and only the segments past
+ * each log's checkpointed recovery point after a crash.
+ */
+@Slf4j
+public class LogManager implements Closeable {
+
+    private static final String RECOVERY_POINT_CHECKPOINT_FILE = "recovery-point-offset-checkpoint";
+    private static final String CLEAN_SHUTDOWN_FILE = ".kafka_cleanshutdown";
+
+    private final File logDir;
+    private volatile LogConfig config;
+    private final Map<TopicPartition, Log> logs = new ConcurrentHashMap<>();
+    private final GroupCommitFlusher flusher;
+    private final List<Consumer<TopicPartition>> logCreationListeners = new CopyOnWriteArrayList<>();
+    private final OffsetCheckpointFile recoveryPointCheckpoint;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, UnaryOperator<LogConfig>> topicConfigOverrides = new ConcurrentHashMap<>();
+    private final LogCleaner cleaner;
+
+    /**
+     * @param recoveryThreads          The threads that load and, after a crash, recover the partition logs at startup.
+     * @param checkpointIntervalMs     How often the recovery points of the logs are checkpointed.
+     * @param retentionCheckIntervalMs How often logs are checked for segments past their retention limits.
+     */
+    public LogManager(File logDir, LogConfig config, int recoveryThreads, long checkpointIntervalMs,
+                      long retentionCheckIntervalMs, CleanerConfig cleanerConfig) throws IOException {
+        this.logDir = logDir;
+        this.config = config;
+        if (!logDir.isDirectory() && !logDir.mkdirs()) {
+            throw new IOException("Could not create log directory " + logDir);
+        }
+        this.recoveryPointCheckpoint = new OffsetCheckpointFile(new File(logDir, RECOVERY_POINT_CHECKPOINT_FILE));
+        File cleanShutdownFile = new File(logDir, CLEAN_SHUTDOWN_FILE);
+        loadLogs(cleanShutdownFile.exists(), recoveryThreads);
+        // Until the next clean shutdown, a restart has to recover what was written past the checkpointed recovery points
+        Files.deleteIfExists(cleanShutdownFile.toPath());
+        this.flusher = new GroupCommitFlusher(config.flushIntervalMs(), config.flushIntervalBytes());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("log-scheduler").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::checkpointRecoveryPoints, checkpointIntervalMs, checkpointIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::deleteOldSegments, retentionCheckIntervalMs, retentionCheckIntervalMs, TimeUnit.MILLISECONDS);
+        this.cleaner = cleanerConfig.enableCleaner() ? new LogCleaner(cleanerConfig, this, logDir) : null;
+        if (cleaner != null) {
+            cleaner.startup();
+        }
+    }
+
+    /**
+     * Opens every partition log in parallel, since after a crash each one may have segments to recover.
+     */
+    private void loadLogs(boolean hadCleanShutdown, int recoveryThreads) throws IOException {
+        File[] partitionDirs = logDir.listFiles(File::isDirectory);
+        if (partitionDirs == null) {
+            return;
+        }
+        Map<TopicPartition, Long> recoveryPoints = Map.of();
+        if (!hadCleanShutdown) {
+            try {
+                recoveryPoints = recoveryPointCheckpoint.read();
+            } catch (IOException e) {
+                log.warn("Recovering every log from the start, the recovery point checkpoint is unreadable: {}", e.getMessage());
+            }
+            log.info("Found no clean shutdown marker in {}, recovering logs from their checkpointed recovery points", logDir);
+        }
+        long startNanos = System.nanoTime();
+        Map<TopicPartition, ForkJoinTask<Log>> loading = new HashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(recoveryThreads);
+        try {
+            for (File dir : partitionDirs) {
+                TopicPartition topicPartition;
+                try {
+                    topicPartition = TopicPartition.fromDirName(dir.getName());
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                long recoveryPoint = recoveryPoints.getOrDefault(topicPartition, 0L);
+                LogConfig logConfig = configFor(topicPartition.topic());
+                loading.put(topicPartition, pool.submit(() -> Log.open(dir, topicPartition, logConfig, recoveryPoint, hadCleanShutdown)));
+            }
+            for (Map.Entry<TopicPartition, ForkJoinTask<Log>> entry : loading.entrySet()) {
+                try {
+                    logs.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to load the log of " + entry.getKey(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while loading logs");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("Loaded {} partition logs from {} in {} ms", logs.size(), logDir, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Deletes the segments past the retention limits of every log with the delete policy.
+     */
+    private void deleteOldSegments() {
+        long nowMs = System.currentTimeMillis();
+        for (Log partitionLog : logs.values()) {
+            LogConfig logConfig = partitionLog.config();
+            if (!logConfig.delete()) {
+                continue;
+            }
+            try {
+                deleteSegmentsLater(partitionLog.deleteOldSegments(nowMs), logConfig);
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Failed to delete old segments of {}", partitionLog.getTopicPartition(), e);
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes segments removed from their log after {@code fileDeleteDelayMs}, so reads already served
+     * from them, e.g. zero-copy Fetch responses still being sent, can finish first. Segments whose deletion a
+     * shutdown cuts short are deleted when the log is next loaded.
+     */
+    void deleteSegmentsLater(List<LogSegment> segments, LogConfig logConfig) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            for (LogSegment segment : segments) {
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    log.error("Failed to delete {}", segment.logFile(), e);
+                }
+            }
+        }, logConfig.fileDeleteDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void checkpointRecoveryPoints() {
+        Map<TopicPartition, Long> recoveryPoints = new HashMap<>();
+        logs.forEach((topicPartition, partitionLog) -> recoveryPoints.put(topicPartition, partitionLog.recoveryPoint()));
+        try {
+            recoveryPointCheckpoint.write(recoveryPoints);
+        } catch (IOException e) {
+            log.error("Failed to checkpoint the recovery points in {}", logDir, e);
+        }
+    }
+
+    public Optional<Log> getLog(TopicPartition topicPartition) {
+        return Optional.ofNullable(logs.get(topicPartition));
+    }
+
+    public Log getOrCreateLog(TopicPartition topicPartition) {
+        Log existing = logs.get(topicPartition);
+        return existing != null ? existing : createLog(topicPartition);
+    }
+
+    // Creations are rare, so they are serialized to tell listeners about each log exactly once, after it is visible
+    private synchronized Log createLog(TopicPartition topicPartition) {
+        Log existing = logs.get(topicPartition);
+        if (existing != null) {
+            return existing;
+        }
+        if (!TopicPartition.isValidTopicName(topicPartition.topic()) || topicPartition.partition() < 0) {
+            throw new IllegalArgumentException("Not a valid partition to create a log for: " + topicPartition);
+        }
+        Log created;
+        try {
+            created = Log.open(new File(logDir, topicPartition.dirName()), topicPartition, configFor(topicPartition.topic()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logs.put(topicPartition, created);
+        logCreationListeners.forEach(listener -> listener.accept(topicPartition));
+        return created;
+    }
+
+    /**
+     * Registers a listener told about every log created from now on, on the thread that created it.
+     */
+    public void addLogCreationListener(Consumer<TopicPartition> listener) {
+        logCreationListeners.add(listener);
+    }
+
+    /**
+     * @return A future completed once {@code offset} of {@code log} has been synced to disk by a group commit.
+     * @see GroupCommitFlusher#awaitFlush(Log, long, int)
+     */
+    public CompletableFuture<Void> awaitFlush(Log log, long offset, int bytes) {
+        return flusher.awaitFlush(log, offset, bytes);
+    }
+
+    /**
+     * Applies new settings to every log, including those created from now on, and to the group commit flusher.
+     * Topics with overrides keep them on top of the new settings.
+     */
+    public synchronized void reconfigure(LogConfig config) {
+        this.config = config;
+        logs.values().forEach(log -> log.updateConfig(configFor(log.getTopicPartition().topic())));
+        flusher.reconfigure(config.flushIntervalMs(), config.flushIntervalBytes());
+    }
+
+    /**
+     * Overrides settings of the logs of one topic, e.g. to compact an internal topic while the broker default is
+     * to delete. The override is applied to the broker-wide settings whenever they change.
+     */
+    public synchronized void overrideTopicConfig(String topic, UnaryOperator<LogConfig> override) {
+        topicConfigOverrides.put(topic, override);
+        LogConfig topicConfig = configFor(topic);
+        logs.values().stream()
+                .filter(log -> log.getTopicPartition().topic().equals(topic))
+                .forEach(log -> log.updateConfig(topicConfig));
+    }
+
+    /**
+     * @return The settings the logs of {@code topic} are opened with.
+     */
+    public LogConfig configFor(String topic) {
+        UnaryOperator<LogConfig> override = topicConfigOverrides.get(topic);
+        return override == null ? config : override.apply(config);
+    }
+
+    /**
+     * Changes the I/O rate of the log cleaner, if it runs.
+     */
+    public void updateCleanerMaxIoBytesPerSecond(long maxIoBytesPerSecond) {
+        if (cleaner != null) {
+            cleaner.updateMaxIoBytesPerSecond(maxIoBytesPerSecond);
+        }
+    }
+
+    public Collection<Log> allLogs() {
+        return logs.values();
+    }
+
+    /**
+     * Stops the log cleaner and closes every log, then checkpoints their recovery points and marks the shutdown as
+     * clean, so the next startup recovers nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (cleaner != null) {
+            cleaner.close();
+        }
+        scheduler.shutdownNow();
+        flusher.close();
+        for (Log partitionLog : logs.values()) {
+            partitionLog.close();
+        }
+        checkpointRecoveryPoints();
+        if (!new File(logDir, CLEAN_SHUTDOWN_FILE).createNewFile()) {
+            log.warn("The clean shutdown marker in {} already existed", logDir);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package log;
+
+import exceptions.CorruptRecordException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One file of a partition log, named after the first offset it holds, together with its sparse offset and
+ * time indexes. Only the newest segment of a log is appended to; appends are serialized by {@link Log},
+ * reads are lock-free and bounded by the size published after each append.
+ * <p>
+ * The indexes are memory-mapped on first use rather than when the segment is opened, so a broker holding many
+ * segments starts without mapping the indexes of segments nobody reads. Loading an index checks that its entries are
+ * consistent and rebuilds both indexes from the segment file if not.
+ */
+@Slf4j
+public class LogSegment implements Closeable {
+
+    public static final String LOG_FILE_SUFFIX = ".log";
+    public static final String INDEX_FILE_SUFFIX = ".index";
+    public static final String TIME_INDEX_FILE_SUFFIX = ".timeindex";
+    /** Appended to the files of a segment removed from its log, which are deleted once reads from it are done. */
+    public static final String DELETED_FILE_SUFFIX = ".deleted";
+    /** Appended to the files of a segment the log cleaner is still writing. */
+    public static final String CLEANED_FILE_SUFFIX = ".cleaned";
+    /** Appended to the files of a cleaned segment that is complete and about to replace the segments it was cleaned from. */
+    public static final String SWAP_FILE_SUFFIX = ".swap";
+
+    private final long baseOffset;
+    // Renamed along with the open files when the segment is swapped out of its log
+    private volatile File logFile;
+    private volatile File offsetIndexFile;
+    private volatile File timeIndexFile;
+    private final FileChannel channel;
+    private final int indexIntervalBytes;
+    private final int maxIndexSize;
+    // Published after timeIndex, so a segment whose offset index is set has both indexes loaded
+    private volatile OffsetIndex offsetIndex;
+    private volatile TimeIndex timeIndex;
+
+    private volatile int size;
+    private int bytesSinceLastIndexEntry;
+    private volatile long maxTimestamp = -1L;
+    private long offsetOfMaxTimestamp;
+    // The largest timestamp of the first batch, which the time the segment spans is measured from, read on first use
+    private long rollingBasedTimestamp = Long.MIN_VALUE;
+    private final long createdMs = System.currentTimeMillis();
+
+    private LogSegment(long baseOffset, File dir, FileChannel channel, LogConfig config, String fileSuffix) throws IOException {
+        this.baseOffset = baseOffset;
+        this.logFile = new File(dir, fileName(baseOffset, LOG_FILE_SUFFIX) + fileSuffix);
+        this.offsetIndexFile = new File(dir, fileName(baseOffset, INDEX_FILE_SUFFIX) + fileSuffix);
+        this.timeIndexFile = new File(dir, fileName(baseOffset, TIME_INDEX_FILE_SUFFIX) + fileSuffix);
+        this.channel = channel;
+        this.indexIntervalBytes = config.indexIntervalBytes();
+        this.maxIndexSize = config.maxIndexSize();
+        this.size = (int) channel.size();
+    }
+
+    /**
+     * Opens the segment starting at {@code baseOffset} in the given directory, creating its file if needed.
+     * The index files are only opened, or created, on first use.
+     */
+    public static LogSegment open(File dir, long baseOffset, LogConfig config) throws IOException {
+        return open(dir, baseOffset, config, "");
+    }
+
+    /**
+     * Opens a segment whose file names carry {@code fileSuffix}, e.g. {@link #CLEANED_FILE_SUFFIX} for one the log
+     * cleaner writes.
+     */
+    public static LogSegment open(File dir, long baseOffset, LogConfig config, String fileSuffix) throws IOException {
+        File logFile = new File(dir, fileName(baseOffset, LOG_FILE_SUFFIX) + fileSuffix);
+        FileChannel channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new LogSegment(baseOffset, dir, channel, config, fileSuffix);
+    }
+
+    public static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    public long baseOffset() {
+        return baseOffset;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The largest timestamp in the segment, as far as the time index tells, or -1 if it has none.
+     */
+    public long maxTimestamp() throws IOException {
+        loadIndexes();
+        return maxTimestamp;
+    }
+
+    public File logFile() {
+        return logFile;
+    }
+
+    public long lastModified() {
+        return logFile.lastModified();
+    }
+
+    /**
+     * Renames the files of the segment from {@code oldSuffix} to {@code newSuffix}. They stay open, so reads already
+     * served from the segment are unaffected.
+     */
+    public synchronized void changeFileSuffixes(String oldSuffix, String newSuffix) throws IOException {
+        File newLogFile = replaceSuffix(logFile, oldSuffix, newSuffix);
+        File newOffsetIndexFile = replaceSuffix(offsetIndexFile, oldSuffix, newSuffix);
+        File newTimeIndexFile = replaceSuffix(timeIndexFile, oldSuffix, newSuffix);
+        Files.move(logFile.toPath(), newLogFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        logFile = newLogFile;
+        if (offsetIndex != null) {
+            offsetIndex.renameTo(newOffsetIndexFile);
+            timeIndex.renameTo(newTimeIndexFile);
+        } else {
+            moveIfExists(offsetIndexFile, newOffsetIndexFile);
+            moveIfExists(timeIndexFile, newTimeIndexFile);
+        }
+        offsetIndexFile = newOffsetIndexFile;
+        timeIndexFile = newTimeIndexFile;
+    }
+
+    private static File replaceSuffix(File file, String oldSuffix, String newSuffix) {
+        String name = file.getName();
+        if (!name.endsWith(oldSuffix)) {
+            throw new IllegalArgumentException(file + " does not end with " + oldSuffix);
+        }
+        return new File(file.getParentFile(), name.substring(0, name.length() - oldSuffix.length()) + newSuffix);
+    }
+
+    private static void moveIfExists(File source, File target) throws IOException {
+        if (source.exists()) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * @return Whether an append of {@code incomingBytes} has to go to a new segment: this one would grow past
+     * {@code segmentBytes}, one of its indexes is full, it spans more than {@code segmentMs}, or
+     * {@code incomingLastOffset} is too far from the base offset for the 4-byte relative offsets of the indexes.
+     * An empty segment is always appended to.
+     */
+    public boolean shouldRoll(int incomingBytes, long incomingLastOffset, long incomingMaxTimestamp, long nowMs,
+                              LogConfig config) throws IOException {
+        return size > 0 && ((long) size + incomingBytes > config.segmentBytes() || offsetIndex().isFull() || timeIndex().isFull()
+                || incomingLastOffset - baseOffset > Integer.MAX_VALUE
+                || timeWaitedForRoll(incomingMaxTimestamp, nowMs) > config.segmentMs());
+    }
+
+    /**
+     * Measures the time a segment spans as Kafka does: from the largest timestamp of its first batch to that of the
+     * incoming batches, so that records replayed with old timestamps do not roll a segment per append. Only segments
+     * whose first batch has no timestamp age by the clock, from when they were opened. Called by the appending thread.
+     */
+    private long timeWaitedForRoll(long incomingMaxTimestamp, long nowMs) throws IOException {
+        if (rollingBasedTimestamp == Long.MIN_VALUE) {
+            rollingBasedTimestamp = readBatchHeader(0, size, ByteBuffer.allocate(RecordBatch.HEADER_SIZE)).maxTimestamp();
+        }
+        return rollingBasedTimestamp >= 0 ? incomingMaxTimestamp - rollingBasedTimestamp : nowMs - createdMs;
+    }
+
+    /**
+     * @return Whether both index files exist, which says nothing about whether their entries are valid.
+     */
+    public boolean hasIndexFiles() {
+        return offsetIndexFile.exists() && timeIndexFile.exists();
+    }
+
+    private OffsetIndex offsetIndex() throws IOException {
+        loadIndexes();
+        return offsetIndex;
+    }
+
+    private TimeIndex timeIndex() throws IOException {
+        loadIndexes();
+        return timeIndex;
+    }
+
+    private void loadIndexes() throws IOException {
+        if (offsetIndex != null) {
+            return;
+        }
+        synchronized (this) {
+            if (offsetIndex != null) {
+                return;
+            }
+            OffsetIndex offsets = new OffsetIndex(offsetIndexFile, baseOffset, maxIndexSize);
+            TimeIndex times = new TimeIndex(timeIndexFile, baseOffset, maxIndexSize);
+            if (!offsets.isConsistent(size) || !times.isConsistent(size)) {
+                log.warn("Rebuilding the inconsistent indexes of {}", logFile);
+                scan(offsets, times, false);
+            } else {
+                TimeIndex.TimestampOffset lastEntry = times.lookup(Long.MAX_VALUE);
+                maxTimestamp = lastEntry.timestamp();
+                offsetOfMaxTimestamp = lastEntry.offset();
+            }
+            publishIndexes(offsets, times);
+        }
+    }
+
+    private void publishIndexes(OffsetIndex offsets, TimeIndex times) {
+        timeIndex = times;
+        offsetIndex = offsets;
+    }
+
+    /**
+     * Rebuilds both indexes from the batches in the segment file, e.g. because the index files were missing.
+     */
+    public synchronized void rebuildIndexes() throws IOException {
+        OffsetIndex offsets = offsetIndex != null ? offsetIndex : new OffsetIndex(offsetIndexFile, baseOffset, maxIndexSize);
+        TimeIndex times = timeIndex != null ? timeIndex : new TimeIndex(timeIndexFile, baseOffset, maxIndexSize);
+        scan(offsets, times, false);
+        publishIndexes(offsets, times);
+    }
+
+    /**
+     * Recovers a segment that may hold writes that never reached the disk in full: checks the CRC of every batch
+     * and that offsets increase, rebuilding the indexes along the way, and truncates the file after the last
+     * valid batch.
+     *
+     * @return The number of bytes truncated.
+     */
+    public synchronized int recover() throws IOException {
+        OffsetIndex offsets = offsetIndex != null ? offsetIndex : new OffsetIndex(offsetIndexFile, baseOffset, maxIndexSize);
+        TimeIndex times = timeIndex != null ? timeIndex : new TimeIndex(timeIndexFile, baseOffset, maxIndexSize);
+        int validBytes = scan(offsets, times, true);
+        publishIndexes(offsets, times);
+        int truncated = size - validBytes;
+        if (truncated > 0) {
+            channel.truncate(validBytes);
+            channel.position(validBytes);
+            size = validBytes;
+        }
+        return truncated;
+    }
+
+    /**
+     * Re-creates the index entries of every batch the way appends add them.
+     *
+     * @param validate Whether to check each batch and stop at the first invalid one, rather than fail on it.
+     * @return The size of the batches scanned.
+     * @throws CorruptRecordException if {@code validate} is off and a batch header is malformed.
+     */
+    private int scan(OffsetIndex offsets, TimeIndex times, boolean validate) throws IOException {
+        offsets.reset();
+        times.reset();
+        int limit = size;
+        int position = 0;
+        long nextOffset = baseOffset;
+        long maxTimestampSoFar = -1L;
+        long offsetOfMaxTimestampSoFar = baseOffset;
+        int bytesSinceLastEntry = 0;
+        ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+        ByteBuffer batchBuffer = null;
+        while (position < limit) {
+            BatchHeader batch;
+            try {
+                batch = readBatchHeader(position, limit, header);
+                if (validate) {
+                    if (batch.baseOffset() < nextOffset) {
+                        throw new CorruptRecordException("Batch at position " + position + " of " + logFile
+                                + " starts at offset " + batch.baseOffset() + ", below " + nextOffset);
+                    }
+                    if (batchBuffer == null || batchBuffer.capacity() < batch.sizeInBytes()) {
+                        batchBuffer = ByteBuffer.allocate(Math.max(batch.sizeInBytes(), 64 * 1024));
+                    }
+                    readFully(batchBuffer.clear().limit(batch.sizeInBytes()), position);
+                    RecordBatchValidator.ensureValid(batchBuffer.flip(), 0, batch.sizeInBytes());
+                }
+            } catch (CorruptRecordException e) {
+                if (!validate) {
+                    throw e;
+                }
+                log.warn("Found an invalid batch in {}, truncating it to {} bytes: {}", logFile, position, e.getMessage());
+                break;
+            }
+            if (batch.maxTimestamp() > maxTimestampSoFar) {
+                maxTimestampSoFar = batch.maxTimestamp();
+                offsetOfMaxTimestampSoFar = batch.baseOffset();
+            }
+            if (bytesSinceLastEntry > indexIntervalBytes) {
+                offsets.append(batch.baseOffset(), position);
+                times.maybeAppend(maxTimestampSoFar, offsetOfMaxTimestampSoFar);
+                bytesSinceLastEntry = 0;
+            }
+            bytesSinceLastEntry += batch.sizeInBytes();
+            nextOffset = batch.lastOffset() + 1;
+            position += batch.sizeInBytes();
+        }
+        bytesSinceLastIndexEntry = bytesSinceLastEntry;
+        maxTimestamp = maxTimestampSoFar;
+        offsetOfMaxTimestamp = offsetOfMaxTimestampSoFar;
+        return position;
+    }
+
+    /**
+     * Reads the segment from {@code position} into {@code buffer}, until it is full or the segment ends.
+     *
+     * @return The number of bytes read.
+     */
+    int readInto(ByteBuffer buffer, int position) throws IOException {
+        int limit = size;
+        int length = Math.min(buffer.remaining(), limit - position);
+        if (length <= 0) {
+            return 0;
+        }
+        int bufferLimit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        readFully(buffer, position - buffer.position());
+        buffer.limit(bufferLimit);
+        return length;
+    }
+
+    private void readFully(ByteBuffer buffer, int position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new CorruptRecordException("Unexpected end of " + logFile + " at position " + position);
+            }
+        }
+    }
+
+    /**
+     * Appends record batches whose offsets have already been assigned, adding index entries every
+     * {@code indexIntervalBytes}.
+     *
+     * @param firstOffset  The base offset of the first batch in {@code records}.
+     * @param maxTimestamp The largest timestamp in {@code records}.
+     * @param offsetOfMaxTimestamp The offset of the batch holding that timestamp.
+     * @param records      The batches, between position and limit.
+     */
+    public void append(long firstOffset, long maxTimestamp, long offsetOfMaxTimestamp, ByteBuffer records) throws IOException {
+        int position = size;
+        int bytes = records.remaining();
+        if (maxTimestamp > this.maxTimestamp) {
+            this.maxTimestamp = maxTimestamp;
+            this.offsetOfMaxTimestamp = offsetOfMaxTimestamp;
+        }
+        if (bytesSinceLastIndexEntry > indexIntervalBytes) {
+            offsetIndex().append(firstOffset, position);
+            timeIndex().maybeAppend(this.maxTimestamp, this.offsetOfMaxTimestamp);
+            bytesSinceLastIndexEntry = 0;
+        }
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        bytesSinceLastIndexEntry += bytes;
+        size = position + bytes;
+    }
+
+    /**
+     * Indexes the largest timestamp of a segment that is no longer appended to. Appends only add index entries every
+     * {@code indexIntervalBytes}, so without this the timestamps of its last batches would be lost once it is reopened,
+     * and retention would see the segment as older than it is.
+     */
+    public void onBecomeInactive() throws IOException {
+        if (maxTimestamp >= 0) {
+            timeIndex().maybeAppend(maxTimestamp, offsetOfMaxTimestamp);
+        }
+    }
+
+    /**
+     * Reads whole batches starting with the one that contains {@code startOffset}.
+     *
+     * @param maxSize     The maximum number of bytes to return.
+     * @param minOneBatch Whether to return the first batch in full even if it is larger than {@code maxSize};
+     *                    otherwise nothing is returned in that case.
+     * @return The matching slice of the file, or {@code null} if no batch in this segment reaches {@code startOffset}.
+     */
+    public FileRecords read(long startOffset, int maxSize, boolean minOneBatch) throws IOException {
+        int limit = size;
+        int position = offsetIndex().lookup(startOffset).position();
+        ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+        while (position < limit) {
+            BatchHeader batch = readBatchHeader(position, limit, header);
+            if (batch.lastOffset() >= startOffset) {
+                int length = Math.min(maxSize, limit - position);
+                if (length < batch.sizeInBytes()) {
+                    return minOneBatch ? new FileRecords(channel, position, batch.sizeInBytes()) : FileRecords.EMPTY;
+                }
+                return new FileRecords(channel, position, length);
+            }
+            position += batch.sizeInBytes();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the first batch with a max timestamp at or after {@code timestamp}.
+     *
+     * @return The base offset of that batch, or -1 if this segment holds no such batch.
+     */
+    public long findOffsetByTimestamp(long timestamp) throws IOException {
+        int limit = size;
+        long startOffset = timeIndex().lookup(timestamp).offset();
+        int position = offsetIndex().lookup(startOffset).position();
+        ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+        while (position < limit) {
+            BatchHeader batch = readBatchHeader(position, limit, header);
+            if (batch.maxTimestamp() >= timestamp) {
+                return batch.baseOffset();
+            }
+            position += batch.sizeInBytes();
+        }
+        return -1L;
+    }
+
+    /**
+     * Reads the header of the batch at {@code position}.
+     *
+     * @throws CorruptRecordException if the header is truncated or its length runs past {@code limit}.
+     */
+    BatchHeader readBatchHeader(int position, int limit, ByteBuffer header) throws IOException {
+        header.clear();
+        if (limit - position < RecordBatch.HEADER_SIZE) {
+            throw new CorruptRecordException("Truncated batch header at position " + position + " of " + logFile);
+        }
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                throw new CorruptRecordException("Unexpected end of " + logFile + " at position " + position);
+            }
+        }
+        int sizeInBytes = RecordBatch.sizeInBytes(header, 0);
+        if (sizeInBytes < RecordBatch.HEADER_SIZE || position + (long) sizeInBytes > limit) {
+            throw new CorruptRecordException("Invalid batch size " + sizeInBytes + " at position " + position + " of " + logFile);
+        }
+        return new BatchHeader(RecordBatch.baseOffset(header, 0), RecordBatch.lastOffset(header, 0),
+                RecordBatch.maxTimestamp(header, 0), sizeInBytes);
+    }
+
+    /**
+     * @return The offset following the last batch of this segment, scanning forward from the last index entry.
+     */
+    public long readNextOffset() throws IOException {
+        int limit = size;
+        OffsetIndex.OffsetPosition start = offsetIndex().lookup(Long.MAX_VALUE);
+        int position = start.position();
+        long nextOffset = baseOffset;
+        ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+        while (position < limit) {
+            BatchHeader batch = readBatchHeader(position, limit, header);
+            nextOffset = batch.lastOffset() + 1;
+            position += batch.sizeInBytes();
+        }
+        return nextOffset;
+    }
+
+    public void flush() throws IOException {
+        channel.force(true);
+        OffsetIndex offsets = offsetIndex;
+        if (offsets != null) {
+            offsets.flush();
+            timeIndex.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (offsetIndex != null) {
+            offsetIndex.close();
+            timeIndex.close();
+        }
+        channel.close();
+    }
+
+    /**
+     * Closes the segment and deletes its files.
+     */
+    public synchronized void delete() throws IOException {
+        if (offsetIndex != null) {
+            offsetIndex.closeHandler();
+            timeIndex.closeHandler();
+        }
+        channel.close();
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(offsetIndexFile.toPath());
+        Files.deleteIfExists(timeIndexFile.toPath());
+    }
+
+    record BatchHeader(long baseOffset, long lastOffset, long maxTimestamp, int sizeInBytes) {
+    }
+}
@@ -0,0 +1,80 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file of one offset per partition, in Kafka's checkpoint format: a version line, a line with the number of
+ * entries, then one {@code <topic> <partition> <offset>} line per partition. Writes go to a temporary file that is
+ * synced and then renamed over the checkpoint, so a crash leaves either the old checkpoint or the new one.
+ */
+public class OffsetCheckpointFile {
+
+    private static final int CURRENT_VERSION = 0;
+
+    private final File file;
+    private final File tempFile;
+
+    public OffsetCheckpointFile(File file) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    public synchronized void write(Map<TopicPartition, Long> offsets) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(tempFile);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(CURRENT_VERSION + "\n");
+            writer.write(offsets.size() + "\n");
+            for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+                TopicPartition topicPartition = entry.getKey();
+                writer.write(topicPartition.topic() + " " + topicPartition.partition() + " " + entry.getValue() + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The checkpointed offsets, empty if there is no checkpoint yet.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public synchronized Map<TopicPartition, Long> read() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return Map.of();
+        }
+        try {
+            if (lines.size() < 2 || Integer.parseInt(lines.get(0).trim()) != CURRENT_VERSION) {
+                throw new IOException("Unsupported checkpoint file " + file);
+            }
+            int count = Integer.parseInt(lines.get(1).trim());
+            if (lines.size() < 2 + count) {
+                throw new IOException("Checkpoint file " + file + " ends before its " + count + " entries");
+            }
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            for (String line : lines.subList(2, 2 + count)) {
+                String[] fields = line.trim().split(" ");
+                if (fields.length != 3) {
+                    throw new IOException("Malformed line in checkpoint file " + file + ": " + line);
+                }
+                offsets.put(new TopicPartition(fields[0], Integer.parseInt(fields[1])), Long.parseLong(fields[2]));
+            }
+            return offsets;
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checkpoint file " + file, e);
+        }
+    }
+}
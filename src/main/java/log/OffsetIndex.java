@@ -0,0 +1,83 @@
+package log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Maps offsets to physical positions in a segment file. Each entry is a 4-byte offset relative to the
+ * segment's base offset followed by a 4-byte file position.
+ */
+public class OffsetIndex extends AbstractIndex {
+
+    private static final int ENTRY_SIZE = 8;
+
+    public OffsetIndex(File file, long baseOffset, int maxIndexSize) throws IOException {
+        super(file, baseOffset, maxIndexSize);
+    }
+
+    @Override
+    protected int entrySize() {
+        return ENTRY_SIZE;
+    }
+
+    @Override
+    protected long keyAt(int slot) {
+        return baseOffset + mmap.getInt(slot * ENTRY_SIZE);
+    }
+
+    public long lastOffset() {
+        int count = entries;
+        return count == 0 ? baseOffset : keyAt(count - 1);
+    }
+
+    /**
+     * Entries are only added once a segment holds more than one batch, so a valid last entry is strictly above the
+     * base offset, above the entry before it, and points inside the segment.
+     */
+    @Override
+    public boolean isConsistent(int segmentSize) {
+        int count = entries;
+        if (count == 0) {
+            return true;
+        }
+        int lastSlot = count - 1;
+        return keyAt(lastSlot) > baseOffset
+                && (count == 1 || keyAt(lastSlot) > keyAt(lastSlot - 1))
+                && mmap.getInt(lastSlot * ENTRY_SIZE + 4) < segmentSize;
+    }
+
+    /**
+     * Appends an entry. Offsets must be strictly increasing.
+     *
+     * @return {@code false} if the index is full and the entry was not added.
+     */
+    public boolean append(long offset, int position) {
+        int count = entries;
+        if (count >= 1 && offset <= lastOffset()) {
+            throw new IllegalArgumentException("Offset " + offset + " is not larger than the last indexed offset " + lastOffset());
+        }
+        if (isFull()) {
+            return false;
+        }
+        mmap.putInt(count * ENTRY_SIZE, (int) (offset - baseOffset));
+        mmap.putInt(count * ENTRY_SIZE + 4, position);
+        entries = count + 1;
+        return true;
+    }
+
+    /**
+     * Finds the position to start scanning from for the target offset.
+     *
+     * @return The last indexed entry at or below the target, or the start of the segment if there is none.
+     */
+    public OffsetPosition lookup(long targetOffset) {
+        int slot = largestLowerBoundSlot(targetOffset);
+        if (slot < 0) {
+            return new OffsetPosition(baseOffset, 0);
+        }
+        return new OffsetPosition(keyAt(slot), mmap.getInt(slot * ENTRY_SIZE + 4));
+    }
+
+    public record OffsetPosition(long offset, int position) {
+    }
+}
@@ -0,0 +1,121 @@
+package log;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Offsets of the fields of a v2 (magic 2) record batch header, read in place with absolute gets.
+ * <pre>
+ * baseOffset: int64, batchLength: int32, partitionLeaderEpoch: int32, magic: int8, crc: uint32,
+ * attributes: int16, lastOffsetDelta: int32, baseTimestamp: int64, maxTimestamp: int64,
+ * producerId: int64, producerEpoch: int16, baseSequence: int32, recordsCount: int32, records...
+ * </pre>
+ */
+public final class RecordBatch {
+
+    public static final int BASE_OFFSET_OFFSET = 0;
+    public static final int LENGTH_OFFSET = 8;
+    public static final int PARTITION_LEADER_EPOCH_OFFSET = 12;
+    public static final int MAGIC_OFFSET = 16;
+    public static final int CRC_OFFSET = 17;
+    public static final int ATTRIBUTES_OFFSET = 21;
+    public static final int LAST_OFFSET_DELTA_OFFSET = 23;
+    public static final int BASE_TIMESTAMP_OFFSET = 27;
+    public static final int MAX_TIMESTAMP_OFFSET = 35;
+    public static final int PRODUCER_ID_OFFSET = 43;
+    public static final int PRODUCER_EPOCH_OFFSET = 51;
+    public static final int BASE_SEQUENCE_OFFSET = 53;
+    public static final int RECORDS_COUNT_OFFSET = 57;
+    public static final int RECORDS_OFFSET = 61;
+
+    /** The baseOffset and batchLength fields, which precede the part of the batch counted by batchLength. */
+    public static final int LOG_OVERHEAD = 12;
+    public static final int HEADER_SIZE = RECORDS_OFFSET;
+    public static final byte CURRENT_MAGIC = 2;
+    /** The attribute bits holding the compression codec; 0 means the records are stored uncompressed. */
+    public static final int COMPRESSION_CODEC_MASK = 0x07;
+
+    private RecordBatch() {
+    }
+
+    public static long baseOffset(ByteBuffer buffer, int batchStart) {
+        return buffer.getLong(batchStart + BASE_OFFSET_OFFSET);
+    }
+
+    /**
+     * @return The size of the whole batch, including the {@link #LOG_OVERHEAD}.
+     */
+    public static int sizeInBytes(ByteBuffer buffer, int batchStart) {
+        return LOG_OVERHEAD + buffer.getInt(batchStart + LENGTH_OFFSET);
+    }
+
+    public static byte magic(ByteBuffer buffer, int batchStart) {
+        return buffer.get(batchStart + MAGIC_OFFSET);
+    }
+
+    /**
+     * @return The stored CRC32C of everything from the attributes to the end of the batch, as an unsigned value.
+     */
+    public static long crc(ByteBuffer buffer, int batchStart) {
+        return Integer.toUnsignedLong(buffer.getInt(batchStart + CRC_OFFSET));
+    }
+
+    public static short attributes(ByteBuffer buffer, int batchStart) {
+        return buffer.getShort(batchStart + ATTRIBUTES_OFFSET);
+    }
+
+    public static int compressionCodec(ByteBuffer buffer, int batchStart) {
+        return attributes(buffer, batchStart) & COMPRESSION_CODEC_MASK;
+    }
+
+    public static int recordsCount(ByteBuffer buffer, int batchStart) {
+        return buffer.getInt(batchStart + RECORDS_COUNT_OFFSET);
+    }
+
+    public static long baseTimestamp(ByteBuffer buffer, int batchStart) {
+        return buffer.getLong(batchStart + BASE_TIMESTAMP_OFFSET);
+    }
+
+    public static int lastOffsetDelta(ByteBuffer buffer, int batchStart) {
+        return buffer.getInt(batchStart + LAST_OFFSET_DELTA_OFFSET);
+    }
+
+    public static long lastOffset(ByteBuffer buffer, int batchStart) {
+        return baseOffset(buffer, batchStart) + lastOffsetDelta(buffer, batchStart);
+    }
+
+    public static long maxTimestamp(ByteBuffer buffer, int batchStart) {
+        return buffer.getLong(batchStart + MAX_TIMESTAMP_OFFSET);
+    }
+
+    public static void setBaseOffset(ByteBuffer buffer, int batchStart, long baseOffset) {
+        buffer.putLong(batchStart + BASE_OFFSET_OFFSET, baseOffset);
+    }
+
+    public static void setSizeInBytes(ByteBuffer buffer, int batchStart, int sizeInBytes) {
+        buffer.putInt(batchStart + LENGTH_OFFSET, sizeInBytes - LOG_OVERHEAD);
+    }
+
+    public static void setAttributes(ByteBuffer buffer, int batchStart, short attributes) {
+        buffer.putShort(batchStart + ATTRIBUTES_OFFSET, attributes);
+    }
+
+    public static void setMaxTimestamp(ByteBuffer buffer, int batchStart, long maxTimestamp) {
+        buffer.putLong(batchStart + MAX_TIMESTAMP_OFFSET, maxTimestamp);
+    }
+
+    public static void setRecordsCount(ByteBuffer buffer, int batchStart, int recordsCount) {
+        buffer.putInt(batchStart + RECORDS_COUNT_OFFSET, recordsCount);
+    }
+
+    /**
+     * Computes and stores the CRC of a batch whose other fields are final, i.e. after any of the setters above.
+     */
+    public static void updateCrc(ByteBuffer buffer, int batchStart) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate()
+                .limit(batchStart + sizeInBytes(buffer, batchStart))
+                .position(batchStart + ATTRIBUTES_OFFSET));
+        buffer.putInt(batchStart + CRC_OFFSET, (int) crc.getValue());
+    }
+}
@@ -0,0 +1,105 @@
+package log;
+
+import util.Writer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Builds an uncompressed v2 record batch out of records the broker writes itself, e.g. to an internal topic.
+ * The base offset is left at 0 for {@link Log#append(ByteBuffer)} to assign, and the batch carries no producer id.
+ */
+public final class RecordBatchBuilder {
+
+    private static final long NO_PRODUCER_ID = -1L;
+    private static final short NO_PRODUCER_EPOCH = -1;
+    private static final int NO_SEQUENCE = -1;
+
+    private ByteBuffer buffer;
+    private int recordsCount;
+    private long baseTimestamp = -1L;
+    private long maxTimestamp = -1L;
+
+    public RecordBatchBuilder(int initialCapacity) {
+        this.buffer = ByteBuffer.allocate(Math.max(initialCapacity, RecordBatch.HEADER_SIZE));
+        buffer.position(RecordBatch.HEADER_SIZE);
+    }
+
+    /**
+     * @param key   The key bytes between position and limit, or {@code null}.
+     * @param value The value bytes between position and limit, or {@code null} for a tombstone.
+     */
+    public RecordBatchBuilder append(long timestamp, ByteBuffer key, ByteBuffer value) {
+        if (recordsCount == 0) {
+            baseTimestamp = timestamp;
+        }
+        long timestampDelta = timestamp - baseTimestamp;
+        int keyLength = key == null ? -1 : key.remaining();
+        int valueLength = value == null ? -1 : value.remaining();
+        int bodySize = 1 + Writer.sizeOfVariableLong(timestampDelta) + Writer.sizeOfVariableInt(recordsCount)
+                + Writer.sizeOfVariableInt(keyLength) + Math.max(keyLength, 0)
+                + Writer.sizeOfVariableInt(valueLength) + Math.max(valueLength, 0)
+                + Writer.sizeOfVariableInt(0);
+        ensureRemaining(Writer.sizeOfVariableInt(bodySize) + bodySize);
+
+        Writer.writeVariableInt(buffer, bodySize);
+        buffer.put((byte) 0);
+        Writer.writeVariableLong(buffer, timestampDelta);
+        Writer.writeVariableInt(buffer, recordsCount);
+        Writer.writeVariableInt(buffer, keyLength);
+        if (key != null) {
+            buffer.put(key.duplicate());
+        }
+        Writer.writeVariableInt(buffer, valueLength);
+        if (value != null) {
+            buffer.put(value.duplicate());
+        }
+        Writer.writeVariableInt(buffer, 0);
+        recordsCount++;
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return recordsCount == 0;
+    }
+
+    /**
+     * @return The size the batch would have if it were built now.
+     */
+    public int sizeInBytes() {
+        return buffer.position();
+    }
+
+    /**
+     * Fills in the header and returns the batch. The builder must not be used afterwards.
+     *
+     * @return The batch between position and limit.
+     */
+    public ByteBuffer build() {
+        if (recordsCount == 0) {
+            throw new IllegalStateException("A record batch needs at least one record");
+        }
+        buffer.flip();
+        buffer.putLong(RecordBatch.BASE_OFFSET_OFFSET, 0L);
+        buffer.putInt(RecordBatch.LENGTH_OFFSET, buffer.limit() - RecordBatch.LOG_OVERHEAD);
+        buffer.putInt(RecordBatch.PARTITION_LEADER_EPOCH_OFFSET, 0);
+        buffer.put(RecordBatch.MAGIC_OFFSET, RecordBatch.CURRENT_MAGIC);
+        buffer.putShort(RecordBatch.ATTRIBUTES_OFFSET, (short) 0);
+        buffer.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, recordsCount - 1);
+        buffer.putLong(RecordBatch.BASE_TIMESTAMP_OFFSET, baseTimestamp);
+        buffer.putLong(RecordBatch.MAX_TIMESTAMP_OFFSET, maxTimestamp);
+        buffer.putLong(RecordBatch.PRODUCER_ID_OFFSET, NO_PRODUCER_ID);
+        buffer.putShort(RecordBatch.PRODUCER_EPOCH_OFFSET, NO_PRODUCER_EPOCH);
+        buffer.putInt(RecordBatch.BASE_SEQUENCE_OFFSET, NO_SEQUENCE);
+        buffer.putInt(RecordBatch.RECORDS_COUNT_OFFSET, recordsCount);
+        RecordBatch.updateCrc(buffer, 0);
+        return buffer;
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer = grown.put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package log;
+
+import compression.CompressionCodec;
+import compression.CompressionCodecs;
+import compression.CompressionType;
+import exceptions.CorruptRecordException;
+import exceptions.InvalidRecordException;
+import exceptions.InvalidRequestException;
+import util.BufferPool;
+import util.Parser;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Validates produced v2 record batches in place, before they are appended: batch framing and magic, the CRC32C
+ * over each batch, the framing of every record and that offset deltas run consecutively from 0 to
+ * {@code lastOffsetDelta}. Records are stepped through with varints read from the buffer and exposed through a
+ * reused {@link RecordView}, so validation allocates no per-record objects. Compressed batches are first
+ * decompressed into a pooled buffer by their {@link CompressionCodec}, up to a limit on the decompressed size.
+ */
+public final class RecordBatchValidator {
+
+    private static final ThreadLocal<CRC32C> CRC = ThreadLocal.withInitial(CRC32C::new);
+    private static final ThreadLocal<RecordView> VIEW = ThreadLocal.withInitial(RecordView::new);
+    private static final BufferPool DECOMPRESSION_BUFFERS = new BufferPool(16);
+
+    private RecordBatchValidator() {
+    }
+
+    public static void validate(ByteBuffer records) {
+        validate(records, CompressionCodec.MAX_OUTPUT_SIZE, RecordVisitor.NONE);
+    }
+
+    /**
+     * Validates every batch between the buffer's position and limit, handing each record to {@code visitor}.
+     *
+     * @param maxDecompressedSize The most bytes the records of a compressed batch may decompress to.
+     * @throws CorruptRecordException if a batch is truncated, has an unsupported magic, fails its CRC or
+     * decompresses to more than {@code maxDecompressedSize} bytes.
+     * @throws InvalidRecordException if a batch is empty or its records are malformed or out of order.
+     * @throws exceptions.UnsupportedCompressionTypeException if a batch uses a codec the broker does not have.
+     */
+    public static void validate(ByteBuffer records, int maxDecompressedSize, RecordVisitor visitor) {
+        int position = records.position();
+        if (position == records.limit()) {
+            throw new InvalidRecordException("Produce request contains no record batches");
+        }
+        while (position < records.limit()) {
+            if (records.limit() - position < RecordBatch.HEADER_SIZE) {
+                throw new CorruptRecordException("Truncated record batch header at position " + position);
+            }
+            int batchSize = RecordBatch.sizeInBytes(records, position);
+            if (batchSize < RecordBatch.HEADER_SIZE || position + (long) batchSize > records.limit()) {
+                throw new CorruptRecordException("Invalid record batch size " + batchSize + " at position " + position);
+            }
+            validateBatch(records, position, batchSize, maxDecompressedSize, visitor);
+            position += batchSize;
+        }
+    }
+
+    /**
+     * Checks the magic and the CRC of one batch, without looking at its records, e.g. when recovering a segment
+     * whose batches were fully validated when they were appended.
+     *
+     * @throws CorruptRecordException if the batch has an unsupported magic or fails its CRC.
+     */
+    public static void ensureValid(ByteBuffer buffer, int batchStart, int batchSize) {
+        byte magic = RecordBatch.magic(buffer, batchStart);
+        if (magic != RecordBatch.CURRENT_MAGIC) {
+            throw new CorruptRecordException("Unsupported record batch magic " + magic);
+        }
+        CRC32C crc = CRC.get();
+        crc.reset();
+        crc.update(buffer.duplicate()
+                .limit(batchStart + batchSize)
+                .position(batchStart + RecordBatch.ATTRIBUTES_OFFSET));
+        if (crc.getValue() != RecordBatch.crc(buffer, batchStart)) {
+            throw new CorruptRecordException("Record batch is corrupt (stored crc = " + RecordBatch.crc(buffer, batchStart)
+                    + ", computed crc = " + crc.getValue() + ")");
+        }
+    }
+
+    private static void validateBatch(ByteBuffer buffer, int batchStart, int batchSize, int maxDecompressedSize,
+                                      RecordVisitor visitor) {
+        ensureValid(buffer, batchStart, batchSize);
+
+        int count = RecordBatch.recordsCount(buffer, batchStart);
+        int lastOffsetDelta = RecordBatch.lastOffsetDelta(buffer, batchStart);
+        if (count <= 0) {
+            throw new InvalidRecordException("Record batch contains no records");
+        }
+        if (lastOffsetDelta != count - 1) {
+            throw new InvalidRecordException("Record batch has " + count + " records but a last offset delta of " + lastOffsetDelta);
+        }
+
+        visitBatch(buffer, batchStart, batchSize, true, maxDecompressedSize, visitor);
+    }
+
+    /**
+     * Steps through the records of a batch that is already in the log, e.g. for the log cleaner. Unlike produced
+     * batches, these may have gaps between offset deltas where compaction removed records, and their decompressed
+     * size was already bounded when they were produced.
+     *
+     * @throws CorruptRecordException if the records are malformed.
+     */
+    public static void forEachRecord(ByteBuffer buffer, int batchStart, int batchSize, RecordVisitor visitor) {
+        visitBatch(buffer, batchStart, batchSize, false, CompressionCodec.MAX_OUTPUT_SIZE, visitor);
+    }
+
+    private static void visitBatch(ByteBuffer buffer, int batchStart, int batchSize, boolean consecutive,
+                                   int maxDecompressedSize, RecordVisitor visitor) {
+        int count = RecordBatch.recordsCount(buffer, batchStart);
+        long baseOffset = RecordBatch.baseOffset(buffer, batchStart);
+        long baseTimestamp = RecordBatch.baseTimestamp(buffer, batchStart);
+        ByteBuffer records = buffer.slice(batchStart + RecordBatch.RECORDS_OFFSET, batchSize - RecordBatch.RECORDS_OFFSET);
+        CompressionType compression = CompressionType.forId(RecordBatch.compressionCodec(buffer, batchStart));
+        if (compression == CompressionType.NONE) {
+            visitRecords(records, baseOffset, baseTimestamp, count, consecutive, visitor);
+            return;
+        }
+        ByteBuffer decompressed = CompressionCodecs.forType(compression).decompress(records, DECOMPRESSION_BUFFERS, maxDecompressedSize);
+        try {
+            visitRecords(decompressed, baseOffset, baseTimestamp, count, consecutive, visitor);
+        } finally {
+            DECOMPRESSION_BUFFERS.release(decompressed);
+        }
+    }
+
+    private static void visitRecords(ByteBuffer records, long baseOffset, long baseTimestamp, int count,
+                                     boolean consecutive, RecordVisitor visitor) {
+        try {
+            visitRecordsUnchecked(records, baseOffset, baseTimestamp, count, consecutive, visitor);
+        } catch (InvalidRequestException | BufferUnderflowException e) {
+            throw new CorruptRecordException("Malformed record: " + e.getMessage());
+        }
+    }
+
+    private static void visitRecordsUnchecked(ByteBuffer batch, long baseOffset, long baseTimestamp, int count,
+                                              boolean consecutive, RecordVisitor visitor) {
+        RecordView view = VIEW.get();
+        for (int i = 0; i < count; i++) {
+            int recordStart = batch.position();
+            int length = Parser.parseVariableInt(batch);
+            if (length < 0 || length > batch.remaining()) {
+                throw new CorruptRecordException("Invalid length " + length + " for record " + i);
+            }
+            int recordEnd = batch.position() + length;
+            byte attributes = batch.get();
+            long timestampDelta = Parser.parseVariableLong(batch);
+            int offsetDelta = Parser.parseVariableInt(batch);
+            if (consecutive && offsetDelta != i) {
+                throw new InvalidRecordException("Record " + i + " has offset delta " + offsetDelta + ", expected " + i);
+            }
+            int keyLength = Parser.parseVariableInt(batch);
+            int keyPosition = skip(batch, keyLength, recordEnd, "key");
+            int valueLength = Parser.parseVariableInt(batch);
+            int valuePosition = skip(batch, valueLength, recordEnd, "value");
+            int headerCount = Parser.parseVariableInt(batch);
+            if (headerCount < 0) {
+                throw new CorruptRecordException("Invalid header count " + headerCount + " for record " + i);
+            }
+            for (int h = 0; h < headerCount; h++) {
+                int headerKeyLength = Parser.parseVariableInt(batch);
+                if (headerKeyLength < 0) {
+                    throw new CorruptRecordException("Invalid header key length " + headerKeyLength + " for record " + i);
+                }
+                skip(batch, headerKeyLength, recordEnd, "header key");
+                skip(batch, Parser.parseVariableInt(batch), recordEnd, "header value");
+            }
+            if (batch.position() != recordEnd) {
+                throw new CorruptRecordException("Record " + i + " has " + (recordEnd - batch.position()) + " bytes left after its last field");
+            }
+            view.set(batch, recordStart, recordEnd, baseOffset, baseTimestamp, length, attributes, timestampDelta, offsetDelta,
+                    keyPosition, keyLength, valuePosition, valueLength, headerCount);
+            visitor.visit(view);
+        }
+        if (batch.hasRemaining()) {
+            throw new CorruptRecordException("Record batch has " + batch.remaining() + " bytes after its last record");
+        }
+    }
+
+    /**
+     * Skips a nullable byte field of {@code length} bytes.
+     *
+     * @return The position of the field's bytes.
+     */
+    private static int skip(ByteBuffer batch, int length, int recordEnd, String field) {
+        int position = batch.position();
+        if (length < -1 || (length > 0 && position + length > recordEnd)) {
+            throw new CorruptRecordException("Invalid " + field + " length " + length);
+        }
+        if (length > 0) {
+            batch.position(position + length);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,112 @@
+package log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight over one record of a v2 batch, positioned by {@link RecordBatchValidator}. Only positions and lengths
+ * are decoded; key and value bytes stay in the batch buffer until {@link #key()} or {@link #value()} slice them.
+ * <pre>
+ * length: varint, attributes: int8, timestampDelta: varlong, offsetDelta: varint,
+ * keyLength: varint, key, valueLength: varint, value, headerCount: varint, headers...
+ * </pre>
+ */
+public final class RecordView {
+
+    private ByteBuffer buffer;
+    private int position;
+    private int end;
+    private long baseOffset;
+    private long baseTimestamp;
+    private int sizeInBytes;
+    private byte attributes;
+    private long timestampDelta;
+    private int offsetDelta;
+    private int keyPosition;
+    private int keyLength;
+    private int valuePosition;
+    private int valueLength;
+    private int headerCount;
+
+    void set(ByteBuffer buffer, int position, int end, long baseOffset, long baseTimestamp, int sizeInBytes, byte attributes,
+             long timestampDelta, int offsetDelta, int keyPosition, int keyLength, int valuePosition,
+             int valueLength, int headerCount) {
+        this.buffer = buffer;
+        this.position = position;
+        this.end = end;
+        this.baseOffset = baseOffset;
+        this.baseTimestamp = baseTimestamp;
+        this.sizeInBytes = sizeInBytes;
+        this.attributes = attributes;
+        this.timestampDelta = timestampDelta;
+        this.offsetDelta = offsetDelta;
+        this.keyPosition = keyPosition;
+        this.keyLength = keyLength;
+        this.valuePosition = valuePosition;
+        this.valueLength = valueLength;
+        this.headerCount = headerCount;
+    }
+
+    public long offset() {
+        return baseOffset + offsetDelta;
+    }
+
+    public long timestamp() {
+        return baseTimestamp + timestampDelta;
+    }
+
+    public int offsetDelta() {
+        return offsetDelta;
+    }
+
+    public long timestampDelta() {
+        return timestampDelta;
+    }
+
+    public byte attributes() {
+        return attributes;
+    }
+
+    /**
+     * @return The size of the record, excluding its varint length prefix.
+     */
+    public int sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public boolean hasKey() {
+        return keyLength >= 0;
+    }
+
+    public int keyLength() {
+        return keyLength;
+    }
+
+    public int valueLength() {
+        return valueLength;
+    }
+
+    public int headerCount() {
+        return headerCount;
+    }
+
+    /**
+     * @return A read-only slice of the key, or {@code null} for a null key.
+     */
+    public ByteBuffer key() {
+        return keyLength < 0 ? null : buffer.slice(keyPosition, keyLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A read-only slice of the whole record as it is stored, from its varint length prefix to its last header.
+     */
+    public ByteBuffer bytes() {
+        return buffer.slice(position, end - position).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A read-only slice of the value, or {@code null} for a null value, e.g. a tombstone.
+     */
+    public ByteBuffer value() {
+        return valueLength < 0 ? null : buffer.slice(valuePosition, valueLength).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,17 @@
+package log;
+
+/**
+ * Receives the records of a batch as {@link RecordBatchValidator} steps through them.
+ */
+@FunctionalInterface
+public interface RecordVisitor {
+
+    RecordVisitor NONE = record -> {
+    };
+
+    /**
+     * @param record A view of the current record, reused for the next one; it must not be retained.
+     */
+    void visit(RecordView record);
+
+}
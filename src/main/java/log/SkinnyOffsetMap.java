@@ -0,0 +1,150 @@
+package log;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The key to latest offset map the log cleaner builds over the dirty part of a log, stored off-heap so even a large
+ * map adds nothing to garbage collection. Keys are not kept: each slot holds the 16-byte MD5 of a key followed by
+ * its 8-byte offset, and slots are probed linearly. A slot whose hash is all zeros is free.
+ * Not thread-safe; every cleaner thread has its own map.
+ */
+public class SkinnyOffsetMap {
+
+    private static final int HASH_SIZE = 16;
+    private static final int SLOT_SIZE = HASH_SIZE + 8;
+
+    private final ByteBuffer bytes;
+    private final int slots;
+    private final int maxEntries;
+    private final MessageDigest digest;
+    private final byte[] hash = new byte[HASH_SIZE];
+    private final byte[] zeros = new byte[64 * 1024];
+    private int entries;
+    private long latestOffset = -1L;
+
+    /**
+     * @param memory     The off-heap bytes the map takes.
+     * @param loadFactor The share of slots that may be filled before the map reports itself {@link #isFull() full},
+     *                   which keeps probe sequences short.
+     */
+    public SkinnyOffsetMap(int memory, double loadFactor) {
+        this.bytes = ByteBuffer.allocateDirect(memory / SLOT_SIZE * SLOT_SIZE);
+        this.slots = bytes.capacity() / SLOT_SIZE;
+        this.maxEntries = (int) (slots * loadFactor);
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * @return How many distinct keys the map holds before it is full.
+     */
+    public int capacity() {
+        return maxEntries;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public boolean isFull() {
+        return entries >= maxEntries;
+    }
+
+    /**
+     * @return The largest offset put into the map, or -1 if it is empty.
+     */
+    public long latestOffset() {
+        return latestOffset;
+    }
+
+    /**
+     * Records {@code offset} as the latest offset of {@code key}, replacing the previous one.
+     *
+     * @param key The key bytes between position and limit, which are left untouched.
+     * @throws IllegalStateException if the map is full and the key is not in it yet.
+     */
+    public void put(ByteBuffer key, long offset) {
+        hashInto(key);
+        int slot = probe();
+        if (isFree(slot)) {
+            if (isFull()) {
+                throw new IllegalStateException("The offset map is full");
+            }
+            bytes.put(slot * SLOT_SIZE, hash);
+            entries++;
+        }
+        bytes.putLong(slot * SLOT_SIZE + HASH_SIZE, offset);
+        latestOffset = Math.max(latestOffset, offset);
+    }
+
+    /**
+     * @return The latest offset of {@code key}, or -1 if the map does not hold it.
+     */
+    public long get(ByteBuffer key) {
+        hashInto(key);
+        int slot = probe();
+        return isFree(slot) ? -1L : bytes.getLong(slot * SLOT_SIZE + HASH_SIZE);
+    }
+
+    public void clear() {
+        for (int position = 0; position < bytes.capacity(); position += zeros.length) {
+            bytes.put(position, zeros, 0, Math.min(zeros.length, bytes.capacity() - position));
+        }
+        entries = 0;
+        latestOffset = -1L;
+    }
+
+    private void hashInto(ByteBuffer key) {
+        digest.update(key.duplicate());
+        try {
+            digest.digest(hash, 0, HASH_SIZE);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        // An all-zero hash would read as a free slot
+        if (isZero(hash)) {
+            hash[0] = 1;
+        }
+    }
+
+    /**
+     * @return The slot holding the current hash, or the free slot it would go into.
+     */
+    private int probe() {
+        int slot = Math.floorMod((hash[0] & 0xff) << 24 | (hash[1] & 0xff) << 16 | (hash[2] & 0xff) << 8 | (hash[3] & 0xff), slots);
+        while (!isFree(slot) && !hashMatches(slot)) {
+            slot = slot + 1 == slots ? 0 : slot + 1;
+        }
+        return slot;
+    }
+
+    private boolean isFree(int slot) {
+        int position = slot * SLOT_SIZE;
+        return bytes.getLong(position) == 0 && bytes.getLong(position + 8) == 0;
+    }
+
+    private boolean hashMatches(int slot) {
+        int position = slot * SLOT_SIZE;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            if (bytes.get(position + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] array) {
+        for (byte b : array) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Maps timestamps to offsets in a segment. Each entry is an 8-byte timestamp followed by a 4-byte offset
+ * relative to the segment's base offset; timestamps only ever increase from one entry to the next.
+ */
+public class TimeIndex extends AbstractIndex {
+
+    private static final int ENTRY_SIZE = 12;
+
+    public TimeIndex(File file, long baseOffset, int maxIndexSize) throws IOException {
+        super(file, baseOffset, maxIndexSize);
+    }
+
+    @Override
+    protected int entrySize() {
+        return ENTRY_SIZE;
+    }
+
+    @Override
+    protected long keyAt(int slot) {
+        return mmap.getLong(slot * ENTRY_SIZE);
+    }
+
+    public long lastTimestamp() {
+        int count = entries;
+        return count == 0 ? -1L : keyAt(count - 1);
+    }
+
+    /**
+     * Timestamps strictly increase from one entry to the next, which a zeroed tail breaks.
+     */
+    @Override
+    public boolean isConsistent(int segmentSize) {
+        int count = entries;
+        return count < 2 || keyAt(count - 1) > keyAt(count - 2);
+    }
+
+    /**
+     * Appends an entry if the timestamp is larger than the last indexed one.
+     *
+     * @return {@code true} if an entry was added.
+     */
+    public boolean maybeAppend(long timestamp, long offset) {
+        int count = entries;
+        if (isFull() || (count > 0 && timestamp <= lastTimestamp())) {
+            return false;
+        }
+        mmap.putLong(count * ENTRY_SIZE, timestamp);
+        mmap.putInt(count * ENTRY_SIZE + 8, (int) (offset - baseOffset));
+        entries = count + 1;
+        return true;
+    }
+
+    /**
+     * Finds the offset to start scanning from for the first message with a timestamp at or after the target.
+     *
+     * @return The last indexed entry at or below the target, or the segment base offset if there is none.
+     */
+    public TimestampOffset lookup(long targetTimestamp) {
+        int slot = largestLowerBoundSlot(targetTimestamp);
+        if (slot < 0) {
+            return new TimestampOffset(-1L, baseOffset);
+        }
+        return new TimestampOffset(keyAt(slot), baseOffset + mmap.getInt(slot * ENTRY_SIZE + 8));
+    }
+
+    public record TimestampOffset(long timestamp, long offset) {
+    }
+}
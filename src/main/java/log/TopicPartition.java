@@ -0,0 +1,43 @@
+package log;
+
+import java.util.regex.Pattern;
+
+public record TopicPartition(String topic, int partition) {
+
+    private static final int MAX_TOPIC_NAME_LENGTH = 249;
+    private static final Pattern LEGAL_TOPIC_NAME = Pattern.compile("[a-zA-Z0-9._-]+");
+
+    public String dirName() {
+        return topic + "-" + partition;
+    }
+
+    /**
+     * Parses a partition directory name of the form {@code <topic>-<partition>}. Topic names may contain dashes.
+     *
+     * @throws IllegalArgumentException if the name does not end in a partition number.
+     */
+    public static TopicPartition fromDirName(String dirName) {
+        int separator = dirName.lastIndexOf('-');
+        if (separator <= 0 || separator == dirName.length() - 1) {
+            throw new IllegalArgumentException("Not a partition directory: " + dirName);
+        }
+        try {
+            return new TopicPartition(dirName.substring(0, separator), Integer.parseInt(dirName.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a partition directory: " + dirName, e);
+        }
+    }
+
+    /**
+     * Kafka's rules for topic names, which also keep them safe to use as directory names.
+     */
+    public static boolean isValidTopicName(String topic) {
+        return topic != null && !topic.equals(".") && !topic.equals("..")
+                && topic.length() <= MAX_TOPIC_NAME_LENGTH && LEGAL_TOPIC_NAME.matcher(topic).matches();
+    }
+
+    @Override
+    public String toString() {
+        return dirName();
+    }
+}
@@ -2,8 +2,9 @@ package message.request;
 
 import lombok.Builder;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 @Builder
-public record RequestInfo(Integer messageSize, Short requestApiKey, Short requestApiVersion, Integer correlationId, Optional<String> clientId, byte[] remainingRequest) {
+public record RequestInfo(int messageSize, short requestApiKey, short requestApiVersion, int correlationId, Optional<String> clientId, ByteBuffer remainingRequest) {
 }
@@ -1,7 +1,66 @@
 package message.response;
 
+import codec.CompiledField;
+import codec.CompiledSchema;
+import codec.CompiledSchemaSet;
 import util.Struct;
 
-public record ResponseMessage(Struct responseHeader, Struct responseBody) {
+import java.nio.ByteBuffer;
+
+/**
+ * A response ready for encoding. The body is either a {@link Struct} or, for responses that never change,
+ * a pre-encoded body that is copied into the frame as-is, apart from a throttle time set on a throttled response.
+ */
+public record ResponseMessage(CompiledSchemaSet codecs, Struct responseHeader, Struct responseBody, ByteBuffer encodedBody) {
+
+    private static final int CORRELATION_ID = 0;
+    private static final String THROTTLE_TIME_MS = "throttle_time_ms";
+
+    /**
+     * Builds a response for the given body, filling the response header with the request's correlation id.
+     */
+    public static ResponseMessage of(CompiledSchemaSet codecs, int correlationId, Struct responseBody) {
+        Struct header = codecs.responseHeader().newStruct();
+        header.setInt(CORRELATION_ID, correlationId);
+        return new ResponseMessage(codecs, header, responseBody, null);
+    }
+
+    /**
+     * Builds a response around a body encoded ahead of time, e.g. with {@link util.Encoder#encodeBody}.
+     */
+    public static ResponseMessage ofEncoded(CompiledSchemaSet codecs, int correlationId, ByteBuffer encodedBody) {
+        Struct header = codecs.responseHeader().newStruct();
+        header.setInt(CORRELATION_ID, correlationId);
+        return new ResponseMessage(codecs, header, null, encodedBody);
+    }
+
+    /**
+     * Sets {@code throttle_time_ms} in the body, if its api version has one.
+     *
+     * @return This response, or, for a pre-encoded body, which is shared by every response it is cached for, a
+     * response around a copy of the body with the throttle time patched in.
+     */
+    public ResponseMessage withThrottleTimeMs(int throttleTimeMs) {
+        if (responseBody != null) {
+            if (responseBody.layout().hasField(THROTTLE_TIME_MS)) {
+                responseBody.setInt(responseBody.layout().indexOf(THROTTLE_TIME_MS), throttleTimeMs);
+            }
+            return this;
+        }
+        // Only throttled responses get here, so the field is found by stepping over the fields before it
+        CompiledSchema bodySchema = codecs.responseBody();
+        ByteBuffer reader = encodedBody.duplicate();
+        Struct skipped = bodySchema.newStruct();
+        for (CompiledField field : bodySchema.fields()) {
+            if (field.name().equals(THROTTLE_TIME_MS)) {
+                int offset = reader.position() - encodedBody.position();
+                ByteBuffer body = ByteBuffer.allocate(encodedBody.remaining()).put(encodedBody.duplicate()).flip();
+                body.putInt(offset, throttleTimeMs);
+                return new ResponseMessage(codecs, responseHeader, null, body.asReadOnlyBuffer());
+            }
+            field.codec().readInto(reader, skipped, field.index());
+        }
+        return this;
+    }
 
 }
@@ -0,0 +1,62 @@
+package metrics;
+
+import exceptions.ErrorCode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The broker-wide metrics, resolved once so the network layer and handlers update them without any lookup.
+ */
+public final class BrokerMetrics {
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private static final Counter BYTES_IN = REGISTRY.counter(MetricName.of("SocketServer", "BytesIn"));
+    private static final Counter BYTES_OUT = REGISTRY.counter(MetricName.of("SocketServer", "BytesOut"));
+    private static final LongAdder ACTIVE_CONNECTIONS = new LongAdder();
+    private static final Map<ErrorCode, Counter> ERRORS = new EnumMap<>(ErrorCode.class);
+
+    static {
+        REGISTRY.gauge(MetricName.of("SocketServer", "ActiveConnections"), ACTIVE_CONNECTIONS::sum);
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            if (errorCode != ErrorCode.NONE) {
+                ERRORS.put(errorCode, REGISTRY.counter(MetricName.of("ErrorMetrics", "Errors", "error", errorCode.name())));
+            }
+        }
+    }
+
+    private BrokerMetrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    public static void recordBytesIn(long bytes) {
+        BYTES_IN.add(bytes);
+    }
+
+    public static void recordBytesOut(long bytes) {
+        BYTES_OUT.add(bytes);
+    }
+
+    public static void connectionOpened() {
+        ACTIVE_CONNECTIONS.increment();
+    }
+
+    public static void connectionClosed() {
+        ACTIVE_CONNECTIONS.decrement();
+    }
+
+    /**
+     * Counts an error code returned to a client, at the level it applies to, e.g. once per failed partition.
+     */
+    public static void recordError(ErrorCode errorCode) {
+        Counter counter = ERRORS.get(errorCode);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value sampled when the metric is read, e.g. the number of open connections.
+ */
+public final class Gauge implements Metric, GaugeMBean {
+
+    private final LongSupplier value;
+
+    public Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value.getAsLong();
+    }
+}
@@ -0,0 +1,132 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets in the style of HdrHistogram. Latencies are recorded
+ * in microseconds: values below 32 get a bucket each, and every power of two above is split into 16 buckets,
+ * which bounds the relative error of a percentile to 1/16 over a range of microseconds to days in 592 buckets.
+ * Recording is a few shifts and an atomic increment; percentiles are computed when the histogram is read.
+ */
+public final class Histogram implements Metric, HistogramMBean {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        record(Math.max(0, nanos) / 1000);
+    }
+
+    /**
+     * @param micros A latency in microseconds; values beyond about 12 days are clamped.
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        buckets.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return The midpoint of the values that fall into the bucket at {@code index}.
+     */
+    static long valueAt(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long low = (long) ((index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * @param quantile Between 0 and 1.
+     * @return The latency in microseconds below which {@code quantile} of the recorded values fall,
+     * or 0 if nothing was recorded.
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(valueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return The sum of all recorded latencies in microseconds.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n / 1000;
+    }
+
+    @Override
+    public double getMax() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public double get50thPercentile() {
+        return percentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double get95thPercentile() {
+        return percentile(0.95) / 1000.0;
+    }
+
+    @Override
+    public double get99thPercentile() {
+        return percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double get999thPercentile() {
+        return percentile(0.999) / 1000.0;
+    }
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * Latencies in milliseconds.
+ */
+public interface HistogramMBean {
+
+    long getCount();
+    double getMean();
+    double getMax();
+    double get50thPercentile();
+    double get95thPercentile();
+    double get99thPercentile();
+    double get999thPercentile();
+
+}
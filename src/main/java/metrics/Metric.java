@@ -0,0 +1,7 @@
+package metrics;
+
+/**
+ * A metric held by the {@link MetricsRegistry}, exposed through JMX and the text scrape endpoint.
+ */
+public sealed interface Metric permits Counter, Gauge, Histogram {
+}
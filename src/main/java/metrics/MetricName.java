@@ -0,0 +1,71 @@
+package metrics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Identifies a metric by its group, its name and tags that tell apart instances of the same metric,
+ * e.g. {@code RequestMetrics / TotalTimeMs {request=Fetch, version=12}}.
+ */
+public record MetricName(String group, String name, Map<String, String> tags) {
+
+    private static final String DOMAIN = "kafka.server";
+
+    public MetricName {
+        tags = new LinkedHashMap<>(tags);
+    }
+
+    public static MetricName of(String group, String name, String... tagPairs) {
+        if (tagPairs.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be given as key-value pairs");
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (int i = 0; i < tagPairs.length; i += 2) {
+            tags.put(tagPairs[i], tagPairs[i + 1]);
+        }
+        return new MetricName(group, name, tags);
+    }
+
+    /**
+     * @return The JMX name, e.g. {@code kafka.server:type=RequestMetrics,request=Fetch,version=12,name=TotalTimeMs}.
+     */
+    public ObjectName objectName() {
+        StringBuilder builder = new StringBuilder(DOMAIN).append(":type=").append(group);
+        tags.forEach((key, value) -> builder.append(',').append(key).append('=').append(isPlain(value) ? value : ObjectName.quote(value)));
+        builder.append(",name=").append(name);
+        try {
+            return new ObjectName(builder.toString());
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Invalid metric name " + this, e);
+        }
+    }
+
+    /**
+     * @return The name in the text exposition format, e.g. {@code kafka_server_request_metrics_total_time_ms}.
+     */
+    public String textName() {
+        return (DOMAIN + '.' + group + '.' + name)
+                .replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+                .replace('.', '_')
+                .toLowerCase();
+    }
+
+    /**
+     * @return The tags as text exposition labels including the braces, or an empty string if there are none.
+     */
+    public String textLabels() {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        return tags.entrySet().stream()
+                .map(tag -> tag.getKey() + "=\"" + tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"") + '"')
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private static boolean isPlain(String value) {
+        return value.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.');
+    }
+}
@@ -0,0 +1,100 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves every metric of a {@link MetricsRegistry} as plain text at {@code /metrics}, in the Prometheus text
+ * exposition format. Histograms are written as summaries in milliseconds with the 0.5, 0.95, 0.99 and 0.999 quantiles.
+ */
+@Slf4j
+public class MetricsHttpServer {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final MetricsRegistry registry;
+    private final HttpServer server;
+
+    public MetricsHttpServer(MetricsRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    }
+
+    public void start() {
+        server.createContext("/metrics", this::scrape);
+        server.start();
+        log.info("Serving metrics on port {}", server.getAddress().getPort());
+    }
+
+    public void close() {
+        server.stop(0);
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    String render() {
+        StringBuilder text = new StringBuilder();
+        String previousName = null;
+        for (Map.Entry<MetricName, Metric> entry : registry.metrics()) {
+            MetricName name = entry.getKey();
+            String textName = name.textName();
+            Metric metric = entry.getValue();
+            if (!textName.equals(previousName)) {
+                text.append("# TYPE ").append(textName).append(' ').append(switch (metric) {
+                    case Counter ignored -> "counter";
+                    case Gauge ignored -> "gauge";
+                    case Histogram ignored -> "summary";
+                }).append('\n');
+                previousName = textName;
+            }
+            switch (metric) {
+                case Counter counter -> sample(text, textName, name.textLabels(), counter.getCount());
+                case Gauge gauge -> sample(text, textName, name.textLabels(), gauge.getValue());
+                case Histogram histogram -> {
+                    for (double quantile : QUANTILES) {
+                        sample(text, textName, withLabel(name, "quantile", Double.toString(quantile)),
+                                histogram.percentile(quantile) / 1000.0);
+                    }
+                    sample(text, textName + "_sum", name.textLabels(), histogram.sum() / 1000.0);
+                    sample(text, textName + "_count", name.textLabels(), histogram.getCount());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static String withLabel(MetricName name, String key, String value) {
+        String labels = name.textLabels();
+        String label = key + "=\"" + value + '"';
+        return labels.isEmpty() ? '{' + label + '}' : labels.substring(0, labels.length() - 1) + ',' + label + '}';
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, long value) {
+        text.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ').append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+    }
+}
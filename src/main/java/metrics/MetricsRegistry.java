@@ -0,0 +1,80 @@
+package metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds every metric of the broker by name and registers each one as an MBean on the platform MBean server.
+ * Lookups create the metric on first use, so components that ask for the same name share one instance.
+ * Components resolve their metrics once and keep the references; the map is not meant for the request path.
+ */
+@Slf4j
+public class MetricsRegistry {
+
+    private final Map<MetricName, Metric> metrics = new ConcurrentHashMap<>();
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    public Counter counter(MetricName name) {
+        return getOrCreate(name, Counter.class, Counter::new);
+    }
+
+    public Histogram histogram(MetricName name) {
+        return getOrCreate(name, Histogram.class, Histogram::new);
+    }
+
+    /**
+     * Registers a gauge, or returns the one already registered under {@code name}.
+     */
+    public Gauge gauge(MetricName name, LongSupplier value) {
+        return getOrCreate(name, Gauge.class, () -> new Gauge(value));
+    }
+
+    /**
+     * @return Every metric, sorted by text name and then tags so scrapes list related metrics together.
+     */
+    public List<Map.Entry<MetricName, Metric>> metrics() {
+        return metrics.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<MetricName, Metric> entry) -> entry.getKey().textName())
+                        .thenComparing(entry -> entry.getKey().textLabels()))
+                .toList();
+    }
+
+    /**
+     * Unregisters every metric from JMX.
+     */
+    public void close() {
+        for (MetricName name : metrics.keySet()) {
+            try {
+                mBeanServer.unregisterMBean(name.objectName());
+            } catch (JMException ignored) {
+            }
+        }
+        metrics.clear();
+    }
+
+    private <T extends Metric> T getOrCreate(MetricName name, Class<T> type, Supplier<T> factory) {
+        Metric metric = metrics.computeIfAbsent(name, key -> {
+            T created = factory.get();
+            try {
+                mBeanServer.registerMBean(created, key.objectName());
+            } catch (JMException e) {
+                log.warn("Could not register metric {} with JMX: {}", key.objectName(), e.getMessage());
+            }
+            return created;
+        });
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+/**
+ * The request count and latency breakdown of one api version. A request's total time is split into:
+ * <ul>
+ *     <li>queue time, from the frame being read off the socket until a thread starts handling it;</li>
+ *     <li>local time, spent in the handler and encoding the response;</li>
+ *     <li>remote time, spent waiting on other work before the response could complete, e.g. a log flush for
+ *     {@code acks=-1} or a long-polling fetch;</li>
+ *     <li>send time, from the response being ready until its last byte was written to the socket.</li>
+ * </ul>
+ */
+public final class RequestMetrics {
+
+    private static final String GROUP = "RequestMetrics";
+
+    private final Counter requests;
+    private final Histogram queueTime;
+    private final Histogram localTime;
+    private final Histogram remoteTime;
+    private final Histogram sendTime;
+    private final Histogram totalTime;
+
+    public RequestMetrics(MetricsRegistry registry, String request, short version) {
+        String versionTag = Short.toString(version);
+        this.requests = registry.counter(MetricName.of(GROUP, "Requests", "request", request, "version", versionTag));
+        this.queueTime = registry.histogram(MetricName.of(GROUP, "QueueTimeMs", "request", request, "version", versionTag));
+        this.localTime = registry.histogram(MetricName.of(GROUP, "LocalTimeMs", "request", request, "version", versionTag));
+        this.remoteTime = registry.histogram(MetricName.of(GROUP, "RemoteTimeMs", "request", request, "version", versionTag));
+        this.sendTime = registry.histogram(MetricName.of(GROUP, "SendTimeMs", "request", request, "version", versionTag));
+        this.totalTime = registry.histogram(MetricName.of(GROUP, "TotalTimeMs", "request", request, "version", versionTag));
+    }
+
+    /**
+     * Records a request whose handling started at {@code handleStartNanos} after being received at {@code receivedNanos}.
+     */
+    public void recordReceived(long receivedNanos, long handleStartNanos) {
+        requests.increment();
+        queueTime.recordNanos(handleStartNanos - receivedNanos);
+    }
+
+    public void recordHandled(long localNanos, long remoteNanos) {
+        localTime.recordNanos(localNanos);
+        remoteTime.recordNanos(remoteNanos);
+    }
+
+    /**
+     * Records the end of a request, once its response was sent or right after handling if it expects none.
+     */
+    public void recordCompleted(long receivedNanos, long responseReadyNanos, long completedNanos) {
+        sendTime.recordNanos(completedNanos - responseReadyNanos);
+        totalTime.recordNanos(completedNanos - receivedNanos);
+    }
+}
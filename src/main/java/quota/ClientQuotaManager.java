@@ -0,0 +1,139 @@
+package quota;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricName;
+import metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces per-{@code client_id} quotas on the bytes a client sends and receives per second and on the requests it
+ * sends per second. Every request is recorded against its client's {@link SampledRate}s, and a request that takes
+ * a client over a quota is answered with the time the client should back off to bring its rate back down, which is
+ * returned in {@code throttle_time_ms} while the broker stops reading from the connection for as long.
+ * Clients that stay quiet for an hour are forgotten.
+ */
+public class ClientQuotaManager {
+
+    /**
+     * Like Kafka's {@code quota.window.num} and {@code quota.window.size.seconds} defaults.
+     */
+    private static final int NUM_SAMPLES = 11;
+    private static final long SAMPLE_WINDOW_MS = 1000;
+    private static final long MAX_THROTTLE_TIME_MS = NUM_SAMPLES * SAMPLE_WINDOW_MS;
+    private static final long INACTIVE_EXPIRY_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long EXPIRY_CHECK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private volatile long bytesPerSecond;
+    private volatile long requestsPerSecond;
+    private final Map<String, ClientSensors> sensors = new ConcurrentHashMap<>();
+    private final AtomicLong nextExpiryCheckMs = new AtomicLong(Long.MIN_VALUE);
+    private final Counter throttledRequests;
+    private final Histogram throttleTime;
+
+    /**
+     * @param bytesPerSecond    The bytes a client may send and receive per second, or 0 for no byte-rate quota.
+     * @param requestsPerSecond The requests a client may send per second, or 0 for no request-rate quota.
+     */
+    public ClientQuotaManager(long bytesPerSecond, long requestsPerSecond, MetricsRegistry registry) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.requestsPerSecond = requestsPerSecond;
+        this.throttledRequests = registry.counter(MetricName.of("ClientQuotaManager", "ThrottledRequests"));
+        this.throttleTime = registry.histogram(MetricName.of("ClientQuotaManager", "ThrottleTimeMs"));
+    }
+
+    /**
+     * Replaces the quotas of every client. Rates recorded so far are kept and checked against the new quotas.
+     */
+    public void updateQuotas(long bytesPerSecond, long requestsPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * @return Whether any quota is configured. Without one, nothing is recorded.
+     */
+    public boolean isEnabled() {
+        return bytesPerSecond > 0 || requestsPerSecond > 0;
+    }
+
+    /**
+     * Records a request of {@code sizeInBytes} and, if it takes its client over a quota, throttles it.
+     *
+     * @return How long the client should back off, in milliseconds, or 0 if it is within its quotas.
+     */
+    public int recordRequest(String clientId, long sizeInBytes, long nowMs, ThrottleCallback callback) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        ClientSensors client = sensorsFor(clientId, nowMs);
+        client.bytes.record(sizeInBytes, nowMs);
+        client.requests.record(1, nowMs);
+        long throttleTimeMs = Math.max(throttleTimeMs(client.bytes, bytesPerSecond, nowMs),
+                throttleTimeMs(client.requests, requestsPerSecond, nowMs));
+        if (throttleTimeMs <= 0) {
+            return 0;
+        }
+        throttledRequests.increment();
+        throttleTime.recordNanos(TimeUnit.MILLISECONDS.toNanos(throttleTimeMs));
+        callback.throttle((int) throttleTimeMs);
+        return (int) throttleTimeMs;
+    }
+
+    /**
+     * Records the bytes of a response against its client's byte rate. Responses do not throttle themselves, since
+     * their throttle time is already encoded; they count towards the throttling of the client's next request.
+     */
+    public void recordResponse(String clientId, long sizeInBytes, long nowMs) {
+        if (bytesPerSecond > 0) {
+            sensorsFor(clientId, nowMs).bytes.record(sizeInBytes, nowMs);
+        }
+    }
+
+    /**
+     * Like Kafka, the delay that brings the rate back down to the quota if the client sends nothing meanwhile:
+     * the excess over the quota, as a fraction of the quota, times the measured window.
+     */
+    private static long throttleTimeMs(SampledRate rate, long quota, long nowMs) {
+        if (quota <= 0) {
+            return 0;
+        }
+        double observed = rate.rate(nowMs);
+        if (observed <= quota) {
+            return 0;
+        }
+        long throttleTimeMs = Math.round((observed - quota) / quota * rate.windowSizeMs(nowMs));
+        return Math.min(throttleTimeMs, MAX_THROTTLE_TIME_MS);
+    }
+
+    private ClientSensors sensorsFor(String clientId, long nowMs) {
+        expireInactiveClients(nowMs);
+        ClientSensors client = sensors.computeIfAbsent(clientId, id -> new ClientSensors(nowMs));
+        client.lastRecordMs = nowMs;
+        return client;
+    }
+
+    private void expireInactiveClients(long nowMs) {
+        long nextCheckMs = nextExpiryCheckMs.get();
+        if (nowMs < nextCheckMs || !nextExpiryCheckMs.compareAndSet(nextCheckMs, nowMs + EXPIRY_CHECK_INTERVAL_MS)) {
+            return;
+        }
+        sensors.values().removeIf(client -> nowMs - client.lastRecordMs > INACTIVE_EXPIRY_MS);
+    }
+
+    private static final class ClientSensors {
+        private final SampledRate bytes;
+        private final SampledRate requests;
+        private volatile long lastRecordMs;
+
+        private ClientSensors(long nowMs) {
+            this.bytes = new SampledRate(NUM_SAMPLES, SAMPLE_WINDOW_MS, nowMs);
+            this.requests = new SampledRate(NUM_SAMPLES, SAMPLE_WINDOW_MS, nowMs);
+            this.lastRecordMs = nowMs;
+        }
+    }
+}
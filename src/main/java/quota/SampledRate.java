@@ -0,0 +1,72 @@
+package quota;
+
+/**
+ * A rate measured over a sliding window made of {@code numSamples} samples of {@code sampleWindowMs} each.
+ * Recording into a sample whose window has passed starts a new sample in place of the oldest one, so the rate
+ * always covers roughly the last {@code numSamples * sampleWindowMs}. Like Kafka's {@code Rate}, the elapsed
+ * time is never taken as less than {@code numSamples - 1} full windows, so a client's first burst is not
+ * measured over a few milliseconds.
+ */
+final class SampledRate {
+
+    private final long sampleWindowMs;
+    private final long[] values;
+    private final long[] windowStartMs;
+    private int current;
+
+    SampledRate(int numSamples, long sampleWindowMs, long nowMs) {
+        this.sampleWindowMs = sampleWindowMs;
+        this.values = new long[numSamples];
+        this.windowStartMs = new long[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            windowStartMs[i] = nowMs;
+        }
+    }
+
+    synchronized void record(long value, long nowMs) {
+        if (nowMs - windowStartMs[current] >= sampleWindowMs) {
+            current = (current + 1) % values.length;
+            values[current] = 0;
+            windowStartMs[current] = nowMs;
+        }
+        values[current] += value;
+    }
+
+    /**
+     * @return The rate per second over the samples that have not expired yet.
+     */
+    synchronized double rate(long nowMs) {
+        long expiredBeforeMs = nowMs - values.length * sampleWindowMs;
+        long total = 0;
+        long oldestMs = nowMs;
+        for (int i = 0; i < values.length; i++) {
+            if (windowStartMs[i] < expiredBeforeMs) {
+                values[i] = 0;
+                windowStartMs[i] = nowMs;
+            }
+            total += values[i];
+            oldestMs = Math.min(oldestMs, windowStartMs[i]);
+        }
+        return total * 1000.0 / windowSizeMs(nowMs, oldestMs);
+    }
+
+    private long windowSizeMs(long nowMs, long oldestMs) {
+        long elapsedMs = nowMs - oldestMs;
+        long fullWindows = elapsedMs / sampleWindowMs;
+        long minFullWindows = values.length - 1;
+        if (fullWindows < minFullWindows) {
+            elapsedMs += (minFullWindows - fullWindows) * sampleWindowMs;
+        }
+        return Math.max(elapsedMs, 1);
+    }
+
+    long windowSizeMs(long nowMs) {
+        long oldestMs = nowMs;
+        synchronized (this) {
+            for (long startMs : windowStartMs) {
+                oldestMs = Math.min(oldestMs, startMs);
+            }
+        }
+        return windowSizeMs(nowMs, oldestMs);
+    }
+}
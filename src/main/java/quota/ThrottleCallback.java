@@ -0,0 +1,14 @@
+package quota;
+
+/**
+ * Told by the {@link ClientQuotaManager} how long the connection of a request that pushed its client over a quota
+ * should stop being read.
+ */
+@FunctionalInterface
+public interface ThrottleCallback {
+
+    ThrottleCallback NONE = throttleTimeMs -> {
+    };
+
+    void throttle(int throttleTimeMs);
+}
@@ -1,9 +1,14 @@
 package schema;
 
+import codec.CompiledSchemaSet;
+
 public interface ApiSchema {
 
     short apiKey();
+    String name();
     SchemaSet forVersion(short apiVersion);
+    CompiledSchemaSet codecsForVersion(short apiVersion);
     VersionRange versionRange();
+    VersionRange flexibleVersions();
 
 }
@@ -1,11 +1,9 @@
 package schema;
 
-import exceptions.UnsupportedVersionException;
+import codec.SchemaCompiler;
+import codec.StructLayout;
 
-import java.util.*;
-
-public class ApiVersionsApiSchema implements ApiSchema {
-    private final Map<Short, SchemaSet> versionedSchemas = new HashMap<>();
+public class ApiVersionsApiSchema extends VersionedApiSchema {
 
     private static final Schema API_VERSIONS_API_KEY = new Schema(
             new Field("api_key", DataType.INT16, "0+"),
@@ -20,29 +18,28 @@ public class ApiVersionsApiSchema implements ApiSchema {
 
     private static final Schema API_VERSIONS_RESPONSE_BODY = new Schema(
             new Field("error_code", DataType.INT16, "0+"),
-            new Field("api_keys", DataType.ARRAY, "0+",  API_VERSIONS_API_KEY),
+            new Field("api_keys", DataType.ARRAY, "0-2",  API_VERSIONS_API_KEY),
+            new Field("api_keys", DataType.COMPACT_ARRAY, "3+",  API_VERSIONS_API_KEY),
             new Field("throttle_time_ms", DataType.INT32, "1+")
     );
 
     public ApiVersionsApiSchema() {
-        for (short v = 0; v <= 2; v++) {
-            versionedSchemas.put(v, new SchemaSet(
-                    HeaderSchema.REQUEST_HEADER_V1,
-                    API_VERSIONS_REQUEST_BODY,
-                    HeaderSchema.RESPONSE_HEADER_V0,
-                    API_VERSIONS_RESPONSE_BODY
-            ));
-        }
-
-        for (short v = 3; v <= 4; v++) {
-            versionedSchemas.put((short) 3, new SchemaSet(
-                    HeaderSchema.REQUEST_HEADER_V2,
-                    API_VERSIONS_REQUEST_BODY,
-                    HeaderSchema.RESPONSE_HEADER_V0,
-                    API_VERSIONS_RESPONSE_BODY
-            ));
-        }
+        addVersions((short) 0, (short) 2, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                API_VERSIONS_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                API_VERSIONS_RESPONSE_BODY
+        ));
+        addVersions((short) 3, (short) 4, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                API_VERSIONS_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                API_VERSIONS_RESPONSE_BODY
+        ));
+    }
 
+    public StructLayout apiKeyLayout() {
+        return SchemaCompiler.layoutOf(API_VERSIONS_API_KEY);
     }
 
     @Override
@@ -50,17 +47,13 @@ public class ApiVersionsApiSchema implements ApiSchema {
         return 18;
     }
 
-    public VersionRange versionRange() {
-        Set<Short> versions = versionedSchemas.keySet();
-        return VersionRange.of(Collections.min(versions), Collections.max(versions));
+    @Override
+    public String name() {
+        return "ApiVersions";
     }
 
     @Override
-    public SchemaSet forVersion(short apiVersion) {
-        if (versionedSchemas.containsKey(apiVersion)) {
-            return versionedSchemas.get(apiVersion);
-        } else {
-            throw new UnsupportedVersionException();
-        }
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 3);
     }
 }
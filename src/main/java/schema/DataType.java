@@ -3,6 +3,8 @@ package schema;
 import lombok.Getter;
 import util.Struct;
 
+import java.nio.ByteBuffer;
+
 @Getter
 public enum DataType {
 
@@ -11,13 +13,17 @@ public enum DataType {
     INT16("INT16", Short.class),
     INT32("INT32", Integer.class),
     INT64("INT64", Long.class),
-    VARINT("VARINT", Long.class),
+    VARINT("VARINT", Integer.class),
     UNSIGNED_VARINT("UNSIGNED_VARINT", Long.class),
     STRING("STRING", String.class),
     COMPACT_STRING("COMPACT_STRING", String.class),
     NULLABLE_STRING("NULLABLE_STRING", String.class),
     COMPACT_NULLABLE_STRING("COMPACT_NULLABLE_STRING", String.class),
     FLOAT64("FLOAT64", Double.class),
+    BYTES("BYTES", ByteBuffer.class),
+    COMPACT_BYTES("COMPACT_BYTES", ByteBuffer.class),
+    RECORDS("RECORDS", Object.class),
+    COMPACT_RECORDS("COMPACT_RECORDS", Object.class),
     ARRAY("ARRAY", Object[].class),
     COMPACT_ARRAY("COMPACT_ARRAY", Object[].class),
     STRUCT("STRUCT", Struct.class);
@@ -31,4 +37,14 @@ public enum DataType {
         this.javaType = javaType;
     }
 
+    /**
+     * Numeric and boolean types, which structs store unboxed.
+     */
+    public boolean isPrimitive() {
+        return switch (this) {
+            case BOOLEAN, INT8, INT16, INT32, INT64, VARINT, UNSIGNED_VARINT, FLOAT64 -> true;
+            default -> false;
+        };
+    }
+
 }
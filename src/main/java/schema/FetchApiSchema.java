@@ -0,0 +1,128 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * Fetch (api key 1), versions 4 to 12: the versions that carry v2 record batches and still address topics by name.
+ */
+public class FetchApiSchema extends VersionedApiSchema {
+
+    private static final Schema FETCH_PARTITION = new Schema(
+            new Field("partition", DataType.INT32, "0+"),
+            new Field("current_leader_epoch", DataType.INT32, "9+"),
+            new Field("fetch_offset", DataType.INT64, "0+"),
+            new Field("last_fetched_epoch", DataType.INT32, "12+"),
+            new Field("log_start_offset", DataType.INT64, "5+"),
+            new Field("partition_max_bytes", DataType.INT32, "0+")
+    );
+
+    private static final Schema FETCH_TOPIC = new Schema(
+            new Field("topic", DataType.STRING, "0-11"),
+            new Field("topic", DataType.COMPACT_STRING, "12+"),
+            new Field("partitions", DataType.ARRAY, "0-11", FETCH_PARTITION),
+            new Field("partitions", DataType.COMPACT_ARRAY, "12+", FETCH_PARTITION)
+    );
+
+    private static final Schema FORGOTTEN_TOPIC = new Schema(
+            new Field("topic", DataType.STRING, "7-11"),
+            new Field("topic", DataType.COMPACT_STRING, "12+"),
+            new Field("partitions", DataType.ARRAY, "7-11", new Schema(new Field("partition", DataType.INT32, "7+"))),
+            new Field("partitions", DataType.COMPACT_ARRAY, "12+", new Schema(new Field("partition", DataType.INT32, "7+")))
+    );
+
+    private static final Schema FETCH_REQUEST_BODY = new Schema(
+            new Field("replica_id", DataType.INT32, "0+"),
+            new Field("max_wait_ms", DataType.INT32, "0+"),
+            new Field("min_bytes", DataType.INT32, "0+"),
+            new Field("max_bytes", DataType.INT32, "3+"),
+            new Field("isolation_level", DataType.INT8, "4+"),
+            new Field("session_id", DataType.INT32, "7+"),
+            new Field("session_epoch", DataType.INT32, "7+"),
+            new Field("topics", DataType.ARRAY, "0-11", FETCH_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "12+", FETCH_TOPIC),
+            new Field("forgotten_topics_data", DataType.ARRAY, "7-11", FORGOTTEN_TOPIC),
+            new Field("forgotten_topics_data", DataType.COMPACT_ARRAY, "12+", FORGOTTEN_TOPIC),
+            new Field("rack_id", DataType.STRING, "11-11"),
+            new Field("rack_id", DataType.COMPACT_STRING, "12+")
+    );
+
+    private static final Schema ABORTED_TRANSACTION = new Schema(
+            new Field("producer_id", DataType.INT64, "4+"),
+            new Field("first_offset", DataType.INT64, "4+")
+    );
+
+    private static final Schema PARTITION_DATA = new Schema(
+            new Field("partition_index", DataType.INT32, "0+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("high_watermark", DataType.INT64, "0+"),
+            new Field("last_stable_offset", DataType.INT64, "4+"),
+            new Field("log_start_offset", DataType.INT64, "5+"),
+            new Field("aborted_transactions", DataType.ARRAY, "4-11", ABORTED_TRANSACTION),
+            new Field("aborted_transactions", DataType.COMPACT_ARRAY, "12+", ABORTED_TRANSACTION),
+            new Field("preferred_read_replica", DataType.INT32, "11+"),
+            new Field("records", DataType.RECORDS, "0-11"),
+            new Field("records", DataType.COMPACT_RECORDS, "12+")
+    );
+
+    private static final Schema FETCHABLE_TOPIC_RESPONSE = new Schema(
+            new Field("topic", DataType.STRING, "0-11"),
+            new Field("topic", DataType.COMPACT_STRING, "12+"),
+            new Field("partitions", DataType.ARRAY, "0-11", PARTITION_DATA),
+            new Field("partitions", DataType.COMPACT_ARRAY, "12+", PARTITION_DATA)
+    );
+
+    private static final Schema FETCH_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "1+"),
+            new Field("error_code", DataType.INT16, "7+"),
+            new Field("session_id", DataType.INT32, "7+"),
+            new Field("responses", DataType.ARRAY, "0-11", FETCHABLE_TOPIC_RESPONSE),
+            new Field("responses", DataType.COMPACT_ARRAY, "12+", FETCHABLE_TOPIC_RESPONSE)
+    );
+
+    public FetchApiSchema() {
+        addVersions((short) 4, (short) 11, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                FETCH_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                FETCH_RESPONSE_BODY
+        ));
+        addVersions((short) 12, (short) 12, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                FETCH_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                FETCH_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout fetchTopicLayout() {
+        return SchemaCompiler.layoutOf(FETCH_TOPIC);
+    }
+
+    public StructLayout fetchPartitionLayout() {
+        return SchemaCompiler.layoutOf(FETCH_PARTITION);
+    }
+
+    public StructLayout topicResponseLayout() {
+        return SchemaCompiler.layoutOf(FETCHABLE_TOPIC_RESPONSE);
+    }
+
+    public StructLayout partitionDataLayout() {
+        return SchemaCompiler.layoutOf(PARTITION_DATA);
+    }
+
+    @Override
+    public short apiKey() {
+        return 1;
+    }
+
+    @Override
+    public String name() {
+        return "Fetch";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 12);
+    }
+}
@@ -0,0 +1,54 @@
+package schema;
+
+/**
+ * FindCoordinator (api key 10), versions 0 to 3: the versions that look up a single coordinator key.
+ */
+public class FindCoordinatorApiSchema extends VersionedApiSchema {
+
+    private static final Schema FIND_COORDINATOR_REQUEST_BODY = new Schema(
+            new Field("key", DataType.STRING, "0-2"),
+            new Field("key", DataType.COMPACT_STRING, "3+"),
+            new Field("key_type", DataType.INT8, "1+")
+    );
+
+    private static final Schema FIND_COORDINATOR_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "1+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("error_message", DataType.NULLABLE_STRING, "1-2"),
+            new Field("error_message", DataType.COMPACT_NULLABLE_STRING, "3+"),
+            new Field("node_id", DataType.INT32, "0+"),
+            new Field("host", DataType.STRING, "0-2"),
+            new Field("host", DataType.COMPACT_STRING, "3+"),
+            new Field("port", DataType.INT32, "0+")
+    );
+
+    public FindCoordinatorApiSchema() {
+        addVersions((short) 0, (short) 2, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                FIND_COORDINATOR_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                FIND_COORDINATOR_RESPONSE_BODY
+        ));
+        addVersions((short) 3, (short) 3, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                FIND_COORDINATOR_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                FIND_COORDINATOR_RESPONSE_BODY
+        ));
+    }
+
+    @Override
+    public short apiKey() {
+        return 10;
+    }
+
+    @Override
+    public String name() {
+        return "FindCoordinator";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 3);
+    }
+}
@@ -24,4 +24,19 @@ public class HeaderSchema {
             new Field("correlation_id", DataType.INT32, "0-1")
     );
 
+    public static short versionOf(Schema headerSchema) {
+        if (headerSchema == REQUEST_HEADER_V1) return 1;
+        if (headerSchema == REQUEST_HEADER_V2) return 2;
+        if (headerSchema == RESPONSE_HEADER_V0) return 0;
+        if (headerSchema == RESPONSE_HEADER_V1) return 1;
+        throw new IllegalArgumentException("Unknown header schema: " + headerSchema);
+    }
+
+    /**
+     * Request header v2 and response header v1 are the flexible headers ending in a tagged field section.
+     */
+    public static boolean isFlexible(Schema headerSchema) {
+        return headerSchema == REQUEST_HEADER_V2 || headerSchema == RESPONSE_HEADER_V1;
+    }
+
 }
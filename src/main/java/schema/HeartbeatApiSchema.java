@@ -0,0 +1,52 @@
+package schema;
+
+/**
+ * Heartbeat (api key 12), versions 0 to 4.
+ */
+public class HeartbeatApiSchema extends VersionedApiSchema {
+
+    private static final Schema HEARTBEAT_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-3"),
+            new Field("group_id", DataType.COMPACT_STRING, "4+"),
+            new Field("generation_id", DataType.INT32, "0+"),
+            new Field("member_id", DataType.STRING, "0-3"),
+            new Field("member_id", DataType.COMPACT_STRING, "4+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "3-3"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "4+")
+    );
+
+    private static final Schema HEARTBEAT_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "1+"),
+            new Field("error_code", DataType.INT16, "0+")
+    );
+
+    public HeartbeatApiSchema() {
+        addVersions((short) 0, (short) 3, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                HEARTBEAT_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                HEARTBEAT_RESPONSE_BODY
+        ));
+        addVersions((short) 4, (short) 4, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                HEARTBEAT_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                HEARTBEAT_RESPONSE_BODY
+        ));
+    }
+
+    @Override
+    public short apiKey() {
+        return 12;
+    }
+
+    @Override
+    public String name() {
+        return "Heartbeat";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 4);
+    }
+}
@@ -0,0 +1,95 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * JoinGroup (api key 11), versions 0 to 7.
+ */
+public class JoinGroupApiSchema extends VersionedApiSchema {
+
+    private static final Schema JOIN_GROUP_REQUEST_PROTOCOL = new Schema(
+            new Field("name", DataType.STRING, "0-5"),
+            new Field("name", DataType.COMPACT_STRING, "6+"),
+            new Field("metadata", DataType.BYTES, "0-5"),
+            new Field("metadata", DataType.COMPACT_BYTES, "6+")
+    );
+
+    private static final Schema JOIN_GROUP_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-5"),
+            new Field("group_id", DataType.COMPACT_STRING, "6+"),
+            new Field("session_timeout_ms", DataType.INT32, "0+"),
+            new Field("rebalance_timeout_ms", DataType.INT32, "1+"),
+            new Field("member_id", DataType.STRING, "0-5"),
+            new Field("member_id", DataType.COMPACT_STRING, "6+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "5-5"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "6+"),
+            new Field("protocol_type", DataType.STRING, "0-5"),
+            new Field("protocol_type", DataType.COMPACT_STRING, "6+"),
+            new Field("protocols", DataType.ARRAY, "0-5", JOIN_GROUP_REQUEST_PROTOCOL),
+            new Field("protocols", DataType.COMPACT_ARRAY, "6+", JOIN_GROUP_REQUEST_PROTOCOL)
+    );
+
+    private static final Schema JOIN_GROUP_RESPONSE_MEMBER = new Schema(
+            new Field("member_id", DataType.STRING, "0-5"),
+            new Field("member_id", DataType.COMPACT_STRING, "6+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "5-5"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "6+"),
+            new Field("metadata", DataType.BYTES, "0-5"),
+            new Field("metadata", DataType.COMPACT_BYTES, "6+")
+    );
+
+    private static final Schema JOIN_GROUP_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "2+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("generation_id", DataType.INT32, "0+"),
+            new Field("protocol_type", DataType.COMPACT_NULLABLE_STRING, "7+"),
+            new Field("protocol_name", DataType.STRING, "0-5"),
+            new Field("protocol_name", DataType.COMPACT_STRING, "6-6"),
+            new Field("protocol_name", DataType.COMPACT_NULLABLE_STRING, "7+"),
+            new Field("leader", DataType.STRING, "0-5"),
+            new Field("leader", DataType.COMPACT_STRING, "6+"),
+            new Field("member_id", DataType.STRING, "0-5"),
+            new Field("member_id", DataType.COMPACT_STRING, "6+"),
+            new Field("members", DataType.ARRAY, "0-5", JOIN_GROUP_RESPONSE_MEMBER),
+            new Field("members", DataType.COMPACT_ARRAY, "6+", JOIN_GROUP_RESPONSE_MEMBER)
+    );
+
+    public JoinGroupApiSchema() {
+        addVersions((short) 0, (short) 5, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                JOIN_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                JOIN_GROUP_RESPONSE_BODY
+        ));
+        addVersions((short) 6, (short) 7, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                JOIN_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                JOIN_GROUP_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout protocolLayout() {
+        return SchemaCompiler.layoutOf(JOIN_GROUP_REQUEST_PROTOCOL);
+    }
+
+    public StructLayout memberLayout() {
+        return SchemaCompiler.layoutOf(JOIN_GROUP_RESPONSE_MEMBER);
+    }
+
+    @Override
+    public short apiKey() {
+        return 11;
+    }
+
+    @Override
+    public String name() {
+        return "JoinGroup";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 6);
+    }
+}
@@ -0,0 +1,78 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * LeaveGroup (api key 13), versions 0 to 4. Versions 3 and up remove a batch of members at once.
+ */
+public class LeaveGroupApiSchema extends VersionedApiSchema {
+
+    private static final Schema LEAVE_GROUP_REQUEST_MEMBER = new Schema(
+            new Field("member_id", DataType.STRING, "3-3"),
+            new Field("member_id", DataType.COMPACT_STRING, "4+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "3-3"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "4+")
+    );
+
+    private static final Schema LEAVE_GROUP_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-3"),
+            new Field("group_id", DataType.COMPACT_STRING, "4+"),
+            new Field("member_id", DataType.STRING, "0-2"),
+            new Field("members", DataType.ARRAY, "3-3", LEAVE_GROUP_REQUEST_MEMBER),
+            new Field("members", DataType.COMPACT_ARRAY, "4+", LEAVE_GROUP_REQUEST_MEMBER)
+    );
+
+    private static final Schema LEAVE_GROUP_RESPONSE_MEMBER = new Schema(
+            new Field("member_id", DataType.STRING, "3-3"),
+            new Field("member_id", DataType.COMPACT_STRING, "4+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "3-3"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "4+"),
+            new Field("error_code", DataType.INT16, "3+")
+    );
+
+    private static final Schema LEAVE_GROUP_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "1+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("members", DataType.ARRAY, "3-3", LEAVE_GROUP_RESPONSE_MEMBER),
+            new Field("members", DataType.COMPACT_ARRAY, "4+", LEAVE_GROUP_RESPONSE_MEMBER)
+    );
+
+    public LeaveGroupApiSchema() {
+        addVersions((short) 0, (short) 3, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                LEAVE_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                LEAVE_GROUP_RESPONSE_BODY
+        ));
+        addVersions((short) 4, (short) 4, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                LEAVE_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                LEAVE_GROUP_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout requestMemberLayout() {
+        return SchemaCompiler.layoutOf(LEAVE_GROUP_REQUEST_MEMBER);
+    }
+
+    public StructLayout responseMemberLayout() {
+        return SchemaCompiler.layoutOf(LEAVE_GROUP_RESPONSE_MEMBER);
+    }
+
+    @Override
+    public short apiKey() {
+        return 13;
+    }
+
+    @Override
+    public String name() {
+        return "LeaveGroup";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 4);
+    }
+}
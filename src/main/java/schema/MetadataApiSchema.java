@@ -0,0 +1,115 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * Metadata (api key 3), versions 0 to 9: the versions that still address topics by name alone, before topic ids.
+ */
+public class MetadataApiSchema extends VersionedApiSchema {
+
+    private static final Schema METADATA_REQUEST_TOPIC = new Schema(
+            new Field("name", DataType.STRING, "0-8"),
+            new Field("name", DataType.COMPACT_STRING, "9+")
+    );
+
+    private static final Schema METADATA_REQUEST_BODY = new Schema(
+            new Field("topics", DataType.ARRAY, "0-8", METADATA_REQUEST_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "9+", METADATA_REQUEST_TOPIC),
+            new Field("allow_auto_topic_creation", DataType.BOOLEAN, "4+"),
+            new Field("include_cluster_authorized_operations", DataType.BOOLEAN, "8-10"),
+            new Field("include_topic_authorized_operations", DataType.BOOLEAN, "8+")
+    );
+
+    private static final Schema METADATA_RESPONSE_BROKER = new Schema(
+            new Field("node_id", DataType.INT32, "0+"),
+            new Field("host", DataType.STRING, "0-8"),
+            new Field("host", DataType.COMPACT_STRING, "9+"),
+            new Field("port", DataType.INT32, "0+"),
+            new Field("rack", DataType.NULLABLE_STRING, "1-8"),
+            new Field("rack", DataType.COMPACT_NULLABLE_STRING, "9+")
+    );
+
+    private static final Schema NODE_ID = new Schema(new Field("node_id", DataType.INT32, "0+"));
+
+    private static final Schema METADATA_RESPONSE_PARTITION = new Schema(
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("partition_index", DataType.INT32, "0+"),
+            new Field("leader_id", DataType.INT32, "0+"),
+            new Field("leader_epoch", DataType.INT32, "7+"),
+            new Field("replica_nodes", DataType.ARRAY, "0-8", NODE_ID),
+            new Field("replica_nodes", DataType.COMPACT_ARRAY, "9+", NODE_ID),
+            new Field("isr_nodes", DataType.ARRAY, "0-8", NODE_ID),
+            new Field("isr_nodes", DataType.COMPACT_ARRAY, "9+", NODE_ID),
+            new Field("offline_replicas", DataType.ARRAY, "5-8", NODE_ID),
+            new Field("offline_replicas", DataType.COMPACT_ARRAY, "9+", NODE_ID)
+    );
+
+    private static final Schema METADATA_RESPONSE_TOPIC = new Schema(
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("name", DataType.STRING, "0-8"),
+            new Field("name", DataType.COMPACT_STRING, "9+"),
+            new Field("is_internal", DataType.BOOLEAN, "1+"),
+            new Field("partitions", DataType.ARRAY, "0-8", METADATA_RESPONSE_PARTITION),
+            new Field("partitions", DataType.COMPACT_ARRAY, "9+", METADATA_RESPONSE_PARTITION),
+            new Field("topic_authorized_operations", DataType.INT32, "8+")
+    );
+
+    private static final Schema METADATA_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "3+"),
+            new Field("brokers", DataType.ARRAY, "0-8", METADATA_RESPONSE_BROKER),
+            new Field("brokers", DataType.COMPACT_ARRAY, "9+", METADATA_RESPONSE_BROKER),
+            new Field("cluster_id", DataType.NULLABLE_STRING, "2-8"),
+            new Field("cluster_id", DataType.COMPACT_NULLABLE_STRING, "9+"),
+            new Field("controller_id", DataType.INT32, "1+"),
+            new Field("topics", DataType.ARRAY, "0-8", METADATA_RESPONSE_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "9+", METADATA_RESPONSE_TOPIC),
+            new Field("cluster_authorized_operations", DataType.INT32, "8-10")
+    );
+
+    public MetadataApiSchema() {
+        addVersions((short) 0, (short) 8, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                METADATA_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                METADATA_RESPONSE_BODY
+        ));
+        addVersions((short) 9, (short) 9, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                METADATA_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                METADATA_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout requestTopicLayout() {
+        return SchemaCompiler.layoutOf(METADATA_REQUEST_TOPIC);
+    }
+
+    public StructLayout brokerLayout() {
+        return SchemaCompiler.layoutOf(METADATA_RESPONSE_BROKER);
+    }
+
+    public StructLayout topicLayout() {
+        return SchemaCompiler.layoutOf(METADATA_RESPONSE_TOPIC);
+    }
+
+    public StructLayout partitionLayout() {
+        return SchemaCompiler.layoutOf(METADATA_RESPONSE_PARTITION);
+    }
+
+    @Override
+    public short apiKey() {
+        return 3;
+    }
+
+    @Override
+    public String name() {
+        return "Metadata";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 9);
+    }
+}
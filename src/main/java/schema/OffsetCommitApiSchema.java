@@ -0,0 +1,103 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * OffsetCommit (api key 8), versions 2 to 8: the versions that commit to the broker-side offset store, leaving out
+ * the per-partition commit timestamp of version 1.
+ */
+public class OffsetCommitApiSchema extends VersionedApiSchema {
+
+    private static final Schema OFFSET_COMMIT_REQUEST_PARTITION = new Schema(
+            new Field("partition_index", DataType.INT32, "0+"),
+            new Field("committed_offset", DataType.INT64, "0+"),
+            new Field("committed_leader_epoch", DataType.INT32, "6+"),
+            new Field("committed_metadata", DataType.NULLABLE_STRING, "0-7"),
+            new Field("committed_metadata", DataType.COMPACT_NULLABLE_STRING, "8+")
+    );
+
+    private static final Schema OFFSET_COMMIT_REQUEST_TOPIC = new Schema(
+            new Field("name", DataType.STRING, "0-7"),
+            new Field("name", DataType.COMPACT_STRING, "8+"),
+            new Field("partitions", DataType.ARRAY, "0-7", OFFSET_COMMIT_REQUEST_PARTITION),
+            new Field("partitions", DataType.COMPACT_ARRAY, "8+", OFFSET_COMMIT_REQUEST_PARTITION)
+    );
+
+    private static final Schema OFFSET_COMMIT_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-7"),
+            new Field("group_id", DataType.COMPACT_STRING, "8+"),
+            new Field("generation_id", DataType.INT32, "1+"),
+            new Field("member_id", DataType.STRING, "1-7"),
+            new Field("member_id", DataType.COMPACT_STRING, "8+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "7-7"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "8+"),
+            new Field("retention_time_ms", DataType.INT64, "2-4"),
+            new Field("topics", DataType.ARRAY, "0-7", OFFSET_COMMIT_REQUEST_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "8+", OFFSET_COMMIT_REQUEST_TOPIC)
+    );
+
+    private static final Schema OFFSET_COMMIT_RESPONSE_PARTITION = new Schema(
+            new Field("partition_index", DataType.INT32, "0+"),
+            new Field("error_code", DataType.INT16, "0+")
+    );
+
+    private static final Schema OFFSET_COMMIT_RESPONSE_TOPIC = new Schema(
+            new Field("name", DataType.STRING, "0-7"),
+            new Field("name", DataType.COMPACT_STRING, "8+"),
+            new Field("partitions", DataType.ARRAY, "0-7", OFFSET_COMMIT_RESPONSE_PARTITION),
+            new Field("partitions", DataType.COMPACT_ARRAY, "8+", OFFSET_COMMIT_RESPONSE_PARTITION)
+    );
+
+    private static final Schema OFFSET_COMMIT_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "3+"),
+            new Field("topics", DataType.ARRAY, "0-7", OFFSET_COMMIT_RESPONSE_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "8+", OFFSET_COMMIT_RESPONSE_TOPIC)
+    );
+
+    public OffsetCommitApiSchema() {
+        addVersions((short) 2, (short) 7, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                OFFSET_COMMIT_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                OFFSET_COMMIT_RESPONSE_BODY
+        ));
+        addVersions((short) 8, (short) 8, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                OFFSET_COMMIT_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                OFFSET_COMMIT_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout requestTopicLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_COMMIT_REQUEST_TOPIC);
+    }
+
+    public StructLayout requestPartitionLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_COMMIT_REQUEST_PARTITION);
+    }
+
+    public StructLayout responseTopicLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_COMMIT_RESPONSE_TOPIC);
+    }
+
+    public StructLayout responsePartitionLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_COMMIT_RESPONSE_PARTITION);
+    }
+
+    @Override
+    public short apiKey() {
+        return 8;
+    }
+
+    @Override
+    public String name() {
+        return "OffsetCommit";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 8);
+    }
+}
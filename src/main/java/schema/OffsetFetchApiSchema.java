@@ -0,0 +1,92 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * OffsetFetch (api key 9), versions 1 to 7: the versions that read the broker-side offset store for a single group.
+ */
+public class OffsetFetchApiSchema extends VersionedApiSchema {
+
+    private static final Schema PARTITION_INDEX = new Schema(new Field("partition_index", DataType.INT32, "0+"));
+
+    private static final Schema OFFSET_FETCH_REQUEST_TOPIC = new Schema(
+            new Field("name", DataType.STRING, "0-5"),
+            new Field("name", DataType.COMPACT_STRING, "6+"),
+            new Field("partition_indexes", DataType.ARRAY, "0-5", PARTITION_INDEX),
+            new Field("partition_indexes", DataType.COMPACT_ARRAY, "6+", PARTITION_INDEX)
+    );
+
+    private static final Schema OFFSET_FETCH_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-5"),
+            new Field("group_id", DataType.COMPACT_STRING, "6+"),
+            new Field("topics", DataType.ARRAY, "0-5", OFFSET_FETCH_REQUEST_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "6+", OFFSET_FETCH_REQUEST_TOPIC),
+            new Field("require_stable", DataType.BOOLEAN, "7+")
+    );
+
+    private static final Schema OFFSET_FETCH_RESPONSE_PARTITION = new Schema(
+            new Field("partition_index", DataType.INT32, "0+"),
+            new Field("committed_offset", DataType.INT64, "0+"),
+            new Field("committed_leader_epoch", DataType.INT32, "5+"),
+            new Field("metadata", DataType.NULLABLE_STRING, "0-5"),
+            new Field("metadata", DataType.COMPACT_NULLABLE_STRING, "6+"),
+            new Field("error_code", DataType.INT16, "0+")
+    );
+
+    private static final Schema OFFSET_FETCH_RESPONSE_TOPIC = new Schema(
+            new Field("name", DataType.STRING, "0-5"),
+            new Field("name", DataType.COMPACT_STRING, "6+"),
+            new Field("partitions", DataType.ARRAY, "0-5", OFFSET_FETCH_RESPONSE_PARTITION),
+            new Field("partitions", DataType.COMPACT_ARRAY, "6+", OFFSET_FETCH_RESPONSE_PARTITION)
+    );
+
+    private static final Schema OFFSET_FETCH_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "3+"),
+            new Field("topics", DataType.ARRAY, "0-5", OFFSET_FETCH_RESPONSE_TOPIC),
+            new Field("topics", DataType.COMPACT_ARRAY, "6+", OFFSET_FETCH_RESPONSE_TOPIC),
+            new Field("error_code", DataType.INT16, "2+")
+    );
+
+    public OffsetFetchApiSchema() {
+        addVersions((short) 1, (short) 5, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                OFFSET_FETCH_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                OFFSET_FETCH_RESPONSE_BODY
+        ));
+        addVersions((short) 6, (short) 7, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                OFFSET_FETCH_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                OFFSET_FETCH_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout requestTopicLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_FETCH_REQUEST_TOPIC);
+    }
+
+    public StructLayout responseTopicLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_FETCH_RESPONSE_TOPIC);
+    }
+
+    public StructLayout responsePartitionLayout() {
+        return SchemaCompiler.layoutOf(OFFSET_FETCH_RESPONSE_PARTITION);
+    }
+
+    @Override
+    public short apiKey() {
+        return 9;
+    }
+
+    @Override
+    public String name() {
+        return "OffsetFetch";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 6);
+    }
+}
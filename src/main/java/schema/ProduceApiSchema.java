@@ -0,0 +1,109 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * Produce (api key 0), versions 3 to 9: the versions that carry v2 record batches.
+ */
+public class ProduceApiSchema extends VersionedApiSchema {
+
+    private static final Schema PARTITION_PRODUCE_DATA = new Schema(
+            new Field("index", DataType.INT32, "0+"),
+            new Field("records", DataType.RECORDS, "0-8"),
+            new Field("records", DataType.COMPACT_RECORDS, "9+")
+    );
+
+    private static final Schema TOPIC_PRODUCE_DATA = new Schema(
+            new Field("name", DataType.STRING, "0-8"),
+            new Field("name", DataType.COMPACT_STRING, "9+"),
+            new Field("partition_data", DataType.ARRAY, "0-8", PARTITION_PRODUCE_DATA),
+            new Field("partition_data", DataType.COMPACT_ARRAY, "9+", PARTITION_PRODUCE_DATA)
+    );
+
+    private static final Schema PRODUCE_REQUEST_BODY = new Schema(
+            new Field("transactional_id", DataType.NULLABLE_STRING, "3-8"),
+            new Field("transactional_id", DataType.COMPACT_NULLABLE_STRING, "9+"),
+            new Field("acks", DataType.INT16, "0+"),
+            new Field("timeout_ms", DataType.INT32, "0+"),
+            new Field("topic_data", DataType.ARRAY, "0-8", TOPIC_PRODUCE_DATA),
+            new Field("topic_data", DataType.COMPACT_ARRAY, "9+", TOPIC_PRODUCE_DATA)
+    );
+
+    private static final Schema BATCH_INDEX_AND_ERROR_MESSAGE = new Schema(
+            new Field("batch_index", DataType.INT32, "8+"),
+            new Field("batch_index_error_message", DataType.NULLABLE_STRING, "8-8"),
+            new Field("batch_index_error_message", DataType.COMPACT_NULLABLE_STRING, "9+")
+    );
+
+    private static final Schema PARTITION_PRODUCE_RESPONSE = new Schema(
+            new Field("index", DataType.INT32, "0+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("base_offset", DataType.INT64, "0+"),
+            new Field("log_append_time_ms", DataType.INT64, "2+"),
+            new Field("log_start_offset", DataType.INT64, "5+"),
+            new Field("record_errors", DataType.ARRAY, "8-8", BATCH_INDEX_AND_ERROR_MESSAGE),
+            new Field("record_errors", DataType.COMPACT_ARRAY, "9+", BATCH_INDEX_AND_ERROR_MESSAGE),
+            new Field("error_message", DataType.NULLABLE_STRING, "8-8"),
+            new Field("error_message", DataType.COMPACT_NULLABLE_STRING, "9+")
+    );
+
+    private static final Schema TOPIC_PRODUCE_RESPONSE = new Schema(
+            new Field("name", DataType.STRING, "0-8"),
+            new Field("name", DataType.COMPACT_STRING, "9+"),
+            new Field("partition_responses", DataType.ARRAY, "0-8", PARTITION_PRODUCE_RESPONSE),
+            new Field("partition_responses", DataType.COMPACT_ARRAY, "9+", PARTITION_PRODUCE_RESPONSE)
+    );
+
+    private static final Schema PRODUCE_RESPONSE_BODY = new Schema(
+            new Field("responses", DataType.ARRAY, "0-8", TOPIC_PRODUCE_RESPONSE),
+            new Field("responses", DataType.COMPACT_ARRAY, "9+", TOPIC_PRODUCE_RESPONSE),
+            new Field("throttle_time_ms", DataType.INT32, "1+")
+    );
+
+    public ProduceApiSchema() {
+        addVersions((short) 3, (short) 8, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                PRODUCE_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                PRODUCE_RESPONSE_BODY
+        ));
+        addVersions((short) 9, (short) 9, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                PRODUCE_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                PRODUCE_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout topicDataLayout() {
+        return SchemaCompiler.layoutOf(TOPIC_PRODUCE_DATA);
+    }
+
+    public StructLayout partitionDataLayout() {
+        return SchemaCompiler.layoutOf(PARTITION_PRODUCE_DATA);
+    }
+
+    public StructLayout topicResponseLayout() {
+        return SchemaCompiler.layoutOf(TOPIC_PRODUCE_RESPONSE);
+    }
+
+    public StructLayout partitionResponseLayout() {
+        return SchemaCompiler.layoutOf(PARTITION_PRODUCE_RESPONSE);
+    }
+
+    @Override
+    public short apiKey() {
+        return 0;
+    }
+
+    @Override
+    public String name() {
+        return "Produce";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 9);
+    }
+}
@@ -0,0 +1,70 @@
+package schema;
+
+import codec.CompiledSchemaSet;
+import exceptions.UnsupportedVersionException;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of the schemas of every api the broker serves. Schemas are registered at startup; freezing the
+ * registry flattens them into tables indexed by api key and version for allocation-free lookups.
+ */
+public class SchemaRegistry {
+
+    private static final Map<Short, ApiSchema> registrations = new TreeMap<>();
+    private static volatile SchemaSet[][] schemaSets;
+    private static volatile CompiledSchemaSet[][] compiledSchemas;
+
+    public static synchronized void register(ApiSchema apiSchema) {
+        if (isFrozen()) {
+            throw new IllegalStateException("Cannot register api key " + apiSchema.apiKey() + " after the schema registry was frozen");
+        }
+        registrations.putIfAbsent(apiSchema.apiKey(), apiSchema);
+    }
+
+    public static synchronized void freeze() {
+        if (isFrozen()) {
+            return;
+        }
+        int maxApiKey = registrations.keySet().stream().mapToInt(Short::intValue).max().orElse(-1);
+        SchemaSet[][] sets = new SchemaSet[maxApiKey + 1][];
+        CompiledSchemaSet[][] compiled = new CompiledSchemaSet[maxApiKey + 1][];
+        registrations.forEach((apiKey, apiSchema) -> {
+            VersionRange versions = apiSchema.versionRange();
+            sets[apiKey] = new SchemaSet[versions.max() + 1];
+            compiled[apiKey] = new CompiledSchemaSet[versions.max() + 1];
+            for (short v = versions.min(); v <= versions.max(); v++) {
+                sets[apiKey][v] = apiSchema.forVersion(v);
+                compiled[apiKey][v] = apiSchema.codecsForVersion(v);
+            }
+        });
+        schemaSets = sets;
+        compiledSchemas = compiled;
+    }
+
+    public static boolean isFrozen() {
+        return compiledSchemas != null;
+    }
+
+    public static SchemaSet forVersion(short apiKey, short apiVersion) {
+        return lookup(schemaSets, apiKey, apiVersion);
+    }
+
+    public static CompiledSchemaSet codecsForVersion(short apiKey, short apiVersion) {
+        return lookup(compiledSchemas, apiKey, apiVersion);
+    }
+
+    private static <T> T lookup(T[][] table, short apiKey, short apiVersion) {
+        if (table == null) {
+            throw new IllegalStateException("The schema registry has not been frozen yet");
+        }
+        if (apiKey >= 0 && apiKey < table.length) {
+            T[] versions = table[apiKey];
+            if (versions != null && apiVersion >= 0 && apiVersion < versions.length && versions[apiVersion] != null) {
+                return versions[apiVersion];
+            }
+        }
+        throw new UnsupportedVersionException("Api key " + apiKey + " does not support version " + apiVersion);
+    }
+}
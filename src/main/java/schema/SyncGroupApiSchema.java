@@ -0,0 +1,74 @@
+package schema;
+
+import codec.SchemaCompiler;
+import codec.StructLayout;
+
+/**
+ * SyncGroup (api key 14), versions 0 to 5.
+ */
+public class SyncGroupApiSchema extends VersionedApiSchema {
+
+    private static final Schema SYNC_GROUP_REQUEST_ASSIGNMENT = new Schema(
+            new Field("member_id", DataType.STRING, "0-3"),
+            new Field("member_id", DataType.COMPACT_STRING, "4+"),
+            new Field("assignment", DataType.BYTES, "0-3"),
+            new Field("assignment", DataType.COMPACT_BYTES, "4+")
+    );
+
+    private static final Schema SYNC_GROUP_REQUEST_BODY = new Schema(
+            new Field("group_id", DataType.STRING, "0-3"),
+            new Field("group_id", DataType.COMPACT_STRING, "4+"),
+            new Field("generation_id", DataType.INT32, "0+"),
+            new Field("member_id", DataType.STRING, "0-3"),
+            new Field("member_id", DataType.COMPACT_STRING, "4+"),
+            new Field("group_instance_id", DataType.NULLABLE_STRING, "3-3"),
+            new Field("group_instance_id", DataType.COMPACT_NULLABLE_STRING, "4+"),
+            new Field("protocol_type", DataType.COMPACT_NULLABLE_STRING, "5+"),
+            new Field("protocol_name", DataType.COMPACT_NULLABLE_STRING, "5+"),
+            new Field("assignments", DataType.ARRAY, "0-3", SYNC_GROUP_REQUEST_ASSIGNMENT),
+            new Field("assignments", DataType.COMPACT_ARRAY, "4+", SYNC_GROUP_REQUEST_ASSIGNMENT)
+    );
+
+    private static final Schema SYNC_GROUP_RESPONSE_BODY = new Schema(
+            new Field("throttle_time_ms", DataType.INT32, "1+"),
+            new Field("error_code", DataType.INT16, "0+"),
+            new Field("protocol_type", DataType.COMPACT_NULLABLE_STRING, "5+"),
+            new Field("protocol_name", DataType.COMPACT_NULLABLE_STRING, "5+"),
+            new Field("assignment", DataType.BYTES, "0-3"),
+            new Field("assignment", DataType.COMPACT_BYTES, "4+")
+    );
+
+    public SyncGroupApiSchema() {
+        addVersions((short) 0, (short) 3, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V1,
+                SYNC_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V0,
+                SYNC_GROUP_RESPONSE_BODY
+        ));
+        addVersions((short) 4, (short) 5, new SchemaSet(
+                HeaderSchema.REQUEST_HEADER_V2,
+                SYNC_GROUP_REQUEST_BODY,
+                HeaderSchema.RESPONSE_HEADER_V1,
+                SYNC_GROUP_RESPONSE_BODY
+        ));
+    }
+
+    public StructLayout assignmentLayout() {
+        return SchemaCompiler.layoutOf(SYNC_GROUP_REQUEST_ASSIGNMENT);
+    }
+
+    @Override
+    public short apiKey() {
+        return 14;
+    }
+
+    @Override
+    public String name() {
+        return "SyncGroup";
+    }
+
+    @Override
+    public VersionRange flexibleVersions() {
+        return VersionRange.since((short) 4);
+    }
+}
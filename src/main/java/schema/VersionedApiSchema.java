@@ -0,0 +1,56 @@
+package schema;
+
+import codec.CompiledSchemaSet;
+import codec.SchemaCompiler;
+import exceptions.UnsupportedVersionException;
+
+import java.util.Arrays;
+
+/**
+ * Base for api schemas that keeps the SchemaSet and compiled codecs of every version in arrays indexed by
+ * version, so resolving a request's schema is a bounds check and an array load.
+ */
+public abstract class VersionedApiSchema implements ApiSchema {
+
+    private SchemaSet[] schemaSets = new SchemaSet[0];
+    private CompiledSchemaSet[] compiledSchemas = new CompiledSchemaSet[0];
+
+    /**
+     * Registers the schemas used by every version in {@code [minVersion, maxVersion]} and compiles them.
+     */
+    protected void addVersions(short minVersion, short maxVersion, SchemaSet schemaSet) {
+        if (maxVersion >= schemaSets.length) {
+            schemaSets = Arrays.copyOf(schemaSets, maxVersion + 1);
+            compiledSchemas = Arrays.copyOf(compiledSchemas, maxVersion + 1);
+        }
+        for (short v = minVersion; v <= maxVersion; v++) {
+            schemaSets[v] = schemaSet;
+            compiledSchemas[v] = SchemaCompiler.compile(this, schemaSet, v);
+        }
+    }
+
+    @Override
+    public VersionRange versionRange() {
+        short min = 0;
+        while (min < schemaSets.length && schemaSets[min] == null) {
+            min++;
+        }
+        return VersionRange.of(min, (short) (schemaSets.length - 1));
+    }
+
+    @Override
+    public SchemaSet forVersion(short apiVersion) {
+        if (apiVersion >= 0 && apiVersion < schemaSets.length && schemaSets[apiVersion] != null) {
+            return schemaSets[apiVersion];
+        }
+        throw new UnsupportedVersionException();
+    }
+
+    @Override
+    public CompiledSchemaSet codecsForVersion(short apiVersion) {
+        if (apiVersion >= 0 && apiVersion < compiledSchemas.length && compiledSchemas[apiVersion] != null) {
+            return compiledSchemas[apiVersion];
+        }
+        throw new UnsupportedVersionException();
+    }
+}
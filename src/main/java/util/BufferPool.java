@@ -0,0 +1,105 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A pool of heap buffers in power-of-two size classes, so encoded responses can reuse the memory of
+ * responses that have already been written to the socket.
+ */
+public class BufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 6;
+    private static final int MAX_CLASS_SHIFT = 20;
+
+    private final List<Queue<ByteBuffer>> freeLists;
+    // The buffers in each free list, counted separately since ConcurrentLinkedQueue.size() walks the whole queue
+    private final AtomicIntegerArray pooledCounts;
+    private final int maxPooledPerClass;
+
+    public BufferPool(int maxPooledPerClass) {
+        this.maxPooledPerClass = maxPooledPerClass;
+        this.freeLists = new ArrayList<>(MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1);
+        for (int shift = MIN_CLASS_SHIFT; shift <= MAX_CLASS_SHIFT; shift++) {
+            freeLists.add(new ConcurrentLinkedQueue<>());
+        }
+        this.pooledCounts = new AtomicIntegerArray(freeLists.size());
+    }
+
+    /**
+     * Returns a cleared buffer whose limit is exactly {@code size}. Sizes above the largest class are allocated unpooled.
+     */
+    public ByteBuffer allocate(int size) {
+        int sizeClass = sizeClassOf(size);
+        if (sizeClass < 0) {
+            return newBuffer(size);
+        }
+        ByteBuffer buffer = poll(sizeClass);
+        if (buffer == null) {
+            buffer = newBuffer(classCapacity(sizeClass));
+        }
+        return buffer.clear().limit(size);
+    }
+
+    /**
+     * Hands a buffer obtained from {@link #allocate(int)} back to the pool. The caller must not touch it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int sizeClass = sizeClassOf(capacity);
+        if (sizeClass >= 0) {
+            offer(sizeClass, buffer);
+        }
+    }
+
+    protected ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * @return A free buffer of the size class, or {@code null} if there is none.
+     */
+    protected ByteBuffer poll(int sizeClass) {
+        ByteBuffer buffer = freeLists.get(sizeClass).poll();
+        if (buffer != null) {
+            pooledCounts.decrementAndGet(sizeClass);
+        }
+        return buffer;
+    }
+
+    /**
+     * Keeps a released buffer of the size class for reuse, unless the class already holds enough of them.
+     */
+    protected void offer(int sizeClass, ByteBuffer buffer) {
+        // Claim a slot before publishing the buffer, so the count never falls below the free list's size
+        if (pooledCounts.incrementAndGet(sizeClass) <= maxPooledPerClass) {
+            freeLists.get(sizeClass).offer(buffer);
+        } else {
+            pooledCounts.decrementAndGet(sizeClass);
+        }
+    }
+
+    /**
+     * @return The capacity of the buffer {@link #allocate(int)} hands out for {@code size} bytes.
+     */
+    protected static int capacityFor(int size) {
+        int sizeClass = sizeClassOf(size);
+        return sizeClass < 0 ? size : classCapacity(sizeClass);
+    }
+
+    protected static int classCapacity(int sizeClass) {
+        return 1 << (sizeClass + MIN_CLASS_SHIFT);
+    }
+
+    protected static int sizeClassOf(int size) {
+        int shift = Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+        return shift > MAX_CLASS_SHIFT ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+}
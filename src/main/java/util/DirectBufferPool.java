@@ -0,0 +1,170 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BufferPool} of direct buffers with a cap on the memory handed out, backing the frames read off sockets
+ * and the responses encoded for them. Direct buffers go to the socket and into segment files without the JDK first
+ * copying them into a temporary direct buffer, and never move through the heap.
+ * <p>
+ * Frames are allocated with {@link #tryAllocate(int)}, which fails once the cap is used up, so the network threads
+ * stop reading instead of running out of memory, and are woken up through {@link #notifyWhenAvailable(Runnable)}.
+ * Like Kafka's {@code SimpleMemoryPool}, an allocation succeeds while any memory is left, so a single request larger
+ * than what is left is not starved. Responses are allocated with {@link #allocate(int)}, which never fails but
+ * counts against the cap, so memory held by unsent responses slows down reading new requests.
+ * <p>
+ * Threads keep a few buffers of the small size classes to themselves, so a network thread that allocates frames
+ * and releases them once handled mostly skips the shared free lists. Buffers cached that way, or in the shared free
+ * lists, do not count against the cap.
+ */
+public class DirectBufferPool extends BufferPool {
+
+    private static final int THREAD_CACHE_MAX_CLASS = sizeClassOf(32 * 1024);
+    private static final int THREAD_CACHE_PER_CLASS = 4;
+
+    private volatile long maxBytes;
+    private final AtomicLong availableBytes;
+    private final Queue<Runnable> memoryWaiters = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<List<ArrayDeque<ByteBuffer>>> threadCaches = ThreadLocal.withInitial(() -> {
+        List<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(THREAD_CACHE_MAX_CLASS + 1);
+        for (int sizeClass = 0; sizeClass <= THREAD_CACHE_MAX_CLASS; sizeClass++) {
+            caches.add(new ArrayDeque<>(THREAD_CACHE_PER_CLASS));
+        }
+        return caches;
+    });
+
+    /**
+     * @param maxBytes The memory that may be handed out at once, counted in buffer capacities.
+     */
+    public DirectBufferPool(long maxBytes, int maxPooledPerClass) {
+        super(maxPooledPerClass);
+        this.maxBytes = maxBytes;
+        this.availableBytes = new AtomicLong(maxBytes);
+    }
+
+    /**
+     * @return A cleared buffer whose limit is exactly {@code size}, or {@code null} if the pool is exhausted.
+     */
+    public ByteBuffer tryAllocate(int size) {
+        int capacity = capacityFor(size);
+        long available;
+        do {
+            available = availableBytes.get();
+            if (available <= 0) {
+                return null;
+            }
+        } while (!availableBytes.compareAndSet(available, available - capacity));
+        return super.allocate(size);
+    }
+
+    /**
+     * Like {@link #tryAllocate(int)}, but waits for buffers to be released while the pool is exhausted.
+     */
+    public ByteBuffer allocateBlocking(int size) throws InterruptedException {
+        ByteBuffer buffer;
+        while ((buffer = tryAllocate(size)) == null) {
+            CountDownLatch released = new CountDownLatch(1);
+            notifyWhenAvailable(released::countDown);
+            buffer = tryAllocate(size);
+            if (buffer != null) {
+                return buffer;
+            }
+            released.await();
+        }
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        ByteBuffer buffer = super.allocate(size);
+        availableBytes.addAndGet(-buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * Hands back a buffer from {@link #allocate(int)} or {@link #tryAllocate(int)} and wakes up whoever waits for
+     * memory. Heap buffers, which the pool never hands out, are ignored.
+     */
+    @Override
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        long available = availableBytes.addAndGet(buffer.capacity());
+        super.release(buffer);
+        if (available > 0) {
+            wakeUpMemoryWaiters();
+        }
+    }
+
+    /**
+     * Changes the cap. Buffers already handed out stay valid; a smaller cap just holds back allocations until
+     * enough of them are released.
+     */
+    public synchronized void resize(long maxBytes) {
+        long available = availableBytes.addAndGet(maxBytes - this.maxBytes);
+        this.maxBytes = maxBytes;
+        if (available > 0) {
+            wakeUpMemoryWaiters();
+        }
+    }
+
+    private void wakeUpMemoryWaiters() {
+        Runnable wakeup;
+        while ((wakeup = memoryWaiters.poll()) != null) {
+            wakeup.run();
+        }
+    }
+
+    /**
+     * Runs {@code wakeup} once, the next time a buffer is released while memory is available. Register before
+     * retrying a failed {@link #tryAllocate(int)}, so memory released in between is not missed.
+     */
+    public void notifyWhenAvailable(Runnable wakeup) {
+        memoryWaiters.add(wakeup);
+    }
+
+    public long availableBytes() {
+        return availableBytes.get();
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    protected ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    protected ByteBuffer poll(int sizeClass) {
+        if (sizeClass <= THREAD_CACHE_MAX_CLASS && !Thread.currentThread().isVirtual()) {
+            ByteBuffer buffer = threadCaches.get().get(sizeClass).pollFirst();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return super.poll(sizeClass);
+    }
+
+    @Override
+    protected void offer(int sizeClass, ByteBuffer buffer) {
+        // Virtual threads come and go with their connection, so caching on them would only strand buffers
+        if (sizeClass <= THREAD_CACHE_MAX_CLASS && !Thread.currentThread().isVirtual()) {
+            ArrayDeque<ByteBuffer> cache = threadCaches.get().get(sizeClass);
+            if (cache.size() < THREAD_CACHE_PER_CLASS) {
+                cache.addFirst(buffer);
+                return;
+            }
+        }
+        super.offer(sizeClass, buffer);
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import codec.CompiledSchema;
+import codec.CompiledSchemaSet;
+import codec.FileRegions;
+import message.response.ResponseMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes responses with the same compiled codecs {@link Parser} reads requests with.
+ * The exact frame size, including varints, compact strings and arrays and tagged fields, is computed first,
+ * so the size prefix, header and body can be written in a single pass into one buffer.
+ */
+public class Encoder {
+
+    /**
+     * Computes the encoded size of the response header and body, excluding the 4-byte size prefix.
+     */
+    public static int sizeOf(ResponseMessage response) {
+        CompiledSchemaSet codecs = response.codecs();
+        int bodySize = response.encodedBody() != null
+                ? response.encodedBody().remaining()
+                : codecs.responseBody().sizeOf(response.responseBody());
+        return codecs.responseHeader().sizeOf(response.responseHeader()) + bodySize;
+    }
+
+    /**
+     * Encodes a complete size-prefixed response frame into a buffer taken from the pool.
+     *
+     * @param response The response to encode.
+     * @param pool     The pool to take the buffer from; the caller releases it once the frame is written.
+     * @return The frame, flipped and ready to be written.
+     */
+    public static ByteBuffer encode(ResponseMessage response, BufferPool pool) {
+        int size = sizeOf(response);
+        ByteBuffer buffer = pool.allocate(4 + size);
+        encode(response, size, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Encodes a response frame, leaving the bytes of any file-backed records out of the buffer.
+     * Their positions are recorded in {@code fileRegions}, which must be active on the calling thread, so the
+     * records can be transferred straight from the log files after the buffer bytes preceding them.
+     *
+     * @return The frame minus the file-backed records, flipped and ready to be written.
+     */
+    public static ByteBuffer encode(ResponseMessage response, BufferPool pool, FileRegions fileRegions) {
+        int size = sizeOf(response);
+        ByteBuffer buffer = pool.allocate(4 + size - Math.toIntExact(fileRegions.sizedBytes()));
+        fileRegions.startWriting();
+        encode(response, size, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Writes the size prefix, header and body of a response at the buffer's position.
+     *
+     * @param size The size returned by {@link #sizeOf(ResponseMessage)}.
+     */
+    public static void encode(ResponseMessage response, int size, ByteBuffer buffer) {
+        CompiledSchemaSet codecs = response.codecs();
+        buffer.putInt(size);
+        codecs.responseHeader().write(buffer, response.responseHeader());
+        if (response.encodedBody() != null) {
+            buffer.put(response.encodedBody().duplicate());
+        } else {
+            codecs.responseBody().write(buffer, response.responseBody());
+        }
+    }
+
+    /**
+     * Encodes a response body on its own, for responses that can be cached and reused across requests.
+     *
+     * @return A read-only buffer holding exactly the encoded body.
+     */
+    public static ByteBuffer encodeBody(CompiledSchema bodySchema, Struct body) {
+        ByteBuffer buffer = ByteBuffer.allocate(bodySchema.sizeOf(body));
+        bodySchema.write(buffer, body);
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+}
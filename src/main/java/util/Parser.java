@@ -1,27 +1,34 @@
 package util;
 
+import codec.CompiledSchema;
+import codec.CompiledSchemaSet;
 import exceptions.InvalidRequestException;
 import message.request.RequestInfo;
 import message.request.RequestMessage;
-import schema.DataType;
-import schema.Field;
-import schema.HeaderSchema;
-import schema.Schema;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Optional;
 
 /**
  * A parser for decoding raw byte payloads into structured request messages based on a defined schema.
  * This class includes comprehensive error handling to validate the incoming data stream.
+ * All reads happen in place on the frame buffer: the request body is exposed as a slice of the frame
+ * and strings are decoded straight from the buffer without intermediate byte arrays.
  */
 public class Parser {
 
-    private static final int MAX_REASONABLE_SIZE = 8192;
+    // Field indexes shared by every request header layout
+    private static final int HEADER_API_KEY = 0;
+    private static final int HEADER_API_VERSION = 1;
+    private static final int HEADER_CORRELATION_ID = 2;
+    private static final int HEADER_CLIENT_ID = 3;
 
 
+    private static final ThreadLocal<byte[]> STRING_SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+    // Longer strings get a one-off array instead of growing every thread's scratch for good
+    private static final int MAX_SCRATCH_SIZE = 8192;
+
     /**
      * Parses the common request headers from a raw byte array.
      *
@@ -30,15 +37,29 @@ public class Parser {
      * @throws InvalidRequestException if the payload is malformed or incomplete.
      */
     public static RequestInfo parseCommons(byte[] rawPayload) {
-        if (rawPayload.length < 4) {
+        return parseCommons(ByteBuffer.wrap(rawPayload));
+    }
+
+    /**
+     * Parses the common request headers in place from a frame buffer.
+     * The remaining request in the returned RequestInfo is a slice sharing the frame's memory, so the frame
+     * must not be reused until the request has been fully handled.
+     *
+     * @param frame The buffer holding the request between its position and limit, including the size prefix.
+     *              Its position is left untouched.
+     * @return A RequestInfo object with common header data and the remaining payload.
+     * @throws InvalidRequestException if the payload is malformed or incomplete.
+     */
+    public static RequestInfo parseCommons(ByteBuffer frame) {
+        if (frame.remaining() < 4) {
             throw new InvalidRequestException("Request is too short to contain message size. Minimum 4 bytes required.");
         }
-        ByteBuffer buffer = ByteBuffer.wrap(rawPayload);
+        ByteBuffer buffer = frame.slice();
         int messageSize = buffer.getInt();
 
-        if (rawPayload.length - 4 != messageSize) {
+        if (buffer.remaining() != messageSize) {
             throw new InvalidRequestException(
-                    "Message size mismatch. Expected " + messageSize + " bytes, but found " + (rawPayload.length - 4) + " bytes."
+                    "Message size mismatch. Expected " + messageSize + " bytes, but found " + buffer.remaining() + " bytes."
             );
         }
 
@@ -48,32 +69,28 @@ public class Parser {
         int correlationId = buffer.getInt();
         Optional<String> clientId = parseNullableString(buffer);
 
-        byte[] remainingBytes = new byte[buffer.remaining()];
-        buffer.get(remainingBytes);
-
         return RequestInfo.builder()
                 .messageSize(messageSize)
                 .requestApiKey(requestApiKey)
                 .requestApiVersion(requestApiVersion)
                 .correlationId(correlationId)
                 .clientId(clientId)
-                .remainingRequest(remainingBytes)
+                .remainingRequest(buffer.slice())
                 .build();
     }
 
     /**
-     * Parses the remaining request bytes into a structured message.
+     * Parses the remaining request bytes into a structured message using precompiled codecs.
      *
-     * @param requestInfo  The request info containing the remaining bytes.
-     * @param headerSchema The schema for the request header.
-     * @param bodySchema   The schema for the request body.
+     * @param requestInfo The request info containing the remaining bytes.
+     * @param codecs      The codecs compiled for the request's api key and version.
      * @return A fully parsed RequestMessage.
      * @throws InvalidRequestException if the payload does not conform to the schema or has trailing data.
      */
-    public static RequestMessage parseMessage(RequestInfo requestInfo, Schema headerSchema, Schema bodySchema) {
-        ByteBuffer buffer = ByteBuffer.wrap(requestInfo.remainingRequest());
-        Struct header = parseHeader(headerSchema, buffer, requestInfo);
-        Struct body = parseBody(bodySchema, buffer, requestInfo.requestApiVersion());
+    public static RequestMessage parseMessage(RequestInfo requestInfo, CompiledSchemaSet codecs) {
+        ByteBuffer buffer = requestInfo.remainingRequest().duplicate();
+        Struct header = parseHeader(codecs.requestHeader(), buffer, requestInfo);
+        Struct body = codecs.requestBody().read(buffer);
 
         if (buffer.hasRemaining()) {
             throw new InvalidRequestException("Request has " + buffer.remaining() + " trailing bytes that were not read.");
@@ -82,235 +99,126 @@ public class Parser {
         return new RequestMessage(header, body);
     }
 
-    /**
-     * Parses the request body from the buffer according to the given schema.
-     *
-     * @param bodySchema The schema for the request body.
-     * @param buffer     The byte buffer containing the body data.
-     * @param apiVersion The API version of the request.
-     * @return A Struct representing the parsed body.
-     * @throws InvalidRequestException if the data is malformed.
-     */
-    public static Struct parseBody(Schema bodySchema, ByteBuffer buffer, short apiVersion) {
-        Struct body = new Struct();
-        for (Field field : bodySchema.fields()) {
-            if (field.tag().isEmpty() && field.validVersions().contains(apiVersion)) {
-                parseField(field, buffer, body, apiVersion);
-            }
-        }
-        parseTaggedFields(bodySchema, apiVersion, buffer, body);
-        return body;
-    }
-
-    private static Struct parseHeader(Schema headerSchema, ByteBuffer buffer, RequestInfo requestInfo) {
-        Struct header = new Struct();
-        header.set("request_api_key", DataType.INT16, requestInfo.requestApiKey());
-        header.set("request_api_version", DataType.INT16, requestInfo.requestApiVersion());
-        header.set("correlation_id", DataType.INT32, requestInfo.correlationId());
-        header.set("client_id", DataType.NULLABLE_STRING, requestInfo.clientId().orElse(null));
+    private static Struct parseHeader(CompiledSchema headerSchema, ByteBuffer buffer, RequestInfo requestInfo) {
+        Struct header = headerSchema.newStruct();
+        header.setShort(HEADER_API_KEY, requestInfo.requestApiKey());
+        header.setShort(HEADER_API_VERSION, requestInfo.requestApiVersion());
+        header.setInt(HEADER_CORRELATION_ID, requestInfo.correlationId());
+        header.setObject(HEADER_CLIENT_ID, requestInfo.clientId().orElse(null));
 
-        if (headerSchema == HeaderSchema.REQUEST_HEADER_V2) {
-            parseTaggedFields(headerSchema, requestInfo.requestApiVersion(), buffer, header);
+        if (headerSchema.isFlexible()) {
+            headerSchema.readTaggedFields(buffer, header);
         }
         return header;
     }
 
-    private static void parseTaggedFields(Schema schema, short apiVersion, ByteBuffer buffer, Struct struct) {
-        int numTaggedFields = parseUnsignedVariableInt(buffer).intValue();
-        if (numTaggedFields < 0) {
-            throw new InvalidRequestException("Invalid number of tagged fields: " + numTaggedFields);
-        }
-
-        for (int i = 0; i < numTaggedFields; i++) {
-            int tag = parseUnsignedVariableInt(buffer).intValue();
-            int size = parseUnsignedVariableInt(buffer).intValue();
-
-            if (size < 0) {
-                throw new InvalidRequestException("Invalid size for tagged field " + tag + ": " + size);
-            }
-            ensureRemaining(buffer, size, "tagged field " + tag);
-
-            ByteBuffer fieldBuffer = buffer.slice();
-            fieldBuffer.limit(size);
-
-            Optional<Field> optionalField = Arrays.stream(schema.fields())
-                    .filter(f -> f.tag().isPresent() && f.tag().get() == tag)
-                    .findFirst();
-
-            if (optionalField.isPresent() && optionalField.get().validVersions().contains(apiVersion)) {
-                parseField(optionalField.get(), fieldBuffer, struct, apiVersion);
-                if (fieldBuffer.hasRemaining()) {
-                    throw new InvalidRequestException(
-                            "Tagged field " + tag + " has " + fieldBuffer.remaining() + " trailing bytes that were not read."
-                    );
-                }
-            }
-            buffer.position(buffer.position() + size);
-        }
-    }
-
-    private static void parseField(Field field, ByteBuffer buffer, Struct struct, short apiVersion) {
-        Object value = getValue(field, buffer, apiVersion);
-        struct.set(field.name(), field.type(), value);
-    }
-
-    private static Object getValue(Field field, ByteBuffer buffer, short apiVersion) {
-        return switch (field.type()) {
-            case INT8 -> {
-                ensureRemaining(buffer, 1, "INT8");
-                yield buffer.get();
-            }
-            case INT16 -> {
-                ensureRemaining(buffer, 2, "INT16");
-                yield buffer.getShort();
-            }
-            case INT32 -> {
-                ensureRemaining(buffer, 4, "INT32");
-                yield buffer.getInt();
-            }
-            case INT64 -> {
-                ensureRemaining(buffer, 8, "INT64");
-                yield buffer.getLong();
-            }
-            case VARINT -> parseVariableInt(buffer);
-            case UNSIGNED_VARINT -> parseUnsignedVariableInt(buffer);
-            case FLOAT64 -> {
-                ensureRemaining(buffer, 8, "FLOAT64");
-                yield buffer.getDouble();
-            }
-            case BOOLEAN -> {
-                ensureRemaining(buffer, 1, "BOOLEAN");
-                yield buffer.get() != 0;
-            }
-            case STRING -> parseString(buffer);
-            case COMPACT_STRING -> parseCompactString(buffer);
-            case NULLABLE_STRING -> parseNullableString(buffer);
-            case COMPACT_NULLABLE_STRING -> parseCompactNullableString(buffer);
-            case ARRAY -> parseArray(buffer, field.nestedSchema(), apiVersion);
-            case COMPACT_ARRAY -> parseCompactArray(buffer, field.nestedSchema(), apiVersion);
-            case STRUCT -> parseStruct(field.nestedSchema(), buffer, apiVersion);
-        };
-    }
-
-    private static Struct parseStruct(Schema schema, ByteBuffer buffer, short apiVersion) {
-        Struct struct = new Struct();
-        for (Field field : schema.fields()) {
-            if (field.validVersions().contains(apiVersion)) {
-                parseField(field, buffer, struct, apiVersion);
-            }
-        }
-        parseTaggedFields(schema, apiVersion, buffer, struct);
-        return struct;
-    }
-
-    private static String readString(ByteBuffer buffer, int length) {
+    public static String readString(ByteBuffer buffer, int length) {
         if (length < 0) {
             throw new InvalidRequestException("Invalid string length: " + length);
         }
-        if (length > MAX_REASONABLE_SIZE) {
-            throw new InvalidRequestException("String length " + length + " exceeds maximum reasonable size of " + MAX_REASONABLE_SIZE);
-        }
         ensureRemaining(buffer, length, "string of length " + length);
-        byte[] bytes = new byte[length];
-        buffer.get(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
+        int position = buffer.position();
+        buffer.position(position + length);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        byte[] scratch = length > MAX_SCRATCH_SIZE ? new byte[length] : STRING_SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            STRING_SCRATCH.set(scratch);
+        }
+        buffer.get(position, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
     }
 
-    private static String parseString(ByteBuffer buffer) {
+    public static String parseString(ByteBuffer buffer) {
         ensureRemaining(buffer, 2, "string length");
         short length = buffer.getShort();
         return readString(buffer, length);
     }
 
     public static Optional<String> parseNullableString(ByteBuffer buffer) {
+        return Optional.ofNullable(readNullableString(buffer));
+    }
+
+    /**
+     * Reads a nullable string, returning {@code null} rather than an empty Optional for a null value.
+     */
+    public static String readNullableString(ByteBuffer buffer) {
         ensureRemaining(buffer, 2, "nullable string length");
         short length = buffer.getShort();
         if (length == -1) {
-            return Optional.empty();
+            return null;
         }
-        return Optional.of(readString(buffer, length));
+        return readString(buffer, length);
     }
 
     public static String parseCompactString(ByteBuffer buffer) {
-        int length = parseUnsignedVariableInt(buffer).intValue() - 1;
+        int length = (int) parseUnsignedVariableInt(buffer) - 1;
         return readString(buffer, length);
     }
 
     public static Optional<String> parseCompactNullableString(ByteBuffer buffer) {
-        int length= parseUnsignedVariableInt(buffer).intValue() - 1;
-        if (length == -1) return Optional.empty();
-        return Optional.of(readString(buffer, length));
+        return Optional.ofNullable(readCompactNullableString(buffer));
     }
 
-    private static Integer parseVariableInt(ByteBuffer buffer) {
-        Long value = parseUnsignedVariableInt(buffer);
-        return decodeZigZag32(value);
+    /**
+     * Reads a compact nullable string, returning {@code null} rather than an empty Optional for a null value.
+     */
+    public static String readCompactNullableString(ByteBuffer buffer) {
+        int length = (int) parseUnsignedVariableInt(buffer) - 1;
+        if (length == -1) return null;
+        return readString(buffer, length);
     }
 
-    private static Long parseUnsignedVariableInt(ByteBuffer buffer) {
-        long value = 0L;
-        int shift = 0;
-        byte b;
-        for (int i = 0; i < 10; i++) {
+    /**
+     * Reads a zig-zag encoded varint without boxing it.
+     *
+     * @throws InvalidRequestException if the varint is truncated or longer than 5 bytes.
+     */
+    public static int parseVariableInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
             if (!buffer.hasRemaining()) {
                 throw new InvalidRequestException("Malformed varint: insufficient bytes.");
             }
-            b = buffer.get();
-            value |= (long) (b & 0x7F) << shift;
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
             if ((b & 0x80) == 0) {
-                return value;
-            }
-            shift += 7;
-            if (shift > 63) {
-                throw new InvalidRequestException("Malformed varint: value is too long.");
+                return (value >>> 1) ^ -(value & 1);
             }
         }
         throw new InvalidRequestException("Malformed varint: value is too long.");
     }
 
-    private static Integer decodeZigZag32(Long value) {
-        return (value.intValue() >>> 1) ^ -(value.intValue() & 1);
-    }
-
-    private static Object[] parseArray(ByteBuffer buffer, Schema elementSchema, short apiVersion) {
-        ensureRemaining(buffer, 4, "array length");
-        int length = buffer.getInt();
-        return readArray(buffer, elementSchema, apiVersion, length);
-    }
-
-    private static Object[] parseCompactArray(ByteBuffer buffer, Schema elementSchema, short apiVersion) {
-        int length = parseUnsignedVariableInt(buffer).intValue() - 1;
-        return readArray(buffer, elementSchema, apiVersion, length);
+    /**
+     * Reads a zig-zag encoded varlong, as used for record timestamp deltas, without boxing it.
+     *
+     * @throws InvalidRequestException if the varlong is truncated or longer than 10 bytes.
+     */
+    public static long parseVariableLong(ByteBuffer buffer) {
+        long value = parseUnsignedVariableInt(buffer);
+        return (value >>> 1) ^ -(value & 1);
     }
 
-    private static Object[] readArray(ByteBuffer buffer, Schema elementSchema, short apiVersion, int length) {
-        if (length == -1) {
-            return null;
-        }
-        if (length < 0) {
-            throw new InvalidRequestException("Invalid array length: " + length);
-        }
-        if (length > MAX_REASONABLE_SIZE) {
-            throw new InvalidRequestException("Array length " + length + " exceeds maximum reasonable size of " + MAX_REASONABLE_SIZE);
-        }
-        Object[] array = new Object[length];
-        for (int i = 0; i < length; i++) {
-            try {
-                array[i] = parseElement(elementSchema, buffer, apiVersion);
-            } catch (InvalidRequestException e) {
-                throw new InvalidRequestException("Error parsing element " + i + " of array: " + e.getMessage());
+    /**
+     * Reads an unsigned varint of up to 64 bits without boxing it.
+     *
+     * @throws InvalidRequestException if the varint is truncated or longer than 10 bytes.
+     */
+    public static long parseUnsignedVariableInt(ByteBuffer buffer) {
+        long value = 0L;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new InvalidRequestException("Malformed varint: insufficient bytes.");
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
             }
         }
-        return array;
-    }
-
-    private static Object parseElement(Schema elementSchema, ByteBuffer buffer, short apiVersion) {
-        if (elementSchema.fields().length == 1) {
-            Field primitiveField = elementSchema.fields()[0];
-            return getValue(primitiveField, buffer, apiVersion);
-        } else {
-            return parseStruct(elementSchema, buffer, apiVersion);
-        }
+        throw new InvalidRequestException("Malformed varint: value is too long.");
     }
 
     /**
@@ -321,7 +229,7 @@ public class Parser {
      * @param fieldName A descriptive name of the field being read, for error reporting.
      * @throws InvalidRequestException if the buffer is exhausted.
      */
-    private static void ensureRemaining(ByteBuffer buffer, int bytes, String fieldName) {
+    public static void ensureRemaining(ByteBuffer buffer, int bytes, String fieldName) {
         if (buffer.remaining() < bytes) {
             throw new InvalidRequestException(
                     "Buffer exhausted while trying to read " + fieldName + ". Expected " +
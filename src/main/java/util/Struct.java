@@ -1,32 +1,151 @@
 package util;
 
+import codec.StructLayout;
 import schema.DataType;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * A message or nested struct laid out according to its schema's {@link StructLayout}.
+ * Numeric fields live unboxed in a {@code long[]} and are read through index-based accessors such as
+ * {@link #getInt(int)}; the name-based getters and {@link #set(String, DataType, Object)} remain as a
+ * compatibility layer on top of the same slots.
+ */
 public class Struct {
 
-    private final Map<String, Object> values;
+    private static final long[] NO_PRIMITIVES = new long[0];
+    private static final Object[] NO_OBJECTS = new Object[0];
+
+    private final StructLayout layout;
+    private final long[] primitives;
+    private final Object[] objects;
+    private long present;
+
+    public Struct(StructLayout layout) {
+        this.layout = layout;
+        this.primitives = layout.primitiveSlots() == 0 ? NO_PRIMITIVES : new long[layout.primitiveSlots()];
+        this.objects = layout.objectSlots() == 0 ? NO_OBJECTS : new Object[layout.objectSlots()];
+    }
+
+    public StructLayout layout() {
+        return layout;
+    }
+
+    public boolean has(int index) {
+        return (present & (1L << index)) != 0;
+    }
+
+    public long getLong(int index) {
+        return primitives[layout.slot(index)];
+    }
+
+    public int getInt(int index) {
+        return (int) primitives[layout.slot(index)];
+    }
+
+    public short getShort(int index) {
+        return (short) primitives[layout.slot(index)];
+    }
+
+    public byte getByte(int index) {
+        return (byte) primitives[layout.slot(index)];
+    }
+
+    public boolean getBoolean(int index) {
+        return primitives[layout.slot(index)] != 0;
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(primitives[layout.slot(index)]);
+    }
+
+    public Object getObject(int index) {
+        return objects[layout.slot(index)];
+    }
+
+    public String getString(int index) {
+        return (String) objects[layout.slot(index)];
+    }
+
+    public Object[] getArray(int index) {
+        return (Object[]) objects[layout.slot(index)];
+    }
+
+    public void setLong(int index, long value) {
+        primitives[layout.slot(index)] = value;
+        present |= 1L << index;
+    }
+
+    public void setInt(int index, int value) {
+        setLong(index, value);
+    }
+
+    public void setShort(int index, short value) {
+        setLong(index, value);
+    }
 
-    public Struct() {
-        values = new HashMap<>();
+    public void setBoolean(int index, boolean value) {
+        setLong(index, value ? 1 : 0);
+    }
+
+    public void setDouble(int index, double value) {
+        setLong(index, Double.doubleToRawLongBits(value));
+    }
+
+    public void setObject(int index, Object value) {
+        objects[layout.slot(index)] = value;
+        if (value == null) {
+            present &= ~(1L << index);
+        } else {
+            present |= 1L << index;
+        }
+    }
+
+    /**
+     * Sets a field from a boxed value, unboxing it into its slot if the field is numeric.
+     */
+    public void setValue(int index, Object value) {
+        if (!layout.isPrimitive(index)) {
+            setObject(index, value);
+        } else if (value == null) {
+            present &= ~(1L << index);
+        } else if (value instanceof Boolean bool) {
+            setBoolean(index, bool);
+        } else if (value instanceof Double number) {
+            setDouble(index, number);
+        } else {
+            setLong(index, ((Number) value).longValue());
+        }
+    }
+
+    /**
+     * Reads a field as a boxed value, or {@code null} if it was never set.
+     */
+    public Object getValue(int index) {
+        if (!layout.isPrimitive(index)) {
+            return getObject(index);
+        }
+        if (!has(index)) {
+            return null;
+        }
+        return switch (layout.type(index)) {
+            case BOOLEAN -> getBoolean(index);
+            case INT8 -> getByte(index);
+            case INT16 -> getShort(index);
+            case INT32, VARINT -> getInt(index);
+            case FLOAT64 -> getDouble(index);
+            default -> getLong(index);
+        };
     }
 
     public void set(String fieldName, DataType type, Object value) {
-        if (type == DataType.ARRAY || type == DataType.COMPACT_ARRAY) {
-            if (!value.getClass().isArray()) {
-                throw new IllegalArgumentException("Value for array field '" + fieldName + "' must be an array.");
-            }
-        } else if (value != null && !type.getJavaType().isAssignableFrom(value.getClass())) {
-            throw new IllegalArgumentException("Value for field '" + fieldName + "' is of type " +
-                    value.getClass().getSimpleName() + " but expected " + type.getJavaType().getSimpleName());
+        int index = layout.indexOf(fieldName);
+        if ((type == DataType.ARRAY || type == DataType.COMPACT_ARRAY) && value != null && !(value instanceof Object[])) {
+            throw new IllegalArgumentException("Value for array field '" + fieldName + "' must be an array.");
         }
-        values.put(fieldName, value);
+        setValue(index, value);
     }
 
     public <T> T get(String fieldName, Class<T> expectedType) {
-        Object value = values.get(fieldName);
+        Object value = getValue(layout.indexOf(fieldName));
         if (value == null) {
             return null;
         }
@@ -0,0 +1,53 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a thread doing background I/O to a rate in bytes per second. The thread reports the bytes it read or wrote
+ * and, once per check interval, sleeps for as long as it takes the observed rate to drop to the desired one, so
+ * e.g. the log cleaner neither saturates the disk nor churns the page cache that consumers read from.
+ */
+public class Throttler {
+
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private volatile long desiredBytesPerSecond;
+    private long periodStartNanos = System.nanoTime();
+    private long observedSoFar;
+
+    /**
+     * @param desiredBytesPerSecond The rate to hold the caller to, or 0 for no limit.
+     */
+    public Throttler(long desiredBytesPerSecond) {
+        this.desiredBytesPerSecond = desiredBytesPerSecond;
+    }
+
+    public void updateDesiredRate(long desiredBytesPerSecond) {
+        this.desiredBytesPerSecond = desiredBytesPerSecond;
+    }
+
+    /**
+     * Records {@code bytes} of I/O and sleeps if the rate over the current check interval exceeds the desired rate.
+     *
+     * @throws InterruptedException if interrupted while sleeping.
+     */
+    public synchronized void maybeThrottle(long bytes) throws InterruptedException {
+        long desired = desiredBytesPerSecond;
+        observedSoFar += bytes;
+        long now = System.nanoTime();
+        long elapsedNanos = now - periodStartNanos;
+        if (elapsedNanos < CHECK_INTERVAL_NANOS) {
+            return;
+        }
+        if (desired > 0) {
+            // The time the bytes observed in this period should have taken at the desired rate, less the time they did
+            long sleepNanos = (long) (observedSoFar * 1e9 / desired) - elapsedNanos;
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                now = System.nanoTime();
+            }
+        }
+        periodStartNanos = now;
+        observedSoFar = 0;
+    }
+}
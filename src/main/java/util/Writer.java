@@ -0,0 +1,121 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The encoding counterpart of {@link Parser}: writes primitive wire types into a buffer and computes their
+ * encoded sizes, so callers can size an output buffer exactly before writing into it.
+ */
+public class Writer {
+
+    public static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static void writeNullableString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+        } else {
+            writeString(buffer, value);
+        }
+    }
+
+    public static void writeCompactString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsignedVariableInt(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    public static void writeCompactNullableString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            writeUnsignedVariableInt(buffer, 0);
+        } else {
+            writeCompactString(buffer, value);
+        }
+    }
+
+    public static int sizeOfString(String value) {
+        return 2 + utf8Length(value);
+    }
+
+    public static int sizeOfNullableString(String value) {
+        return value == null ? 2 : sizeOfString(value);
+    }
+
+    public static int sizeOfCompactString(String value) {
+        int length = utf8Length(value);
+        return sizeOfUnsignedVariableInt(length + 1) + length;
+    }
+
+    public static int sizeOfCompactNullableString(String value) {
+        return value == null ? 1 : sizeOfCompactString(value);
+    }
+
+    public static void writeVariableInt(ByteBuffer buffer, int value) {
+        writeUnsignedVariableInt(buffer, zigZag(value));
+    }
+
+    public static int sizeOfVariableInt(int value) {
+        return sizeOfUnsignedVariableInt(zigZag(value));
+    }
+
+    // Masked to 32 bits, since a sign-extended value would take up to 10 bytes where a varint allows 5
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    public static void writeVariableLong(ByteBuffer buffer, long value) {
+        writeUnsignedVariableInt(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static int sizeOfVariableLong(long value) {
+        return sizeOfUnsignedVariableInt((value << 1) ^ (value >> 63));
+    }
+
+    public static void writeUnsignedVariableInt(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int sizeOfUnsignedVariableInt(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            bytes++;
+            value >>>= 7;
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the UTF-8 encoded length of a string without encoding it.
+     */
+    public static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    // String.getBytes replaces unpaired surrogates with a single '?'
+                    length++;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,87 @@
+package util.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A timer backed by a hierarchical {@link TimingWheel}. It has no thread of its own: the owner calls
+ * {@link #advanceClock(long)} in a loop, which sleeps until the next bucket expires and runs its tasks.
+ */
+public class SystemTimer {
+
+    private final DelayQueue<TimerTaskList> delayQueue = new DelayQueue<>();
+    private final AtomicInteger taskCounter = new AtomicInteger();
+    private final TimingWheel timingWheel;
+
+    // Adds take the read lock and may run concurrently; advancing the wheels takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SystemTimer(long tickMs, int wheelSize) {
+        this.timingWheel = new TimingWheel(tickMs, wheelSize, nowMs(), taskCounter, delayQueue);
+    }
+
+    static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Schedules a task to run after its delay. A task that is already due runs on the calling thread.
+     */
+    public void add(TimerTask task) {
+        boolean due;
+        lock.readLock().lock();
+        try {
+            task.expirationMs = task.delayMs() + nowMs();
+            due = !timingWheel.add(task);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (due && !task.isCancelled()) {
+            task.run();
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for a bucket to expire, then advances the wheels and runs every due task on
+     * the calling thread.
+     *
+     * @return Whether any bucket expired.
+     */
+    public boolean advanceClock(long timeoutMs) throws InterruptedException {
+        TimerTaskList bucket = delayQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return false;
+        }
+        List<TimerTask> due = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                timingWheel.advanceClock(bucket.getExpiration());
+                bucket.flush(task -> {
+                    if (!timingWheel.add(task) && !task.isCancelled()) {
+                        due.add(task);
+                    }
+                });
+                bucket = delayQueue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Tasks run outside the lock so they can schedule new tasks
+        for (TimerTask task : due) {
+            task.run();
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of tasks waiting in the wheels.
+     */
+    public int size() {
+        return taskCounter.get();
+    }
+}
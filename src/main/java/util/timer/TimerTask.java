@@ -0,0 +1,46 @@
+package util.timer;
+
+/**
+ * A task run by a {@link SystemTimer} once its delay has elapsed. The task is itself the entry of the timing wheel
+ * bucket it sits in, so scheduling it allocates nothing beyond the task.
+ */
+public abstract class TimerTask implements Runnable {
+
+    private final long delayMs;
+
+    // Bucket membership, guarded by the task's own monitor together with the bucket's
+    TimerTaskList list;
+    TimerTask next;
+    TimerTask prev;
+    long expirationMs;
+    private volatile boolean cancelled;
+
+    protected TimerTask(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    public long delayMs() {
+        return delayMs;
+    }
+
+    /**
+     * Removes the task from the timer. A cancelled task is never run.
+     */
+    public void cancel() {
+        cancelled = true;
+        removeFromList();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void removeFromList() {
+        // The task may be moved to another bucket concurrently while the wheel advances
+        TimerTaskList current = list;
+        while (current != null) {
+            current.remove(this);
+            current = list;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package util.timer;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One bucket of a {@link TimingWheel}: a circular doubly linked list of the tasks expiring within the same tick.
+ * Buckets, not tasks, are queued in the timer's {@link java.util.concurrent.DelayQueue}.
+ */
+class TimerTaskList implements Delayed {
+
+    private final AtomicInteger taskCounter;
+    private final TimerTask root = new TimerTask(-1L) {
+        @Override
+        public void run() {
+        }
+    };
+    private final AtomicLong expiration = new AtomicLong(-1L);
+
+    TimerTaskList(AtomicInteger taskCounter) {
+        this.taskCounter = taskCounter;
+        root.next = root;
+        root.prev = root;
+    }
+
+    /**
+     * @return Whether the expiration changed, i.e. the bucket was reused for a new tick and must be queued again.
+     */
+    boolean setExpiration(long expirationMs) {
+        return expiration.getAndSet(expirationMs) != expirationMs;
+    }
+
+    long getExpiration() {
+        return expiration.get();
+    }
+
+    void add(TimerTask task) {
+        boolean done = false;
+        while (!done) {
+            // A task belongs to at most one bucket; take it out of the previous one first
+            task.removeFromList();
+            synchronized (this) {
+                synchronized (task) {
+                    if (task.list == null) {
+                        TimerTask tail = root.prev;
+                        task.next = root;
+                        task.prev = tail;
+                        task.list = this;
+                        tail.next = task;
+                        root.prev = task;
+                        taskCounter.incrementAndGet();
+                        done = true;
+                    }
+                }
+            }
+        }
+    }
+
+    synchronized void remove(TimerTask task) {
+        synchronized (task) {
+            if (task.list == this) {
+                task.next.prev = task.prev;
+                task.prev.next = task.next;
+                task.next = null;
+                task.prev = null;
+                task.list = null;
+                taskCounter.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes every task and hands it to {@code action}, which re-inserts it into a finer wheel or runs it.
+     */
+    synchronized void flush(Consumer<TimerTask> action) {
+        TimerTask head = root.next;
+        while (head != root) {
+            remove(head);
+            action.accept(head);
+            head = root.next;
+        }
+        expiration.set(-1L);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(getExpiration() - SystemTimer.nowMs(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(getExpiration(), ((TimerTaskList) other).getExpiration());
+    }
+}
@@ -0,0 +1,81 @@
+package util.timer;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hierarchical timing wheel. Each level has {@code wheelSize} buckets of {@code tickMs}; tasks too far in the
+ * future for this level go to an overflow wheel whose tick is this wheel's whole interval, created on demand.
+ * Adding and cancelling a task are O(1); only buckets, not tasks, are ordered by the delay queue.
+ */
+class TimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final AtomicInteger taskCounter;
+    private final DelayQueue<TimerTaskList> queue;
+    private final TimerTaskList[] buckets;
+
+    // Always a multiple of tickMs; only advanced by the thread holding the timer's write lock
+    private long currentTimeMs;
+    private volatile TimingWheel overflowWheel;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs, AtomicInteger taskCounter, DelayQueue<TimerTaskList> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.taskCounter = taskCounter;
+        this.queue = queue;
+        this.buckets = new TimerTaskList[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerTaskList(taskCounter);
+        }
+        this.currentTimeMs = startMs - (startMs % tickMs);
+    }
+
+    /**
+     * @return {@code false} if the task is cancelled or already expired, in which case the caller should run it
+     * unless it was cancelled.
+     */
+    boolean add(TimerTask task) {
+        long expirationMs = task.expirationMs;
+        if (task.isCancelled() || expirationMs < currentTimeMs + tickMs) {
+            return false;
+        }
+        if (expirationMs < currentTimeMs + interval) {
+            long virtualId = expirationMs / tickMs;
+            TimerTaskList bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(task);
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        }
+        return overflowWheel().add(task);
+    }
+
+    void advanceClock(long timeMs) {
+        if (timeMs >= currentTimeMs + tickMs) {
+            currentTimeMs = timeMs - (timeMs % tickMs);
+            TimingWheel overflow = overflowWheel;
+            if (overflow != null) {
+                overflow.advanceClock(currentTimeMs);
+            }
+        }
+    }
+
+    private TimingWheel overflowWheel() {
+        TimingWheel overflow = overflowWheel;
+        if (overflow == null) {
+            synchronized (this) {
+                overflow = overflowWheel;
+                if (overflow == null) {
+                    overflow = new TimingWheel(interval, wheelSize, currentTimeMs, taskCounter, queue);
+                    overflowWheel = overflow;
+                }
+            }
+        }
+        return overflow;
+    }
+}
@@ -0,0 +1,43 @@
+package compression;
+
+import exceptions.CorruptRecordException;
+import org.junit.jupiter.api.Test;
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GzipCodecTest {
+
+    private final GzipCodec codec = new GzipCodec();
+    private final BufferPool pool = new BufferPool(4);
+
+    @Test
+    void roundTripsCompressibleAndRandomInput() {
+        byte[] random = new byte[100_000];
+        new Random(42).nextBytes(random);
+        for (byte[] data : new byte[][]{new byte[0], "hello".getBytes(), new byte[300_000], random}) {
+            ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data), pool);
+            ByteBuffer decompressed = codec.decompress(compressed, pool, data.length);
+            assertEquals(ByteBuffer.wrap(data), decompressed);
+        }
+    }
+
+    @Test
+    void rejectsOutputLargerThanTheLimit() {
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[1 << 20]), pool);
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(compressed, pool, (1 << 20) - 1));
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(compressed, pool, 1000));
+        assertEquals(1 << 20, codec.decompress(compressed, pool, 1 << 20).remaining());
+    }
+
+    @Test
+    void rejectsTruncatedStream() {
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[10_000]), pool);
+        ByteBuffer truncated = compressed.slice(0, compressed.remaining() - 12);
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(truncated, pool, 10_000));
+    }
+}
@@ -0,0 +1,162 @@
+package compression;
+
+import exceptions.CorruptRecordException;
+import org.junit.jupiter.api.Test;
+import util.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Lz4CodecTest {
+
+    private static final String TEXT = "hello hello hello hello hello world, hello kafka";
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MAX_SIZE = 1 << 24;
+
+    private final Lz4Codec codec = new Lz4Codec();
+    private final BufferPool pool = new BufferPool(4);
+
+    @Test
+    void decompressesFramesFromTheReferenceImplementation() {
+        // Block and content checksums
+        assertEquals(TEXT, decompressToString("04224d187440bd190000006f68656c6c6f2006000563776f726c642c1f00506b61666b61"
+                + "ca2e481d0000000029efb664"));
+        // Content size
+        assertEquals(TEXT, decompressToString("04224d186840300000000000000092190000006f68656c6c6f2006000563776f726c642c"
+                + "1f00506b61666b6100000000"));
+    }
+
+    @Test
+    void roundTripsAcrossBlockBoundaries() {
+        Random random = new Random(7);
+        for (int length : new int[]{0, 1, 12, 13, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 3 * BLOCK_SIZE + 5}) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) random.nextInt(4);
+            }
+            assertRoundTrips(data);
+        }
+    }
+
+    @Test
+    void storesIncompressibleBlocksUncompressed() {
+        byte[] data = new byte[2 * BLOCK_SIZE + 100];
+        new Random(42).nextBytes(data);
+        ByteBuffer compressed = assertRoundTrips(data);
+        // Frame header, three block headers and the end mark
+        assertEquals(7 + 3 * 4 + data.length + 4, compressed.remaining());
+    }
+
+    @Test
+    void compressesDirectInput() {
+        byte[] data = TEXT.repeat(5000).getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        ByteBuffer compressed = codec.compress(direct, pool);
+        assertTrue(compressed.remaining() < data.length / 10);
+        assertEquals(ByteBuffer.wrap(data), codec.decompress(compressed, pool, MAX_SIZE));
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    void rejectsOutputLargerThanTheLimit() {
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[1 << 20]), pool);
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(compressed, pool, (1 << 20) - 1));
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(compressed, pool, 1000));
+        assertEquals(1 << 20, codec.decompress(compressed, pool, 1 << 20).remaining());
+
+        byte[] random = new byte[BLOCK_SIZE + 10];
+        new Random(1).nextBytes(random);
+        ByteBuffer stored = codec.compress(ByteBuffer.wrap(random), pool);
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(stored, pool, BLOCK_SIZE));
+    }
+
+    @Test
+    void rejectsMatchesBeforeTheStartOfTheOutput() {
+        // One literal, then a match reaching back two bytes
+        assertCorrupt(frame(block(0x14, 'a', 0x02, 0x00)));
+        // Distance 0
+        assertCorrupt(frame(block(0x14, 'a', 0x00, 0x00)));
+    }
+
+    @Test
+    void rejectsLiteralRunsPastTheEndOfTheBlock() {
+        // 15 + 16 literals announced, three present
+        assertCorrupt(frame(block(0xf0, 0x10, 'a', 'b', 'c')));
+        // A run of 255s that never terminates
+        assertCorrupt(frame(block(0xf0, 0xff, 0xff, 0xff)));
+    }
+
+    @Test
+    void rejectsTruncatedBlocksAndFrames() {
+        // A match token without its distance
+        assertCorrupt(frame(block(0x14, 'a', 0x02)));
+        // A literal run cut short by the end of the block
+        assertCorrupt(frame(block(0xf0)));
+
+        ByteBuffer valid = codec.compress(ByteBuffer.wrap(TEXT.repeat(100).getBytes(StandardCharsets.US_ASCII)), pool);
+        // Missing end mark
+        assertCorrupt(valid.slice(0, valid.remaining() - 4));
+        // Block cut short of its announced size
+        assertCorrupt(valid.slice(0, 7 + 4 + 5));
+        // Frame header only
+        assertCorrupt(valid.slice(0, 5));
+    }
+
+    @Test
+    void rejectsBadFrameHeaders() {
+        ByteBuffer valid = codec.compress(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.US_ASCII)), pool);
+        ByteBuffer badChecksum = copy(valid);
+        badChecksum.put(6, (byte) (badChecksum.get(6) + 1));
+        assertCorrupt(badChecksum);
+        ByteBuffer badMagic = copy(valid);
+        badMagic.put(0, (byte) 0);
+        assertCorrupt(badMagic);
+
+        ByteBuffer oversizedBlock = ByteBuffer.allocate(7 + 4 + 4).order(ByteOrder.LITTLE_ENDIAN)
+                .put(valid.slice(0, 7)).putInt(BLOCK_SIZE + 1).putInt(0).flip();
+        assertCorrupt(oversizedBlock);
+    }
+
+    private ByteBuffer assertRoundTrips(byte[] data) {
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data), pool);
+        assertEquals(ByteBuffer.wrap(data), codec.decompress(compressed, pool, MAX_SIZE), data.length + " bytes");
+        return compressed;
+    }
+
+    private String decompressToString(String hexFrame) {
+        ByteBuffer output = codec.decompress(ByteBuffer.wrap(HexFormat.of().parseHex(hexFrame)), pool, MAX_SIZE);
+        return StandardCharsets.US_ASCII.decode(output).toString();
+    }
+
+    private void assertCorrupt(ByteBuffer frame) {
+        assertThrows(CorruptRecordException.class, () -> codec.decompress(frame, pool, MAX_SIZE));
+    }
+
+    /**
+     * A frame of the given block followed by the end mark, with the header this codec writes.
+     */
+    private ByteBuffer frame(byte[] block) {
+        ByteBuffer header = codec.compress(ByteBuffer.allocate(0), pool).slice(0, 7);
+        return ByteBuffer.allocate(7 + 4 + block.length + 4).order(ByteOrder.LITTLE_ENDIAN)
+                .put(header).putInt(block.length).put(block).putInt(0).flip();
+    }
+
+    private static byte[] block(int... bytes) {
+        byte[] block = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            block[i] = (byte) bytes[i];
+        }
+        return block;
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.allocate(buffer.remaining()).put(buffer.duplicate()).flip();
+    }
+}
@@ -0,0 +1,45 @@
+package compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XxHash32Test {
+
+    // Expected values computed with the reference xxHash implementation
+
+    @Test
+    void matchesReferenceForShortInputs() {
+        assertEquals(0x02cc5d05, hash(new byte[0], 0));
+        assertEquals(0x550d7456, hash(ascii("a"), 0));
+        assertEquals(0x32d153ff, hash(ascii("abc"), 0));
+        assertEquals(0xaa3da8ff, hash(ascii("abc"), 1));
+    }
+
+    @Test
+    void matchesReferenceForInputsWithStripes() {
+        assertEquals(0xe2293b2f, hash(ascii("Nobody inspects the spammish repetition"), 0));
+        byte[] sequence = new byte[101];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = (byte) (i * 7);
+        }
+        assertEquals(0xb9ea00dc, hash(sequence, 0));
+        assertEquals(0x5e350335, hash(sequence, 0x9747b28c));
+    }
+
+    @Test
+    void hashesOnlyTheGivenRange() {
+        byte[] padded = ascii("xxabcxx");
+        assertEquals(0x32d153ff, XxHash32.hash(padded, 2, 3, 0));
+    }
+
+    private static int hash(byte[] bytes, int seed) {
+        return XxHash32.hash(bytes, 0, bytes.length, seed);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,220 @@
+package core.group;
+
+import exceptions.ErrorCode;
+import log.CleanerConfig;
+import log.LogConfig;
+import log.LogManager;
+import log.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCoordinatorTest {
+
+    private static final String GROUP = "group";
+    private static final int SESSION_TIMEOUT_MS = 30_000;
+    private static final int SHORT_SESSION_TIMEOUT_MS = 50;
+    private static final List<GroupCoordinator.Protocol> PROTOCOLS =
+            List.of(new GroupCoordinator.Protocol("range", utf8("metadata")));
+    private static final TopicPartition PARTITION = new TopicPartition("topic", 0);
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+    private OffsetStore offsetStore;
+    private GroupCoordinator coordinator;
+
+    @BeforeEach
+    void open() throws IOException {
+        logManager = new LogManager(logDir, LogConfig.defaults(), 1, 60_000L, 60_000L,
+                CleanerConfig.builder().enableCleaner(false).build());
+        offsetStore = new OffsetStore(logManager, 2, 1024 * 1024, 4096);
+        coordinator = new GroupCoordinator(offsetStore, 10, 60_000);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        coordinator.close();
+        offsetStore.close();
+        logManager.close();
+    }
+
+    @Test
+    void rebalancesThroughJoinSyncAndHeartbeat() throws Exception {
+        GroupCoordinator.JoinResult leader = join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.NONE, leader.error());
+        assertEquals(1, leader.generationId());
+        assertEquals(leader.memberId(), leader.leaderId());
+        assertEquals("range", leader.protocolName());
+        assertEquals(1, leader.members().size());
+        assertEquals(ErrorCode.NONE, sync(leader, Map.of(leader.memberId(), utf8("p0,p1"))).get(5, TimeUnit.SECONDS).error());
+        assertEquals(ErrorCode.NONE, coordinator.heartbeat(GROUP, leader.memberId(), 1));
+
+        // A second member makes the group rebalance, and the leader learns of it from its next heartbeat
+        CompletableFuture<GroupCoordinator.JoinResult> followerJoin = join("", SESSION_TIMEOUT_MS);
+        assertFalse(followerJoin.isDone());
+        assertEquals(ErrorCode.REBALANCE_IN_PROGRESS, coordinator.heartbeat(GROUP, leader.memberId(), 1));
+        leader = join(leader.memberId(), SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        GroupCoordinator.JoinResult follower = followerJoin.get(5, TimeUnit.SECONDS);
+        assertEquals(2, leader.generationId());
+        assertEquals(2, follower.generationId());
+        assertEquals(leader.memberId(), follower.leaderId());
+        assertEquals(List.of(leader.memberId(), follower.memberId()),
+                leader.members().stream().map(GroupCoordinator.Member::memberId).toList());
+        assertEquals(utf8("metadata"), leader.members().get(1).metadata());
+        assertTrue(follower.members().isEmpty());
+
+        // The follower waits for the assignments the leader computes
+        CompletableFuture<GroupCoordinator.SyncResult> followerSync = sync(follower, Map.of());
+        assertFalse(followerSync.isDone());
+        assertEquals(ErrorCode.REBALANCE_IN_PROGRESS, coordinator.commitOffsets(GROUP, follower.memberId(), 2,
+                Map.of(PARTITION, offset(1))).get(5, TimeUnit.SECONDS));
+        GroupCoordinator.SyncResult leaderAssignment = sync(leader, Map.of(leader.memberId(), utf8("p0"),
+                follower.memberId(), utf8("p1"))).get(5, TimeUnit.SECONDS);
+        assertEquals(utf8("p0"), leaderAssignment.assignment());
+        GroupCoordinator.SyncResult followerAssignment = followerSync.get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.NONE, followerAssignment.error());
+        assertEquals("range", followerAssignment.protocolName());
+        assertEquals(utf8("p1"), followerAssignment.assignment());
+
+        assertEquals(ErrorCode.NONE, coordinator.heartbeat(GROUP, follower.memberId(), 2));
+        assertEquals(ErrorCode.ILLEGAL_GENERATION, coordinator.heartbeat(GROUP, follower.memberId(), 1));
+        assertEquals(ErrorCode.UNKNOWN_MEMBER_ID, coordinator.heartbeat(GROUP, "unknown", 2));
+        assertEquals(ErrorCode.ILLEGAL_GENERATION, coordinator.commitOffsets(GROUP, follower.memberId(), 1,
+                Map.of(PARTITION, offset(1))).get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.NONE, coordinator.commitOffsets(GROUP, follower.memberId(), 2,
+                Map.of(PARTITION, offset(42))).get(5, TimeUnit.SECONDS));
+        assertEquals(42, coordinator.fetchOffset(GROUP, PARTITION).offset());
+    }
+
+    @Test
+    void handsOutAMemberIdBeforeTheFirstJoin() throws Exception {
+        GroupCoordinator.JoinResult required = coordinator.joinGroup(GROUP, "", "client", SESSION_TIMEOUT_MS,
+                SESSION_TIMEOUT_MS, "consumer", PROTOCOLS, true).get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.MEMBER_ID_REQUIRED, required.error());
+        assertTrue(required.memberId().startsWith("client-"), required.memberId());
+
+        GroupCoordinator.JoinResult joined = join(required.memberId(), SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.NONE, joined.error());
+        assertEquals(required.memberId(), joined.memberId());
+        assertEquals(ErrorCode.UNKNOWN_MEMBER_ID, join("client-unknown", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS).error());
+    }
+
+    @Test
+    void rebalancesWithoutAMemberThatLeaves() throws Exception {
+        GroupCoordinator.JoinResult leader = join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        CompletableFuture<GroupCoordinator.JoinResult> followerJoin = join("", SESSION_TIMEOUT_MS);
+        leader = join(leader.memberId(), SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        GroupCoordinator.JoinResult follower = followerJoin.get(5, TimeUnit.SECONDS);
+        sync(follower, Map.of());
+        sync(leader, Map.of()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ErrorCode.NONE, coordinator.leaveGroup(GROUP, leader.memberId()));
+        assertEquals(ErrorCode.UNKNOWN_MEMBER_ID, coordinator.leaveGroup(GROUP, leader.memberId()));
+        assertEquals(ErrorCode.REBALANCE_IN_PROGRESS, coordinator.heartbeat(GROUP, follower.memberId(), 2));
+        GroupCoordinator.JoinResult rejoined = join(follower.memberId(), SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        assertEquals(3, rejoined.generationId());
+        assertEquals(follower.memberId(), rejoined.leaderId());
+        assertEquals(1, rejoined.members().size());
+    }
+
+    @Test
+    void expiresAMemberThatStopsHeartbeating() throws Exception {
+        GroupCoordinator.JoinResult joined = join("", SHORT_SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        sync(joined, Map.of()).get(5, TimeUnit.SECONDS);
+        assertEquals(1, coordinator.numGroups());
+
+        awaitCondition(() -> coordinator.numGroups() == 0);
+        assertEquals(ErrorCode.UNKNOWN_MEMBER_ID, coordinator.heartbeat(GROUP, joined.memberId(), joined.generationId()));
+    }
+
+    @Test
+    void removesAGroupLeftWithoutMembersOrOffsets() throws Exception {
+        GroupCoordinator.JoinResult joined = join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        assertEquals(1, coordinator.numGroups());
+        assertEquals(ErrorCode.NONE, coordinator.leaveGroup(GROUP, joined.memberId()));
+        assertEquals(0, coordinator.numGroups());
+
+        // A group that comes back starts over
+        GroupCoordinator.JoinResult again = join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        assertEquals(1, again.generationId());
+    }
+
+    @Test
+    void keepsAnEmptyGroupWithCommittedOffsets() throws Exception {
+        GroupCoordinator.JoinResult joined = join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS);
+        sync(joined, Map.of()).get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.NONE, coordinator.commitOffsets(GROUP, joined.memberId(), joined.generationId(),
+                Map.of(PARTITION, offset(7))).get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.NONE, coordinator.leaveGroup(GROUP, joined.memberId()));
+
+        assertEquals(1, coordinator.numGroups());
+        // Without members, a client that assigns partitions itself may commit
+        assertEquals(ErrorCode.NONE, coordinator.commitOffsets(GROUP, "", -1, Map.of(PARTITION, offset(8))).get(5, TimeUnit.SECONDS));
+        assertEquals(8, coordinator.fetchOffset(GROUP, PARTITION).offset());
+        assertEquals(3, join("", SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS).generationId());
+    }
+
+    @Test
+    void removesAGroupWhoseOnlyJoinsAreTurnedAwayOrNeverCompleted() throws Exception {
+        assertEquals(ErrorCode.INCONSISTENT_GROUP_PROTOCOL, coordinator.joinGroup(GROUP, "", "client", SESSION_TIMEOUT_MS,
+                SESSION_TIMEOUT_MS, "consumer", List.of(), false).get(5, TimeUnit.SECONDS).error());
+        assertEquals(0, coordinator.numGroups());
+
+        GroupCoordinator.JoinResult required = coordinator.joinGroup(GROUP, "", "client", SHORT_SESSION_TIMEOUT_MS,
+                SESSION_TIMEOUT_MS, "consumer", PROTOCOLS, true).get(5, TimeUnit.SECONDS);
+        assertEquals(ErrorCode.MEMBER_ID_REQUIRED, required.error());
+        assertEquals(1, coordinator.numGroups());
+        // The member id handed out lapses like a session
+        awaitCondition(() -> coordinator.numGroups() == 0);
+        assertEquals(ErrorCode.UNKNOWN_MEMBER_ID, join(required.memberId(), SESSION_TIMEOUT_MS).get(5, TimeUnit.SECONDS).error());
+    }
+
+    @Test
+    void commitsWithoutAGroupForClientsThatAssignPartitionsThemselves() throws Exception {
+        assertEquals(ErrorCode.NONE, coordinator.commitOffsets(GROUP, "", -1, Map.of(PARTITION, offset(3))).get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.ILLEGAL_GENERATION, coordinator.commitOffsets(GROUP, "", 1, Map.of(PARTITION, offset(4))).get(5, TimeUnit.SECONDS));
+        assertEquals(Map.of(PARTITION, offset(3)), coordinator.fetchAllOffsets(GROUP));
+        assertEquals(0, coordinator.numGroups());
+    }
+
+    private CompletableFuture<GroupCoordinator.JoinResult> join(String memberId, int sessionTimeoutMs) {
+        return coordinator.joinGroup(GROUP, memberId, "client", sessionTimeoutMs, SESSION_TIMEOUT_MS, "consumer", PROTOCOLS, false);
+    }
+
+    private CompletableFuture<GroupCoordinator.SyncResult> sync(GroupCoordinator.JoinResult joined, Map<String, ByteBuffer> assignments) {
+        return coordinator.syncGroup(GROUP, joined.generationId(), joined.memberId(), assignments);
+    }
+
+    private static OffsetAndMetadata offset(long offset) {
+        return new OffsetAndMetadata(offset, OffsetAndMetadata.NO_LEADER_EPOCH, OffsetAndMetadata.NO_METADATA, 1000L);
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadlineNanos, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
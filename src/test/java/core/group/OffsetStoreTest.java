@@ -0,0 +1,133 @@
+package core.group;
+
+import log.CleanerConfig;
+import log.Log;
+import log.LogConfig;
+import log.LogManager;
+import log.RecordBatchBuilder;
+import log.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffsetStoreTest {
+
+    private static final int PARTITIONS = 3;
+    private static final TopicPartition FIRST = new TopicPartition("topic", 0);
+    private static final TopicPartition SECOND = new TopicPartition("topic", 1);
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+    private OffsetStore offsetStore;
+
+    @BeforeEach
+    void open() throws IOException {
+        // A load buffer smaller than one batch makes the replay grow it
+        reopen(64);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        offsetStore.close();
+        logManager.close();
+    }
+
+    @Test
+    void servesCommittedOffsetsOnceStored() throws Exception {
+        assertFalse(offsetStore.hasOffsets("group"));
+        offsetStore.commit("group", Map.of(FIRST, offset(5, "a"), SECOND, offset(6, "b"))).get(5, TimeUnit.SECONDS);
+        offsetStore.commit("group", Map.of(FIRST, offset(9, "c"))).get(5, TimeUnit.SECONDS);
+
+        assertTrue(offsetStore.hasOffsets("group"));
+        assertEquals(offset(9, "c"), offsetStore.fetch("group", FIRST));
+        assertEquals(Map.of(FIRST, offset(9, "c"), SECOND, offset(6, "b")), offsetStore.fetchAll("group"));
+        assertNull(offsetStore.fetch("other-group", FIRST));
+        assertEquals(Map.of(), offsetStore.fetchAll("other-group"));
+    }
+
+    @Test
+    void replaysTheOffsetsTopicOnRestart() throws Exception {
+        Map<String, Map<TopicPartition, OffsetAndMetadata>> expected = new HashMap<>();
+        CompletableFuture<?>[] commits = new CompletableFuture<?>[40];
+        for (int i = 0; i < commits.length; i++) {
+            String groupId = "group-" + i % 8;
+            TopicPartition topicPartition = i % 3 == 0 ? FIRST : SECOND;
+            OffsetAndMetadata offset = offset(i, "metadata-" + i);
+            expected.computeIfAbsent(groupId, id -> new HashMap<>()).put(topicPartition, offset);
+            commits[i] = offsetStore.commit(groupId, Map.of(topicPartition, offset));
+        }
+        CompletableFuture.allOf(commits).get(5, TimeUnit.SECONDS);
+
+        reopen(64);
+
+        expected.forEach((groupId, offsets) -> assertEquals(offsets, offsetStore.fetchAll(groupId), groupId));
+    }
+
+    @Test
+    void replaysTombstonesAndOlderValueVersions() throws Exception {
+        offsetStore.commit("group", Map.of(FIRST, offset(5, "a"), SECOND, offset(6, "b"))).get(5, TimeUnit.SECONDS);
+        offsetStore.commit("deleted-group", Map.of(FIRST, offset(1, "c"))).get(5, TimeUnit.SECONDS);
+        offsetStore.close();
+        Log groupLog = offsetsLog("group");
+        groupLog.append(new RecordBatchBuilder(256)
+                .append(2000L, offsetKey((short) 0, "group", FIRST), null)
+                // Version 1 carries an expiry timestamp after the commit timestamp
+                .append(2000L, offsetKey((short) 1, "group", SECOND), ByteBuffer.allocate(64)
+                        .putShort((short) 1).putLong(11L).put(string("v1")).putLong(1500L).putLong(9999L).flip())
+                // Group metadata records share the topic and are skipped
+                .append(2000L, ByteBuffer.allocate(64).putShort((short) 2).put(string("group")).flip(), ByteBuffer.allocate(4))
+                .build());
+        offsetsLog("deleted-group").append(new RecordBatchBuilder(64)
+                .append(2000L, offsetKey((short) 1, "deleted-group", FIRST), null)
+                .build());
+        logManager.close();
+
+        reopen(4096);
+
+        assertNull(offsetStore.fetch("group", FIRST));
+        assertEquals(new OffsetAndMetadata(11L, OffsetAndMetadata.NO_LEADER_EPOCH, "v1", 1500L), offsetStore.fetch("group", SECOND));
+        assertFalse(offsetStore.hasOffsets("deleted-group"));
+    }
+
+    private void reopen(int loadBufferSize) throws IOException {
+        logManager = new LogManager(logDir, LogConfig.defaults(), 1, 60_000L, 60_000L,
+                CleanerConfig.builder().enableCleaner(false).build());
+        offsetStore = new OffsetStore(logManager, PARTITIONS, 1024 * 1024, loadBufferSize);
+    }
+
+    private Log offsetsLog(String groupId) throws IOException {
+        return logManager.getOrCreateLog(new TopicPartition(OffsetStore.OFFSETS_TOPIC, offsetStore.partitionFor(groupId)));
+    }
+
+    private static OffsetAndMetadata offset(long offset, String metadata) {
+        return new OffsetAndMetadata(offset, 3, metadata, 1000L + offset);
+    }
+
+    private static ByteBuffer offsetKey(short version, String groupId, TopicPartition topicPartition) {
+        return ByteBuffer.allocate(64).putShort(version).put(string(groupId)).put(string(topicPartition.topic()))
+                .putInt(topicPartition.partition()).flip();
+    }
+
+    private static ByteBuffer string(String value) {
+        ByteBuffer buffer = ByteBuffer.allocate(Writer.sizeOfString(value));
+        Writer.writeString(buffer, value);
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,129 @@
+package core.handler;
+
+import codec.CompiledSchema;
+import codec.CompiledSchemaSet;
+import codec.StructLayout;
+import core.metadata.BrokerNode;
+import core.metadata.MetadataCache;
+import core.metadata.PartitionState;
+import log.LogManager;
+import log.RecordBatchBuilder;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import schema.FetchApiSchema;
+import schema.MetadataApiSchema;
+import schema.ProduceApiSchema;
+import schema.SchemaRegistry;
+import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Builds request frames the way a client library would send them, and decodes the responses of the handlers
+ * under test.
+ */
+public final class HandlerTestUtils {
+
+    public static final int BROKER_ID = 0;
+    private static final String CLIENT_ID = "test-client";
+
+    private HandlerTestUtils() {
+    }
+
+    /**
+     * Registers the schemas of the apis the handler tests call and freezes the handler factory. The registry is
+     * frozen once for every test of the run, so every test that needs it goes through here.
+     */
+    public static synchronized void freezeSchemas() {
+        if (!SchemaRegistry.isFrozen()) {
+            SchemaRegistry.register(new ProduceApiSchema());
+            SchemaRegistry.register(new FetchApiSchema());
+            SchemaRegistry.register(new MetadataApiSchema());
+        }
+        RequestHandlerFactory.freeze();
+    }
+
+    /**
+     * A metadata cache that learns about every log the log manager creates, as the broker wires it up.
+     */
+    public static MetadataCache metadataCache(LogManager logManager) {
+        MetadataCache metadataCache = new MetadataCache(BROKER_ID);
+        metadataCache.updateBroker(new BrokerNode(BROKER_ID, "localhost", 9092, null));
+        logManager.addLogCreationListener(topicPartition ->
+                metadataCache.updatePartitions(List.of(PartitionState.local(topicPartition, BROKER_ID))));
+        return metadataCache;
+    }
+
+    /**
+     * @return An empty request body of the given api version, to fill in with {@link #set}.
+     */
+    public static Struct requestBody(short apiKey, short version) {
+        return SchemaRegistry.codecsForVersion(apiKey, version).requestBody().newStruct();
+    }
+
+    /**
+     * @return A struct of {@code layout} with the given field names and values.
+     */
+    public static Struct struct(StructLayout layout, Object... namesAndValues) {
+        return set(new Struct(layout), namesAndValues);
+    }
+
+    /**
+     * Sets fields by name, unboxing numeric values into their slots.
+     *
+     * @return The struct.
+     */
+    public static Struct set(Struct struct, Object... namesAndValues) {
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            struct.setValue(struct.layout().indexOf((String) namesAndValues[i]), namesAndValues[i + 1]);
+        }
+        return struct;
+    }
+
+    /**
+     * Encodes a request frame around {@code body} and parses its common headers, as the network layer does.
+     */
+    public static RequestInfo request(short apiKey, short version, int correlationId, Struct body) {
+        CompiledSchemaSet codecs = SchemaRegistry.codecsForVersion(apiKey, version);
+        byte[] clientId = CLIENT_ID.getBytes(StandardCharsets.UTF_8);
+        CompiledSchema bodySchema = codecs.requestBody();
+        ByteBuffer frame = ByteBuffer.allocate(4 + 10 + clientId.length + 1 + bodySchema.sizeOf(body));
+        frame.putInt(0)
+                .putShort(apiKey)
+                .putShort(version)
+                .putInt(correlationId)
+                .putShort((short) clientId.length)
+                .put(clientId);
+        if (codecs.requestHeader().isFlexible()) {
+            // No header tags
+            frame.put((byte) 0);
+        }
+        bodySchema.write(frame, body);
+        frame.putInt(0, frame.position() - 4);
+        return Parser.parseCommons(frame.flip());
+    }
+
+    /**
+     * Encodes the body of a response as it would go on the wire and reads it back, so file-backed records come
+     * back as the bytes the client would receive.
+     */
+    public static Struct decodeBody(ResponseMessage response) {
+        CompiledSchema bodySchema = response.codecs().responseBody();
+        if (response.encodedBody() != null) {
+            return bodySchema.read(response.encodedBody().duplicate());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bodySchema.sizeOf(response.responseBody()));
+        bodySchema.write(buffer, response.responseBody());
+        return bodySchema.read(buffer.flip());
+    }
+
+    /**
+     * @return A batch of one record with the given value and no key.
+     */
+    public static ByteBuffer batch(String value) {
+        return new RecordBatchBuilder(64).append(1000L, null, ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8))).build();
+    }
+}
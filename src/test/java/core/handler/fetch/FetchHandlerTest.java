@@ -0,0 +1,163 @@
+package core.handler.fetch;
+
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import exceptions.ErrorCode;
+import log.CleanerConfig;
+import log.Log;
+import log.LogConfig;
+import log.LogManager;
+import log.RecordBatch;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import schema.FetchApiSchema;
+import util.Struct;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static core.handler.HandlerTestUtils.batch;
+import static core.handler.HandlerTestUtils.decodeBody;
+import static core.handler.HandlerTestUtils.freezeSchemas;
+import static core.handler.HandlerTestUtils.request;
+import static core.handler.HandlerTestUtils.requestBody;
+import static core.handler.HandlerTestUtils.set;
+import static core.handler.HandlerTestUtils.struct;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FetchHandlerTest {
+
+    private static final FetchApiSchema SCHEMA = new FetchApiSchema();
+    private static final short VERSION = 11;
+    private static final TopicPartition FIRST = new TopicPartition("orders", 0);
+    private static final TopicPartition SECOND = new TopicPartition("orders", 1);
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+    private DelayedOperationPurgatory<DelayedOperation> fetchPurgatory;
+    private FetchHandler handler;
+
+    @BeforeAll
+    static void registerSchemas() {
+        freezeSchemas();
+    }
+
+    @BeforeEach
+    void startLogs() throws IOException {
+        logManager = new LogManager(logDir, LogConfig.defaults(), 1, 60_000L, 60_000L, CleanerConfig.builder().enableCleaner(false).build());
+        fetchPurgatory = new DelayedOperationPurgatory<>("fetch");
+        handler = new FetchHandler(logManager, fetchPurgatory);
+    }
+
+    @AfterEach
+    void stopLogs() throws IOException {
+        fetchPurgatory.close();
+        logManager.close();
+    }
+
+    @Test
+    void parksALongPollUntilAnAppendBringsMinBytes() throws Exception {
+        Log log = logManager.getOrCreateLog(FIRST);
+
+        CompletableFuture<ResponseMessage> response = handler.handleRequestAsync(fetch(30_000, Integer.MAX_VALUE, FIRST));
+        assertFalse(response.isDone());
+        assertEquals(1, fetchPurgatory.delayed());
+
+        ByteBuffer appended = batch("value");
+        int batchSize = appended.remaining();
+        log.append(appended);
+        // What the Produce handler does after every append
+        fetchPurgatory.checkAndComplete(FIRST);
+
+        Struct partition = partitions(response.get(10, TimeUnit.SECONDS))[0];
+        assertEquals(ErrorCode.NONE.getCode(), partition.getShort("error_code"));
+        assertEquals(1L, partition.getLong("high_watermark"));
+        assertEquals(batchSize, ((ByteBuffer) partition.get("records", Object.class)).remaining());
+    }
+
+    @Test
+    void answersAtOnceIfAPartitionIsUnknown() {
+        CompletableFuture<ResponseMessage> response = handler.handleRequestAsync(fetch(30_000, Integer.MAX_VALUE, FIRST));
+
+        assertTrue(response.isDone());
+        Struct partition = partitions(response.join())[0];
+        assertEquals(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode(), partition.getShort("error_code"));
+        assertEquals(-1L, partition.getLong("high_watermark"));
+    }
+
+    @Test
+    void returnsTheFirstBatchEvenIfItExceedsMaxBytes() throws IOException {
+        for (TopicPartition topicPartition : new TopicPartition[]{FIRST, SECOND}) {
+            Log log = logManager.getOrCreateLog(topicPartition);
+            for (int i = 0; i < 3; i++) {
+                log.append(batch("value-" + i));
+            }
+        }
+
+        Struct[] partitions = partitions(handler.handleRequest(fetch(0, 1, FIRST, SECOND)));
+
+        // Only the first partition of the response may exceed max_bytes, and by one batch at most
+        ByteBuffer first = (ByteBuffer) partitions[0].get("records", Object.class);
+        assertEquals(RecordBatch.sizeInBytes(first, 0), first.remaining());
+        assertEquals(0L, RecordBatch.baseOffset(first, 0));
+        assertEquals(0, ((ByteBuffer) partitions[1].get("records", Object.class)).remaining());
+        assertEquals(3L, partitions[1].getLong("high_watermark"));
+    }
+
+    @Test
+    void readsNoMoreThanMaxBytesOnceTheFirstBatchIsIn() throws IOException {
+        Log log = logManager.getOrCreateLog(FIRST);
+        ByteBuffer first = batch("value-0");
+        int batchSize = first.remaining();
+        log.append(first);
+        log.append(batch("value-1"));
+        log.append(batch("value-2"));
+
+        Struct partition = partitions(handler.handleRequest(fetch(0, 2 * batchSize, FIRST)))[0];
+
+        assertEquals(2 * batchSize, ((ByteBuffer) partition.get("records", Object.class)).remaining());
+        assertEquals(3L, partition.getLong("high_watermark"));
+    }
+
+    private static RequestInfo fetch(int maxWaitMs, int maxBytes, TopicPartition... topicPartitions) {
+        Object[] partitions = Arrays.stream(topicPartitions)
+                .map(topicPartition -> struct(SCHEMA.fetchPartitionLayout(),
+                        "partition", topicPartition.partition(),
+                        "fetch_offset", 0L,
+                        "log_start_offset", -1L,
+                        "partition_max_bytes", Integer.MAX_VALUE))
+                .toArray();
+        Struct topic = struct(SCHEMA.fetchTopicLayout(), "topic", topicPartitions[0].topic(), "partitions", partitions);
+        Struct body = set(requestBody(SCHEMA.apiKey(), VERSION),
+                "replica_id", -1,
+                "max_wait_ms", maxWaitMs,
+                "min_bytes", 1,
+                "max_bytes", maxBytes,
+                "isolation_level", (byte) 0,
+                "session_id", 0,
+                "session_epoch", -1,
+                "topics", new Object[]{topic},
+                "forgotten_topics_data", new Object[0],
+                "rack_id", "");
+        return request(SCHEMA.apiKey(), VERSION, 1, body);
+    }
+
+    private static Struct[] partitions(ResponseMessage response) {
+        Struct topic = (Struct) decodeBody(response).getArray("responses")[0];
+        return Arrays.stream(topic.getArray("partitions")).map(Struct.class::cast).toArray(Struct[]::new);
+    }
+}
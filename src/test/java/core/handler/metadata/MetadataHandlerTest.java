@@ -0,0 +1,132 @@
+package core.handler.metadata;
+
+import core.metadata.AutoTopicCreator;
+import core.metadata.MetadataCache;
+import exceptions.ErrorCode;
+import log.CleanerConfig;
+import log.LogConfig;
+import log.LogManager;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import schema.MetadataApiSchema;
+import util.Struct;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static core.handler.HandlerTestUtils.decodeBody;
+import static core.handler.HandlerTestUtils.freezeSchemas;
+import static core.handler.HandlerTestUtils.metadataCache;
+import static core.handler.HandlerTestUtils.request;
+import static core.handler.HandlerTestUtils.requestBody;
+import static core.handler.HandlerTestUtils.set;
+import static core.handler.HandlerTestUtils.struct;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataHandlerTest {
+
+    private static final MetadataApiSchema SCHEMA = new MetadataApiSchema();
+    private static final short VERSION = 8;
+    private static final int NUM_PARTITIONS = 2;
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+    private MetadataCache metadataCache;
+    private MetadataHandler handler;
+
+    @BeforeAll
+    static void registerSchemas() {
+        freezeSchemas();
+    }
+
+    @BeforeEach
+    void startLogs() throws IOException {
+        logManager = new LogManager(logDir, LogConfig.defaults(), 1, 60_000L, 60_000L, CleanerConfig.builder().enableCleaner(false).build());
+        metadataCache = metadataCache(logManager);
+        handler = new MetadataHandler(metadataCache, new AutoTopicCreator(logManager, NUM_PARTITIONS, true));
+    }
+
+    @AfterEach
+    void stopLogs() throws IOException {
+        logManager.close();
+    }
+
+    @Test
+    void reusesTheEncodedResponseUntilTheMetadataChanges() {
+        logManager.getOrCreateLog(new TopicPartition("orders", 0));
+        ResponseMessage first = handler.handleRequest(metadata(null, false));
+        ResponseMessage second = handler.handleRequest(metadata(null, false));
+        assertSame(first.encodedBody(), second.encodedBody());
+        assertEquals(List.of("orders"), topicNames(first));
+
+        logManager.getOrCreateLog(new TopicPartition("payments", 0));
+
+        ResponseMessage third = handler.handleRequest(metadata(null, false));
+        assertNotSame(first.encodedBody(), third.encodedBody());
+        assertEquals(List.of("orders", "payments"), topicNames(third));
+    }
+
+    @Test
+    void createsRequestedTopicsIfTheClientAllowsIt() {
+        Struct topic = topics(handler.handleRequest(metadata(List.of("orders"), true)))[0];
+
+        assertEquals(ErrorCode.NONE.getCode(), topic.getShort("error_code"));
+        assertEquals(NUM_PARTITIONS, topic.getArray("partitions").length);
+        assertTrue(logManager.getLog(new TopicPartition("orders", NUM_PARTITIONS - 1)).isPresent());
+    }
+
+    @Test
+    void leavesUnknownTopicsAloneIfTheClientDisallowsAutoCreation() {
+        Struct topic = topics(handler.handleRequest(metadata(List.of("orders"), false)))[0];
+
+        assertEquals(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode(), topic.getShort("error_code"));
+        assertEquals(0, topic.getArray("partitions").length);
+        assertFalse(metadataCache.snapshot().hasTopic("orders"));
+    }
+
+    @Test
+    void leavesUnknownTopicsAloneIfTheBrokerDisallowsAutoCreation() {
+        MetadataHandler handler = new MetadataHandler(metadataCache, new AutoTopicCreator(logManager, NUM_PARTITIONS, false));
+
+        Struct topic = topics(handler.handleRequest(metadata(List.of("orders"), true)))[0];
+
+        assertEquals(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode(), topic.getShort("error_code"));
+        assertTrue(logManager.getLog(new TopicPartition("orders", 0)).isEmpty());
+    }
+
+    /**
+     * @param topics The topics to ask for, or {@code null} for all of them.
+     */
+    private static RequestInfo metadata(List<String> topics, boolean allowAutoTopicCreation) {
+        Object[] requested = topics == null ? null
+                : topics.stream().map(topic -> struct(SCHEMA.requestTopicLayout(), "name", topic)).toArray();
+        Struct body = set(requestBody(SCHEMA.apiKey(), VERSION),
+                "topics", requested,
+                "allow_auto_topic_creation", allowAutoTopicCreation,
+                "include_cluster_authorized_operations", false,
+                "include_topic_authorized_operations", false);
+        return request(SCHEMA.apiKey(), VERSION, 1, body);
+    }
+
+    private static Struct[] topics(ResponseMessage response) {
+        return Arrays.stream(decodeBody(response).getArray("topics")).map(Struct.class::cast).toArray(Struct[]::new);
+    }
+
+    private static List<String> topicNames(ResponseMessage response) {
+        return Arrays.stream(topics(response)).map(topic -> topic.getString("name")).toList();
+    }
+}
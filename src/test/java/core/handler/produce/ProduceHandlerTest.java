@@ -0,0 +1,158 @@
+package core.handler.produce;
+
+import core.metadata.AutoTopicCreator;
+import core.metadata.MetadataCache;
+import core.purgatory.DelayedOperation;
+import core.purgatory.DelayedOperationPurgatory;
+import exceptions.ErrorCode;
+import log.CleanerConfig;
+import log.Log;
+import log.LogConfig;
+import log.LogManager;
+import log.TopicPartition;
+import message.request.RequestInfo;
+import message.response.ResponseMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import schema.ProduceApiSchema;
+import util.Struct;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static core.handler.HandlerTestUtils.batch;
+import static core.handler.HandlerTestUtils.decodeBody;
+import static core.handler.HandlerTestUtils.freezeSchemas;
+import static core.handler.HandlerTestUtils.metadataCache;
+import static core.handler.HandlerTestUtils.request;
+import static core.handler.HandlerTestUtils.requestBody;
+import static core.handler.HandlerTestUtils.set;
+import static core.handler.HandlerTestUtils.struct;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProduceHandlerTest {
+
+    private static final ProduceApiSchema SCHEMA = new ProduceApiSchema();
+    private static final short VERSION = 8;
+    private static final int NUM_PARTITIONS = 2;
+    // Long enough that only the byte threshold or a reconfiguration makes the flusher sync
+    private static final LogConfig CONFIG = LogConfig.defaults().toBuilder().flushIntervalMs(60_000L).build();
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+    private MetadataCache metadataCache;
+    private DelayedOperationPurgatory<DelayedOperation> producePurgatory;
+    private DelayedOperationPurgatory<DelayedOperation> fetchPurgatory;
+
+    @BeforeAll
+    static void registerSchemas() {
+        freezeSchemas();
+    }
+
+    @BeforeEach
+    void startLogs() throws IOException {
+        logManager = new LogManager(logDir, CONFIG, 1, 60_000L, 60_000L, CleanerConfig.builder().enableCleaner(false).build());
+        metadataCache = metadataCache(logManager);
+        producePurgatory = new DelayedOperationPurgatory<>("produce");
+        fetchPurgatory = new DelayedOperationPurgatory<>("fetch");
+    }
+
+    @AfterEach
+    void stopLogs() throws IOException {
+        producePurgatory.close();
+        fetchPurgatory.close();
+        logManager.close();
+    }
+
+    @Test
+    void acksAllRespondsOnceAGroupCommitSyncedTheBatch() throws Exception {
+        CompletableFuture<ResponseMessage> response = handler(true).handleRequestAsync(produce((short) -1, "orders", 0));
+
+        Log log = logManager.getLog(new TopicPartition("orders", 0)).orElseThrow();
+        assertEquals(1, log.logEndOffset());
+        assertFalse(response.isDone());
+        assertEquals(0, log.recoveryPoint());
+
+        logManager.reconfigure(CONFIG.toBuilder().flushIntervalMs(1L).build());
+        Struct partition = partitionResponse(response.get(10, TimeUnit.SECONDS));
+        assertEquals(ErrorCode.NONE.getCode(), partition.getShort("error_code"));
+        assertEquals(0L, partition.getLong("base_offset"));
+        assertEquals(1, log.recoveryPoint());
+    }
+
+    @Test
+    void acksNoneAppendsWithoutAResponse() {
+        CompletableFuture<ResponseMessage> response = handler(true).handleRequestAsync(produce((short) 0, "orders", 0));
+
+        assertTrue(response.isDone());
+        assertNull(response.join());
+        assertEquals(1, logManager.getLog(new TopicPartition("orders", 0)).orElseThrow().logEndOffset());
+    }
+
+    @Test
+    void acksLeaderAnswersWithTheOffsetsOfTheAppend() {
+        ProduceHandler handler = handler(true);
+        handler.handleRequest(produce((short) 1, "orders", 1));
+
+        Struct partition = partitionResponse(handler.handleRequest(produce((short) 1, "orders", 1)));
+        assertEquals(ErrorCode.NONE.getCode(), partition.getShort("error_code"));
+        assertEquals(1L, partition.getLong("base_offset"));
+        assertEquals(0L, partition.getLong("log_start_offset"));
+    }
+
+    @Test
+    void createsUnknownTopicsWithTheConfiguredPartitions() {
+        handler(true).handleRequest(produce((short) 1, "orders", 0));
+
+        assertEquals(NUM_PARTITIONS, metadataCache.snapshot().partitions("orders").size());
+        assertTrue(logManager.getLog(new TopicPartition("orders", NUM_PARTITIONS - 1)).isPresent());
+    }
+
+    @Test
+    void rejectsPartitionsBeyondThoseOfTheTopic() {
+        ProduceHandler handler = handler(true);
+        handler.handleRequest(produce((short) 1, "orders", 0));
+
+        Struct partition = partitionResponse(handler.handleRequest(produce((short) 1, "orders", NUM_PARTITIONS)));
+        assertEquals(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode(), partition.getShort("error_code"));
+        assertEquals(-1L, partition.getLong("base_offset"));
+        assertTrue(logManager.getLog(new TopicPartition("orders", NUM_PARTITIONS)).isEmpty());
+    }
+
+    @Test
+    void doesNotCreateTopicsIfAutoCreationIsDisabled() {
+        Struct partition = partitionResponse(handler(false).handleRequest(produce((short) 1, "orders", 0)));
+
+        assertEquals(ErrorCode.UNKNOWN_TOPIC_OR_PARTITION.getCode(), partition.getShort("error_code"));
+        assertTrue(logManager.getLog(new TopicPartition("orders", 0)).isEmpty());
+        assertFalse(metadataCache.snapshot().hasTopic("orders"));
+    }
+
+    private ProduceHandler handler(boolean autoCreateTopics) {
+        AutoTopicCreator topicCreator = new AutoTopicCreator(logManager, NUM_PARTITIONS, autoCreateTopics);
+        return new ProduceHandler(logManager, metadataCache, topicCreator, producePurgatory, fetchPurgatory, 1024 * 1024);
+    }
+
+    private static RequestInfo produce(short acks, String topic, int partition) {
+        Struct partitionData = struct(SCHEMA.partitionDataLayout(), "index", partition, "records", batch("value"));
+        Struct topicData = struct(SCHEMA.topicDataLayout(), "name", topic, "partition_data", new Object[]{partitionData});
+        Struct body = set(requestBody(SCHEMA.apiKey(), VERSION),
+                "transactional_id", null, "acks", acks, "timeout_ms", 30_000, "topic_data", new Object[]{topicData});
+        return request(SCHEMA.apiKey(), VERSION, 1, body);
+    }
+
+    private static Struct partitionResponse(ResponseMessage response) {
+        Struct topic = (Struct) decodeBody(response).getArray("responses")[0];
+        return (Struct) topic.getArray("partition_responses")[0];
+    }
+}
@@ -0,0 +1,124 @@
+package core.purgatory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DelayedOperationPurgatoryTest {
+
+    private static final long LONG_DELAY_MS = 60_000L;
+
+    private final DelayedOperationPurgatory<TestOperation> purgatory = new DelayedOperationPurgatory<>("test");
+
+    @AfterEach
+    void close() {
+        purgatory.close();
+    }
+
+    @Test
+    void completesRightAwayWithoutWatching() {
+        TestOperation operation = new TestOperation(LONG_DELAY_MS);
+        operation.ready = true;
+        assertTrue(purgatory.tryCompleteElseWatch(operation, List.of("key")));
+        assertEquals(1, operation.completions.get());
+        assertEquals(0, purgatory.delayed());
+        assertEquals(0, purgatory.checkAndComplete("key"));
+    }
+
+    @Test
+    void completesWatchedOperationsWhenTheirKeyIsChecked() {
+        TestOperation operation = new TestOperation(LONG_DELAY_MS);
+        assertFalse(purgatory.tryCompleteElseWatch(operation, List.of("a", "b")));
+        assertEquals(1, purgatory.delayed());
+        assertEquals(0, purgatory.checkAndComplete("a"));
+
+        operation.ready = true;
+        assertEquals(1, purgatory.checkAndComplete("b"));
+        assertEquals(0, purgatory.checkAndComplete("a"));
+        assertEquals(1, operation.completions.get());
+        assertEquals(0, operation.expirations.get());
+        assertEquals(0, purgatory.delayed());
+    }
+
+    @Test
+    void expiresOperationsThatNeverComplete() throws InterruptedException {
+        TestOperation operation = new TestOperation(20L);
+        assertFalse(purgatory.tryCompleteElseWatch(operation, List.of("key")));
+        assertTrue(operation.expired.await(5, TimeUnit.SECONDS));
+        assertEquals(1, operation.completions.get());
+        assertEquals(1, operation.expirations.get());
+
+        operation.ready = true;
+        assertEquals(0, purgatory.checkAndComplete("key"));
+        assertEquals(1, operation.completions.get());
+    }
+
+    @Test
+    void checkAndCompleteRacingWithTryCompleteElseWatchLosesNoWakeup() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2000; i++) {
+                TestOperation operation = new TestOperation(LONG_DELAY_MS);
+                String key = "key-" + i;
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> watch = executor.submit(() -> {
+                    start.await();
+                    return purgatory.tryCompleteElseWatch(operation, List.of(key));
+                });
+                Future<?> trigger = executor.submit(() -> {
+                    start.await();
+                    operation.ready = true;
+                    return purgatory.checkAndComplete(key);
+                });
+                watch.get();
+                trigger.get();
+
+                // Whichever side saw the operation ready last must have completed it, exactly once
+                assertTrue(operation.isCompleted(), "iteration " + i);
+                assertEquals(1, operation.completions.get(), "iteration " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, purgatory.delayed());
+    }
+
+    private static final class TestOperation extends DelayedOperation {
+        final AtomicInteger completions = new AtomicInteger();
+        final AtomicInteger expirations = new AtomicInteger();
+        final CountDownLatch expired = new CountDownLatch(1);
+        volatile boolean ready;
+
+        TestOperation(long delayMs) {
+            super(delayMs);
+        }
+
+        @Override
+        public boolean tryComplete() {
+            return ready && forceComplete();
+        }
+
+        @Override
+        protected void onComplete() {
+            completions.incrementAndGet();
+        }
+
+        @Override
+        protected void onExpiration() {
+            expirations.incrementAndGet();
+            expired.countDown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class AbstractIndexTest {
+
+    private static final int MAX_INDEX_SIZE = 1024;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void cleanlyClosedIndexKeepsItsEntries() throws IOException {
+        File file = new File(dir, "00000000000000000100.index");
+        OffsetIndex index = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        index.append(110, 4096);
+        index.append(120, 8192);
+        index.close();
+        assertEquals(16, file.length());
+
+        OffsetIndex reopened = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        assertEquals(2, reopened.entries());
+        assertEquals(120, reopened.lastOffset());
+        assertFalse(reopened.isFull());
+    }
+
+    @Test
+    void untrimmedIndexCountsOnlyWrittenEntries() throws IOException {
+        File file = new File(dir, "00000000000000000100.index");
+        OffsetIndex index = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        index.append(110, 4096);
+        index.append(120, 8192);
+        index.append(130, 12288);
+        // A crash leaves the file at its preallocated size
+        index.flush();
+        index.closeHandler();
+        assertEquals(MAX_INDEX_SIZE, file.length());
+
+        OffsetIndex reopened = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        assertEquals(3, reopened.entries());
+        assertEquals(130, reopened.lastOffset());
+        assertEquals(new OffsetIndex.OffsetPosition(120, 8192), reopened.lookup(125));
+        reopened.append(140, 16384);
+        assertEquals(4, reopened.entries());
+    }
+
+    @Test
+    void rebuiltIndexDropsTheEntriesItNoLongerHas() throws IOException {
+        File file = new File(dir, "00000000000000000100.index");
+        OffsetIndex index = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        for (int i = 1; i <= 8; i++) {
+            index.append(100 + i * 10, i * 4096);
+        }
+        index.reset();
+        index.append(110, 4096);
+        index.append(120, 8192);
+        // A crash right after the rebuild leaves the file untrimmed
+        index.flush();
+        index.closeHandler();
+
+        OffsetIndex reopened = new OffsetIndex(file, 100, MAX_INDEX_SIZE);
+        assertEquals(2, reopened.entries());
+        assertEquals(120, reopened.lastOffset());
+        assertEquals(new OffsetIndex.OffsetPosition(120, 8192), reopened.lookup(175));
+    }
+
+    @Test
+    void untrimmedEmptyIndexIsEmpty() throws IOException {
+        File file = new File(dir, "00000000000000000000.timeindex");
+        TimeIndex index = new TimeIndex(file, 0, MAX_INDEX_SIZE);
+        index.closeHandler();
+
+        TimeIndex reopened = new TimeIndex(file, 0, MAX_INDEX_SIZE);
+        assertEquals(0, reopened.entries());
+        assertEquals(new TimeIndex.TimestampOffset(-1L, 0), reopened.lookup(Long.MAX_VALUE));
+    }
+}
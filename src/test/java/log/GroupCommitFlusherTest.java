@@ -0,0 +1,98 @@
+package log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static log.LogTestUtils.TOPIC_PARTITION;
+import static log.LogTestUtils.appendRecords;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCommitFlusherTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    @TempDir
+    File logDir;
+
+    private Log log;
+    private GroupCommitFlusher flusher;
+
+    @BeforeEach
+    void openLog() throws IOException {
+        log = Log.open(new File(logDir, TOPIC_PARTITION.dirName()), TOPIC_PARTITION, LogTestUtils.config(1024 * 1024));
+    }
+
+    @AfterEach
+    void closeLog() throws IOException {
+        if (flusher != null) {
+            flusher.close();
+        }
+        log.close();
+    }
+
+    @Test
+    void syncsEveryWaiterOfTheIntervalWithOneFlush() throws Exception {
+        flusher = new GroupCommitFlusher(HOUR_MS, Integer.MAX_VALUE);
+        appendRecords(log, 0, 1);
+        CompletableFuture<Void> first = flusher.awaitFlush(log, 0, 100);
+        appendRecords(log, 1, 1);
+        CompletableFuture<Void> second = flusher.awaitFlush(log, 1, 100);
+        assertFalse(first.isDone());
+        assertEquals(0, log.recoveryPoint());
+
+        flusher.reconfigure(1, Integer.MAX_VALUE);
+
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertEquals(2, log.recoveryPoint());
+    }
+
+    @Test
+    void syncsWithoutWaitingOutTheIntervalOnceEnoughBytesAreWaiting() throws Exception {
+        flusher = new GroupCommitFlusher(HOUR_MS, 150);
+        appendRecords(log, 0, 1);
+        CompletableFuture<Void> first = flusher.awaitFlush(log, 0, 100);
+        assertFalse(first.isDone());
+
+        appendRecords(log, 1, 1);
+        CompletableFuture<Void> second = flusher.awaitFlush(log, 1, 100);
+
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertEquals(2, log.recoveryPoint());
+    }
+
+    @Test
+    void completesAtOnceForOffsetsAlreadyOnDisk() throws IOException {
+        flusher = new GroupCommitFlusher(HOUR_MS, Integer.MAX_VALUE);
+        appendRecords(log, 0, 2);
+        log.flush();
+
+        assertTrue(flusher.awaitFlush(log, 1, 100).isDone());
+    }
+
+    @Test
+    void flushesWhatIsPendingOnCloseAndRefusesWaitersAfterwards() throws Exception {
+        flusher = new GroupCommitFlusher(HOUR_MS, Integer.MAX_VALUE);
+        appendRecords(log, 0, 1);
+        CompletableFuture<Void> pending = flusher.awaitFlush(log, 0, 100);
+
+        flusher.close();
+
+        pending.get(10, TimeUnit.SECONDS);
+        assertEquals(1, log.recoveryPoint());
+        appendRecords(log, 1, 1);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> flusher.awaitFlush(log, 1, 100).get());
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+}
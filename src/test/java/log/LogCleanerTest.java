@@ -0,0 +1,300 @@
+package log;
+
+import compression.CompressionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static log.LogTestUtils.TOPIC_PARTITION;
+import static log.LogTestUtils.batch;
+import static log.LogTestUtils.readBatches;
+import static log.LogTestUtils.readRecords;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogCleanerTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final String LARGE_VALUE = "x".repeat(150);
+
+    @TempDir
+    File logDir;
+
+    private LogManager logManager;
+
+    @AfterEach
+    void close() throws IOException {
+        if (logManager != null) {
+            logManager.close();
+        }
+    }
+
+    @Test
+    void keepsOnlyTheLatestRecordOfEachKey() throws Exception {
+        Log log = openLog(compactConfig());
+        for (int i = 0; i < 40; i++) {
+            log.append(batch(1000L + i, "key-" + i % 5, "value-" + i));
+        }
+        List<String> before = readRecords(log);
+        long firstUncleanableOffset = log.activeSegment().baseOffset();
+        LogCleaner cleaner = cleaner(CleanerConfig.DEFAULT_DEDUPE_BUFFER_SIZE);
+
+        assertTrue(cleaner.cleanFilthiestLog());
+
+        assertEquals(compacted(before, firstUncleanableOffset), readRecords(log));
+        assertEquals(firstUncleanableOffset, cleanerCheckpoint());
+        // Nothing is dirty until the active segment rolls
+        assertFalse(cleaner.cleanFilthiestLog());
+    }
+
+    @Test
+    void keepsTombstonesYoungerThanTheDeleteHorizon() throws Exception {
+        List<String> records = cleanTombstoneTwice(HOUR_MS / 2);
+        assertTrue(records.contains("1:a=null"), records.toString());
+    }
+
+    @Test
+    void dropsTombstonesOlderThanTheDeleteHorizon() throws Exception {
+        List<String> records = cleanTombstoneTwice(2 * HOUR_MS);
+        assertTrue(records.stream().noneMatch(record -> record.contains(":a=")), records.toString());
+        assertTrue(records.contains("2:u2=" + LARGE_VALUE), records.toString());
+    }
+
+    /**
+     * Compacts a log holding a tombstone for key {@code a}, then ages the segment holding the tombstone by
+     * {@code tombstoneAgeMs} and compacts again with a delete retention of an hour.
+     *
+     * @return The records of the log after the second cleaning.
+     */
+    private List<String> cleanTombstoneTwice(long tombstoneAgeMs) throws Exception {
+        Log log = openLog(compactConfig().toBuilder().deleteRetentionMs(HOUR_MS).build());
+        log.append(batch(1000L, "a", "value-0"));
+        log.append(batch(1001L, "a", null));
+        for (int i = 2; i < 12; i++) {
+            log.append(batch(1000L + i, "u" + i, LARGE_VALUE));
+        }
+        LogCleaner cleaner = cleaner(CleanerConfig.DEFAULT_DEDUPE_BUFFER_SIZE);
+        assertTrue(cleaner.cleanFilthiestLog());
+        // The first cleaning has no clean head to date the tombstone against, so it keeps it
+        List<String> afterFirst = readRecords(log);
+        assertFalse(afterFirst.contains("0:a=value-0"), afterFirst.toString());
+        assertTrue(afterFirst.contains("1:a=null"), afterFirst.toString());
+
+        long nowMs = System.currentTimeMillis();
+        for (LogSegment segment : log.segments()) {
+            assertTrue(segment.logFile().setLastModified(nowMs));
+        }
+        LogSegment tombstoneSegment = log.segments(1L, 2L).getFirst();
+        assertTrue(tombstoneSegment != log.segments(0L, log.activeSegment().baseOffset()).getLast(),
+                "the tombstone must not be in the last clean segment");
+        assertTrue(tombstoneSegment.logFile().setLastModified(nowMs - tombstoneAgeMs));
+
+        for (int i = 12; i < 16; i++) {
+            log.append(batch(1000L + i, "u" + i, LARGE_VALUE));
+        }
+        assertTrue(cleaner.cleanFilthiestLog());
+        return readRecords(log);
+    }
+
+    @Test
+    void stopsAPartialOffsetMapAtABatchBoundary() throws Exception {
+        Log log = openLog(compactConfig());
+        // Three records per batch, each key written twice in a row
+        for (int i = 0; i < 60; i += 3) {
+            log.append(batch(CompressionType.NONE, 1000L + i,
+                    "key-" + i / 2, "value-" + i, "key-" + (i + 1) / 2, "value-" + (i + 1), "key-" + (i + 2) / 2, "value-" + (i + 2)));
+        }
+        List<String> before = readRecords(log);
+        long firstUncleanableOffset = log.activeSegment().baseOffset();
+        // 12 slots, of which 10 may be used: the five batches below offset 15 hold eight distinct keys, and the
+        // sixth could add three more
+        LogCleaner cleaner = cleaner(12 * 24);
+
+        assertTrue(cleaner.cleanFilthiestLog());
+
+        long endOffset = cleanerCheckpoint();
+        assertEquals(15, endOffset);
+        // The first pass compacts only what it mapped and leaves the rest of the log as it was
+        assertEquals(compacted(before, endOffset), readRecords(log));
+
+        assertTrue(cleaner.cleanFilthiestLog());
+        long nextEndOffset = cleanerCheckpoint();
+        assertTrue(nextEndOffset > endOffset && nextEndOffset <= firstUncleanableOffset, "stopped at " + nextEndOffset);
+        assertEquals(0, nextEndOffset % 3, "stopped inside a batch at " + nextEndOffset);
+    }
+
+    @Test
+    void keepsTheOffsetsAndCodecOfRebuiltCompressedBatches() throws Exception {
+        for (CompressionType compression : new CompressionType[]{CompressionType.GZIP, CompressionType.LZ4}) {
+            Log log = openLog(compactConfig(), new TopicPartition("compressed-" + compression.getName(), 0));
+            log.append(batch(compression, 1000L, "x", "value-0", "y", "value-1", "z", "value-2", "w", "value-3"));
+            log.append(batch(CompressionType.NONE, 1001L, "y", "value-4", "w", "value-5"));
+            for (int i = 6; i < 20; i++) {
+                log.append(batch(1000L + i, "u" + i, LARGE_VALUE));
+            }
+            assertTrue(cleaner(CleanerConfig.DEFAULT_DEDUPE_BUFFER_SIZE).cleanFilthiestLog());
+
+            ByteBuffer rebuilt = readBatches(log).getFirst();
+            RecordBatchValidator.ensureValid(rebuilt, 0, rebuilt.remaining());
+            assertEquals(0L, RecordBatch.baseOffset(rebuilt, 0));
+            assertEquals(3L, RecordBatch.lastOffset(rebuilt, 0));
+            assertEquals(2, RecordBatch.recordsCount(rebuilt, 0));
+            assertEquals(compression.getId(), RecordBatch.compressionCodec(rebuilt, 0));
+            List<String> records = readRecords(log);
+            assertEquals(List.of("0:x=value-0", "2:z=value-2", "4:y=value-4", "5:w=value-5"), records.subList(0, 4));
+        }
+    }
+
+    @Test
+    void replacesSegmentsWithTheirCleanedCopy() throws Exception {
+        Log log = openLog(compactConfig());
+        LogTestUtils.appendRecords(log, 0, 20);
+        List<LogSegment> old = log.segments(0L, log.activeSegment().baseOffset());
+        assertTrue(old.size() >= 2);
+        LogSegment cleaned = writeCleanedCopy(log, old, LogSegment.CLEANED_FILE_SUFFIX);
+
+        assertTrue(log.replaceSegments(cleaned, old));
+
+        assertEquals(cleaned, log.segments().iterator().next());
+        for (LogSegment segment : old.subList(1, old.size())) {
+            assertFalse(log.segments().contains(segment));
+        }
+        for (LogSegment segment : old) {
+            assertTrue(segment.logFile().getName().endsWith(LogSegment.DELETED_FILE_SUFFIX), segment.logFile().getName());
+        }
+        assertTrue(cleaned.logFile().getName().endsWith(LogSegment.LOG_FILE_SUFFIX));
+        // A second swap of the same segments finds them gone
+        LogSegment stale = writeCleanedCopy(log, List.of(cleaned), LogSegment.CLEANED_FILE_SUFFIX);
+        assertFalse(log.replaceSegments(stale, old));
+        stale.delete();
+    }
+
+    @Test
+    void completesAnInterruptedSwapOnRecovery() throws Exception {
+        LogConfig config = compactConfig();
+        File dir = new File(logDir, TOPIC_PARTITION.dirName());
+        Log log = Log.open(dir, TOPIC_PARTITION, config);
+        for (int i = 0; i < 30; i++) {
+            log.append(batch(1000L + i, "key-" + i % 4, "value-" + i));
+        }
+        List<String> before = readRecords(log);
+        List<LogSegment> old = log.segments(0L, log.activeSegment().baseOffset());
+        assertTrue(old.size() >= 3);
+        List<LogSegment> swapped = old.subList(0, 2);
+        long firstKept = old.get(2).baseOffset();
+        writeCleanedCopy(log, swapped, LogSegment.SWAP_FILE_SUFFIX).close();
+        // The crash came after the first old segment was renamed for deletion, and left another cleaning half-written
+        swapped.getFirst().changeFileSuffixes("", LogSegment.DELETED_FILE_SUFFIX);
+        LogSegment.open(dir, firstKept, config, LogSegment.CLEANED_FILE_SUFFIX).close();
+        log.close();
+
+        Log recovered = Log.open(dir, TOPIC_PARTITION, config, 0L, false);
+
+        List<String> expected = new ArrayList<>(compacted(before.subList(0, (int) firstKept), firstKept));
+        expected.addAll(before.subList((int) firstKept, before.size()));
+        assertEquals(expected, readRecords(recovered));
+        assertEquals(before.size(), recovered.logEndOffset());
+        assertFalse(recovered.segments().stream().anyMatch(segment -> segment.baseOffset() == swapped.getLast().baseOffset()));
+        for (String name : dir.list()) {
+            assertFalse(name.endsWith(LogSegment.SWAP_FILE_SUFFIX) || name.endsWith(LogSegment.DELETED_FILE_SUFFIX)
+                    || name.endsWith(LogSegment.CLEANED_FILE_SUFFIX), "left over " + name);
+        }
+        recovered.close();
+    }
+
+    /**
+     * Writes the latest record of each key in {@code segments} into a new segment with the given suffix, the way
+     * the cleaner would, keeping one batch per retained record.
+     */
+    private static LogSegment writeCleanedCopy(Log log, List<LogSegment> segments, String suffix) throws IOException {
+        long from = segments.getFirst().baseOffset();
+        LogSegment next = log.segments().stream().filter(segment -> segment.baseOffset() > segments.getLast().baseOffset())
+                .findFirst().orElseThrow();
+        Map<String, Long> latest = new HashMap<>();
+        List<ByteBuffer> batches = new ArrayList<>();
+        for (ByteBuffer batch : readBatches(log)) {
+            if (RecordBatch.baseOffset(batch, 0) >= from && RecordBatch.baseOffset(batch, 0) < next.baseOffset()) {
+                RecordBatchValidator.forEachRecord(batch, 0, batch.remaining(),
+                        record -> latest.put(LogTestUtils.string(record.key()), record.offset()));
+                batches.add(batch);
+            }
+        }
+        LogSegment cleaned = LogSegment.open(log.getDir(), from, log.config(), suffix);
+        for (ByteBuffer batch : batches) {
+            long[] offset = {-1L};
+            RecordBatchValidator.forEachRecord(batch, 0, batch.remaining(), record -> {
+                if (latest.get(LogTestUtils.string(record.key())) == record.offset()) {
+                    offset[0] = record.offset();
+                }
+            });
+            if (offset[0] >= 0) {
+                long baseOffset = RecordBatch.baseOffset(batch, 0);
+                cleaned.append(baseOffset, RecordBatch.maxTimestamp(batch, 0), baseOffset, batch);
+            }
+        }
+        cleaned.onBecomeInactive();
+        cleaned.flush();
+        return cleaned;
+    }
+
+    /**
+     * @return The records as the cleaner leaves them after mapping the keys up to {@code endOffset}: below it only
+     * the latest record of each key, from it on every record.
+     */
+    private static List<String> compacted(List<String> records, long endOffset) {
+        Map<String, Long> latest = new HashMap<>();
+        for (String record : records) {
+            long offset = offset(record);
+            if (offset < endOffset) {
+                latest.put(key(record), offset);
+            }
+        }
+        return records.stream()
+                .filter(record -> offset(record) >= endOffset || latest.get(key(record)) == offset(record))
+                .toList();
+    }
+
+    private static long offset(String record) {
+        return Long.parseLong(record.substring(0, record.indexOf(':')));
+    }
+
+    private static String key(String record) {
+        return record.substring(record.indexOf(':') + 1, record.indexOf('='));
+    }
+
+    private static LogConfig compactConfig() {
+        return LogTestUtils.config(512).toBuilder()
+                .cleanupPolicy(LogConfig.CLEANUP_POLICY_COMPACT)
+                .minCleanableRatio(0.01)
+                .build();
+    }
+
+    private Log openLog(LogConfig config) throws IOException {
+        return openLog(config, TOPIC_PARTITION);
+    }
+
+    private Log openLog(LogConfig config, TopicPartition topicPartition) throws IOException {
+        if (logManager == null) {
+            logManager = new LogManager(logDir, config, 1, HOUR_MS, HOUR_MS, CleanerConfig.builder().enableCleaner(false).build());
+        }
+        return logManager.getOrCreateLog(topicPartition);
+    }
+
+    private LogCleaner cleaner(long dedupeBufferSize) {
+        return new LogCleaner(CleanerConfig.builder().enableCleaner(true).dedupeBufferSize(dedupeBufferSize).build(),
+                logManager, logDir);
+    }
+
+    private long cleanerCheckpoint() throws IOException {
+        return new OffsetCheckpointFile(new File(logDir, "cleaner-offset-checkpoint")).read().get(TOPIC_PARTITION);
+    }
+}
@@ -0,0 +1,159 @@
+package log;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static log.LogTestUtils.TOPIC_PARTITION;
+import static log.LogTestUtils.appendRecords;
+import static log.LogTestUtils.batch;
+import static log.LogTestUtils.segmentFile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogManagerTest {
+
+    private static final int RECORDS = 30;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final LogConfig CONFIG = LogTestUtils.config(512);
+    private static final TopicPartition OTHER_PARTITION = new TopicPartition("other-topic", 3);
+
+    @TempDir
+    File logDir;
+
+    private List<Long> baseOffsets;
+
+    @BeforeEach
+    void writeLogs() throws IOException {
+        LogManager logManager = open();
+        Log log = logManager.getOrCreateLog(TOPIC_PARTITION);
+        appendRecords(log, 0, RECORDS);
+        appendRecords(logManager.getOrCreateLog(OTHER_PARTITION), 0, 5);
+        baseOffsets = log.segments().stream().map(LogSegment::baseOffset).toList();
+        logManager.close();
+    }
+
+    @Test
+    void checkpointsRecoveryPointsAndMarksACleanShutdownOnClose() throws IOException {
+        assertTrue(cleanShutdownFile().exists());
+        Map<TopicPartition, Long> recoveryPoints = new OffsetCheckpointFile(new File(logDir, "recovery-point-offset-checkpoint")).read();
+        assertEquals(Map.of(TOPIC_PARTITION, (long) RECORDS, OTHER_PARTITION, 5L), recoveryPoints);
+    }
+
+    @Test
+    void loadsEveryLogWithoutRecoveringAfterACleanShutdown() throws IOException {
+        File lastSegment = lastSegmentFile();
+        corruptFirstBatch(lastSegment);
+        long size = lastSegment.length();
+
+        LogManager logManager = open();
+        // Until the next clean shutdown, a restart must recover
+        assertFalse(cleanShutdownFile().exists());
+        assertEquals(RECORDS, logManager.getLog(TOPIC_PARTITION).orElseThrow().logEndOffset());
+        assertEquals(5, logManager.getLog(OTHER_PARTITION).orElseThrow().logEndOffset());
+        assertEquals(size, lastSegment.length());
+        logManager.close();
+    }
+
+    @Test
+    void recoversFromTheCheckpointedRecoveryPointsAfterACrash() throws IOException {
+        File lastSegment = lastSegmentFile();
+        corruptFirstBatch(lastSegment);
+        Files.delete(cleanShutdownFile().toPath());
+
+        LogManager logManager = open();
+        Log log = logManager.getLog(TOPIC_PARTITION).orElseThrow();
+        assertEquals(0, lastSegment.length());
+        assertEquals(baseOffsets.getLast(), log.logEndOffset());
+        assertEquals(5, logManager.getLog(OTHER_PARTITION).orElseThrow().logEndOffset());
+        logManager.close();
+    }
+
+    @Test
+    void skipsDirectoriesThatAreNotPartitions() throws IOException {
+        assertTrue(new File(logDir, "not-a-partition").mkdir());
+        LogManager logManager = open();
+        assertEquals(2, logManager.allLogs().size());
+        logManager.close();
+    }
+
+    @Test
+    void expiresTheActiveSegmentOfALogThatStoppedReceivingAppends() throws IOException {
+        LogManager logManager = open();
+        Log log = logManager.getOrCreateLog(new TopicPartition("idle-topic", 0));
+        appendRecords(log, 0, 3);
+        assertEquals(1, log.segments().size());
+
+        List<LogSegment> deleted = log.deleteOldSegments(System.currentTimeMillis());
+        logManager.deleteSegmentsLater(deleted, log.config());
+
+        assertEquals(1, deleted.size());
+        assertEquals(3, log.logStartOffset());
+        assertEquals(3, log.logEndOffset());
+        assertEquals(0, log.activeSegment().size());
+        // A log that is already empty has nothing left to expire
+        assertTrue(log.deleteOldSegments(System.currentTimeMillis()).isEmpty());
+        assertEquals(3, log.append(batch(System.currentTimeMillis(), "key", "value")).firstOffset());
+        logManager.close();
+    }
+
+    @Test
+    void rollsTheActiveSegmentOnceItSpansSegmentMs() throws IOException {
+        LogManager logManager = open();
+        logManager.overrideTopicConfig("rolling-topic", config -> config.toBuilder().segmentMs(HOUR_MS).build());
+        Log log = logManager.getOrCreateLog(new TopicPartition("rolling-topic", 0));
+        log.append(batch(1000L, "a", "value-0"));
+        log.append(batch(1000L + HOUR_MS, "b", "value-1"));
+        assertEquals(1, log.segments().size());
+
+        log.append(batch(1001L + HOUR_MS, "c", "value-2"));
+
+        assertEquals(List.of(0L, 2L), log.segments().stream().map(LogSegment::baseOffset).toList());
+        logManager.close();
+    }
+
+    @Test
+    void rollsBeforeOffsetsOutgrowTheRelativeOffsetsOfTheIndexes() throws IOException {
+        LogManager logManager = open();
+        Log log = logManager.getOrCreateLog(new TopicPartition("dense-topic", 0));
+        // A batch claiming almost 2^31 offsets, which appends take at its word
+        ByteBuffer wide = batch(1000L, "a", "value-0");
+        wide.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, Integer.MAX_VALUE - 1);
+        log.append(wide);
+        log.append(batch(1000L, "b", "value-1"));
+        assertEquals(1, log.segments().size());
+
+        log.append(batch(1000L, "c", "value-2"));
+
+        assertEquals(List.of(0L, (long) Integer.MAX_VALUE + 1), log.segments().stream().map(LogSegment::baseOffset).toList());
+        logManager.close();
+    }
+
+    private LogManager open() throws IOException {
+        return new LogManager(logDir, CONFIG, 2, 60_000L, 60_000L, CleanerConfig.builder().enableCleaner(false).build());
+    }
+
+    private File cleanShutdownFile() {
+        return new File(logDir, ".kafka_cleanshutdown");
+    }
+
+    private File lastSegmentFile() {
+        return segmentFile(new File(logDir, TOPIC_PARTITION.dirName()), baseOffsets.getLast(), LogSegment.LOG_FILE_SUFFIX);
+    }
+
+    private static void corruptFirstBatch(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff, (byte) 0xff}), RecordBatch.RECORDS_OFFSET);
+        }
+    }
+}
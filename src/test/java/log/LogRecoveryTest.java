@@ -0,0 +1,202 @@
+package log;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static log.LogTestUtils.TOPIC_PARTITION;
+import static log.LogTestUtils.appendRecords;
+import static log.LogTestUtils.batchPositions;
+import static log.LogTestUtils.readRecords;
+import static log.LogTestUtils.segmentFile;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRecoveryTest {
+
+    private static final int RECORDS = 30;
+    private static final LogConfig CONFIG = LogTestUtils.config(512);
+
+    @TempDir
+    File tempDir;
+
+    private File dir;
+    private List<Long> baseOffsets;
+
+    @BeforeEach
+    void writeLog() throws IOException {
+        dir = new File(tempDir, TOPIC_PARTITION.dirName());
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG);
+        appendRecords(log, 0, RECORDS);
+        baseOffsets = baseOffsets(log);
+        log.close();
+        assertTrue(baseOffsets.size() >= 4, "expected several segments, got " + baseOffsets);
+    }
+
+    @Test
+    void truncatesASegmentCutMidBatchAndDropsTheLaterSegments() throws IOException {
+        long second = baseOffsets.get(1);
+        long third = baseOffsets.get(2);
+        File secondFile = logFile(second);
+        List<Integer> positions = batchPositions(secondFile);
+        int lastBatchStart = positions.get(positions.size() - 2);
+        truncate(secondFile, secondFile.length() - 10);
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, 0L, false);
+
+        assertEquals(List.of(baseOffsets.getFirst(), second), baseOffsets(log));
+        assertEquals(lastBatchStart, secondFile.length());
+        assertEquals(third - 1, log.logEndOffset());
+        assertEquals(records(0, third - 1), readRecords(log));
+        assertLaterSegmentsDeleted(2);
+        assertEquals(third - 1, log.append(LogTestUtils.batch(0L, "k", "v")).firstOffset());
+        log.close();
+    }
+
+    @Test
+    void truncatesAtABatchWithACorruptedCrcAndDropsTheLaterSegments() throws IOException {
+        long second = baseOffsets.get(1);
+        File secondFile = logFile(second);
+        int corruptBatchStart = batchPositions(secondFile).get(2);
+        corrupt(secondFile, corruptBatchStart + RecordBatch.RECORDS_OFFSET + 2);
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, 0L, false);
+
+        assertEquals(List.of(baseOffsets.getFirst(), second), baseOffsets(log));
+        assertEquals(corruptBatchStart, secondFile.length());
+        assertEquals(second + 2, log.logEndOffset());
+        assertEquals(records(0, second + 2), readRecords(log));
+        assertLaterSegmentsDeleted(2);
+        log.close();
+    }
+
+    @Test
+    void scansNothingAfterACleanShutdown() throws IOException {
+        File secondFile = logFile(baseOffsets.get(1));
+        corrupt(secondFile, batchPositions(secondFile).get(1) + RecordBatch.RECORDS_OFFSET + 2);
+        long[] sizes = segmentSizes();
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, 0L, true);
+
+        // The corruption goes unnoticed because no segment is scanned
+        assertEquals(baseOffsets, baseOffsets(log));
+        assertArrayEquals(sizes, segmentSizes());
+        assertEquals(RECORDS, log.logEndOffset());
+        log.close();
+    }
+
+    @Test
+    void recoversOnlyFromTheSegmentHoldingTheRecoveryPoint() throws IOException {
+        long last = baseOffsets.getLast();
+        File secondFile = logFile(baseOffsets.get(1));
+        corrupt(secondFile, batchPositions(secondFile).get(1) + RecordBatch.RECORDS_OFFSET + 2);
+        long secondSize = secondFile.length();
+        corrupt(logFile(last), RecordBatch.RECORDS_OFFSET + 2);
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, last + 1, false);
+
+        // Below the recovery point the data was known to be on disk and is trusted
+        assertEquals(secondSize, secondFile.length());
+        assertEquals(0, logFile(last).length());
+        assertEquals(last, log.logEndOffset());
+        assertEquals(baseOffsets, baseOffsets(log));
+        log.close();
+    }
+
+    @Test
+    void rebuildsAnInconsistentIndex() throws IOException {
+        File indexFile = segmentFile(dir, baseOffsets.getFirst(), LogSegment.INDEX_FILE_SUFFIX);
+        byte[] original = Files.readAllBytes(indexFile.toPath());
+        assertTrue(original.length >= 16, "expected several index entries");
+        // Point the last entry past the end of the segment
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1 << 30), original.length - 4);
+        }
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, 0L, true);
+        assertEveryOffsetReadable(log);
+        log.close();
+
+        assertArrayEquals(original, Files.readAllBytes(indexFile.toPath()));
+    }
+
+    @Test
+    void rebuildsMissingIndexes() throws IOException {
+        long first = baseOffsets.getFirst();
+        File indexFile = segmentFile(dir, first, LogSegment.INDEX_FILE_SUFFIX);
+        File timeIndexFile = segmentFile(dir, first, LogSegment.TIME_INDEX_FILE_SUFFIX);
+        byte[] original = Files.readAllBytes(indexFile.toPath());
+        Files.delete(indexFile.toPath());
+        Files.delete(timeIndexFile.toPath());
+
+        Log log = Log.open(dir, TOPIC_PARTITION, CONFIG, 0L, true);
+        assertTrue(indexFile.exists());
+        assertTrue(timeIndexFile.exists());
+        assertEveryOffsetReadable(log);
+        log.close();
+
+        assertArrayEquals(original, Files.readAllBytes(indexFile.toPath()));
+    }
+
+    private void assertEveryOffsetReadable(Log log) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+        for (long offset = 0; offset < RECORDS; offset++) {
+            FileRecords records = log.read(offset, 1);
+            records.channel().read(header.clear(), records.position());
+            assertEquals(offset, RecordBatch.baseOffset(header, 0), "read of offset " + offset);
+        }
+    }
+
+    private void assertLaterSegmentsDeleted(int fromIndex) {
+        for (long baseOffset : baseOffsets.subList(fromIndex, baseOffsets.size())) {
+            assertFalse(logFile(baseOffset).exists(), "segment " + baseOffset);
+            assertFalse(segmentFile(dir, baseOffset, LogSegment.INDEX_FILE_SUFFIX).exists(), "index " + baseOffset);
+        }
+    }
+
+    private File logFile(long baseOffset) {
+        return segmentFile(dir, baseOffset, LogSegment.LOG_FILE_SUFFIX);
+    }
+
+    private long[] segmentSizes() {
+        return baseOffsets.stream().mapToLong(baseOffset -> logFile(baseOffset).length()).toArray();
+    }
+
+    private static List<Long> baseOffsets(Log log) {
+        return log.segments().stream().map(LogSegment::baseOffset).toList();
+    }
+
+    private static List<String> records(long from, long to) {
+        List<String> records = new ArrayList<>();
+        for (long i = from; i < to; i++) {
+            records.add(i + ":key-" + i + "=value-" + i);
+        }
+        return records;
+    }
+
+    private static void truncate(File file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void corrupt(File file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer oneByte = ByteBuffer.allocate(1);
+            channel.read(oneByte, position);
+            oneByte.put(0, (byte) (oneByte.get(0) ^ 0xff));
+            channel.write(oneByte.rewind(), position);
+        }
+    }
+}
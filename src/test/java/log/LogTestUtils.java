@@ -0,0 +1,140 @@
+package log;
+
+import compression.CompressionCodecs;
+import compression.CompressionType;
+import util.BufferPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds and reads back the logs the log tests work on.
+ */
+final class LogTestUtils {
+
+    static final TopicPartition TOPIC_PARTITION = new TopicPartition("test", 0);
+
+    private LogTestUtils() {
+    }
+
+    /**
+     * A config that indexes every batch, so the indexes have entries to check even in small segments.
+     */
+    static LogConfig config(int segmentBytes) {
+        return LogConfig.defaults().toBuilder()
+                .segmentBytes(segmentBytes)
+                .indexIntervalBytes(1)
+                .maxIndexSize(4096)
+                .build();
+    }
+
+    static ByteBuffer batch(long timestamp, String key, String value) {
+        return new RecordBatchBuilder(64).append(timestamp, utf8(key), utf8(value)).build();
+    }
+
+    /**
+     * A batch of one record per key and value pair, with a {@code null} value for a tombstone, its records
+     * compressed with {@code compression}.
+     */
+    static ByteBuffer batch(CompressionType compression, long timestamp, String... keysAndValues) {
+        RecordBatchBuilder builder = new RecordBatchBuilder(256);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            builder.append(timestamp, utf8(keysAndValues[i]), utf8(keysAndValues[i + 1]));
+        }
+        ByteBuffer plain = builder.build();
+        if (compression == CompressionType.NONE) {
+            return plain;
+        }
+        ByteBuffer compressed = CompressionCodecs.forType(compression)
+                .compress(plain.slice(RecordBatch.RECORDS_OFFSET, plain.remaining() - RecordBatch.RECORDS_OFFSET), new BufferPool(1));
+        ByteBuffer batch = ByteBuffer.allocate(RecordBatch.HEADER_SIZE + compressed.remaining())
+                .put(plain.slice(0, RecordBatch.HEADER_SIZE))
+                .put(compressed)
+                .flip();
+        RecordBatch.setSizeInBytes(batch, 0, batch.remaining());
+        RecordBatch.setAttributes(batch, 0, (short) compression.getId());
+        RecordBatch.updateCrc(batch, 0);
+        return batch;
+    }
+
+    /**
+     * Appends {@code count} single-record batches with keys {@code key-<n>}, starting at {@code n = from}.
+     */
+    static void appendRecords(Log log, int from, int count) throws IOException {
+        for (int i = from; i < from + count; i++) {
+            log.append(batch(1000L + i, "key-" + i, "value-" + i));
+        }
+    }
+
+    /**
+     * @return Every batch of the log, from its start offset to its end offset.
+     */
+    static List<ByteBuffer> readBatches(Log log) throws IOException {
+        List<ByteBuffer> batches = new ArrayList<>();
+        long offset = log.logStartOffset();
+        while (offset < log.logEndOffset()) {
+            FileRecords records = log.read(offset, Integer.MAX_VALUE);
+            ByteBuffer buffer = ByteBuffer.allocate(records.sizeInBytes());
+            while (buffer.hasRemaining()) {
+                records.channel().read(buffer, records.position() + buffer.position());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                int size = RecordBatch.sizeInBytes(buffer, buffer.position());
+                ByteBuffer batch = buffer.slice(buffer.position(), size);
+                batches.add(batch);
+                offset = RecordBatch.lastOffset(batch, 0) + 1;
+                buffer.position(buffer.position() + size);
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * @return Every record of the log as {@code <offset>:<key>=<value>}.
+     */
+    static List<String> readRecords(Log log) throws IOException {
+        List<String> records = new ArrayList<>();
+        for (ByteBuffer batch : readBatches(log)) {
+            RecordBatchValidator.forEachRecord(batch, 0, batch.remaining(),
+                    record -> records.add(record.offset() + ":" + string(record.key()) + "=" + string(record.value())));
+        }
+        return records;
+    }
+
+    /**
+     * @return The positions of the batches in a segment file, followed by the file size.
+     */
+    static List<Integer> batchPositions(File logFile) throws IOException {
+        List<Integer> positions = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+            int position = 0;
+            while (position < channel.size()) {
+                positions.add(position);
+                channel.read(header.clear(), position);
+                position += RecordBatch.sizeInBytes(header, 0);
+            }
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    static File segmentFile(File dir, long baseOffset, String suffix) {
+        return new File(dir, LogSegment.fileName(baseOffset, suffix));
+    }
+
+    static ByteBuffer utf8(String value) {
+        return value == null ? null : ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String string(ByteBuffer buffer) {
+        return buffer == null ? null : StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
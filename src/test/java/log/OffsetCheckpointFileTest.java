@@ -0,0 +1,63 @@
+package log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffsetCheckpointFileTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        OffsetCheckpointFile checkpoint = new OffsetCheckpointFile(new File(dir, "checkpoint"));
+        Map<TopicPartition, Long> offsets = Map.of(
+                new TopicPartition("orders", 0), 42L,
+                new TopicPartition("my-topic.v2", 11), 0L,
+                new TopicPartition("__consumer_offsets", 3), Long.MAX_VALUE);
+        checkpoint.write(offsets);
+        assertEquals(offsets, checkpoint.read());
+        assertEquals(offsets, new OffsetCheckpointFile(new File(dir, "checkpoint")).read());
+        assertFalse(new File(dir, "checkpoint.tmp").exists());
+    }
+
+    @Test
+    void replacesThePreviousCheckpoint() throws IOException {
+        OffsetCheckpointFile checkpoint = new OffsetCheckpointFile(new File(dir, "checkpoint"));
+        checkpoint.write(Map.of(new TopicPartition("a", 0), 1L, new TopicPartition("b", 0), 2L));
+        checkpoint.write(Map.of(new TopicPartition("a", 0), 5L));
+        assertEquals(Map.of(new TopicPartition("a", 0), 5L), checkpoint.read());
+        checkpoint.write(Map.of());
+        assertEquals(Map.of(), checkpoint.read());
+    }
+
+    @Test
+    void readsNothingBeforeTheFirstCheckpoint() throws IOException {
+        assertEquals(Map.of(), new OffsetCheckpointFile(new File(dir, "checkpoint")).read());
+    }
+
+    @Test
+    void rejectsMalformedFiles() throws IOException {
+        assertMalformed("");
+        assertMalformed("1\n0\n");
+        assertMalformed("0\n2\na 0 1\n");
+        assertMalformed("0\n1\na 0\n");
+        assertMalformed("0\n1\na x 1\n");
+    }
+
+    private void assertMalformed(String contents) throws IOException {
+        File file = new File(dir, "checkpoint");
+        Files.writeString(file.toPath(), contents, StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new OffsetCheckpointFile(file).read(), contents);
+    }
+}
@@ -0,0 +1,293 @@
+package log;
+
+import compression.CompressionCodecs;
+import compression.CompressionType;
+import exceptions.CorruptRecordException;
+import exceptions.InvalidRecordException;
+import org.junit.jupiter.api.Test;
+import util.BufferPool;
+import util.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordBatchValidatorTest {
+
+    private static final int MAX_SIZE = 1 << 20;
+
+    @Test
+    void visitsEveryRecordOfEveryBatch() {
+        ByteBuffer first = new RecordBatchBuilder(64)
+                .append(1000L, utf8("k1"), utf8("v1"))
+                .append(1005L, null, utf8("v2"))
+                .build();
+        ByteBuffer second = new RecordBatchBuilder(64).append(2000L, utf8("k3"), null).build();
+        ByteBuffer records = ByteBuffer.allocate(first.remaining() + second.remaining()).put(first).put(second).flip();
+
+        List<String> visited = new ArrayList<>();
+        RecordBatchValidator.validate(records, MAX_SIZE, record -> visited.add(
+                string(record.key()) + "=" + string(record.value()) + "@" + record.timestamp()));
+        assertEquals(List.of("k1=v1@1000", "null=v2@1005", "k3=null@2000"), visited);
+        assertEquals(0, records.position());
+    }
+
+    @Test
+    void validatesCompressedBatches() {
+        for (CompressionType compression : new CompressionType[]{CompressionType.GZIP, CompressionType.LZ4}) {
+            List<Integer> offsetDeltas = new ArrayList<>();
+            ByteBuffer batch = batch(compression, 3, record(0, "a", "1"), record(1, "b", "2"), record(2, "c", "3"));
+            RecordBatchValidator.validate(batch, MAX_SIZE, record -> offsetDeltas.add(record.offsetDelta()));
+            assertEquals(List.of(0, 1, 2), offsetDeltas);
+        }
+    }
+
+    @Test
+    void rejectsCompressedBatchesLargerThanTheLimit() {
+        ByteBuffer batch = batch(CompressionType.GZIP, 1, record(0, "k", "x".repeat(10_000)));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(batch, 1000, RecordVisitor.NONE));
+        RecordBatchValidator.validate(batch, 20_000, RecordVisitor.NONE);
+    }
+
+    @Test
+    void rejectsCrcMismatch() {
+        ByteBuffer batch = new RecordBatchBuilder(64).append(0L, utf8("key"), utf8("value")).build();
+        int last = batch.limit() - 1;
+        batch.put(last, (byte) (batch.get(last) ^ 1));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(batch));
+    }
+
+    @Test
+    void rejectsUnsupportedMagic() {
+        ByteBuffer batch = new RecordBatchBuilder(64).append(0L, utf8("key"), utf8("value")).build();
+        batch.put(RecordBatch.MAGIC_OFFSET, (byte) 1);
+        RecordBatch.updateCrc(batch, 0);
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(batch));
+    }
+
+    @Test
+    void rejectsNonConsecutiveOffsetDeltas() {
+        ByteBuffer gap = batch(CompressionType.NONE, 2, record(0, "a", "1"), record(2, "b", "2"));
+        assertThrows(InvalidRecordException.class, () -> RecordBatchValidator.validate(gap));
+        ByteBuffer reordered = batch(CompressionType.NONE, 2, record(1, "a", "1"), record(0, "b", "2"));
+        assertThrows(InvalidRecordException.class, () -> RecordBatchValidator.validate(reordered));
+    }
+
+    @Test
+    void acceptsOffsetGapsInBatchesFromTheLog() {
+        ByteBuffer compacted = batch(CompressionType.NONE, 2, record(0, "a", "1"), record(5, "b", "2"));
+        compacted.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, 5);
+        RecordBatch.updateCrc(compacted, 0);
+        List<Long> offsets = new ArrayList<>();
+        RecordBatchValidator.forEachRecord(compacted, 0, compacted.remaining(), record -> offsets.add(record.offset()));
+        assertEquals(List.of(0L, 5L), offsets);
+    }
+
+    @Test
+    void rejectsCountsThatDisagreeWithTheLastOffsetDelta() {
+        ByteBuffer batch = batch(CompressionType.NONE, 2, record(0, "a", "1"), record(1, "b", "2"));
+        batch.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, 2);
+        RecordBatch.updateCrc(batch, 0);
+        assertThrows(InvalidRecordException.class, () -> RecordBatchValidator.validate(batch));
+
+        ByteBuffer empty = batch(CompressionType.NONE, 0);
+        empty.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, -1);
+        RecordBatch.updateCrc(empty, 0);
+        assertThrows(InvalidRecordException.class, () -> RecordBatchValidator.validate(empty));
+    }
+
+    @Test
+    void rejectsRecordLengthPastTheBatch() {
+        byte[] body = recordBody(0, fields -> {
+            writeField(fields, "a");
+            writeField(fields, "1");
+            Writer.writeVariableInt(fields, 0);
+        });
+        ByteBuffer batch = batch(CompressionType.NONE, 1, lengthPrefixed(100, body));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(batch));
+    }
+
+    @Test
+    void rejectsTrailingBytesAfterTheLastRecord() {
+        ByteBuffer trailing = batch(CompressionType.NONE, 1, record(0, "a", "1"), new byte[]{0, 0, 0});
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(trailing));
+
+        ByteBuffer fewerRecords = batch(CompressionType.NONE, 2, record(0, "a", "1"));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(fewerRecords));
+    }
+
+    @Test
+    void rejectsFieldsPastTheEndOfTheRecord() {
+        // A key that claims more bytes than the record holds
+        ByteBuffer longKey = batch(CompressionType.NONE, 1, record(0, body -> {
+            Writer.writeVariableInt(body, 50);
+            body.put((byte) 'a');
+        }));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(longKey));
+
+        // Bytes left over after the headers
+        ByteBuffer leftover = batch(CompressionType.NONE, 1, record(0, body -> {
+            Writer.writeVariableInt(body, -1);
+            Writer.writeVariableInt(body, -1);
+            Writer.writeVariableInt(body, 0);
+            body.put((byte) 7);
+        }));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(leftover));
+    }
+
+    @Test
+    void rejectsMalformedHeaders() {
+        ByteBuffer negativeCount = batch(CompressionType.NONE, 1, recordWithHeaders(-1));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(negativeCount));
+
+        ByteBuffer nullHeaderKey = batch(CompressionType.NONE, 1, recordWithHeaders(1, body -> Writer.writeVariableInt(body, -1)));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(nullHeaderKey));
+
+        ByteBuffer longHeaderValue = batch(CompressionType.NONE, 1, recordWithHeaders(1, body -> {
+            Writer.writeVariableInt(body, 1);
+            body.put((byte) 'h');
+            Writer.writeVariableInt(body, 40);
+        }));
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(longHeaderValue));
+
+        List<Integer> headerCounts = new ArrayList<>();
+        ByteBuffer valid = batch(CompressionType.NONE, 1, recordWithHeaders(1, body -> {
+            Writer.writeVariableInt(body, 1);
+            body.put((byte) 'h');
+            Writer.writeVariableInt(body, -1);
+        }));
+        RecordBatchValidator.validate(valid, MAX_SIZE, record -> headerCounts.add(record.headerCount()));
+        assertEquals(List.of(1), headerCounts);
+    }
+
+    @Test
+    void rejectsTruncatedAndMissizedBatches() {
+        assertThrows(InvalidRecordException.class, () -> RecordBatchValidator.validate(ByteBuffer.allocate(0)));
+
+        ByteBuffer batch = new RecordBatchBuilder(64).append(0L, utf8("key"), utf8("value")).build();
+        assertThrows(CorruptRecordException.class,
+                () -> RecordBatchValidator.validate(batch.slice(0, RecordBatch.HEADER_SIZE - 1)));
+        assertThrows(CorruptRecordException.class,
+                () -> RecordBatchValidator.validate(batch.slice(0, batch.remaining() - 1)));
+
+        ByteBuffer undersized = copy(batch);
+        RecordBatch.setSizeInBytes(undersized, 0, RecordBatch.HEADER_SIZE - 1);
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(undersized));
+
+        ByteBuffer negative = copy(batch);
+        negative.putInt(RecordBatch.LENGTH_OFFSET, -100);
+        assertThrows(CorruptRecordException.class, () -> RecordBatchValidator.validate(negative));
+    }
+
+    private interface BodyWriter {
+        void write(ByteBuffer body);
+    }
+
+    /**
+     * A batch of the given records, compressed with {@code compression}, with its header and CRC filled in.
+     */
+    private static ByteBuffer batch(CompressionType compression, int recordsCount, byte[]... records) {
+        ByteBuffer plain = ByteBuffer.allocate(totalLength(records));
+        for (byte[] record : records) {
+            plain.put(record);
+        }
+        plain.flip();
+        BufferPool pool = new BufferPool(1);
+        ByteBuffer body = compression == CompressionType.NONE ? plain : CompressionCodecs.forType(compression).compress(plain, pool);
+        ByteBuffer batch = ByteBuffer.allocate(RecordBatch.HEADER_SIZE + body.remaining());
+        batch.position(RecordBatch.RECORDS_OFFSET);
+        batch.put(body).flip();
+        batch.putInt(RecordBatch.LENGTH_OFFSET, batch.limit() - RecordBatch.LOG_OVERHEAD);
+        batch.put(RecordBatch.MAGIC_OFFSET, RecordBatch.CURRENT_MAGIC);
+        batch.putShort(RecordBatch.ATTRIBUTES_OFFSET, (short) compression.getId());
+        batch.putInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET, recordsCount - 1);
+        batch.putInt(RecordBatch.RECORDS_COUNT_OFFSET, recordsCount);
+        RecordBatch.updateCrc(batch, 0);
+        return batch;
+    }
+
+    private static byte[] record(int offsetDelta, String key, String value) {
+        return record(offsetDelta, body -> {
+            writeField(body, key);
+            writeField(body, value);
+            Writer.writeVariableInt(body, 0);
+        });
+    }
+
+    private static byte[] recordWithHeaders(int headerCount) {
+        return recordWithHeaders(headerCount, body -> {
+        });
+    }
+
+    private static byte[] recordWithHeaders(int headerCount, BodyWriter headers) {
+        return record(0, body -> {
+            writeField(body, "k");
+            writeField(body, "v");
+            Writer.writeVariableInt(body, headerCount);
+            headers.write(body);
+        });
+    }
+
+    private static byte[] record(int offsetDelta, BodyWriter fields) {
+        byte[] body = recordBody(offsetDelta, fields);
+        return lengthPrefixed(body.length, body);
+    }
+
+    /**
+     * The attributes, timestamp delta and offset delta of a record, followed by whatever {@code fields} writes.
+     */
+    private static byte[] recordBody(int offsetDelta, BodyWriter fields) {
+        ByteBuffer body = ByteBuffer.allocate(1 << 16);
+        body.put((byte) 0);
+        Writer.writeVariableLong(body, 0L);
+        Writer.writeVariableInt(body, offsetDelta);
+        fields.write(body);
+        body.flip();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] lengthPrefixed(int length, byte[] body) {
+        ByteBuffer record = ByteBuffer.allocate(5 + body.length);
+        Writer.writeVariableInt(record, length);
+        record.put(body).flip();
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        return bytes;
+    }
+
+    private static void writeField(ByteBuffer body, String value) {
+        if (value == null) {
+            Writer.writeVariableInt(body, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Writer.writeVariableInt(body, bytes.length);
+        body.put(bytes);
+    }
+
+    private static int totalLength(byte[]... records) {
+        int length = 0;
+        for (byte[] record : records) {
+            length += record.length;
+        }
+        return length;
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        return buffer == null ? null : StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.allocate(buffer.remaining()).put(buffer.duplicate()).flip();
+    }
+}
@@ -0,0 +1,38 @@
+package log;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicPartitionTest {
+
+    @Test
+    void acceptsLegalTopicNames() {
+        assertTrue(TopicPartition.isValidTopicName("orders"));
+        assertTrue(TopicPartition.isValidTopicName("my-topic_v1.2"));
+        assertTrue(TopicPartition.isValidTopicName("a".repeat(249)));
+    }
+
+    @Test
+    void rejectsNamesThatEscapeOrBreakTheLogDirectory() {
+        assertFalse(TopicPartition.isValidTopicName(null));
+        assertFalse(TopicPartition.isValidTopicName(""));
+        assertFalse(TopicPartition.isValidTopicName("."));
+        assertFalse(TopicPartition.isValidTopicName(".."));
+        assertFalse(TopicPartition.isValidTopicName("../x"));
+        assertFalse(TopicPartition.isValidTopicName("a/b"));
+        assertFalse(TopicPartition.isValidTopicName("a\\b"));
+        assertFalse(TopicPartition.isValidTopicName("a".repeat(250)));
+    }
+
+    @Test
+    void dirNameRoundTripsTopicsWithDashes() {
+        TopicPartition topicPartition = new TopicPartition("my-topic", 7);
+        assertEquals(topicPartition, TopicPartition.fromDirName(topicPartition.dirName()));
+        assertThrows(IllegalArgumentException.class, () -> TopicPartition.fromDirName("topic-"));
+        assertThrows(IllegalArgumentException.class, () -> TopicPartition.fromDirName("topic"));
+    }
+}
@@ -0,0 +1,71 @@
+package message.response;
+
+import core.handler.HandlerTestUtils;
+import core.handler.RequestHandlerFactory;
+import exceptions.ErrorCode;
+import message.request.RequestInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.Parser;
+import util.Struct;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResponseMessageTest {
+
+    private static final short API_VERSIONS_KEY = 18;
+
+    @BeforeAll
+    static void encodeBodies() {
+        HandlerTestUtils.freezeSchemas();
+    }
+
+    @Test
+    void patchesTheThrottleTimeIntoACopyOfAPreEncodedBody() {
+        ResponseMessage cached = apiVersions((short) 3);
+
+        ResponseMessage throttled = cached.withThrottleTimeMs(250);
+
+        assertNotSame(cached, throttled);
+        Struct body = decodeBody(throttled);
+        assertEquals(250, body.getInt("throttle_time_ms"));
+        assertEquals(ErrorCode.NONE.getCode(), body.getShort("error_code"));
+        assertEquals(decodeBody(cached).getArray("api_keys").length, body.getArray("api_keys").length);
+        // The next response served from the cache is not throttled
+        assertEquals(0, decodeBody(apiVersions((short) 3)).getInt("throttle_time_ms"));
+    }
+
+    @Test
+    void leavesBodiesWithoutAThrottleTimeAlone() {
+        ResponseMessage cached = apiVersions((short) 0);
+
+        assertSame(cached, cached.withThrottleTimeMs(250));
+    }
+
+    private ResponseMessage apiVersions(short version) {
+        byte[] clientId = "test-client".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        frame.putInt(0)
+                .putShort(API_VERSIONS_KEY)
+                .putShort(version)
+                .putInt(7)
+                .putShort((short) clientId.length)
+                .put(clientId);
+        if (version >= 3) {
+            // Empty header tags, empty client software name and version, empty body tags
+            frame.put((byte) 0).put((byte) 1).put((byte) 1).put((byte) 0);
+        }
+        frame.putInt(0, frame.position() - 4);
+        RequestInfo requestInfo = Parser.parseCommons(frame.flip());
+        return RequestHandlerFactory.getRequestHandler(requestInfo).handleRequest(requestInfo);
+    }
+
+    private static Struct decodeBody(ResponseMessage response) {
+        return response.codecs().responseBody().read(response.encodedBody().duplicate());
+    }
+}
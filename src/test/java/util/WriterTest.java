@@ -0,0 +1,49 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriterTest {
+
+    private static final int[] INT_BOUNDARIES = {
+            0, 1, -1, 63, -64, 64, -65, (1 << 30) - 1, -(1 << 30), 1 << 30, -(1 << 30) - 1,
+            Integer.MAX_VALUE, Integer.MIN_VALUE
+    };
+
+    @Test
+    void variableIntRoundTripsAtBoundaries() {
+        for (int value : INT_BOUNDARIES) {
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            Writer.writeVariableInt(buffer, value);
+            assertEquals(Writer.sizeOfVariableInt(value), buffer.position(), "size of " + value);
+            buffer.flip();
+            assertEquals(value, Parser.parseVariableInt(buffer), "value " + value);
+            assertEquals(0, buffer.remaining(), "trailing bytes of " + value);
+        }
+    }
+
+    @Test
+    void variableIntTakesAtMostFiveBytes() {
+        assertEquals(1, Writer.sizeOfVariableInt(0));
+        assertEquals(1, Writer.sizeOfVariableInt(-1));
+        assertEquals(5, Writer.sizeOfVariableInt(1 << 30));
+        assertEquals(5, Writer.sizeOfVariableInt(-(1 << 30) - 1));
+        assertEquals(5, Writer.sizeOfVariableInt(Integer.MAX_VALUE));
+        assertEquals(5, Writer.sizeOfVariableInt(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void variableLongRoundTripsAtBoundaries() {
+        long[] values = {0L, 1L, -1L, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            Writer.writeVariableLong(buffer, value);
+            assertEquals(Writer.sizeOfVariableLong(value), buffer.position(), "size of " + value);
+            buffer.flip();
+            assertEquals(value, Parser.parseVariableLong(buffer), "value " + value);
+        }
+    }
+}
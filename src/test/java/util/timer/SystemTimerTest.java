@@ -0,0 +1,143 @@
+package util.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SystemTimerTest {
+
+    // An interval of 8 ms per level puts delays above 8, 64 and 512 ms in the first, second and third overflow wheel
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    void expiresTasksInDelayOrderAcrossOverflowWheels() throws InterruptedException {
+        SystemTimer timer = new SystemTimer(1L, WHEEL_SIZE);
+        List<Long> delays = List.of(600L, 3L, 70L, 20L, 9L, 300L, 130L, 45L);
+        ConcurrentLinkedQueue<Long> ran = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        for (long delay : delays) {
+            timer.add(new RecordingTask(delay, () -> {
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                // The timer truncates the clock to whole milliseconds
+                assertTrue(elapsedMs >= delay - 1, "Task of " + delay + " ms ran after " + elapsedMs + " ms");
+                ran.add(delay);
+            }));
+        }
+        assertEquals(delays.size(), timer.size());
+
+        advanceUntil(timer, () -> ran.size() == delays.size());
+
+        List<Long> sorted = new ArrayList<>(delays);
+        Collections.sort(sorted);
+        assertEquals(sorted, List.copyOf(ran));
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void runsOverdueTasksOnTheCallingThread() {
+        SystemTimer timer = new SystemTimer(1L, WHEEL_SIZE);
+        List<Thread> ranOn = new ArrayList<>();
+        // A delay of 0 may still land in the current bucket if the clock ticked since the timer was created
+        timer.add(new RecordingTask(-1000L, () -> ranOn.add(Thread.currentThread())));
+        assertEquals(List.of(Thread.currentThread()), ranOn);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void neverRunsTasksCancelledBeforeTheyExpire() throws InterruptedException {
+        SystemTimer timer = new SystemTimer(1L, WHEEL_SIZE);
+        List<RecordingTask> tasks = new ArrayList<>();
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            RecordingTask task = new RecordingTask(30L + i * 5L, ran::incrementAndGet);
+            tasks.add(task);
+            timer.add(task);
+        }
+        for (int i = 0; i < tasks.size(); i += 2) {
+            tasks.get(i).cancel();
+        }
+        assertEquals(10, timer.size());
+
+        advanceUntil(timer, () -> ran.get() == 10);
+        // Give the cancelled ones, which expire in between, time to wrongly run
+        timer.advanceClock(50L);
+        assertEquals(10, ran.get());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(i % 2 == 0 ? 0 : 1, tasks.get(i).runs.get(), "task " + i);
+        }
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void cancelRacingWithBucketFlushesKeepsTheTimerConsistent() throws InterruptedException {
+        SystemTimer timer = new SystemTimer(1L, WHEEL_SIZE);
+        Random random = new Random(17);
+        List<RecordingTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Spread across the wheels so cancels also race with tasks cascading into finer wheels
+            RecordingTask task = new RecordingTask(1L + random.nextInt(120), () -> {
+            });
+            tasks.add(task);
+            timer.add(task);
+        }
+        AtomicBoolean cancelling = new AtomicBoolean(true);
+        Thread canceller = Thread.ofPlatform().start(() -> {
+            Random order = new Random(23);
+            for (int i = 0; i < tasks.size(); i += 2) {
+                tasks.get(i).cancel();
+                if (order.nextInt(8) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+            cancelling.set(false);
+        });
+        advanceUntil(timer, () -> !cancelling.get() && timer.size() == 0);
+        canceller.join();
+
+        assertEquals(0, timer.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            RecordingTask task = tasks.get(i);
+            assertTrue(task.runs.get() <= 1, "task " + i + " ran " + task.runs.get() + " times");
+            if (i % 2 == 1) {
+                assertEquals(1, task.runs.get(), "task " + i + " was never cancelled but did not run");
+            }
+            assertNull(task.list, "task " + i + " is still in a bucket");
+        }
+    }
+
+    private static void advanceUntil(SystemTimer timer, BooleanSupplier done) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!done.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the timer");
+            timer.advanceClock(10L);
+        }
+    }
+
+    private static final class RecordingTask extends TimerTask {
+        final AtomicInteger runs = new AtomicInteger();
+        private final Runnable action;
+
+        RecordingTask(long delayMs, Runnable action) {
+            super(delayMs);
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+            action.run();
+        }
+    }
+}